@@ -22,7 +22,11 @@
 
 package edu.udo.scaffoldhunter.cli.args;
 
+import java.util.List;
+
+import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.beust.jcommander.internal.Lists;
 
 /**
  * Argument class to calculate properties on dataset or molecular files
@@ -32,4 +36,28 @@ import com.beust.jcommander.Parameters;
 @Parameters(commandNames = {"calculate"}, commandDescriptionKey = "CLI.CommandHelp.Calculate")
 public class CalcArgs extends DBArgs {
 
+    /**
+     * Name of the dataset whose molecules are calculated
+     */
+    @Parameter(names = { "-d", "--dataset-name" }, description = "Name of the dataset whose molecules are calculated")
+    public String datasetName;
+
+    /**
+     * Ids or titles of the plugins to run, each plugin runs as one job
+     */
+    @Parameter(names = { "-g", "--plugin" }, description = "Id or title of a calculation plugin (may be given several times)")
+    public List<String> plugins = Lists.newArrayList();
+
+    /**
+     * Files containing the serialized arguments of the plugins in the same
+     * order as the plugins
+     */
+    @Parameter(names = { "-a", "--arguments" }, description = "XML file with the arguments of the plugin at the same position (default arguments if omitted)")
+    public List<String> arguments = Lists.newArrayList();
+
+    /**
+     * Number of threads running the plugins, 0 uses all processors
+     */
+    @Parameter(names = { "-t", "--threads" }, description = "Number of threads running the plugins (0 for all processors)")
+    public int threads = 0;
 }
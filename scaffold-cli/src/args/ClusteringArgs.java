@@ -22,9 +22,22 @@
 
 package edu.udo.scaffoldhunter.cli.args;
 
+import java.util.Collection;
+
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 
+import edu.udo.scaffoldhunter.model.clustering.ClusteringException;
+import edu.udo.scaffoldhunter.model.clustering.Distances;
+import edu.udo.scaffoldhunter.model.clustering.HierarchicalClustering;
+import edu.udo.scaffoldhunter.model.clustering.HierarchicalClusterings;
+import edu.udo.scaffoldhunter.model.clustering.Linkages;
+import edu.udo.scaffoldhunter.model.clustering.NNSearch.NNSearchParameters;
+import edu.udo.scaffoldhunter.model.clustering.NNSearchs;
+import edu.udo.scaffoldhunter.model.clustering.SamplingClustering;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Structure;
+
 /**
  * Argument to create cluster of molecule in database and sdf/csv file
  * 
@@ -39,4 +52,45 @@ public class ClusteringArgs extends DBArgs {
      */
     @Parameter(names = { "-o", "--output-file" }, description = "Name of the output file to save the generated cluster")
     public String destination;
+
+    /**
+     * Number of molecules which are clustered exactly, all other molecules
+     * are assigned to their nearest sampled molecule. 0 disables sampling.
+     */
+    @Parameter(names = { "-s", "--sample-size" }, description = "Number of molecules clustered exactly before the remaining molecules are assigned (0 for exact clustering)")
+    public int sampleSize = 0;
+
+    /**
+     * Creates the clustering selected by the sample size, i.e. a
+     * {@link SamplingClustering} of {@link #sampleSize} molecules or an
+     * exact {@link HierarchicalClusterings#GENERIC_CLUSTERING} if sampling
+     * is disabled
+     * 
+     * @param structures
+     *            the structures to be clustered
+     * @param propDefs
+     *            the {@link PropertyDefinition}s used for the clustering
+     * @param nnSearchStrategy
+     *            the {@link NNSearchs} strategy
+     * @param nnSearchParameters
+     *            the {@link NNSearchParameters}
+     * @param linkageType
+     *            the {@link Linkages}
+     * @param distType
+     *            the {@link Distances}
+     * @return the clustering
+     * @throws ClusteringException
+     */
+    public <S extends Structure> HierarchicalClustering<S> createClustering(Collection<S> structures,
+            Collection<PropertyDefinition> propDefs, NNSearchs nnSearchStrategy,
+            NNSearchParameters nnSearchParameters, Linkages linkageType, Distances distType)
+            throws ClusteringException {
+        if (sampleSize <= 0) {
+            return HierarchicalClusterings.GENERIC_CLUSTERING.generateClustering(structures, propDefs,
+                    nnSearchStrategy, nnSearchParameters, linkageType, distType);
+        }
+        return new SamplingClustering<S>(structures, propDefs, HierarchicalClusterings.GENERIC_CLUSTERING,
+                nnSearchStrategy, nnSearchParameters, linkageType, distType, sampleSize, Runtime.getRuntime()
+                        .availableProcessors(), null);
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.cli.args;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+
+/**
+ * Argument class to find the molecules of a dataset which are most similar to
+ * a query structure with respect to a stored bit fingerprint
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+@Parameters(commandNames = { "similarity" }, commandDescriptionKey = "CLI.CommandHelp.Similarity")
+public class SimilarityArgs extends DBArgs {
+
+    /**
+     * Name of the dataset which is searched
+     */
+    @Parameter(names = { "-d", "--dataset-name" }, description = "Name of the dataset which is searched")
+    public String datasetName;
+
+    /**
+     * Title or key of the fingerprint property
+     */
+    @Parameter(names = { "-f", "--fingerprint" }, description = "Title or key of the bit fingerprint property")
+    public String fingerprint;
+
+    /**
+     * The query structure
+     */
+    @Parameter(names = { "-s", "--smiles" }, description = "SMILES of the query structure")
+    public String smiles;
+
+    /**
+     * File containing the serialized arguments the fingerprint was calculated
+     * with
+     */
+    @Parameter(names = { "-a", "--arguments" }, description = "XML file with the plugin arguments the fingerprint was calculated with (default arguments if omitted)")
+    public String arguments;
+
+    /**
+     * Maximal number of hits
+     */
+    @Parameter(names = { "-k", "--top" }, description = "Maximal number of hits")
+    public int top = 100;
+
+    /**
+     * Minimal similarity of a hit
+     */
+    @Parameter(names = { "-m", "--min-similarity" }, description = "Minimal Tanimoto similarity of a hit")
+    public double minSimilarity = 0;
+
+    /**
+     * Name of the CSV file the ranked hits are written to
+     */
+    @Parameter(names = { "-o", "--output-file" }, description = "CSV file the ranked hits are written to")
+    public String destination;
+
+    /**
+     * Title of the subset which is created from the hits
+     */
+    @Parameter(names = { "-n", "--subset-name" }, description = "Title of a subset which is created from the hits")
+    public String subsetName;
+
+    /**
+     * Number of threads scanning the fingerprints, 0 uses all processors
+     */
+    @Parameter(names = { "-t", "--threads" }, description = "Number of threads scanning the fingerprints (0 for all processors)")
+    public int threads = 0;
+}
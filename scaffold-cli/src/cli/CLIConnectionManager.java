@@ -118,7 +118,8 @@ public class CLIConnectionManager {
                 // create a DbManager object
                 db = new DbManagerHibernate(connectionType.getDriverClass(), connectionType.getHibernateDialect(),
                         connData.getDbUrl(), connData.getDbName(), connData.getDbUsername(), password == null ? ""
-                                : new String(password), true, false);
+                                : new String(password), true, false, connData.getPoolSize(), connData
+                                .getStatementCacheSize());
                 // test whether schema exists and it is a valid schema
                 if (!db.schemaExists() || !db.validateSchema()) {
                     if (promptCreateSchema) {
@@ -0,0 +1,375 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.prefs.Preferences;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.io.BaseEncoding;
+
+import edu.udo.scaffoldhunter.plugins.SHPluginManager;
+
+/**
+ * A long running CLI process which executes the commands sent by thin
+ * clients. The connection, the session factory, the registered commands and
+ * the plugins are kept between two commands, so only the first command pays
+ * for starting the JVM and initializing Hibernate.
+ * <p>
+ * The daemon listens on the loopback interface only. Its port and a random
+ * token are stored in the user preferences, a client has to send the token
+ * before its command. The commands are executed one after another because
+ * the CLI keeps its state in static fields. While a command is executed, the
+ * standard output and the user input of the daemon are those of the client.
+ * The output is sent in length prefixed frames, followed by an empty frame
+ * and the result of the command, so the client can tell a failed command and
+ * a lost connection apart from a successful command.
+ * The daemon shows the latency of each command on its own console. The client
+ * shows the latency including the round trip on its error stream if the
+ * command is preceded by {@link #TIME_OPTION}.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class CLIDaemon {
+    /**
+     * option which starts the daemon, optionally followed by the port
+     */
+    public static final String DAEMON_OPTION = "--daemon";
+    /**
+     * option which sends the remaining arguments to the running daemon
+     */
+    public static final String REMOTE_OPTION = "--remote";
+    /**
+     * option which stops the running daemon
+     */
+    public static final String STOP_OPTION = "--stop-daemon";
+    /**
+     * option following the {@link #REMOTE_OPTION} which makes the client show
+     * the latency of the command
+     */
+    public static final String TIME_OPTION = "--time";
+    /**
+     * the port used if none is given
+     */
+    public static final int DEFAULT_PORT = 47911;
+
+    private static final String PORT_KEY = "daemonport";
+    private static final String TOKEN_KEY = "daemontoken";
+    private static final int TOKEN_BYTES = 16;
+    /**
+     * the argument count which requests the daemon to stop
+     */
+    private static final int STOP = -1;
+    /**
+     * maximal time in milliseconds to wait for the token and the command of
+     * a client. There is no limit while the command is executed because it
+     * may wait for the input of the user.
+     */
+    private static final int REQUEST_TIMEOUT = 10000;
+
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final PrintStream console = System.out;
+    private final InputStream consoleInput = System.in;
+    private boolean running = true;
+
+    /**
+     * Binds the daemon to the loopback interface and publishes its port and
+     * token
+     * 
+     * @param port
+     *            the port to listen on
+     * @throws IOException
+     *             if the port cannot be bound
+     */
+    public CLIDaemon(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+        byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        token = BaseEncoding.base16().encode(bytes);
+
+        Preferences preferences = getPreferences();
+        preferences.putInt(PORT_KEY, serverSocket.getLocalPort());
+        preferences.put(TOKEN_KEY, token);
+    }
+
+    /**
+     * Initializes the commands and plugins and executes the commands of the
+     * clients until a client stops the daemon
+     * 
+     * @throws IOException
+     *             if accepting a client fails
+     */
+    public void serve() throws IOException {
+        long start = System.nanoTime();
+        CommandManager.getInstance();
+        SHPluginManager.getInstance();
+        console.println(String.format("Scaffold Hunter daemon listening on port %d (started in %.1f ms)",
+                serverSocket.getLocalPort(), (System.nanoTime() - start) / 1e6));
+
+        try {
+            while (running) {
+                Socket socket = serverSocket.accept();
+                try {
+                    socket.setSoTimeout(REQUEST_TIMEOUT);
+                    handle(socket);
+                } catch (IOException ex) {
+                    console.println("Client failed: " + ex.getMessage());
+                } catch (RuntimeException ex) {
+                    // a failing command must not stop the daemon
+                    console.println("Client failed: " + ex);
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            serverSocket.close();
+            getPreferences().remove(TOKEN_KEY);
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (!MessageDigest.isEqual(token.getBytes(Charsets.UTF_8), in.readUTF().getBytes(Charsets.UTF_8))) {
+            console.println("Rejected client with an invalid token");
+            return;
+        }
+        int argc = in.readInt();
+        if (argc == STOP) {
+            running = false;
+            console.println("Stopped by client");
+            return;
+        }
+        String[] args = new String[argc];
+        for (int i = 0; i < argc; i++) {
+            args[i] = in.readUTF();
+        }
+        socket.setSoTimeout(0);
+
+        DataOutputStream data = new DataOutputStream(socket.getOutputStream());
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FrameOutputStream(data)), true, "UTF-8");
+        System.setOut(out);
+        System.setErr(out);
+        CLIUtil.setInput(in);
+        long start = System.nanoTime();
+        boolean result = false;
+        try {
+            result = CommandManager.getInstance().execute(args);
+        } finally {
+            long time = System.nanoTime() - start;
+            out.flush();
+            System.setOut(console);
+            System.setErr(console);
+            CLIUtil.setInput(consoleInput);
+            console.println(String.format("%-50s %10.1f ms", Joiner.on(' ').join(args), time / 1e6));
+        }
+        data.writeInt(0);
+        data.writeBoolean(result);
+        data.flush();
+    }
+
+    /**
+     * Sends a command to the running daemon and copies its output to the
+     * standard output. The standard input is forwarded to the daemon.
+     * 
+     * @param args
+     *            the command and its arguments, optionally preceded by the
+     *            {@link #TIME_OPTION}
+     * @return <code>true</code> iff the daemon executed the command
+     *         successfully
+     */
+    public static boolean send(String... args) {
+        long start = System.nanoTime();
+        boolean timed = args.length > 0 && args[0].equals(TIME_OPTION);
+        if (timed) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        Preferences preferences = getPreferences();
+        String token = preferences.get(TOKEN_KEY, null);
+        if (token == null) {
+            System.err.println("No Scaffold Hunter daemon is running");
+            return false;
+        }
+        boolean result;
+        try {
+            final Socket socket = new Socket(InetAddress.getByName(null), preferences.getInt(PORT_KEY, DEFAULT_PORT));
+            try {
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeUTF(token);
+                out.writeInt(args.length);
+                for (String arg : args) {
+                    out.writeUTF(arg);
+                }
+                out.flush();
+
+                Thread input = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            copy(System.in, out);
+                            socket.shutdownOutput();
+                        } catch (IOException ex) {
+                            // the daemon closed the connection
+                        }
+                    }
+                }, "daemon-input");
+                input.setDaemon(true);
+                input.start();
+
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                byte[] buffer = new byte[8192];
+                int length;
+                while ((length = in.readInt()) > 0) {
+                    if (length > buffer.length) {
+                        buffer = new byte[length];
+                    }
+                    in.readFully(buffer, 0, length);
+                    System.out.write(buffer, 0, length);
+                    System.out.flush();
+                }
+                result = in.readBoolean();
+            } finally {
+                socket.close();
+            }
+        } catch (EOFException ex) {
+            System.err.println("The Scaffold Hunter daemon closed the connection before the command finished");
+            return false;
+        } catch (IOException ex) {
+            System.err.println("Cannot reach the Scaffold Hunter daemon: " + ex.getMessage());
+            return false;
+        }
+        if (timed) {
+            System.err.println(String.format("%n[%.1f ms]", (System.nanoTime() - start) / 1e6));
+        }
+        return result;
+    }
+
+    /**
+     * Stops the running daemon
+     * 
+     * @return <code>true</code> iff the daemon received the request
+     */
+    public static boolean stop() {
+        Preferences preferences = getPreferences();
+        String token = preferences.get(TOKEN_KEY, null);
+        if (token == null) {
+            System.err.println("No Scaffold Hunter daemon is running");
+            return false;
+        }
+        try {
+            Socket socket = new Socket(InetAddress.getByName(null), preferences.getInt(PORT_KEY, DEFAULT_PORT));
+            try {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeUTF(token);
+                out.writeInt(STOP);
+                out.flush();
+            } finally {
+                socket.close();
+            }
+        } catch (IOException ex) {
+            System.err.println("Cannot reach the Scaffold Hunter daemon: " + ex.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts the daemon, the port may follow the {@link #DAEMON_OPTION}
+     * 
+     * @param args
+     *            the arguments following the {@link #DAEMON_OPTION}
+     * @return <code>true</code> iff the daemon was stopped by a client
+     */
+    public static boolean start(String... args) {
+        try {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            new CLIDaemon(port).serve();
+        } catch (NumberFormatException ex) {
+            System.err.println("Invalid port: " + Arrays.toString(args));
+            return false;
+        } catch (IOException ex) {
+            System.err.println("Cannot start the Scaffold Hunter daemon: " + ex.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            out.flush();
+        }
+    }
+
+    private static Preferences getPreferences() {
+        return Preferences.userNodeForPackage(CLIDaemon.class);
+    }
+
+    /**
+     * Writes each chunk of data as a frame preceded by its length
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+
+        FrameOutputStream(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -24,6 +24,7 @@ package edu.udo.scaffoldhunter.cli;
 
 import static edu.udo.scaffoldhunter.util.I18n._;
 
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -42,6 +43,18 @@ public class CLIUtil {
     private static Scanner scanner = new Scanner(System.in);
     private static final String NEW_LINE = "\n";
 
+    /**
+     * Reads all further user input from <code>in</code>. This is used by the
+     * {@link CLIDaemon} to read the input of the client which sent the
+     * current command.
+     * 
+     * @param in
+     *            the new input stream
+     */
+    static void setInput(InputStream in) {
+        scanner = new Scanner(in);
+    }
+
     /**
      * @param message
      *            to display
@@ -0,0 +1,235 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.cli;
+
+import static edu.udo.scaffoldhunter.util.I18n._;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+
+import edu.udo.scaffoldhunter.model.data.Message;
+import edu.udo.scaffoldhunter.model.data.MessageListener;
+import edu.udo.scaffoldhunter.model.datacalculation.CalcJob;
+import edu.udo.scaffoldhunter.model.datacalculation.CalculationException;
+import edu.udo.scaffoldhunter.model.datacalculation.Calculator;
+import edu.udo.scaffoldhunter.model.db.Dataset;
+import edu.udo.scaffoldhunter.model.db.DbManager;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.plugins.datacalculation.CalcPlugin;
+import edu.udo.scaffoldhunter.util.ProgressListener;
+
+/**
+ * Calculates properties of the molecules of a dataset or subset over command
+ * line. The plugins run in the headless pipeline of {@link Calculator}, the
+ * progress is printed to the console.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class CalculationManager {
+
+    private final Calculator calculator;
+    private final List<CalcJob> jobs = Lists.newArrayList();
+
+    /**
+     * Create a {@code CalculationManager} object
+     * 
+     * @param db
+     *            {@code DbManager} which stores the calculated properties
+     * @param dataset
+     *            the dataset to which the calculated properties are added
+     */
+    public CalculationManager(DbManager db, Dataset dataset) {
+        this.calculator = new Calculator(Preconditions.checkNotNull(db), Preconditions.checkNotNull(dataset));
+    }
+
+    /**
+     * Sets the number of threads running the plugins
+     * 
+     * @param threads
+     *            the number of threads or 0 to use all processors
+     */
+    public void setThreads(int threads) {
+        calculator.setThreads(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return all available calculation plugins
+     */
+    public List<CalcPlugin> getPlugins() {
+        return calculator.getPlugins();
+    }
+
+    /**
+     * Adds a job running a plugin
+     * 
+     * @param plugin
+     *            id or title of the plugin
+     * @param argumentsFile
+     *            a file containing the XML serialized plugin arguments or
+     *            null to use the default arguments of the plugin
+     * @return true if the job was added, false if there is no such plugin or
+     *         the arguments could not be read
+     */
+    public boolean addJob(String plugin, String argumentsFile) {
+        CalcPlugin calcPlugin = calculator.getPlugin(plugin);
+        if (calcPlugin == null) {
+            CLIUtil.showError(_("CLI.CalculationManager.pluginNotFound", plugin));
+            return false;
+        }
+
+        Object arguments;
+        if (argumentsFile == null) {
+            // the settings panel is never shown, it only creates the defaults
+            arguments = calcPlugin.getSettingsPanel(null, null).getArguments();
+        } else {
+            try {
+                arguments = new XStream().fromXML(Files.toString(new File(argumentsFile), Charsets.UTF_8));
+            } catch (IOException e) {
+                CLIUtil.showError(_("CLI.CalculationManager.argumentsNotRead", argumentsFile, e.getMessage()));
+                return false;
+            } catch (XStreamException e) {
+                CLIUtil.showError(_("CLI.CalculationManager.argumentsNotRead", argumentsFile, e.getMessage()));
+                return false;
+            }
+        }
+
+        jobs.add(new CalcJob(calcPlugin.getTitle(), calcPlugin, arguments));
+        return true;
+    }
+
+    /**
+     * Runs all added jobs on the given molecules and stores the calculated
+     * properties
+     * 
+     * @param molecules
+     *            the molecules of the dataset, e.g. all molecules of a subset
+     * @return true if the calculation finished
+     */
+    public boolean calculate(Collection<Molecule> molecules) {
+        if (jobs.isEmpty()) {
+            CLIUtil.showWarning(_("CLI.CalculationManager.noJobs"));
+            return false;
+        }
+
+        final ProgressUtil progressUtil = new ProgressUtil();
+        ProgressListener<Void> progress = new ProgressListener<Void>() {
+            private int max;
+            private int percent = -1;
+
+            @Override
+            public void setProgressValue(int progress) {
+                int p = max > 0 ? (int) (100L * progress / max) : 0;
+                // only print changes, redrawing the line for each molecule
+                // slows down the calculation
+                if (p != percent) {
+                    percent = p;
+                    progressUtil.replace(p + "%");
+                }
+            }
+
+            @Override
+            public void setProgressBounds(int min, int max) {
+                this.max = max - min;
+            }
+
+            @Override
+            public void setProgressIndeterminate(boolean indeterminate) {
+            }
+
+            @Override
+            public void finished(Void result, boolean cancelled) {
+                progressUtil.reset();
+            }
+        };
+        final int[] messages = new int[1];
+        MessageListener messageListener = new MessageListener() {
+            @Override
+            public void receiveMessage(Message message) {
+                messages[0]++;
+            }
+        };
+
+        CLIUtil.show(_("CLI.CalculationManager.calculating", jobs.size(), molecules.size()));
+        try {
+            String summary = calculator.calculate(jobs, molecules, progress, messageListener);
+            CLIUtil.showMessage(summary);
+            if (messages[0] > 0) {
+                CLIUtil.showWarning(_("CLI.CalculationManager.pluginMessages", messages[0]));
+            }
+            return true;
+        } catch (CalculationException e) {
+            CLIUtil.showError(_("CLI.CalculationManager.failed", e.getMessage()));
+            return false;
+        } finally {
+            jobs.clear();
+        }
+    }
+
+    /**
+     * Runs the plugins on all molecules of a dataset
+     * 
+     * @param db
+     *            {@code DbManager} which stores the calculated properties
+     * @param datasetName
+     *            the name of the dataset, the user is prompted to select a
+     *            dataset if there is no such dataset
+     * @param plugins
+     *            ids or titles of the plugins
+     * @param argumentsFiles
+     *            files containing the serialized arguments of the plugins at
+     *            the same position, plugins without a file use their default
+     *            arguments
+     * @param threads
+     *            the number of threads or 0 to use all processors
+     * @return true if the calculation finished
+     */
+    public static boolean calculate(DbManager db, String datasetName, List<String> plugins,
+            List<String> argumentsFiles, int threads) {
+        DatasetManager datasetManager = new DatasetManager(db);
+        Dataset dataset = datasetManager.getDatasetByName(datasetName, true);
+        if (dataset == null) {
+            return false;
+        }
+
+        CalculationManager manager = new CalculationManager(db, dataset);
+        manager.setThreads(threads);
+        for (int i = 0; i < plugins.size(); i++) {
+            if (!manager.addJob(plugins.get(i), i < argumentsFiles.size() ? argumentsFiles.get(i) : null)) {
+                return false;
+            }
+        }
+
+        List<Molecule> molecules = datasetManager.getMolecules(dataset);
+        return molecules != null && manager.calculate(molecules);
+    }
+}
@@ -143,14 +143,16 @@ public class CommandManager {
      * 
      * @param args
      *            required to identify command and its parameters
+     * @return <code>false</code> iff the command could not be parsed or
+     *         failed with an exception
      */
-    public void execute(String... args) {
+    public boolean execute(String... args) {
         JCommander commander = AbstractCommand.getDefaultCommander();
         try {
 
             if (args == null || args.length == 0) {
                 helpCommand.execute();
-                return;
+                return true;
             }
 
             // parse command
@@ -158,6 +160,7 @@ public class CommandManager {
 
             // execute command
             getCommand(commander.getParsedCommand()).execute();
+            return true;
         } catch (Exception ex) {
             String command = commander.getParsedCommand();
             ex.printStackTrace();
@@ -174,6 +177,7 @@ public class CommandManager {
                 CLIUtil.separator();
                 helpCommand.usage(null);
             }
+            return false;
         }
     }
 
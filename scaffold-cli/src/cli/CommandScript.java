@@ -0,0 +1,241 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.cli;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+/**
+ * Executes a script of CLI commands in one process. Each line of the script
+ * contains one command with its arguments as it would be given on the
+ * command line. Arguments containing spaces may be enclosed in single or
+ * double quotes. Outside of single quotes a backslash escapes the following
+ * character. An unquoted <code>#</code> at the start of an argument starts a
+ * comment which extends to the end of the line, empty lines are ignored.
+ * <p>
+ * Since all commands run in the same process, the connection and its session
+ * factory are opened once and reused by all following commands. The commands
+ * are executed sequentially in the order of the script because the CLI keeps
+ * its state in static fields. The time of each command is written to a log.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class CommandScript {
+    /**
+     * option which executes a script, followed by the script file. The script
+     * cannot be read from the standard input because the commands read the
+     * input of the user from it.
+     */
+    public static final String SCRIPT_OPTION = "--script";
+    /**
+     * option which writes the timings to a file instead of the error stream
+     */
+    public static final String LOG_OPTION = "--log";
+    /**
+     * option which continues with the next command if a command fails
+     */
+    public static final String KEEP_GOING_OPTION = "--keep-going";
+
+    private final PrintStream log;
+    private final boolean keepGoing;
+
+    /**
+     * @param log
+     *            the stream the timings are written to
+     * @param keepGoing
+     *            <code>true</code> iff the script should continue after a
+     *            failed command
+     */
+    public CommandScript(PrintStream log, boolean keepGoing) {
+        this.log = log;
+        this.keepGoing = keepGoing;
+    }
+
+    /**
+     * Executes all commands of a script
+     * 
+     * @param script
+     *            the script
+     * @return <code>true</code> iff all commands succeeded
+     * @throws IOException
+     *             if the script cannot be read
+     */
+    public boolean run(BufferedReader script) throws IOException {
+        CommandManager commandManager = CommandManager.getInstance();
+        boolean success = true;
+        int commands = 0;
+        long total = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            List<String> args = split(line);
+            if (args.isEmpty()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean succeeded = commandManager.execute(args.toArray(new String[args.size()]));
+            long time = System.nanoTime() - start;
+            commands++;
+            total += time;
+            log.println(String.format("%4d %-50s %10.1f ms%s", lineNumber, Joiner.on(' ').join(args), time / 1e6,
+                    succeeded ? "" : " FAILED"));
+            if (!succeeded) {
+                success = false;
+                if (!keepGoing) {
+                    break;
+                }
+            }
+        }
+        log.println(String.format("%d commands in %.1f ms", commands, total / 1e6));
+        log.flush();
+        return success;
+    }
+
+    /**
+     * Splits a line of a script into arguments. Whitespace separates two
+     * arguments unless it is enclosed in single or double quotes or escaped by
+     * a backslash. A backslash only escapes whitespace, quotes, backslashes
+     * and <code>#</code>, so Windows paths need no escapes. Within double
+     * quotes only a double quote and a backslash can be escaped, within single
+     * quotes there are no escapes. An unclosed quote extends to the end of the
+     * line.
+     * 
+     * @param line
+     *            the line
+     * @return the arguments without the comment
+     */
+    static List<String> split(String line) {
+        List<String> args = Lists.newArrayList();
+        StringBuilder arg = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote == '\'') {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '\\' && i + 1 < line.length() && isEscapable(line.charAt(i + 1), quote)) {
+                arg.append(line.charAt(++i));
+                inArg = true;
+            } else if (quote == '"') {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    arg.append(c);
+                }
+            } else if (c == '#' && !inArg) {
+                break;
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inArg = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inArg) {
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                arg.append(c);
+                inArg = true;
+            }
+        }
+        if (inArg) {
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    private static boolean isEscapable(char c, char quote) {
+        if (quote == '"') {
+            return c == '"' || c == '\\';
+        }
+        return Character.isWhitespace(c) || c == '"' || c == '\'' || c == '\\' || c == '#';
+    }
+
+    /**
+     * Executes the script given after the {@link #SCRIPT_OPTION}
+     * 
+     * @param args
+     *            the arguments following the {@link #SCRIPT_OPTION}
+     * @return <code>true</code> iff all commands succeeded
+     */
+    public static boolean start(String... args) {
+        String scriptFile = null;
+        String logFile = null;
+        boolean keepGoing = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(LOG_OPTION) && i + 1 < args.length) {
+                logFile = args[++i];
+            } else if (args[i].equals(KEEP_GOING_OPTION)) {
+                keepGoing = true;
+            } else if (scriptFile == null) {
+                scriptFile = args[i];
+            } else {
+                System.err.println("Unexpected argument: " + args[i]);
+                return false;
+            }
+        }
+        if (scriptFile == null) {
+            System.err.println("No script given");
+            return false;
+        }
+        if (scriptFile.equals("-")) {
+            System.err.println("The script cannot be read from the standard input, it is needed for the user input");
+            return false;
+        }
+
+        try {
+            BufferedReader script = new BufferedReader(new InputStreamReader(new FileInputStream(new File(
+                    scriptFile)), Charsets.UTF_8));
+            PrintStream log = logFile == null ? System.err : new PrintStream(new FileOutputStream(logFile), true,
+                    "UTF-8");
+            try {
+                return new CommandScript(log, keepGoing).run(script);
+            } finally {
+                script.close();
+                if (log != System.err) {
+                    log.close();
+                }
+            }
+        } catch (IOException ex) {
+            System.err.println("Cannot execute the script: " + ex.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.udo.scaffoldhunter.cli;
+
+import static edu.udo.scaffoldhunter.util.I18n._;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.dataexport.sdf.SDFExport;
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
+import edu.udo.scaffoldhunter.model.db.DbManager;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Subset;
+
+/**
+ * Exports the molecules of a subset to an SD file over command line
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class ExportManager {
+
+    private ExportManager() {
+    }
+
+    /**
+     * Writes the molecules of a subset with all their molecule properties to
+     * an SD file. The molfiles are copied from the database, a destination
+     * ending with {@code .gz} is written gzip compressed.
+     * 
+     * @param db
+     *            the {@code DbManager} holding the subset
+     * @param subset
+     *            the subset to export
+     * @param destination
+     *            the SD file to write
+     * @param exportSmiles
+     *            whether the SMILES of the molecules are written as well
+     * @return true if the file was written
+     */
+    public static boolean exportSdf(DbManager db, Subset subset, String destination, boolean exportSmiles) {
+        List<PropertyDefinition> propDefs = Lists.newArrayList();
+        for (PropertyDefinition propDef : subset.getSession().getDataset().getPropertyDefinitions().values()) {
+            if (!propDef.isScaffoldProperty()) {
+                propDefs.add(propDef);
+            }
+        }
+        Collections.sort(propDefs, new Comparator<PropertyDefinition>() {
+            @Override
+            public int compare(PropertyDefinition o1, PropertyDefinition o2) {
+                return o1.getTitle().compareTo(o2.getTitle());
+            }
+        });
+
+        int offset = exportSmiles ? 1 : 0;
+        String[] propertyNames = new String[propDefs.size() + offset];
+        if (exportSmiles) {
+            propertyNames[0] = "SMILES";
+        }
+        for (int i = 0; i < propDefs.size(); i++) {
+            propertyNames[offset + i] = propDefs.get(i).getTitle();
+        }
+
+        try {
+            db.loadMolecules(subset);
+            new SDFExport().writeData(db, subset, propDefs, propertyNames, exportSmiles, destination,
+                    destination.endsWith(".gz"));
+        } catch (DatabaseException e) {
+            CLIUtil.showError(_("CLI.ExportManager.failed", destination, e.getMessage()));
+            return false;
+        } catch (IOException e) {
+            CLIUtil.showError(_("CLI.ExportManager.failed", destination, e.getMessage()));
+            return false;
+        }
+        CLIUtil.show(_("CLI.ExportManager.exported", subset.size(), destination));
+        return true;
+    }
+}
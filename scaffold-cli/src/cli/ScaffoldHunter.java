@@ -22,6 +22,7 @@
 
 package edu.udo.scaffoldhunter.cli;
 
+import java.util.Arrays;
 import java.util.logging.LogManager;
 
 import edu.udo.scaffoldhunter.util.I18n;
@@ -38,9 +39,22 @@ public class ScaffoldHunter {
     public static void main(String... args) {
         // Disable console logging FIXME
         LogManager.getLogManager().reset();
+        // thin client, must not initialize the command manager
+        if (args.length > 0 && args[0].equals(CLIDaemon.REMOTE_OPTION)) {
+            System.exit(CLIDaemon.send(Arrays.copyOfRange(args, 1, args.length)) ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals(CLIDaemon.STOP_OPTION)) {
+            System.exit(CLIDaemon.stop() ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals(CLIDaemon.DAEMON_OPTION)) {
+            System.exit(CLIDaemon.start(Arrays.copyOfRange(args, 1, args.length)) ? 0 : 1);
+        }
         CommandManager commandManager = CommandManager.getInstance();
         //Initialize I18n
         I18n.initialize(commandManager.getDataManager().getLanguage());
+        if (args.length > 0 && args[0].equals(CommandScript.SCRIPT_OPTION)) {
+            System.exit(CommandScript.start(Arrays.copyOfRange(args, 1, args.length)) ? 0 : 1);
+        }
         commandManager.execute(args);
     }
 }
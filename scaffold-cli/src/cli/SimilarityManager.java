@@ -0,0 +1,433 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.cli;
+
+import static edu.udo.scaffoldhunter.util.I18n._;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openscience.cdk.exception.InvalidSmilesException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
+
+import edu.udo.scaffoldhunter.model.PropertyType;
+import edu.udo.scaffoldhunter.model.datacalculation.CalculationException;
+import edu.udo.scaffoldhunter.model.datacalculation.Calculator;
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
+import edu.udo.scaffoldhunter.model.db.Dataset;
+import edu.udo.scaffoldhunter.model.db.DbManager;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.model.db.MoleculeStringProperty;
+import edu.udo.scaffoldhunter.model.db.PackedFingerprints;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Subset;
+import edu.udo.scaffoldhunter.model.similarity.TanimotoSearch;
+import edu.udo.scaffoldhunter.model.similarity.TanimotoSearch.Hit;
+import edu.udo.scaffoldhunter.model.util.MoleculeConfigurator;
+
+/**
+ * Finds the molecules of a dataset which are most similar to a query
+ * structure. The fingerprint of the query is calculated with the plugin which
+ * calculated the stored fingerprints, the stored fingerprints are loaded once
+ * and scanned by a {@link TanimotoSearch}. The hits are written to a ranked
+ * CSV file or collected in a new subset.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class SimilarityManager {
+
+    private final DbManager db;
+    private final Dataset dataset;
+    private final PropertyDefinition propDef;
+    private int threads = 0;
+    private TanimotoSearch search;
+
+    /**
+     * Create a {@code SimilarityManager} object
+     * 
+     * @param db
+     *            {@code DbManager} which stores the fingerprints
+     * @param dataset
+     *            the searched dataset
+     * @param propDef
+     *            the property definition of a bit fingerprint calculated for
+     *            the dataset
+     */
+    public SimilarityManager(DbManager db, Dataset dataset, PropertyDefinition propDef) {
+        Preconditions.checkArgument(propDef.getPropertyType() == PropertyType.BitFingerprint
+                || propDef.getPropertyType() == PropertyType.BitStringFingerprint, "not a bit fingerprint");
+        this.db = Preconditions.checkNotNull(db);
+        this.dataset = Preconditions.checkNotNull(dataset);
+        this.propDef = propDef;
+    }
+
+    /**
+     * Sets the number of threads scanning the fingerprints
+     * 
+     * @param threads
+     *            the number of threads or 0 to use all processors
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+        if (search != null) {
+            search.setThreads(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Finds the fingerprint property of a dataset
+     * 
+     * @param dataset
+     *            the dataset
+     * @param fingerprint
+     *            the title or key of the property
+     * @return the property definition or null if the dataset has no bit
+     *         fingerprint with this title or key
+     */
+    public static PropertyDefinition getFingerprintDefinition(Dataset dataset, String fingerprint) {
+        for (PropertyDefinition propDef : dataset.getPropertyDefinitions().values()) {
+            if ((propDef.getPropertyType() == PropertyType.BitFingerprint || propDef.getPropertyType() == PropertyType.BitStringFingerprint)
+                    && (propDef.getKey().equals(fingerprint) || propDef.getTitle().equalsIgnoreCase(fingerprint))) {
+                return propDef;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calculates the packed fingerprint of a query structure
+     * 
+     * @param smiles
+     *            the SMILES of the query
+     * @param arguments
+     *            the plugin arguments the stored fingerprints were calculated
+     *            with or <code>null</code> for the default arguments
+     * @return the packed fingerprint of the query
+     * @throws InvalidSmilesException
+     *             if the SMILES cannot be parsed
+     * @throws CalculationException
+     *             if the plugin does not calculate a fingerprint for the query
+     */
+    public MoleculeStringProperty getQueryFingerprint(String smiles, Object arguments)
+            throws InvalidSmilesException, CalculationException {
+        SmilesParser parser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        IAtomContainer molecule = parser.parseSmiles(smiles);
+        MoleculeConfigurator.prepare(molecule, false);
+
+        Object value = new Calculator(db, dataset).calculateValue(propDef, molecule, arguments);
+        if (!(value instanceof String)) {
+            throw new CalculationException("no fingerprint calculated for " + smiles);
+        }
+        MoleculeStringProperty fingerprint = new MoleculeStringProperty(propDef, (String) value);
+        try {
+            // packs the fingerprint, fails for malformed values
+            fingerprint.getFingerprintLength();
+        } catch (IllegalStateException e) {
+            throw new CalculationException("malformed fingerprint calculated for " + smiles);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @param fingerprint
+     *            a packed fingerprint
+     * @return the fingerprint words, bit i is bit i % 64 of word i / 64
+     */
+    public static long[] getWords(MoleculeStringProperty fingerprint) {
+        LongBuffer buffer = fingerprint.getBitFingerprintWords();
+        long[] words = new long[buffer.remaining()];
+        buffer.get(words);
+        return words;
+    }
+
+    /**
+     * @return the number of stored fingerprints which are searched
+     * @throws DatabaseException
+     *             if the fingerprints cannot be loaded
+     */
+    public int getFingerprintCount() throws DatabaseException {
+        return getSearch().size();
+    }
+
+    /**
+     * @return the length in bits of the stored fingerprints
+     * @throws DatabaseException
+     *             if the fingerprints cannot be loaded
+     */
+    public int getFingerprintLength() throws DatabaseException {
+        return getSearch().getLength();
+    }
+
+    /**
+     * Loads the stored fingerprints on the first call
+     */
+    private TanimotoSearch getSearch() throws DatabaseException {
+        if (search == null) {
+            PackedFingerprints fingerprints = db.getPackedFingerprints(propDef);
+            search = new TanimotoSearch(fingerprints);
+            setThreads(threads);
+        }
+        return search;
+    }
+
+    /**
+     * Finds the molecules most similar to the query. The stored fingerprints
+     * are loaded by the first search and reused by all further searches.
+     * 
+     * @param query
+     *            the packed fingerprint of the query, it must have the
+     *            {@link #getFingerprintLength() length} of the stored
+     *            fingerprints
+     * @param k
+     *            the maximal number of hits, at least 1
+     * @param minSimilarity
+     *            the minimal similarity of a hit
+     * @return the hits ordered by descending similarity
+     * @throws DatabaseException
+     *             if the fingerprints cannot be loaded
+     * @throws InterruptedException
+     *             if the search is interrupted
+     */
+    public List<Hit> search(long[] query, int k, double minSimilarity) throws DatabaseException,
+            InterruptedException {
+        return getSearch().search(query, k, minSimilarity);
+    }
+
+    /**
+     * Writes the hits to a CSV file with one line per hit in the order of the
+     * hits
+     * 
+     * @param hits
+     *            the hits
+     * @param molecules
+     *            the molecules of the dataset by id
+     * @param file
+     *            the destination
+     * @throws IOException
+     */
+    public static void writeCsv(List<Hit> hits, Map<Integer, Molecule> molecules, File file) throws IOException {
+        BufferedWriter writer = Files.newWriter(file, Charsets.UTF_8);
+        try {
+            writer.write("rank,id,title,smiles,similarity");
+            writer.newLine();
+            int rank = 1;
+            for (Hit hit : hits) {
+                Molecule molecule = molecules.get(hit.getMoleculeId());
+                writer.write(rank++ + "," + hit.getMoleculeId() + ","
+                        + quote(molecule == null ? "" : molecule.getTitle()) + ","
+                        + quote(molecule == null ? "" : molecule.getSmiles()) + "," + hit.getSimilarity());
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + (value == null ? "" : value.replace("\"", "\"\"")) + '"';
+    }
+
+    /**
+     * Creates a subset of the hits which are contained in a parent subset.
+     * The subset is not saved.
+     * 
+     * @param parent
+     *            the parent subset, its molecules have to be loaded
+     * @param title
+     *            the title of the new subset
+     * @param hits
+     *            the hits
+     * @return the new subset
+     */
+    public static Subset createSubset(Subset parent, String title, List<Hit> hits) {
+        Map<Integer, Molecule> parentMolecules = Maps.newHashMap();
+        for (Molecule molecule : parent.getMolecules()) {
+            parentMolecules.put(molecule.getId(), molecule);
+        }
+        Set<Molecule> molecules = Sets.newHashSetWithExpectedSize(hits.size());
+        for (Hit hit : hits) {
+            Molecule molecule = parentMolecules.get(hit.getMoleculeId());
+            if (molecule != null) {
+                molecules.add(molecule);
+            }
+        }
+        return new Subset(parent, title, null, parent.getSession(), molecules, null);
+    }
+
+    /**
+     * Runs a similarity search over command line
+     * 
+     * @param db
+     *            {@code DbManager} which stores the fingerprints
+     * @param datasetName
+     *            the name of the dataset, the user is prompted to select a
+     *            dataset if there is no such dataset
+     * @param fingerprint
+     *            the title or key of the fingerprint property
+     * @param smiles
+     *            the SMILES of the query
+     * @param argumentsFile
+     *            a file containing the XML serialized plugin arguments the
+     *            fingerprints were calculated with or null for the default
+     *            arguments
+     * @param k
+     *            the maximal number of hits, at least 1
+     * @param minSimilarity
+     *            the minimal similarity of a hit
+     * @param destination
+     *            the CSV file the hits are written to or null to print them
+     * @param parent
+     *            the parent of the subset created from the hits or null if no
+     *            subset is created
+     * @param subsetName
+     *            the title of the created subset
+     * @param threads
+     *            the number of threads or 0 to use all processors
+     * @return true if the search finished
+     */
+    public static boolean search(DbManager db, String datasetName, String fingerprint, String smiles,
+            String argumentsFile, int k, double minSimilarity, String destination, Subset parent,
+            String subsetName, int threads) {
+        if (k <= 0) {
+            CLIUtil.showError(_("CLI.SimilarityManager.invalidTop", k));
+            return false;
+        }
+        DatasetManager datasetManager = new DatasetManager(db);
+        Dataset dataset = datasetManager.getDatasetByName(datasetName, true);
+        if (dataset == null) {
+            return false;
+        }
+        PropertyDefinition propDef = getFingerprintDefinition(dataset, fingerprint);
+        if (propDef == null) {
+            CLIUtil.showError(_("CLI.SimilarityManager.fingerprintNotFound", fingerprint, dataset.getTitle()));
+            return false;
+        }
+
+        Object arguments = null;
+        if (argumentsFile != null) {
+            try {
+                arguments = new XStream().fromXML(Files.toString(new File(argumentsFile), Charsets.UTF_8));
+            } catch (IOException e) {
+                CLIUtil.showError(_("CLI.CalculationManager.argumentsNotRead", argumentsFile, e.getMessage()));
+                return false;
+            } catch (XStreamException e) {
+                CLIUtil.showError(_("CLI.CalculationManager.argumentsNotRead", argumentsFile, e.getMessage()));
+                return false;
+            }
+        }
+
+        SimilarityManager manager = new SimilarityManager(db, dataset, propDef);
+        manager.setThreads(threads);
+        List<Hit> hits;
+        try {
+            MoleculeStringProperty query = manager.getQueryFingerprint(smiles, arguments);
+            if (manager.getFingerprintCount() == 0) {
+                CLIUtil.showError(_("CLI.SimilarityManager.noFingerprints", propDef.getTitle(), dataset.getTitle()));
+                return false;
+            }
+            if (query.getFingerprintLength() != manager.getFingerprintLength()) {
+                CLIUtil.showError(_("CLI.SimilarityManager.lengthMismatch", query.getFingerprintLength(),
+                        manager.getFingerprintLength()));
+                return false;
+            }
+            hits = manager.search(getWords(query), k, minSimilarity);
+        } catch (InvalidSmilesException e) {
+            CLIUtil.showError(_("CLI.SimilarityManager.invalidSmiles", smiles));
+            return false;
+        } catch (CalculationException e) {
+            CLIUtil.showError(_("CLI.SimilarityManager.failed", e.getMessage()));
+            return false;
+        } catch (DatabaseException e) {
+            CLIUtil.showError(_("CLI.SimilarityManager.failed", e.getMessage()));
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        CLIUtil.showMessage(_("CLI.SimilarityManager.found", hits.size()));
+
+        if (parent != null) {
+            try {
+                db.loadMolecules(parent);
+            } catch (DatabaseException e) {
+                CLIUtil.showError(_("CLI.SimilarityManager.failed", e.getMessage()));
+                return false;
+            }
+            Subset subset = createSubset(parent, subsetName, hits);
+            parent.addChild(subset);
+            try {
+                db.saveAsNew(subset);
+            } catch (DatabaseException e) {
+                parent.removeChild(subset);
+                CLIUtil.showError(_("CLI.SimilarityManager.failed", e.getMessage()));
+                return false;
+            }
+            CLIUtil.showMessage(_("CLI.SimilarityManager.subsetCreated", subset.getTitle(), subset.size()));
+        }
+
+        if (destination != null || parent == null) {
+            List<Molecule> molecules = datasetManager.getMolecules(dataset);
+            if (molecules == null) {
+                return false;
+            }
+            Map<Integer, Molecule> byId = Maps.newHashMapWithExpectedSize(molecules.size());
+            for (Molecule molecule : molecules) {
+                byId.put(molecule.getId(), molecule);
+            }
+            if (destination != null) {
+                try {
+                    writeCsv(hits, byId, new File(destination));
+                } catch (IOException e) {
+                    CLIUtil.showError(_("CLI.SimilarityManager.notWritten", destination, e.getMessage()));
+                    return false;
+                }
+            } else {
+                List<String> lines = Lists.newArrayListWithCapacity(hits.size());
+                for (Hit hit : hits) {
+                    Molecule molecule = byId.get(hit.getMoleculeId());
+                    lines.add(String.format("%.4f  %s", hit.getSimilarity(),
+                            molecule == null ? hit.getMoleculeId() : molecule.getTitle()));
+                }
+                CLIUtil.out(lines.toArray(new String[lines.size()]));
+            }
+        }
+        return true;
+    }
+}
@@ -29,6 +29,9 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.google.common.collect.Lists;
 
+import edu.udo.scaffoldhunter.data.ConnectionData;
+import edu.udo.scaffoldhunter.data.ConnectionType;
+
 /**
  * Represents argument required to manipulate 
  * connection data. Manipulation of connection 
@@ -74,6 +77,18 @@ public class ConnectionArgs extends AbstractArgs {
      */
     @Parameter(names = {"-p", "--password"}, description="Password for login", descriptionKey = "", password = true)
     public String dbPassword;
+
+    /**
+     * Maximal number of pooled database connections
+     */
+    @Parameter(names = {"-ps", "--pool-size"}, description = "Maximal number of pooled database connections", descriptionKey = "")
+    public int poolSize = ConnectionData.DEFAULT_POOL_SIZE;
+
+    /**
+     * Number of prepared statements cached for each connection
+     */
+    @Parameter(names = {"-sc", "--statement-cache-size"}, description = "Number of prepared statements cached for each connection (0 disables the cache)", descriptionKey = "")
+    public int statementCacheSize = ConnectionData.DEFAULT_STATEMENT_CACHE_SIZE;
     
     /**
      * Database password
@@ -81,6 +96,21 @@ public class ConnectionArgs extends AbstractArgs {
     @Parameter(description = "", descriptionKey = "", converter = ConnectionDataActionConverter.class)    
     public List<ConnectionDataAction> action;
     
+    /**
+     * Creates the connection data to be saved from the given arguments,
+     * including the connection pool settings
+     * 
+     * @param type
+     *            the database type parsed from {@link #dbType}
+     * @return the connection data
+     */
+    public ConnectionData toConnectionData(ConnectionType type) {
+        ConnectionData data = new ConnectionData(connectionName, dbUrl, dbName, dbUserName, dbPassword, type);
+        data.setPoolSize(poolSize > 0 ? poolSize : ConnectionData.DEFAULT_POOL_SIZE);
+        data.setStatementCacheSize(Math.max(0, statementCacheSize));
+        return data;
+    }
+    
     /**
      * Enum constant to indicate action
      * @author Shamshad Alam
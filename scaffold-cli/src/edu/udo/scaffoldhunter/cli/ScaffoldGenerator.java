@@ -23,7 +23,6 @@
 package edu.udo.scaffoldhunter.cli;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
@@ -35,16 +34,16 @@ import java.util.List;
 import java.util.Vector;
 
 import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IMolecule;
 import org.openscience.cdk.io.SDFWriter;
-import org.openscience.cdk.io.iterator.IteratingMDLReader;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.converters.FileConverter;
 import com.google.common.io.Files;
 
+import edu.udo.scaffoldhunter.model.dataimport.ParallelSDFReader;
 import edu.udo.scaffoldhunter.model.db.Scaffold;
 import edu.udo.scaffoldhunter.model.treegen.CDKHelpers;
 import edu.udo.scaffoldhunter.model.treegen.GeneratorOptions;
@@ -239,11 +238,9 @@ public class ScaffoldGenerator {
         int molWritten = 0;
         
         // process molecules in the input file
-        IteratingMDLReader reader = new IteratingMDLReader(new FileInputStream(arg.file.get(0)),
-                SilentChemObjectBuilder.getInstance());
-        while (reader.hasNext()) {
+        for (IAtomContainer next : new ParallelSDFReader(arg.file.get(0), false)) {
 
-            IMolecule molIn = (IMolecule) reader.next();
+            IMolecule molIn = (IMolecule) next;
             IMolecule mol = molIn.clone();
 
             // only the largest fragment is used to build the scaffold tree
@@ -27,12 +27,23 @@ package edu.udo.scaffoldhunter.data;
  * @author Thorsten Flügel
  */
 public class ConnectionData {
+    /**
+     * default maximal number of pooled database connections
+     */
+    public static final int DEFAULT_POOL_SIZE = 8;
+    /**
+     * default number of prepared statements cached for each connection
+     */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 250;
+
     private String connectionName;
     private String dbUrl;
     private String dbName;
     private String dbusername;
     private String dbpassword;
     private ConnectionType dbType = ConnectionType.values()[0];
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
     
     /**
      * @return the dbType
@@ -149,6 +160,37 @@ public class ConnectionData {
         return dbpassword;
     }
     
+    /**
+     * @param poolSize
+     *            maximal number of pooled database connections
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return maximal number of pooled database connections
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @param statementCacheSize
+     *            number of prepared statements cached for each connection, 0
+     *            disables the cache
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * @return number of prepared statements cached for each connection
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
     @Override
     public String toString() {
         return connectionName;
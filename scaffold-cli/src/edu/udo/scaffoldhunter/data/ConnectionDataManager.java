@@ -54,6 +54,8 @@ public class ConnectionDataManager {
     private static final String DB_USERNAME = "dbusername";
     private static final String DB_PASSWORD = "dbpassword";
     private static final String DB_TYPE = "dbtype";
+    private static final String DB_POOL_SIZE = "dbpoolsize";
+    private static final String DB_STATEMENT_CACHE_SIZE = "dbstatementcachesize";
     private static final String SELECTION = "selected";
     private static final String USERNAME = "username";
     private static final String PASSWORD = "password";
@@ -195,6 +197,10 @@ public class ConnectionDataManager {
             String dbUserName = preferences.get(connectionName + '.' + DB_USERNAME, "");
             String dbPassword = preferences.get(connectionName + '.' + DB_PASSWORD, null);
             ConnectionData data = new ConnectionData(connectionName, dbURL, dbName, dbUserName, dbPassword, type);
+            data.setPoolSize(preferences.getInt(connectionName + '.' + DB_POOL_SIZE,
+                    ConnectionData.DEFAULT_POOL_SIZE));
+            data.setStatementCacheSize(preferences.getInt(connectionName + '.' + DB_STATEMENT_CACHE_SIZE,
+                    ConnectionData.DEFAULT_STATEMENT_CACHE_SIZE));
             connections.put(connectionName, data);
         }
         selectedConnection = preferences.get(SELECTION, "");
@@ -231,6 +237,8 @@ public class ConnectionDataManager {
             }
             if (data.getDbType() != null)
                 preferences.put(connectionName + '.' + DB_TYPE, data.getDbType().name());
+            preferences.putInt(connectionName + '.' + DB_POOL_SIZE, data.getPoolSize());
+            preferences.putInt(connectionName + '.' + DB_STATEMENT_CACHE_SIZE, data.getStatementCacheSize());
         }
         preferences.put(CONNECTIONS, Joiner.on(',').join(connectionNames));
         if (selectedConnection != null) {
@@ -299,6 +307,8 @@ public class ConnectionDataManager {
         preferences.remove(name + '.' + DB_URL);
         preferences.remove(name + '.' + DB_USERNAME);
         preferences.remove(name + '.' + DB_PASSWORD);
+        preferences.remove(name + '.' + DB_POOL_SIZE);
+        preferences.remove(name + '.' + DB_STATEMENT_CACHE_SIZE);
         model.removeElement(name);
         model.setSelectedItem(model.getElementAt(0));
     }
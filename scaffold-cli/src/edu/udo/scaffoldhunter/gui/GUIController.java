@@ -71,6 +71,7 @@ import edu.udo.scaffoldhunter.model.db.Profile;
 import edu.udo.scaffoldhunter.model.db.Session;
 import edu.udo.scaffoldhunter.model.db.Subset;
 import edu.udo.scaffoldhunter.model.db.Tree;
+import edu.udo.scaffoldhunter.model.util.Subsets;
 import edu.udo.scaffoldhunter.util.I18n;
 import edu.udo.scaffoldhunter.util.ProgressAdapter;
 import edu.udo.scaffoldhunter.util.StringList;
@@ -133,6 +134,7 @@ public class GUIController {
                             login = new LoginWorker(data.getDbType().getDriverClass(), data.getDbType()
                                     .getHibernateDialect(), data.getDbUrl(), data.getDbName(), data.getDbUsername(),
                                     dbPassword, startDialog.getUsername(), "", startDialog.getSavedPassword());
+                        login.setConnectionPool(data);
                         login.addProgressListener(new ProgressAdapter<Boolean>() {
                             @Override
                             public void finished(Boolean success, boolean cancelled) {
@@ -172,9 +174,21 @@ public class GUIController {
         private String username;
         private String newPassword;
         private byte[] savedPassword;
+        private int poolSize = ConnectionData.DEFAULT_POOL_SIZE;
+        private int statementCacheSize = ConnectionData.DEFAULT_STATEMENT_CACHE_SIZE;
 
         private boolean getUserAndCheckPassword = true;
 
+        /**
+         * @param data
+         *            the connection data containing the connection pool
+         *            settings
+         */
+        public void setConnectionPool(ConnectionData data) {
+            this.poolSize = data.getPoolSize();
+            this.statementCacheSize = data.getStatementCacheSize();
+        }
+
         /**
          * @param getUserAndCheckPassword
          *            the checkUserAndPassword to set
@@ -220,7 +234,7 @@ public class GUIController {
                         || !db.getConnectionUsername().equals(connectionUsername)
                         || !db.getConnectionPassword().equals(connectionPassword)) {
                     db = new DbManagerHibernate(connectionDriver, hibernateDialect, connectionUrl, connectionSchema,
-                            connectionUsername, connectionPassword, false, false);
+                            connectionUsername, connectionPassword, false, false, poolSize, statementCacheSize);
                     if (db.schemaExists()) {
                         if (db.validateSchema())
                             db.initializeSessionFactory();
@@ -333,6 +347,10 @@ public class GUIController {
             final Session dbSession = profile.getCurrentSession();
 
             if (dbSession != null) {
+                // the views access the molecules of all subsets
+                for (Subset subset : Subsets.getSubsetTreeIterable(dbSession.getSubset())) {
+                    db.loadMolecules(subset);
+                }
                 dbSession.setLastUsed(new Date());
                 db.saveOrUpdate(dbSession);
 
@@ -468,6 +486,7 @@ public class GUIController {
                         .getHibernateDialect(), data.getDbUrl(), data.getDbName(), data.getDbUsername(), dbPassword,
                         "", "", null);
                 login.setGetUserAndCheckPassword(false);
+                login.setConnectionPool(data);
                 login.addProgressListener(new ProgressAdapter<Boolean>() {
                     @Override
                     public void finished(Boolean result, boolean cancelled) {
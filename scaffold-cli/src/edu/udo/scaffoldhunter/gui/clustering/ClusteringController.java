@@ -89,6 +89,12 @@ import edu.udo.scaffoldhunter.view.dendrogram.DendrogramView;
 public class ClusteringController {
     private static Logger logger = LoggerFactory.getLogger(ClusteringController.class);
 
+    /**
+     * Heuristic clusterings of more structures use
+     * {@link HierarchicalClusterings#SAMPLING}
+     */
+    public static final int SAMPLING_THRESHOLD = 100000;
+
     private DbManager db;
     private DendrogramView dView;
     private Collection<PropertyDefinition> clusteringPropDefs;
@@ -406,6 +412,24 @@ public class ClusteringController {
         }
     }
 
+    /**
+     * @param exact
+     *            exact or heuristic
+     * @param size
+     *            the number of structures to be clustered
+     * @return the {@link HierarchicalClusterings} that is used for the exact or
+     *         heuristic clustering. Heuristic clusterings of more than
+     *         {@link #SAMPLING_THRESHOLD} structures use
+     *         {@link HierarchicalClusterings#SAMPLING}.
+     */
+    public static HierarchicalClusterings defaultClusteringAlgorithm(boolean exact, int size) {
+        if (!exact && size > SAMPLING_THRESHOLD) {
+            return HierarchicalClusterings.SAMPLING;
+        } else {
+            return defaultClusteringAlgorithm(exact);
+        }
+    }
+
     /**
      * Reset clustering state. This ensures only one clustering can be done at
      * each time.
@@ -26,6 +26,7 @@ import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -37,6 +38,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu.Separator;
 import javax.swing.JRadioButton;
@@ -49,9 +51,9 @@ import com.jgoodies.forms.factories.ButtonBarFactory;
 import edu.udo.scaffoldhunter.gui.MainWindow;
 import edu.udo.scaffoldhunter.gui.util.FileChooser;
 import edu.udo.scaffoldhunter.model.dataexport.ExportInterface;
-import edu.udo.scaffoldhunter.model.dataexport.ExportIterable;
 import edu.udo.scaffoldhunter.model.dataexport.csv.CSVExport;
 import edu.udo.scaffoldhunter.model.dataexport.sdf.SDFExport;
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
 import edu.udo.scaffoldhunter.model.db.DbManager;
 import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
 import edu.udo.scaffoldhunter.model.db.Subset;
@@ -218,13 +220,10 @@ public class ExportDialog extends JDialog implements ActionListener {
             if (a == JFileChooser.APPROVE_OPTION) {
                 File file = chooser.getSelectedFile();
                 String path = file.getAbsolutePath();
-                if (path.endsWith(fileType)) {
-                    // TODO start export module
-
-                } else {
+                // a chosen .gz file is written compressed and keeps its name
+                boolean gzip = export == sdfExport && path.endsWith(".gz");
+                if (!gzip && !path.endsWith("." + fileType)) {
                     path = path + "." + fileType;
-                    // TODO start export module
-
                 }
                 ArrayList<PropertyDefinition> chosenProps = new ArrayList<PropertyDefinition>();
 
@@ -233,29 +232,33 @@ public class ExportDialog extends JDialog implements ActionListener {
                         chosenProps.add(shownPropDefs.get(cb));
                     }
                 }
-                String[] propNames;
-                // TODO find a better solution for this
+                int offset = smiles.isSelected() ? 1 : 0;
+                String[] propNames = new String[chosenProps.size() + offset];
                 if (smiles.isSelected()) {
-                    propNames = new String[chosenProps.size() + 1];
                     propNames[0] = "SMILES";
-                    for (int i = 1; i < propNames.length; i++) {
-                        propNames[i] = chosenProps.get(i - 1).getTitle();
+                }
+                for (int i = 0; i < chosenProps.size(); i++) {
+                    String title = chosenProps.get(i).getTitle();
+                    if (exportDescriptionsCheckBox.isSelected()) {
+                        title += " (".concat(chosenProps.get(i).getDescription()).concat(")");
                     }
-                } else {
-                    propNames = new String[chosenProps.size()];
-                    String title;
-                    for (int i = 0; i < propNames.length; i++) {
-                        title = chosenProps.get(i).getTitle();
-                        if (exportDescriptionsCheckBox.isSelected()) {
-                            title += " (".concat(chosenProps.get(i).getDescription()).concat(")");
-                        }
-                        propNames[i] = title;
+                    propNames[offset + i] = title;
+                }
+                // the values are streamed from the property tables, the stored
+                // molfiles are copied without parsing them
+                try {
+                    if (export == csvExport) {
+                        csvExport.writeData(db, subset, chosenProps, propNames, smiles.isSelected(), path);
+                    } else {
+                        sdfExport.writeData(db, subset, chosenProps, propNames, smiles.isSelected(), path, gzip);
                     }
+                    JOptionPane.showMessageDialog(this, "Export successful", "Export",
+                            JOptionPane.INFORMATION_MESSAGE);
+                } catch (DatabaseException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage(), "Export", JOptionPane.ERROR_MESSAGE);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this, ex.getMessage(), "Export", JOptionPane.ERROR_MESSAGE);
                 }
-                ExportIterable iterable = new ExportIterable(subset, chosenProps, db,
-                        exportDescriptionsCheckBox.isSelected(), smiles.isSelected());
-
-                export.writeData(iterable, propNames, path);
                 this.dispose();
             }
         }
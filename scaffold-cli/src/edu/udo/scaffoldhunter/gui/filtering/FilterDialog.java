@@ -74,6 +74,7 @@ import edu.udo.scaffoldhunter.model.db.Profile;
 import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
 import edu.udo.scaffoldhunter.model.db.StringFilter;
 import edu.udo.scaffoldhunter.model.db.Subset;
+import edu.udo.scaffoldhunter.model.filtering.FilterEvaluator;
 import edu.udo.scaffoldhunter.util.Resources;
 
 /**
@@ -534,6 +535,8 @@ public class FilterDialog extends JDialog {
     
     Thread countUpdateThread;
 
+    private FilterEvaluator filterEvaluator;
+
     private void updateMoleculeCount() {
         runAgain = true;
         if (countUpdateThread == null || !countUpdateThread.isAlive()) {
@@ -546,15 +549,9 @@ public class FilterDialog extends JDialog {
                         moleculeCountLabel.setText(_("Filtersets.MoleculeCountUpdating"));
                         try {
                             if (isFiltersetUsable(currentFilterset)) {
-                                if (subset == null)
-                                    moleculeCount = dbManager.getRootSubsetSize(dataset, currentFilterset);
-                                else
-                                    moleculeCount = dbManager.getFilteredSubsetSize(subset, currentFilterset);
+                                moleculeCount = countMolecules(currentFilterset);
                             } else {
-                                if (subset == null)
-                                    moleculeCount = dbManager.getRootSubsetSize(dataset, null);
-                                else
-                                    moleculeCount = dbManager.getFilteredSubsetSize(subset, null);
+                                moleculeCount = countMolecules(null);
                             }
                             moleculeCountLabel.setText(_("Filtersets.MoleculeCount") + ": " + moleculeCount);
                         } catch (DatabaseException e) {
@@ -568,6 +565,33 @@ public class FilterDialog extends JDialog {
         }
     }
 
+    /**
+     * Counts the molecules accepted by a filterset. The filterset is evaluated
+     * in memory if possible, so only the values of newly filtered properties
+     * are loaded from the database.
+     * 
+     * @param filterset
+     *            the filterset or null to count all molecules
+     * @return the number of accepted molecules
+     * @throws DatabaseException
+     */
+    private int countMolecules(Filterset filterset) throws DatabaseException {
+        if (filterEvaluator == null) {
+            if (subset == null)
+                filterEvaluator = FilterEvaluator.forDataset(dbManager, dataset);
+            else
+                filterEvaluator = FilterEvaluator.forSubset(dbManager, subset);
+        }
+        if (filterset == null)
+            return filterEvaluator.size();
+        if (filterEvaluator.canEvaluate(filterset))
+            return filterEvaluator.count(filterset);
+        if (subset == null)
+            return dbManager.getRootSubsetSize(dataset, filterset);
+        else
+            return dbManager.getFilteredSubsetSize(subset, filterset);
+    }
+
     private void saveFilterset() {
         currentFilterset.setTitle(filtersetTitle.getText());
 
@@ -0,0 +1,438 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.gui.util;
+
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+/**
+ * A bounded executor for loading view data in the background.
+ * <p>
+ * Requests may be submitted for a channel of some owner, e.g. a single axis of
+ * a plot. Only the last request of a channel is of interest, so submitting a
+ * request cancels the previous request of the same channel. Cancelled requests
+ * which are still waiting are never started, running requests are expected to
+ * check {@link Request#isCancelled()} between expensive steps and to stop
+ * early.
+ * <p>
+ * Waiting requests are started by priority and in submission order within
+ * the same priority.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class LoadingExecutor {
+
+    private static Logger logger = LoggerFactory.getLogger(LoadingExecutor.class);
+
+    /**
+     * The priority of a request
+     */
+    public enum Priority {
+        /**
+         * data of currently visible content
+         */
+        VISIBLE,
+        /**
+         * the default priority
+         */
+        NORMAL,
+        /**
+         * data which may be needed later on
+         */
+        BACKGROUND
+    }
+
+    /**
+     * The work done by a request
+     */
+    public interface Task {
+        /**
+         * Does the work. Implementations should check
+         * {@link Request#isCancelled()} regularly.
+         * 
+         * @param request
+         *            the request which executes this task
+         * @throws Exception
+         */
+        public void run(Request request) throws Exception;
+    }
+
+    /**
+     * The statistics are logged on debug level each time this number of
+     * requests has finished
+     */
+    private static final int STATISTICS_INTERVAL = 100;
+
+    private static LoadingExecutor defaultExecutor = null;
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    /** the last request of each channel, as long as it is not finished */
+    private final Map<Channel, Request> channels = Maps.newHashMap();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong runNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+
+    /**
+     * Creates a new executor
+     * 
+     * @param name
+     *            the name of the executor, used for thread names and logging
+     * @param threads
+     *            the maximal number of concurrently running requests
+     */
+    public LoadingExecutor(final String name, int threads) {
+        Preconditions.checkArgument(threads > 0);
+        this.name = name;
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            }
+        };
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the executor shared by all views for loading property data
+     */
+    public static synchronized LoadingExecutor getDefault() {
+        if (defaultExecutor == null) {
+            int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            defaultExecutor = new LoadingExecutor("Loader", threads);
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * Submits a request which does not belong to any channel and thus is never
+     * cancelled by other requests.
+     * 
+     * @param task
+     *            the task
+     * @param priority
+     *            the priority of the request
+     * @return the request
+     */
+    public Request submit(Task task, Priority priority) {
+        return submit(null, null, task, priority);
+    }
+
+    /**
+     * Submits a request for a channel and cancels the previous request of this
+     * channel.
+     * 
+     * @param owner
+     *            the owner of the channel, e.g. a view model. Owners are
+     *            compared by identity.
+     * @param channel
+     *            the channel of the owner, compared by equality
+     * @param task
+     *            the task
+     * @param priority
+     *            the priority of the request
+     * @return the request
+     */
+    public Request submit(Object owner, Object channel, Task task, Priority priority) {
+        Preconditions.checkNotNull(task);
+        Preconditions.checkNotNull(priority);
+        Channel key = owner == null ? null : new Channel(owner, channel);
+        Request request = new Request(key, task, priority, sequence.getAndIncrement());
+        submitted.incrementAndGet();
+        if (key != null) {
+            Request previous;
+            synchronized (channels) {
+                previous = channels.put(key, request);
+            }
+            if (previous != null) {
+                previous.cancel();
+            }
+        }
+        executor.execute(request);
+        return request;
+    }
+
+    /**
+     * Cancels the current request of a channel
+     * 
+     * @param owner
+     *            the owner of the channel
+     * @param channel
+     *            the channel
+     */
+    public void cancel(Object owner, Object channel) {
+        Request request;
+        synchronized (channels) {
+            request = channels.remove(new Channel(owner, channel));
+        }
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting to be started
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of currently running requests
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the number of submitted requests
+     */
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    /**
+     * @return the number of requests which finished without being cancelled
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * @return the number of cancelled requests
+     */
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    /**
+     * @return the number of requests which threw an exception
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * @return the average time in milliseconds a started request waited in
+     *         the queue
+     */
+    public double getAverageWaitTime() {
+        long started = completed.get() + failed.get();
+        return started == 0 ? 0 : waitNanos.get() / (started * 1e6);
+    }
+
+    /**
+     * @return the maximal time in milliseconds a started request waited in
+     *         the queue
+     */
+    public double getMaxWaitTime() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * @return the average run time of completed requests in milliseconds
+     */
+    public double getAverageRunTime() {
+        long started = completed.get() + failed.get();
+        return started == 0 ? 0 : runNanos.get() / (started * 1e6);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d queued, %d active, %d submitted, %d completed, %d cancelled, %d failed, "
+                + "wait avg %.1f ms max %.1f ms, run avg %.1f ms", name, getQueueDepth(), getActiveCount(),
+                getSubmittedCount(), getCompletedCount(), getCancelledCount(), getFailedCount(),
+                getAverageWaitTime(), getMaxWaitTime(), getAverageRunTime());
+    }
+
+    private void finished(Request request) {
+        if (request.channel != null) {
+            synchronized (channels) {
+                if (channels.get(request.channel) == request) {
+                    channels.remove(request.channel);
+                }
+            }
+        }
+        if (finished.incrementAndGet() % STATISTICS_INTERVAL == 0) {
+            logger.debug("{}", this);
+        }
+    }
+
+    /**
+     * A submitted request
+     */
+    public class Request implements Runnable, Comparable<Request> {
+        private final Channel channel;
+        private final Task task;
+        private final Priority priority;
+        private final long number;
+        private final long submitTime = System.nanoTime();
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+
+        private Request(Channel channel, Task task, Priority priority, long number) {
+            this.channel = channel;
+            this.task = task;
+            this.priority = priority;
+            this.number = number;
+        }
+
+        /**
+         * Cancels this request. A waiting request will not be started, a
+         * running request should stop as soon as it checks
+         * {@link #isCancelled()}.
+         */
+        public void cancel() {
+            if (cancelled || done) {
+                return;
+            }
+            cancelled = true;
+            if (executor.remove(this)) {
+                LoadingExecutor.this.cancelled.incrementAndGet();
+                done = true;
+                finished(this);
+            }
+        }
+
+        /**
+         * @return whether this request has been cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return whether this request is finished or will never be started
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * @return the priority of this request
+         */
+        public Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (cancelled) {
+                    LoadingExecutor.this.cancelled.incrementAndGet();
+                    return;
+                }
+                long start = System.nanoTime();
+                long wait = start - submitTime;
+                waitNanos.addAndGet(wait);
+                long max;
+                do {
+                    max = maxWaitNanos.get();
+                } while (wait > max && !maxWaitNanos.compareAndSet(max, wait));
+
+                try {
+                    task.run(this);
+                    if (cancelled) {
+                        LoadingExecutor.this.cancelled.incrementAndGet();
+                    } else {
+                        completed.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    logger.error("Loading failed in " + name, e);
+                } finally {
+                    runNanos.addAndGet(System.nanoTime() - start);
+                }
+                if (logger.isTraceEnabled()) {
+                    logger.trace("{} request finished after {} ms waiting", name, wait / 1e6);
+                }
+            } finally {
+                done = true;
+                finished(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Request o) {
+            int c = priority.compareTo(o.priority);
+            if (c != 0) {
+                return c;
+            }
+            return number < o.number ? -1 : (number == o.number ? 0 : 1);
+        }
+    }
+
+    /**
+     * Identifies a channel of an owner. Owners are compared by identity.
+     */
+    private static class Channel {
+        private final Object owner;
+        private final Object channel;
+
+        Channel(Object owner, Object channel) {
+            this.owner = owner;
+            this.channel = channel;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + (channel == null ? 0 : channel.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Channel)) {
+                return false;
+            }
+            Channel other = (Channel) obj;
+            return owner == other.owner && Objects.equal(channel, other.channel);
+        }
+    }
+}
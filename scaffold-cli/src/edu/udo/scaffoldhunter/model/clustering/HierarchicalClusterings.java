@@ -159,6 +159,30 @@ public enum HierarchicalClusterings {
 
             return retVal;
         }
+    },
+    /**
+     * @see SamplingClustering
+     */
+    SAMPLING {
+        @Override
+        public <S extends Structure> HierarchicalClustering<S> generateClustering(Collection<S> structures,
+                Collection<PropertyDefinition> propDefs, NNSearchs nnSearchStrategy,
+                NNSearchParameters nnSearchParameters, Linkages linkageType, Distances distType)
+                throws ClusteringException {
+            return new SamplingClustering<S>(structures, propDefs, GENERIC_CLUSTERING, nnSearchStrategy,
+                    nnSearchParameters, linkageType, distType, SamplingClustering.defaultSampleSize(structures
+                            .size()), Runtime.getRuntime().availableProcessors(), null);
+        }
+
+        @Override
+        public String getName() {
+            return "Sampling";
+        }
+
+        @Override
+        public Collection<NNSearchs> acceptedNNSearchs() {
+            return GENERIC_CLUSTERING.acceptedNNSearchs();
+        }
     };
 
     private static Logger logger = LoggerFactory.getLogger(HierarchicalClusterings.class);
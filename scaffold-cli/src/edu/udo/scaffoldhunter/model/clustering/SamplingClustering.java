@@ -0,0 +1,510 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.clustering;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.clustering.NNSearch.NNSearchParameters;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Structure;
+import edu.udo.scaffoldhunter.model.util.WrapperException;
+import edu.udo.scaffoldhunter.util.ProgressListener;
+import edu.udo.scaffoldhunter.util.ProgressSupport;
+
+/**
+ * Approximate clustering for large data sets. A random sample (see
+ * {@link RandomSampler}) is clustered exactly by one of the other
+ * {@link HierarchicalClusterings}. Afterwards each remaining
+ * {@link Structure} is assigned to its nearest sampled leaf in a parallel
+ * pass and the assigned groups are grafted into the sample dendrogram.
+ * 
+ * Only O(k^2) distance calculations are needed for the sample of size k and
+ * O((n-k) * k) for the assignment, which are distributed over all worker
+ * threads.
+ * 
+ * The dissimilarity of a node inside a grafted group is the maximal distance
+ * of its members to the sampled leaf, bounded by the dissimilarity of the
+ * parent of that leaf. Thus the resulting dendrogram is monotone.
+ * 
+ * @author Shamshad Alam
+ * @param <S>
+ *            the concrete {@link Structure}
+ * 
+ */
+public class SamplingClustering<S extends Structure> implements HierarchicalClustering<S> {
+    private static Logger logger = LoggerFactory.getLogger(SamplingClustering.class);
+
+    /**
+     * The minimal sample size used by {@link #defaultSampleSize(int)}
+     */
+    public static final int MIN_SAMPLE_SIZE = 1000;
+
+    /**
+     * The share of progress (in percent) that is used by the exact clustering
+     * of the sample
+     */
+    private static final int SAMPLE_PROGRESS = 50;
+
+    private final Collection<S> structures;
+    private final Collection<PropertyDefinition> propDefs;
+    private final HierarchicalClusterings sampleClustering;
+    private final NNSearchs nnSearchStrategy;
+    private final NNSearchParameters nnSearchParameters;
+    private final Linkages linkageType;
+    private final Distances distType;
+    private final int sampleSize;
+    private final int threadCount;
+    private final Long seed;
+
+    /**
+     * All listeners that will be informed about the progress of the clustering.
+     */
+    private ProgressSupport<HierarchicalClusterNode<S>> progressListeners = new ProgressSupport<HierarchicalClusterNode<S>>();
+
+    /**
+     * Constructor
+     * 
+     * @param structures
+     *            the structures to be clustered
+     * @param propDefs
+     *            the {@link PropertyDefinition}s used for the clustering
+     * @param sampleClustering
+     *            the exact {@link HierarchicalClusterings} algorithm used for
+     *            the sample
+     * @param nnSearchStrategy
+     *            the {@link NNSearch} strategy used for the sample
+     * @param nnSearchParameters
+     *            the {@link NNSearchParameters}
+     * @param linkageType
+     *            the {@link Linkages} used for the sample clustering
+     * @param distType
+     *            the {@link Distance} used for the clustering and the
+     *            assignment
+     * @param sampleSize
+     *            the number of structures which are clustered exactly
+     * @param threadCount
+     *            the number of worker threads used for the assignment
+     * @param seed
+     *            if the seed is not null, the sample is deterministic
+     */
+    public SamplingClustering(Collection<S> structures, Collection<PropertyDefinition> propDefs,
+            HierarchicalClusterings sampleClustering, NNSearchs nnSearchStrategy,
+            NNSearchParameters nnSearchParameters, Linkages linkageType, Distances distType, int sampleSize,
+            int threadCount, Long seed) {
+        Preconditions.checkArgument(sampleClustering != HierarchicalClusterings.SAMPLING,
+                "The sample must be clustered by an exact clustering algorithm");
+        Preconditions.checkArgument(sampleSize > 0, "sampleSize must be positive");
+        Preconditions.checkArgument(threadCount > 0, "threadCount must be positive");
+
+        this.structures = structures;
+        this.propDefs = propDefs;
+        this.sampleClustering = sampleClustering;
+        this.nnSearchStrategy = nnSearchStrategy;
+        this.nnSearchParameters = nnSearchParameters;
+        this.linkageType = linkageType;
+        this.distType = distType;
+        this.sampleSize = sampleSize;
+        this.threadCount = threadCount;
+        this.seed = seed;
+    }
+
+    /**
+     * Returns a sample size that keeps the exact clustering of the sample and
+     * the assignment pass balanced (about two times the square root of the
+     * size but at least {@link #MIN_SAMPLE_SIZE}).
+     * 
+     * @param size
+     *            the number of structures to be clustered
+     * @return the default sample size
+     */
+    public static int defaultSampleSize(int size) {
+        return Math.min(size, Math.max(MIN_SAMPLE_SIZE, 2 * (int) Math.sqrt(size)));
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * edu.udo.scaffoldhunter.model.clustering.HierarchicalClustering#calc()
+     */
+    @Override
+    public HierarchicalClusterNode<S> calc() throws ClusteringException {
+        logger.trace("Entering calc");
+
+        progressListeners.setProgressBounds(0, 100);
+        progressListeners.setProgressValue(0);
+
+        // small data sets are clustered exactly
+        if (structures.size() <= sampleSize) {
+            logger.debug("Size {} does not exceed the sample size. Using exact clustering.", structures.size());
+            return calcSample(structures);
+        }
+
+        ArrayList<HierarchicalClusterNode<S>> singletons = Lists.newArrayListWithCapacity(structures.size());
+        for (S structure : structures) {
+            singletons.add(new HierarchicalClusterNode<S>(structure));
+        }
+
+        HashSet<HierarchicalClusterNode<S>> sample = new RandomSampler<S>(sampleSize, seed).getSample(singletons);
+        List<S> sampleStructures = Lists.newArrayListWithCapacity(sample.size());
+        ArrayList<HierarchicalClusterNode<S>> remaining = Lists.newArrayListWithCapacity(singletons.size()
+                - sample.size());
+        for (HierarchicalClusterNode<S> node : singletons) {
+            if (sample.contains(node)) {
+                sampleStructures.add(node.getContent());
+            } else {
+                remaining.add(node);
+            }
+        }
+        singletons = null;
+        sample = null;
+
+        logger.debug("Clustering sample of size {}", sampleStructures.size());
+        HierarchicalClusterNode<S> sampleRoot = calcSample(sampleStructures);
+        // the sample clustering was cancelled
+        if (sampleRoot == null) {
+            logger.trace("Thread interrupted");
+            return null;
+        }
+
+        ArrayList<HierarchicalClusterNode<S>> sampleLeafs = getLeafs(sampleRoot);
+        logger.debug("Assigning {} structures to {} sampled leafs", remaining.size(), sampleLeafs.size());
+        int[] assignment = new int[remaining.size()];
+        double[] assignmentDist = new double[remaining.size()];
+        // partial assignments of a cancelled run must not be grafted
+        if (!assign(remaining, sampleLeafs, assignment, assignmentDist)) {
+            logger.trace("Thread interrupted");
+            return null;
+        }
+
+        // group the assigned structures by their sampled leaf
+        ArrayList<LinkedList<NodeAndDist<S>>> groups = Lists.newArrayListWithCapacity(sampleLeafs.size());
+        HashMap<HierarchicalClusterNode<S>, Integer> leafIndex = new HashMap<HierarchicalClusterNode<S>, Integer>(
+                sampleLeafs.size());
+        for (int i = 0; i < sampleLeafs.size(); i++) {
+            groups.add(new LinkedList<NodeAndDist<S>>());
+            leafIndex.put(sampleLeafs.get(i), i);
+        }
+        for (int i = 0; i < remaining.size(); i++) {
+            groups.get(assignment[i]).add(new NodeAndDist<S>(remaining.get(i), assignmentDist[i]));
+        }
+
+        HierarchicalClusterNode<S> root = graft(sampleRoot, Double.POSITIVE_INFINITY, groups, leafIndex);
+
+        progressListeners.setProgressValue(100);
+        logger.trace("Finished calc");
+        return root;
+    }
+
+    /**
+     * Clusters the structures with the exact clustering algorithm and maps its
+     * progress to the first {@link #SAMPLE_PROGRESS} percent.
+     * 
+     * @param sampleStructures
+     *            the structures to cluster
+     * @return the root of the sample dendrogram
+     * @throws ClusteringException
+     */
+    private HierarchicalClusterNode<S> calcSample(Collection<S> sampleStructures) throws ClusteringException {
+        HierarchicalClustering<S> clustering = sampleClustering.generateClustering(sampleStructures, propDefs,
+                nnSearchStrategy, nnSearchParameters, linkageType, distType);
+
+        final boolean exactOnly = sampleStructures == structures;
+        ProgressListener<HierarchicalClusterNode<S>> listener = new ProgressListener<HierarchicalClusterNode<S>>() {
+            @Override
+            public void setProgressValue(int progress) {
+                progressListeners.setProgressValue(exactOnly ? progress : progress * SAMPLE_PROGRESS / 100);
+            }
+
+            @Override
+            public void setProgressBounds(int min, int max) {
+                // the bounds of this clustering are fixed
+            }
+
+            @Override
+            public void setProgressIndeterminate(boolean indeterminate) {
+                progressListeners.setProgressIndeterminate(indeterminate);
+            }
+
+            @Override
+            public void finished(HierarchicalClusterNode<S> result, boolean cancelled) {
+                // finished is only reported for the whole clustering
+            }
+        };
+
+        clustering.addProgressListener(listener);
+        HierarchicalClusterNode<S> root = clustering.calc();
+        clustering.removeProgressListener(listener);
+
+        return root;
+    }
+
+    /**
+     * Assigns each node to its nearest sampled leaf. The nodes are split into
+     * chunks which are processed by {@link #threadCount} threads.
+     * 
+     * @param nodes
+     *            the nodes to assign
+     * @param leafs
+     *            the sampled leafs
+     * @param assignment
+     *            output: the index of the nearest leaf for each node
+     * @param assignmentDist
+     *            output: the distance to the nearest leaf for each node
+     * @return false if the assignment was interrupted. In this case the
+     *         assignment is incomplete.
+     * @throws ClusteringException
+     */
+    private boolean assign(ArrayList<HierarchicalClusterNode<S>> nodes, ArrayList<HierarchicalClusterNode<S>> leafs,
+            int[] assignment, double[] assignmentDist) throws ClusteringException {
+        Distance<S> distance = distType.generateDistance(propDefs);
+
+        // more chunks than threads to balance the load and report progress
+        int chunkCount = Math.min(nodes.size(), threadCount * 16);
+        int chunkSize = (nodes.size() + chunkCount - 1) / chunkCount;
+        AtomicInteger finishedChunks = new AtomicInteger();
+        LinkedList<Callable<Boolean>> jobs = Lists.newLinkedList();
+        for (int start = 0; start < nodes.size(); start += chunkSize) {
+            jobs.add(new AssignCallable(distance, nodes, leafs, assignment, assignmentDist, start, Math.min(
+                    nodes.size(), start + chunkSize), finishedChunks, chunkCount));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<Boolean>> futures = null;
+        try {
+            futures = executor.invokeAll(jobs);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            return false;
+        } finally {
+            executor.shutdown();
+        }
+
+        // throw inner ClusteringExceptions
+        boolean complete = true;
+        for (Future<Boolean> future : futures) {
+            try {
+                complete &= future.get();
+            } catch (InterruptedException e) {
+                return false;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause.getClass() == WrapperException.class) {
+                    throw (ClusteringException) ((WrapperException) cause).unwrap();
+                } else {
+                    throw new ClusteringException("Unkown Exception", cause);
+                }
+            }
+        }
+        return complete;
+    }
+
+    /**
+     * Assigns the nodes of one chunk. Returns false if the thread was
+     * interrupted before the chunk was finished.
+     */
+    private class AssignCallable implements Callable<Boolean> {
+        private final Distance<S> distance;
+        private final ArrayList<HierarchicalClusterNode<S>> nodes;
+        private final ArrayList<HierarchicalClusterNode<S>> leafs;
+        private final int[] assignment;
+        private final double[] assignmentDist;
+        private final int start;
+        private final int end;
+        private final AtomicInteger finishedChunks;
+        private final int chunkCount;
+
+        public AssignCallable(Distance<S> distance, ArrayList<HierarchicalClusterNode<S>> nodes,
+                ArrayList<HierarchicalClusterNode<S>> leafs, int[] assignment, double[] assignmentDist, int start,
+                int end, AtomicInteger finishedChunks, int chunkCount) {
+            this.distance = distance;
+            this.nodes = nodes;
+            this.leafs = leafs;
+            this.assignment = assignment;
+            this.assignmentDist = assignmentDist;
+            this.start = start;
+            this.end = end;
+            this.finishedChunks = finishedChunks;
+            this.chunkCount = chunkCount;
+        }
+
+        @Override
+        public Boolean call() {
+            for (int i = start; i < end; i++) {
+                HierarchicalClusterNode<S> node = nodes.get(i);
+                int nn = 0;
+                double nnDist = Double.POSITIVE_INFINITY;
+                for (int j = 0; j < leafs.size(); j++) {
+                    double dist;
+                    try {
+                        dist = distance.calcDist(node, leafs.get(j));
+                    } catch (ClusteringException e) {
+                        throw new WrapperException(e);
+                    }
+                    if (dist < nnDist) {
+                        nn = j;
+                        nnDist = dist;
+                    }
+                }
+                assignment[i] = nn;
+                assignmentDist[i] = nnDist;
+
+                // Allow abortion
+                if (Thread.interrupted()) {
+                    return false;
+                }
+            }
+            progressListeners.setProgressValue(SAMPLE_PROGRESS + (100 - SAMPLE_PROGRESS)
+                    * finishedChunks.incrementAndGet() / chunkCount);
+            return true;
+        }
+    }
+
+    /**
+     * Rebuilds the sample dendrogram and replaces each sampled leaf by the
+     * subtree of its assigned group.
+     * 
+     * @param node
+     *            the current node of the sample dendrogram
+     * @param maxDissimilarity
+     *            the dissimilarity of the parent of node
+     * @param groups
+     *            the assigned nodes for each sampled leaf
+     * @param leafIndex
+     *            sampled leaf -> index in groups
+     * @return the rebuild node
+     */
+    private HierarchicalClusterNode<S> graft(HierarchicalClusterNode<S> node, double maxDissimilarity,
+            ArrayList<LinkedList<NodeAndDist<S>>> groups, HashMap<HierarchicalClusterNode<S>, Integer> leafIndex) {
+        if (node.isLeaf()) {
+            LinkedList<NodeAndDist<S>> group = groups.get(leafIndex.get(node));
+            group.addFirst(new NodeAndDist<S>(new HierarchicalClusterNode<S>(node.getContent()), 0));
+            return buildGroup(group, maxDissimilarity);
+        }
+
+        HierarchicalClusterNode<S> left = graft(node.getLeftChild(), node.getDissimilarity(), groups, leafIndex);
+        HierarchicalClusterNode<S> right = graft(node.getRightChild(), node.getDissimilarity(), groups, leafIndex);
+        return new HierarchicalClusterNode<S>(left, right, node.getDissimilarity(), left.getClusterSize()
+                + right.getClusterSize());
+    }
+
+    /**
+     * Builds a balanced subtree for the group. The members are ordered by
+     * their distance to the sampled leaf and neighbouring members are merged
+     * pairwise, so the depth of the subtree is logarithmic in the group size.
+     * 
+     * @param group
+     *            the group members including the sampled leaf
+     * @param maxDissimilarity
+     *            the upper bound for the dissimilarities inside the group
+     * @return the root of the subtree
+     */
+    private HierarchicalClusterNode<S> buildGroup(List<NodeAndDist<S>> group, double maxDissimilarity) {
+        ArrayList<NodeAndDist<S>> level = Lists.newArrayList(group);
+        Collections.sort(level, new Comparator<NodeAndDist<S>>() {
+            @Override
+            public int compare(NodeAndDist<S> o1, NodeAndDist<S> o2) {
+                return Double.compare(o1.dist, o2.dist);
+            }
+        });
+
+        while (level.size() > 1) {
+            ArrayList<NodeAndDist<S>> nextLevel = Lists.newArrayListWithCapacity((level.size() + 1) / 2);
+            for (int i = 0; i + 1 < level.size(); i += 2) {
+                NodeAndDist<S> left = level.get(i);
+                NodeAndDist<S> right = level.get(i + 1);
+                double dist = Math.max(left.dist, right.dist);
+                HierarchicalClusterNode<S> merged = new HierarchicalClusterNode<S>(left.node, right.node, Math.min(
+                        dist, maxDissimilarity), left.node.getClusterSize() + right.node.getClusterSize());
+                nextLevel.add(new NodeAndDist<S>(merged, dist));
+            }
+            if (level.size() % 2 == 1) {
+                nextLevel.add(level.get(level.size() - 1));
+            }
+            level = nextLevel;
+        }
+
+        return level.get(0).node;
+    }
+
+    /**
+     * @param root
+     *            the root of the dendrogram
+     * @return all leafs of the dendrogram
+     */
+    private ArrayList<HierarchicalClusterNode<S>> getLeafs(HierarchicalClusterNode<S> root) {
+        ArrayList<HierarchicalClusterNode<S>> leafs = Lists.newArrayListWithCapacity(root.getClusterSize());
+        LinkedList<HierarchicalClusterNode<S>> stack = Lists.newLinkedList();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            HierarchicalClusterNode<S> node = stack.pop();
+            if (node.isLeaf()) {
+                leafs.add(node);
+            } else {
+                stack.push(node.getRightChild());
+                stack.push(node.getLeftChild());
+            }
+        }
+        return leafs;
+    }
+
+    /**
+     * Adds a {@link ProgressListener}
+     * 
+     * @param listener
+     *            The {@link ProgressListener}
+     */
+    @Override
+    public void addProgressListener(ProgressListener<HierarchicalClusterNode<S>> listener) {
+        progressListeners.addProgressListener(listener);
+    }
+
+    /**
+     * Remove a {@link ProgressListener}
+     * 
+     * @param listener
+     */
+    @Override
+    public void removeProgressListener(ProgressListener<HierarchicalClusterNode<S>> listener) {
+        progressListeners.removeProgressListener(listener);
+    }
+}
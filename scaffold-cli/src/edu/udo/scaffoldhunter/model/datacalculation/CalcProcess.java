@@ -77,6 +77,21 @@ public class CalcProcess implements MessageListener {
         }
     }
 
+    /**
+     * prepares each job for a calc process in which all jobs read the same
+     * molecules, see {@link FusedMoleculeSource}
+     * 
+     * @param source
+     *            the source of the molecules for which properties should be
+     *            generated, each job reads its own view
+     */
+    public void prepareCalc(FusedMoleculeSource source) {
+        for (CalcJob job : calcJobs) {
+            job.addMessageListener(this);
+            job.computePluginResults(source.newView());
+        }
+    }
+
     /**
      * 
      * @return a <code>JobsModel</code> allowing access to the jobs in this
@@ -30,9 +30,15 @@ import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.AbstractListModel;
 import javax.swing.JOptionPane;
@@ -42,9 +48,10 @@ import org.openscience.cdk.interfaces.IAtomContainer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableCollection;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -66,10 +73,13 @@ import edu.udo.scaffoldhunter.model.db.DatabaseException;
 import edu.udo.scaffoldhunter.model.db.Dataset;
 import edu.udo.scaffoldhunter.model.db.DbManager;
 import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.model.db.Property;
 import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
 import edu.udo.scaffoldhunter.plugins.SHPluginManager;
 import edu.udo.scaffoldhunter.plugins.datacalculation.AbstractCalcPluginArguments;
 import edu.udo.scaffoldhunter.plugins.datacalculation.CalcPlugin;
+import edu.udo.scaffoldhunter.plugins.datacalculation.CalcPluginResults;
+import edu.udo.scaffoldhunter.util.Orderings;
 import edu.udo.scaffoldhunter.util.ProgressListener;
 
 /**
@@ -84,7 +94,7 @@ public class Calculator {
 
     private static final Logger logger = LoggerFactory.getLogger(Calculator.class);
 
-    private final SHPluginManager pluginManager = new SHPluginManager();
+    private final SHPluginManager pluginManager = SHPluginManager.getInstance();
     private final ImmutableList<CalcPlugin> plugins;
     private final CalcProcess calcProcess;
     private final Map<String, PropertyDefinition> existingPropertyDefinitions;
@@ -119,6 +129,22 @@ public class Calculator {
 
     private CalculateWorker calculateWorker;
 
+    /**
+     * the number of threads running the plugin transforms
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * number of molecules handed to a calculation thread at once
+     */
+    private static final int CHUNK_SIZE = 64;
+
+    /**
+     * number of calculated properties which are stored by a single
+     * transaction
+     */
+    private static final int SAVE_BATCH_SIZE = 10000;
+
     /**
      * Create a new Calculator
      * 
@@ -149,6 +175,19 @@ public class Calculator {
         calcProcess = new CalcProcess();
     }
 
+    /**
+     * Sets the number of threads which run the plugin transforms. By default
+     * one thread per available processor is used, with a single thread the
+     * transforms run in the calculation worker itself.
+     * 
+     * @param threads
+     *            the number of threads
+     */
+    public void setThreads(int threads) {
+        Preconditions.checkArgument(threads > 0, "at least one thread is needed");
+        this.threads = threads;
+    }
+
     /**
      * 
      * @return a list model containing all available plugins.
@@ -194,7 +233,10 @@ public class Calculator {
      * {@link PropertyDefinition#getKey()} doesn't collide with any existing
      * {@link PropertyDefinition} in the dataset. At last the correct dataset is
      * set and the propDef is registered with the copy in
-     * {@link #registeredPropertyDefinitions}
+     * {@link #registeredPropertyDefinitions}. If the dataset contains an
+     * incomplete {@link PropertyDefinition} of the same property, i.e. a
+     * calculation of the same job failed, it is registered instead of the copy
+     * and the calculation is resumed.
      * 
      * @param propDef
      *            the propDef to copy, validate and register
@@ -258,6 +300,13 @@ public class Calculator {
             String title = copy.getTitle();
             int count = 1;
             while (existingPropertyDefinitions.containsKey(key)) {
+                PropertyDefinition existing = existingPropertyDefinitions.get(key);
+                if (existing.getCalculatedUpTo() != null && existing.getPropertyType() == copy.getPropertyType()
+                        && !registeredPropertyDefinitions.containsValue(existing)) {
+                    registeredPropertyDefinitions.put(propDef, existing);
+                    logger.trace("resuming property. title: {}, key: {}", existing.getTitle(), existing.getKey());
+                    return;
+                }
                 key = String.format("%s-%d", copy.getKey(), count);
                 title = String.format("%s-%d", copy.getTitle(), count);
                 count++;
@@ -275,8 +324,9 @@ public class Calculator {
     }
 
     private void cleanUp() {
-        existingPropertyDefinitions.clear();
-        existingPropertyDefinitions.putAll(dataset.getPropertyDefinitions());
+        for (PropertyDefinition propDef : registeredPropertyDefinitions.values()) {
+            existingPropertyDefinitions.remove(propDef.getKey());
+        }
 
         // remove saved property definitions
         try {
@@ -296,8 +346,7 @@ public class Calculator {
      */
     public void runCalc(Window owner) {
         final CalcDialog calcDialog;
-        final ImmutableCollection<Molecule> dbMolecules;
-        final Iterable<IAtomContainer> cdkMoleculeIterable;
+        final ImmutableList<Molecule> dbMolecules;
 
         dbMolecules = ImmutableList.copyOf(DBExceptionHandler.callDBManager(db,
                 new UnaryDBFunction<Collection<Molecule>, Dataset>(dataset) {
@@ -307,9 +356,6 @@ public class Calculator {
                     }
                 }));
 
-        cdkMoleculeIterable = Iterables.transform(dbMolecules, new DBMoleculeToCDKMoleculeTransform(db,
-                availableProperties));
-
         calcDialog = new CalcDialog(owner, getPluginListModel(), calcProcess);
         calcDialog.setVisible(true);
 
@@ -332,7 +378,8 @@ public class Calculator {
             }
         });
 
-        calculateWorker = new CalculateWorker(cdkMoleculeIterable, dbMolecules, messageDialog);
+        calculateWorker = new CalculateWorker(new DBMoleculeToCDKMoleculeTransform(db, availableProperties),
+                dbMolecules, messageDialog);
         calculateWorker.addProgressListener(messageDialog);
         calculateWorker.addProgressListener(new ProgressListener<Void>() {
 
@@ -351,7 +398,8 @@ public class Calculator {
             @Override
             public void finished(Void result, boolean cancelled) {
                 if (!cancelled) {
-                    messageDialog.setText(_("DataCalc.CalcFinished"));
+                    messageDialog.setText("<html>" + _("DataCalc.CalcFinished") + "<br>"
+                            + calculateWorker.getSummary() + "</html>");
                 } else {
                     messageDialog.dispose();
                 }
@@ -362,6 +410,168 @@ public class Calculator {
         messageDialog.setVisible(true);
     }
 
+    /**
+     * Returns the plugin with the given id or title. The id is compared first,
+     * the title is compared ignoring case.
+     *
+     * @param idOrTitle
+     *            the id or title of the plugin
+     * @return the plugin or <code>null</code> if there is no such plugin
+     */
+    public CalcPlugin getPlugin(String idOrTitle) {
+        for (CalcPlugin plugin : plugins) {
+            if (plugin.getID().equals(idOrTitle)) {
+                return plugin;
+            }
+        }
+        for (CalcPlugin plugin : plugins) {
+            if (plugin.getTitle().equalsIgnoreCase(idOrTitle)) {
+                return plugin;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return all available plugins ordered by title
+     */
+    public List<CalcPlugin> getPlugins() {
+        return plugins;
+    }
+
+    /**
+     * Calculates the value of a calculated property for a molecule which is
+     * not part of the dataset, e.g. the query of a similarity search. The
+     * plugin is found by the key of the property definition, the options for
+     * largest fragments, deglycosilation and 2D coordinates are taken from the
+     * key as well.
+     *
+     * @param propDef
+     *            a property definition created by this calculator
+     * @param molecule
+     *            the molecule, prepared like the molecules of the dataset
+     * @param arguments
+     *            the plugin arguments the property was calculated with or
+     *            <code>null</code> for the default arguments of the plugin
+     * @return the value or <code>null</code> if the plugin did not calculate a
+     *         value for the molecule
+     * @throws CalculationException
+     *             if there is no plugin calculating the property
+     */
+    public Object calculateValue(PropertyDefinition propDef, IAtomContainer molecule, Object arguments)
+            throws CalculationException {
+        String key = propDef.getKey();
+        if (!key.startsWith(CALC_PLUGINS_PROPERTY_KEY_PREFIX)) {
+            throw new CalculationException("not a calculated property: " + key);
+        }
+        key = key.substring(CALC_PLUGINS_PROPERTY_KEY_PREFIX.length());
+        // remove the suffix which makes the key unique
+        key = key.replaceFirst("-\\d+$", "");
+        boolean largestFragments = key.startsWith("_" + LARGESTFRAGMENT_KEY);
+        if (largestFragments) {
+            key = key.substring(LARGESTFRAGMENT_KEY.length() + 1);
+        }
+        boolean deglycosilate = key.startsWith("_" + DEGLYCOSILATED_KEY);
+        if (deglycosilate) {
+            key = key.substring(DEGLYCOSILATED_KEY.length() + 1);
+        }
+        boolean recalculate2Dcoords = key.startsWith("_" + RECALC2DCOORDS_KEY);
+        if (recalculate2Dcoords) {
+            key = key.substring(RECALC2DCOORDS_KEY.length() + 1);
+        }
+
+        MessageListener ignore = new MessageListener() {
+            @Override
+            public void receiveMessage(Message message) {
+                logger.debug("message for the query molecule: {}", message.getType());
+            }
+        };
+        for (CalcPlugin plugin : plugins) {
+            Object pluginArguments = arguments != null ? arguments : plugin.getSettingsPanel(null, null)
+                    .getArguments();
+            if (arguments == null && pluginArguments instanceof AbstractCalcPluginArguments) {
+                AbstractCalcPluginArguments abstractArguments = (AbstractCalcPluginArguments) pluginArguments;
+                abstractArguments.setUseLargestFragment(largestFragments);
+                abstractArguments.setDeglycosilate(deglycosilate);
+                abstractArguments.setRecalculate2Dcoords(recalculate2Dcoords);
+            }
+            CalcPluginResults results;
+            try {
+                results = plugin.getResults(pluginArguments, ImmutableList.of(molecule), ignore);
+            } catch (ClassCastException e) {
+                // the arguments belong to another plugin
+                continue;
+            }
+            for (PropertyDefinition resultPropDef : results.getCalculatedProperties()) {
+                if (("_" + resultPropDef.getKey().toUpperCase()).equals(key)) {
+                    IAtomContainer result = Iterables.getOnlyElement(results.getMolecules());
+                    return result.getProperties().get(resultPropDef);
+                }
+            }
+        }
+        throw new CalculationException("no plugin calculates " + propDef.getKey());
+    }
+
+    /**
+     * Runs the given jobs on some molecules of the dataset without any user
+     * interface. The calculation runs in the calling thread and uses the same
+     * pipeline as {@link #runCalc(Window)}, i.e. a single pass over the
+     * molecules and the number of threads set by {@link #setThreads(int)}.
+     * The calculation can be cancelled by interrupting the calling thread.
+     *
+     * @param jobs
+     *            the jobs to run
+     * @param molecules
+     *            the molecules of the dataset, e.g. all molecules of a subset
+     * @param progress
+     *            receives the progress of the calculation, the total is the
+     *            number of jobs times the number of molecules
+     * @param messageListener
+     *            receives the messages of the plugins, may be
+     *            <code>null</code>
+     * @return a summary of the stored properties
+     * @throws CalculationException
+     *             if the calculation fails or is interrupted. Properties
+     *             stored before a failure are kept and calling this method
+     *             again with the same jobs resumes the calculation, after an
+     *             interruption all calculated properties are removed.
+     */
+    public String calculate(List<CalcJob> jobs, Collection<Molecule> molecules, ProgressListener<Void> progress,
+            MessageListener messageListener) throws CalculationException {
+        Preconditions.checkNotNull(progress);
+        // a process of its own, so the jobs of one call are not run again by
+        // the next one
+        CalcProcess process = new CalcProcess();
+        for (CalcJob job : jobs) {
+            process.getJobsModel().add(job);
+        }
+
+        CalculationRun run = new CalculationRun(process, new DBMoleculeToCDKMoleculeTransform(db,
+                availableProperties), ImmutableList.copyOf(molecules), progress);
+        if (messageListener != null) {
+            process.addMessageListener(messageListener);
+        }
+        progress.setProgressIndeterminate(true);
+        boolean finished;
+        try {
+            finished = run.run();
+        } catch (Exception e) {
+            run.abort();
+            throw new CalculationException(e);
+        } finally {
+            if (messageListener != null) {
+                process.removeMessageListener(messageListener);
+            }
+        }
+        if (!finished) {
+            run.cancel();
+            throw new CalculationException("calculation interrupted");
+        }
+        String summary = run.getSummary();
+        progress.finished(null, false);
+        return summary;
+    }
+
     private class CalculateExceptionHandler implements WorkerExceptionListener {
         Window owner;
         MessageDialog messageDialog;
@@ -400,91 +610,410 @@ public class Calculator {
         }
     };
 
-    private class CalculateWorker extends ProgressWorker<Void, Message> implements MessageListener {
+    /**
+     * Runs all jobs in a single pass over the molecules. Each molecule is
+     * fetched from the database and prepared once, each job transforms its
+     * own clone and the properties calculated by all jobs are saved together.
+     * The pipeline does not depend on any user interface, the progress is
+     * reported to a {@link ProgressListener}.
+     */
+    private class CalculationRun {
         int totalProgress = 0;
-        int progressBoundsMax;
         int moleculeCount = 0;
 
-        Iterable<IAtomContainer> cdkMoleculeIterable;
-        ImmutableCollection<Molecule> dbMolecules;
-        MessageDialog messageDialog;
+        /**
+         * calculated properties which are not stored yet
+         */
+        List<Property> unsaved = Lists.newArrayList();
+        int commits = 0;
+        long savedRows = 0;
+        long start;
+
+        final CalcProcess process;
+        final Function<Molecule, IAtomContainer> cdkMoleculeTransform;
+        final ImmutableList<Molecule> dbMolecules;
+        final ProgressListener<Void> progress;
+        /**
+         * the molecules which are not calculated by an earlier run, ordered
+         * by id
+         */
+        ImmutableList<Molecule> remaining;
+        /**
+         * whether the registered property definitions are stored
+         */
+        boolean stored = false;
 
-        CalculateWorker(Iterable<IAtomContainer> cdkMoleculeIterable,
-                ImmutableCollection<Molecule> dbMolecules, MessageDialog messageDialog) {
-            this.cdkMoleculeIterable = cdkMoleculeIterable;
+        CalculationRun(CalcProcess process, Function<Molecule, IAtomContainer> cdkMoleculeTransform,
+                ImmutableList<Molecule> dbMolecules, ProgressListener<Void> progress) {
+            this.process = process;
+            this.cdkMoleculeTransform = cdkMoleculeTransform;
             this.dbMolecules = dbMolecules;
-            this.messageDialog = messageDialog;
+            this.remaining = dbMolecules;
+            this.progress = progress;
+        }
 
-            progressBoundsMax = calcProcess.getJobs().size() * dbMolecules.size();
+        /**
+         * Runs the calculation. If it fails the caller has to call
+         * {@link #abort()}.
+         * 
+         * @return <code>false</code> iff the calculation was cancelled, the
+         *         caller has to call {@link #cancel()} in this case
+         */
+        boolean run() throws Exception {
+            // the source reads the molecules when the calculation starts, i.e.
+            // after the molecules calculated by an earlier run are skipped
+            FusedMoleculeSource source = new FusedMoleculeSource(new Iterable<Molecule>() {
+                @Override
+                public Iterator<Molecule> iterator() {
+                    return remaining.iterator();
+                }
+            }, cdkMoleculeTransform);
+            process.prepareCalc(source);
+
+            // register property definitions of all jobs
+            for (CalcJob job : process.getJobs()) {
+                for (PropertyDefinition propDef : job.getResults().getCalculatedProperties()) {
+                    copyValidateAndRegister(job, propDef);
+                }
+            }
+
+            // new property definitions are incomplete until the calculation
+            // finishes, resumed ones skip the molecules calculated before
+            List<PropertyDefinition> created = Lists.newArrayList();
+            int resumeAfter = Integer.MAX_VALUE;
+            for (PropertyDefinition propDef : registeredPropertyDefinitions.values()) {
+                if (propDef.getCalculatedUpTo() == null) {
+                    propDef.setCalculatedUpTo(0);
+                    created.add(propDef);
+                }
+                resumeAfter = Math.min(resumeAfter, propDef.getCalculatedUpTo());
+            }
+            db.saveAllAsNew(created);
+            stored = true;
+
+            if (resumeAfter == Integer.MAX_VALUE) {
+                resumeAfter = 0;
+            }
+            final int skipped = resumeAfter;
+            remaining = ImmutableList.copyOf(Orderings.STRUCTURE_BY_ID.sortedCopy(Iterables.filter(dbMolecules,
+                    new Predicate<Molecule>() {
+                        @Override
+                        public boolean apply(Molecule molecule) {
+                            return molecule.getId() > skipped;
+                        }
+                    })));
+            if (remaining.size() < dbMolecules.size()) {
+                logger.info("Resuming the calculation, {} of {} molecules are left", remaining.size(),
+                        dbMolecules.size());
+            }
+
+            List<CalcJob> jobs = process.getJobs();
+            progress.setProgressBounds(0, jobs.size() * remaining.size());
+            progress.setProgressIndeterminate(false);
+
+            ImmutableMap<PropertyDefinition, PropertyDefinition> registered = ImmutableMap
+                    .copyOf(registeredPropertyDefinitions);
+            moleculeCount = 0;
+            start = System.nanoTime();
+            boolean finished;
+            if (threads > 1 && !jobs.isEmpty()) {
+                finished = calculateParallel(source, jobs, registered);
+            } else {
+                finished = calculate(source, jobs, registered);
+            }
+            if (!finished) {
+                return false;
+            }
+            flush(true);
+            logger.info("Calculated properties of {} molecules: {}", moleculeCount, getSummary());
+            // the properties are stored, a later run must neither store
+            // these definitions again nor remove them
+            registeredPropertyDefinitions.clear();
+            return true;
         }
 
-        @Override
-        protected Void doInBackground() throws Exception {
-            setProgressIndeterminate(true);
+        /**
+         * Called before the properties calculated by a job are stored
+         * 
+         * @param jobIndex
+         *            the index of the job
+         * @param jobCount
+         *            the number of jobs
+         * @param job
+         *            the job
+         * @param molecule
+         *            the number of the molecule, starting at 1
+         */
+        void showStep(int jobIndex, int jobCount, CalcJob job, int molecule) {
+        }
+
+        /**
+         * Runs the transforms of all jobs in this thread
+         * 
+         * @return <code>false</code> iff the calculation was cancelled
+         */
+        private boolean calculate(FusedMoleculeSource source, List<CalcJob> jobs,
+                Map<PropertyDefinition, PropertyDefinition> registered) throws DatabaseException {
+            List<PluginPropertyIterator> propertyIters = Lists.newArrayListWithCapacity(jobs.size());
+            for (CalcJob job : jobs) {
+                propertyIters.add(new PluginPropertyIterator(job.getResults().getMolecules().iterator(), remaining
+                        .iterator(), registered));
+            }
+
+            while (source.hasNext()) {
+                source.advance();
+                List<Collection<Property>> jobProperties = Lists.newArrayListWithCapacity(jobs.size());
+                for (PluginPropertyIterator propertyIter : propertyIters) {
+                    jobProperties.add(propertyIter.next());
+                }
+                if (!save(jobs, jobProperties)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Prepares the molecules in this thread and runs the transforms of all
+         * jobs on chunks of molecules in a thread pool. Each thread iterates
+         * its own results of each job, thus it uses its own transform function
+         * instances. The properties are saved in the order of the molecules.
+         * 
+         * @return <code>false</code> iff the calculation was cancelled
+         */
+        private boolean calculateParallel(final FusedMoleculeSource source, final List<CalcJob> jobs,
+                final Map<PropertyDefinition, PropertyDefinition> registered) throws Exception {
+            final ThreadLocal<List<Iterator<IAtomContainer>>> threadResults =
+                    new ThreadLocal<List<Iterator<IAtomContainer>>>() {
+                @Override
+                protected List<Iterator<IAtomContainer>> initialValue() {
+                    List<Iterator<IAtomContainer>> results = Lists.newArrayListWithCapacity(jobs.size());
+                    for (CalcJob job : jobs) {
+                        results.add(job.getResults().getMolecules().iterator());
+                    }
+                    return results;
+                }
+            };
 
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            Deque<Future<List<List<Collection<Property>>>>> pending = Lists.newLinkedList();
             try {
-                calcProcess.addMessageListener(this);
-                calcProcess.prepareCalc(cdkMoleculeIterable);
+                Iterator<Molecule> dbMoleculeIter = remaining.iterator();
+                while (dbMoleculeIter.hasNext()) {
+                    final List<Molecule> chunk = Lists.newArrayListWithCapacity(CHUNK_SIZE);
+                    final List<IAtomContainer> prepared = Lists.newArrayListWithCapacity(CHUNK_SIZE);
+                    while (dbMoleculeIter.hasNext() && chunk.size() < CHUNK_SIZE) {
+                        Molecule dbMolecule = dbMoleculeIter.next();
+                        chunk.add(dbMolecule);
+                        prepared.add(source.prepare(dbMolecule));
+                    }
 
-                // register property definitions of all jobs
-                for (CalcJob job : calcProcess.getJobs()) {
-                    for (PropertyDefinition propDef : job.getResults().getCalculatedProperties()) {
-                        copyValidateAndRegister(job, propDef);
+                    pending.add(executor.submit(new Callable<List<List<Collection<Property>>>>() {
+                        @Override
+                        public List<List<Collection<Property>>> call() {
+                            List<Iterator<IAtomContainer>> results = threadResults.get();
+                            List<List<Collection<Property>>> chunkProperties = Lists
+                                    .newArrayListWithCapacity(chunk.size());
+                            for (int i = 0; i < chunk.size(); i++) {
+                                source.feed(prepared.get(i));
+                                List<Collection<Property>> jobProperties = Lists.newArrayListWithCapacity(jobs
+                                        .size());
+                                for (Iterator<IAtomContainer> result : results) {
+                                    jobProperties.add(PluginPropertyIterator.createProperties(result.next(),
+                                            chunk.get(i), registered));
+                                }
+                                chunkProperties.add(jobProperties);
+                            }
+                            return chunkProperties;
+                        }
+                    }));
+
+                    // bound the number of prepared molecules held in memory
+                    while (pending.size() > 2 * threads || (!dbMoleculeIter.hasNext() && !pending.isEmpty())) {
+                        for (List<Collection<Property>> jobProperties : getResult(pending.removeFirst())) {
+                            if (!save(jobs, jobProperties)) {
+                                return false;
+                            }
+                        }
                     }
                 }
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
 
-                db.saveAllAsNew(registeredPropertyDefinitions.values());
+        private <T> T getResult(Future<T> future) throws Exception {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), Exception.class);
+                throw e;
+            }
+        }
 
-                setProgressBounds(0, progressBoundsMax);
-                setProgressIndeterminate(false);
+        /**
+         * Buffers the properties calculated for one molecule and updates the
+         * progress. The buffered properties are stored as soon as there are
+         * enough of them for a batch.
+         * 
+         * @param jobProperties
+         *            the properties calculated by each job
+         * @return <code>false</code> iff the calculation was cancelled
+         */
+        private boolean save(List<CalcJob> jobs, List<Collection<Property>> jobProperties) throws DatabaseException {
+            int moleculeId = remaining.get(moleculeCount).getId();
+            moleculeCount++;
+            for (int i = 0; i < jobs.size(); i++) {
+                totalProgress++;
+                progress.setProgressValue(totalProgress);
+                showStep(i, jobs.size(), jobs.get(i), moleculeCount);
+
+                for (Property prop : jobProperties.get(i)) {
+                    // already stored by an earlier run
+                    if (prop.getType().getCalculatedUpTo() < moleculeId) {
+                        unsaved.add(prop);
+                    }
+                }
+            }
+            if (unsaved.size() >= SAVE_BATCH_SIZE) {
+                flush(false);
+            }
 
-                int jobcount = 0;
-                for (CalcJob job : calcProcess.getJobs()) {
-                    PluginPropertyIterator propertyIter = new PluginPropertyIterator(job.getResults().getMolecules()
-                            .iterator(), dbMolecules.iterator(), ImmutableMap.copyOf(registeredPropertyDefinitions));
-                    jobcount++;
+            // exit on "normal" cancel
+            return !Thread.interrupted();
+        }
 
-                    moleculeCount = 0;
-                    while (propertyIter.hasNext()) {
-                        moleculeCount++;
-                        totalProgress++;
-                        setProgressValue(totalProgress);
+        /**
+         * Stores all buffered properties in one transaction, together with
+         * the progress of the registered property definitions
+         * 
+         * @param complete
+         *            whether all molecules are calculated
+         */
+        private void flush(boolean complete) throws DatabaseException {
+            if (unsaved.isEmpty() && !complete) {
+                return;
+            }
+            Map<PropertyDefinition, Integer> previous = Maps.newHashMap();
+            for (PropertyDefinition propDef : registeredPropertyDefinitions.values()) {
+                previous.put(propDef, propDef.getCalculatedUpTo());
+                if (complete) {
+                    propDef.setCalculatedUpTo(null);
+                } else {
+                    int upTo = remaining.get(moleculeCount - 1).getId();
+                    propDef.setCalculatedUpTo(Math.max(upTo, propDef.getCalculatedUpTo()));
+                }
+            }
+            try {
+                db.insertProperties(unsaved, previous.keySet());
+            } catch (DatabaseException e) {
+                // the progress is not stored
+                for (Map.Entry<PropertyDefinition, Integer> entry : previous.entrySet()) {
+                    entry.getKey().setCalculatedUpTo(entry.getValue());
+                }
+                throw e;
+            }
+            if (!unsaved.isEmpty()) {
+                commits++;
+                savedRows += unsaved.size();
+                unsaved.clear();
+            }
+        }
 
-                        messageDialog.setText("<html><div align=\"center\">"
-                                + _("DataCalc.RunningNthJob", jobcount, calcProcess.getJobs().size(), job) + "<br>"
-                                + _("DataCalc.CalculatingNthMolecule", moleculeCount, dbMolecules.size())
-                                + "</div></html>");
+        /**
+         * @return the number of stored properties, the number of commits and
+         *         the number of stored properties per second
+         */
+        String getSummary() {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return _("DataCalc.CalcSummary", savedRows, commits, (long) (savedRows / seconds));
+        }
 
-                        db.saveAllAsNew(propertyIter.next());
+        /**
+         * Removes all stored results after the calculation was cancelled
+         */
+        void cancel() {
+            cleanUp();
+        }
 
-                        // exit on "normal" cancel
-                        if (Thread.interrupted()) {
-                            cancel();
-                            return null;
-                        }
-                    }
+        /**
+         * Stops the calculation after an error. The properties which are
+         * already stored are kept together with the progress of their
+         * property definitions, so running the same jobs again resumes the
+         * calculation.
+         */
+        void abort() {
+            if (!stored) {
+                cleanUp();
+                return;
+            }
+            logger.warn("Calculation failed, keeping {} stored properties, "
+                    + "running the same jobs again resumes the calculation", savedRows);
+            registeredPropertyDefinitions.clear();
+        }
+    }
+
+    private class CalculateWorker extends ProgressWorker<Void, Message> implements MessageListener {
+        final CalculationRun run;
+        final MessageDialog messageDialog;
+
+        CalculateWorker(Function<Molecule, IAtomContainer> cdkMoleculeTransform, ImmutableList<Molecule> dbMolecules,
+                final MessageDialog messageDialog) {
+            this.messageDialog = messageDialog;
+            run = new CalculationRun(calcProcess, cdkMoleculeTransform, dbMolecules, this) {
+                @Override
+                void showStep(int jobIndex, int jobCount, CalcJob job, int molecule) {
+                    messageDialog.setText("<html><div align=\"center\">"
+                            + _("DataCalc.RunningNthJob", jobIndex + 1, jobCount, job) + "<br>"
+                            + _("DataCalc.CalculatingNthMolecule", molecule, remaining.size()) + "</div></html>");
+                }
+            };
+        }
+
+        @Override
+        protected Void doInBackground() throws Exception {
+            setProgressIndeterminate(true);
+
+            try {
+                calcProcess.addMessageListener(this);
+                if (!run.run()) {
+                    cancel();
+                    return null;
                 }
             } catch (DBMoleculeToCDKMoleculeTransformException e) {
-                cancel();
+                abort();
                 throw new CalculationException(e);
             } catch (DatabaseException e) {
-                cancel();
+                abort();
                 throw new CalculationException(e);
             } catch (RuntimeException e) {
-                cancel();
+                abort();
                 throw new RuntimeException(e);
             } catch (Exception e) {
-                cancel();
+                abort();
                 throw new Exception(e);
             }
 
             return null;
         }
 
+        String getSummary() {
+            return run.getSummary();
+        }
+
         private void cancel() {
             messageDialog.setText(_("DataCalc.CalcCanceled"));
             calcProcess.removeMessageListener(this);
-            cleanUp();
+            run.cancel();
+        }
+
+        private void abort() {
+            messageDialog.setText(_("DataCalc.CalcCanceled"));
+            calcProcess.removeMessageListener(this);
+            run.abort();
         }
 
         @Override
@@ -0,0 +1,193 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.datacalculation;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.UnmodifiableIterator;
+
+import edu.udo.scaffoldhunter.model.db.Molecule;
+
+/**
+ * Provides the input molecules of several {@link CalcJob}s while fetching
+ * and preparing each molecule only once.
+ * <p>
+ * Each job gets its own view via {@link #newView()}. The source is advanced
+ * one molecule at a time by {@link #advance()}, afterwards each view returns
+ * exactly one molecule: a clone of the prepared molecule, so the transforms
+ * of different plugins cannot see each others changes. The last view gets
+ * the prepared molecule itself. A view must not be read ahead of the source,
+ * which holds for all plugins transforming their input molecule by molecule.
+ * <p>
+ * The source may be shared by several threads. Each thread has its own
+ * current molecule, which is set by {@link #advance()} or {@link #feed}, and
+ * an iterator over a view returns the molecules of the thread which created
+ * the iterator. Thus each thread which iterates the results of a plugin gets
+ * its own chain of transform functions.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class FusedMoleculeSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(FusedMoleculeSource.class);
+
+    private final Iterable<Molecule> dbMolecules;
+    private Iterator<Molecule> dbMoleculeIter;
+    private final Function<Molecule, IAtomContainer> transform;
+    private final List<View> views = Lists.newArrayList();
+
+    private final ThreadLocal<Cursor> cursors = new ThreadLocal<Cursor>() {
+        @Override
+        protected Cursor initialValue() {
+            return new Cursor();
+        }
+    };
+
+    /**
+     * @param dbMolecules
+     *            the molecules in the order the jobs should read them. They
+     *            are not iterated before the first call of {@link #hasNext()}
+     *            or {@link #advance()}.
+     * @param transform
+     *            the function which fetches and prepares a molecule, e.g.
+     *            {@link DBMoleculeToCDKMoleculeTransform}
+     */
+    public FusedMoleculeSource(Iterable<Molecule> dbMolecules, Function<Molecule, IAtomContainer> transform) {
+        this.dbMolecules = dbMolecules;
+        this.transform = transform;
+    }
+
+    /**
+     * Creates a new view which returns every molecule of this source once
+     * 
+     * @return the view
+     */
+    public Iterable<IAtomContainer> newView() {
+        View view = new View();
+        views.add(view);
+        return view;
+    }
+
+    /**
+     * @return <code>true</code> iff {@link #advance()} may be called again
+     */
+    public boolean hasNext() {
+        return dbMolecules().hasNext();
+    }
+
+    /**
+     * Fetches and prepares the next molecule. Afterwards each view returns
+     * this molecule once to the calling thread.
+     * 
+     * @return the molecule whose CDK representation was prepared
+     */
+    public Molecule advance() {
+        Molecule dbMolecule = dbMolecules().next();
+        feed(prepare(dbMolecule));
+        return dbMolecule;
+    }
+
+    private Iterator<Molecule> dbMolecules() {
+        if (dbMoleculeIter == null) {
+            dbMoleculeIter = dbMolecules.iterator();
+        }
+        return dbMoleculeIter;
+    }
+
+    /**
+     * Fetches and prepares a molecule without making it the current molecule
+     * 
+     * @param dbMolecule
+     *            the molecule
+     * @return its prepared CDK representation
+     */
+    public IAtomContainer prepare(Molecule dbMolecule) {
+        return transform.apply(dbMolecule);
+    }
+
+    /**
+     * Makes a prepared molecule the current molecule of the calling thread.
+     * Afterwards each view returns this molecule once to the calling thread.
+     * 
+     * @param prepared
+     *            the molecule returned by {@link #prepare(Molecule)}
+     */
+    public void feed(IAtomContainer prepared) {
+        Cursor cursor = cursors.get();
+        cursor.current = prepared;
+        cursor.position++;
+    }
+
+    private IAtomContainer get(Cursor cursor, View view) {
+        if (view == views.get(views.size() - 1)) {
+            return cursor.current;
+        }
+        try {
+            return cursor.current.clone();
+        } catch (CloneNotSupportedException e) {
+            // never thrown by the cdk implementations
+            logger.warn("could not clone molecule, sharing it between plugins", e);
+            return cursor.current;
+        }
+    }
+
+    private static class Cursor {
+        IAtomContainer current;
+        int position = 0;
+    }
+
+    private class View implements Iterable<IAtomContainer> {
+
+        @Override
+        public Iterator<IAtomContainer> iterator() {
+            final Cursor cursor = cursors.get();
+
+            return new UnmodifiableIterator<IAtomContainer>() {
+                private int read = cursor.position;
+
+                @Override
+                public boolean hasNext() {
+                    return read < cursor.position;
+                }
+
+                @Override
+                public IAtomContainer next() {
+                    Preconditions.checkState(read + 1 == cursor.position,
+                            "a view must read each molecule of its source once");
+                    read++;
+                    return get(cursor, View.this);
+                }
+            };
+        }
+    }
+}
@@ -94,10 +94,25 @@ public class PluginPropertyIterator extends UnmodifiableIterator<Collection<Prop
             throw new AssertionError("Working on iterators with different lenght");
         }
 
-        Collection<Property> collection = Lists.newLinkedList();
+        return createProperties(cdkMoleculeIter.next(), dbMoleculeIter.next(), registeredPropertyDefinitions);
+    }
 
-        IAtomContainer cdkMolecule = cdkMoleculeIter.next();
-        edu.udo.scaffoldhunter.model.db.Molecule dbMolecule = dbMoleculeIter.next();
+    /**
+     * Creates the properties of a db molecule from the values a plugin has
+     * attached to the corresponding cdk molecule
+     * 
+     * @param cdkMolecule
+     *            the cdk molecule with attached properties
+     * @param dbMolecule
+     *            the db molecule the properties belong to
+     * @param registeredPropertyDefinitions
+     *            a mapping PluginPropertyDef -> RegisteredPropertyDef
+     * @return the properties
+     */
+    public static Collection<Property> createProperties(IAtomContainer cdkMolecule,
+            edu.udo.scaffoldhunter.model.db.Molecule dbMolecule,
+            Map<PropertyDefinition, PropertyDefinition> registeredPropertyDefinitions) {
+        Collection<Property> collection = Lists.newLinkedList();
 
         for (Entry<PropertyDefinition, PropertyDefinition> entry : registeredPropertyDefinitions.entrySet()) {
             
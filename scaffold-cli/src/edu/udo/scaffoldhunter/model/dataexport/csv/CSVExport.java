@@ -23,8 +23,10 @@ package edu.udo.scaffoldhunter.model.dataexport.csv;
 
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.List;
 
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
@@ -34,13 +36,28 @@ import javax.swing.JPanel;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 import au.com.bytecode.opencsv.CSVWriter;
+
+import com.google.common.collect.Lists;
+
 import edu.udo.scaffoldhunter.model.dataexport.ExportInterface;
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
+import edu.udo.scaffoldhunter.model.db.DbManager;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Subset;
+import edu.udo.scaffoldhunter.model.util.Subsets;
 
 /**
  * @author Bernhard Dick
  * 
  */
 public class CSVExport implements ExportInterface {
+    /**
+     * the number of molecules whose properties are read in one transaction
+     */
+    private static final int CHUNK_SIZE = 10000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private CSVConfigurationPanel configurationPanel;
 
     /**
@@ -90,6 +107,61 @@ public class CSVExport implements ExportInterface {
         }
     }
 
+    /**
+     * Writes the properties of the molecules of a subset directly from the
+     * property tables. Unlike {@link #writeData(Iterable, String[], String)}
+     * the structures are neither loaded nor parsed and no properties are
+     * locked, the values are read in chunks of molecules and written through
+     * a buffered writer. The columns are the same.
+     * 
+     * @param db
+     *            the {@link DbManager} storing the properties
+     * @param subset
+     *            the exported subset
+     * @param propDefs
+     *            the exported molecule properties
+     * @param propertyNames
+     *            the column titles of the SMILES, if exported, and the
+     *            properties
+     * @param exportSmiles
+     *            whether the SMILES is exported in the first column
+     * @param filename
+     *            The filename we save to
+     * @throws DatabaseException
+     * @throws IOException
+     */
+    public void writeData(DbManager db, Subset subset, List<PropertyDefinition> propDefs, String[] propertyNames,
+            boolean exportSmiles, String filename) throws DatabaseException, IOException {
+        String[] propNames = new String[propertyNames.length + 1];
+        System.arraycopy(propertyNames, 0, propNames, 0, propertyNames.length);
+        propNames[propertyNames.length] = "Title";
+
+        // reading the molecules in id order keeps the index lookups local
+        List<Molecule> molecules = Subsets.getMoleculesById(subset);
+
+        int offset = exportSmiles ? 1 : 0;
+        String[] props = new String[offset + propDefs.size() + 1];
+        CSVWriter myWriter = new CSVWriter(new BufferedWriter(new FileWriter(filename), BUFFER_SIZE),
+                configurationPanel.getSeparator(), configurationPanel.getQuoteChar());
+        try {
+            myWriter.writeNext(propNames);
+            for (List<Molecule> chunk : Lists.partition(molecules, CHUNK_SIZE)) {
+                String[][] rows = db.getPropertyRows(chunk, propDefs);
+                for (int i = 0; i < chunk.size(); i++) {
+                    Molecule molecule = chunk.get(i);
+                    if (exportSmiles) {
+                        props[0] = molecule.getSmiles();
+                    }
+                    System.arraycopy(rows[i], 0, props, offset, propDefs.size());
+                    props[props.length - 1] = molecule.getTitle();
+                    myWriter.writeNext(props);
+                }
+            }
+        } finally {
+            myWriter.close();
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
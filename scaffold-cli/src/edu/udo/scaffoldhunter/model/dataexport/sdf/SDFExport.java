@@ -21,8 +21,16 @@
 
 package edu.udo.scaffoldhunter.model.dataexport.sdf;
 
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -33,7 +41,17 @@ import org.openscience.cdk.io.SDFWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
 import edu.udo.scaffoldhunter.model.dataexport.ExportInterface;
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
+import edu.udo.scaffoldhunter.model.db.DbManager;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Structure;
+import edu.udo.scaffoldhunter.model.db.Subset;
+import edu.udo.scaffoldhunter.model.util.Subsets;
 
 /**
  * @author bernhard
@@ -41,6 +59,12 @@ import edu.udo.scaffoldhunter.model.dataexport.ExportInterface;
  */
 public class SDFExport implements ExportInterface {
     private static Logger logger = LoggerFactory.getLogger(SDFExport.class);
+    /**
+     * the number of molecules whose data is read in one round
+     */
+    private static final int CHUNK_SIZE = 10000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
     JPanel configurationPanel = new JPanel();
     /*
      * (non-Javadoc)
@@ -83,6 +107,82 @@ public class SDFExport implements ExportInterface {
 
     }
 
+    /**
+     * Writes the molecules of a subset with their stored molfiles. Unlike
+     * {@link #writeData(Iterable, String[], String)} the molfiles are not
+     * parsed and written by CDK but copied verbatim, followed by one data item
+     * for each defined property. The molfiles and the property values are
+     * read in chunks of molecules. No dialogs are shown, so this works
+     * headless.
+     * 
+     * @param db
+     *            the {@link DbManager} storing the molecules
+     * @param subset
+     *            the exported subset
+     * @param propDefs
+     *            the exported molecule properties
+     * @param propertyNames
+     *            the names of the data items of the SMILES, if exported, and
+     *            the properties
+     * @param exportSmiles
+     *            whether the SMILES is exported as the first data item
+     * @param filename
+     *            The filename we save to
+     * @param gzip
+     *            whether the file is gzip compressed
+     * @throws DatabaseException
+     * @throws IOException
+     */
+    public void writeData(DbManager db, Subset subset, List<PropertyDefinition> propDefs, String[] propertyNames,
+            boolean exportSmiles, String filename, boolean gzip) throws DatabaseException, IOException {
+        List<Molecule> molecules = Subsets.getMoleculesById(subset);
+        int offset = exportSmiles ? 1 : 0;
+
+        OutputStream out = new FileOutputStream(filename);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charsets.UTF_8), BUFFER_SIZE);
+        try {
+            for (List<Molecule> chunk : Lists.partition(molecules, CHUNK_SIZE)) {
+                Map<Structure, String> mols = db.getStrucMols(chunk);
+                String[][] rows = db.getPropertyRows(chunk, propDefs);
+                for (int i = 0; i < chunk.size(); i++) {
+                    Molecule molecule = chunk.get(i);
+                    String mol = mols.get(molecule);
+                    if (mol == null) {
+                        logger.warn("No molfile stored for molecule {}", molecule.getTitle());
+                        continue;
+                    }
+                    writer.write(mol);
+                    if (!mol.endsWith("\n")) {
+                        writer.write('\n');
+                    }
+                    if (exportSmiles) {
+                        writeDataItem(writer, propertyNames[0], molecule.getSmiles());
+                    }
+                    for (int j = 0; j < propDefs.size(); j++) {
+                        writeDataItem(writer, propertyNames[offset + j], rows[i][j]);
+                    }
+                    writer.write("$$$$\n");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeDataItem(Writer writer, String name, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        writer.write("> <");
+        writer.write(name);
+        writer.write(">\n");
+        writer.write(value);
+        writer.write("\n\n");
+    }
+
     /*
      * (non-Javadoc)
      * 
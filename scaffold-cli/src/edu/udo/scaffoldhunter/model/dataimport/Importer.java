@@ -88,7 +88,7 @@ public class Importer {
 
     private static final Logger logger = LoggerFactory.getLogger(Importer.class);
 
-    private final SHPluginManager pluginManager = new SHPluginManager();
+    private final SHPluginManager pluginManager = SHPluginManager.getInstance();
     private final ImmutableList<ImportPlugin> plugins;
     private final ImportProcess importProcess;
     private final Set<String> existingDatasetNames;
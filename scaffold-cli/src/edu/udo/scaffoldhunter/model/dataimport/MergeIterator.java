@@ -25,6 +25,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -93,6 +94,10 @@ public class MergeIterator implements Iterator<String> {
     private IAtomContainer currentMolecule;
     private IAtomContainer nextMolecule;
 
+    private final List<IAtomContainer> chunkMolecules = Lists.newArrayList();
+    private final List<String> chunkSmiles = Lists.newArrayList();
+    private final Set<String> chunkSmilesSet = Sets.newHashSet();
+
     private String currentSmiles;
     private String nextSmiles;
 
@@ -302,6 +307,42 @@ public class MergeIterator implements Iterator<String> {
         return currentSmiles;
     }
 
+    /**
+     * forward the iterator by up to <code>size</code> molecules in the import
+     * job. This allows to look up all molecules of the chunk in the database
+     * at once. Use {@link #select(int)} to make one of them the current
+     * molecule before calling {@link #newMolecule(List)} or
+     * {@link #mergeInto(edu.udo.scaffoldhunter.model.db.Molecule, List, List)}.
+     * 
+     * @param size
+     *            the maximal number of molecules
+     * @return the SMILES strings of the molecules in the chunk
+     */
+    public List<String> nextChunk(int size) {
+        chunkMolecules.clear();
+        chunkSmiles.clear();
+        chunkSmilesSet.clear();
+        while (chunkSmiles.size() < size && hasNext()) {
+            String smiles = next();
+            chunkMolecules.add(currentMolecule);
+            chunkSmiles.add(smiles);
+            chunkSmilesSet.add(smiles);
+        }
+        return Collections.unmodifiableList(chunkSmiles);
+    }
+
+    /**
+     * Makes a molecule of the last chunk the current molecule.
+     * 
+     * @param index
+     *            the index of the molecule in the chunk
+     * @see #nextChunk(int)
+     */
+    public void select(int index) {
+        currentMolecule = chunkMolecules.get(index);
+        currentSmiles = chunkSmiles.get(index);
+    }
+
     /**
      * forward the iterator to the next molecule in the import job.
      * 
@@ -511,7 +552,8 @@ public class MergeIterator implements Iterator<String> {
                 continue;
             }
             
-            if (insertedMoleculeSMILES.contains(nextSmiles) || nextSmiles.equals(currentSmiles)) {
+            if (insertedMoleculeSMILES.contains(nextSmiles) || nextSmiles.equals(currentSmiles)
+                    || chunkSmilesSet.contains(nextSmiles)) {
                 // A Molecules appears several times in the same source
                 // In this case we ignore everything but the first one.
                 Object title = nextMolecule.getProperty(importjob.getTitleProperty());
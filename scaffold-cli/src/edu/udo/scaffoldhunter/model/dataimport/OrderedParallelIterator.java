@@ -0,0 +1,208 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.dataimport;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
+
+/**
+ * Iterates over the results of tasks which are executed in parallel, in the
+ * order in which the tasks were created. The tasks are created on the
+ * iterating thread, e.g. by reading a batch of lines, and typically parse
+ * their batch on a worker thread. Only a few tasks per thread are executed
+ * ahead, so the memory needed does not depend on the number of tasks.
+ * <p>
+ * The source is closed when the iterator is exhausted or a task fails. The
+ * threads of an abandoned iterator terminate when idle, but its source stays
+ * open until {@link #close()} is called.
+ * 
+ * @author Shamshad Alam
+ * 
+ * @param <E>
+ *            the type of the elements
+ */
+public class OrderedParallelIterator<E> implements Iterator<E>, Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(OrderedParallelIterator.class);
+
+    /**
+     * the number of tasks executed ahead per thread
+     */
+    private static final int TASKS_PER_THREAD = 2;
+
+    /**
+     * Creates the tasks of an {@link OrderedParallelIterator}
+     * 
+     * @param <E>
+     *            the type of the elements
+     */
+    public interface TaskSource<E> {
+        /**
+         * Creates the next task. This is called on the iterating thread.
+         * 
+         * @return the next task or <code>null</code> if there are no more
+         *         tasks
+         * @throws Exception
+         */
+        Callable<List<E>> next() throws Exception;
+
+        /**
+         * Releases the resources of the source after the last task or a
+         * failure
+         * 
+         * @throws Exception
+         */
+        void close() throws Exception;
+    }
+
+    private final TaskSource<E> source;
+    private final int maxPending;
+    private final ThreadPoolExecutor executor;
+    private final Deque<Future<List<E>>> pending = new ArrayDeque<Future<List<E>>>();
+    private Iterator<E> current = Iterators.emptyIterator();
+    private boolean exhausted = false;
+    private boolean closed = false;
+
+    /**
+     * @param source
+     *            creates the tasks
+     * @param threads
+     *            the number of threads executing the tasks
+     * @param name
+     *            the name prefix of the threads
+     */
+    public OrderedParallelIterator(TaskSource<E> source, int threads, final String name) {
+        Preconditions.checkArgument(threads > 0);
+        this.source = Preconditions.checkNotNull(source);
+        this.maxPending = threads * TASKS_PER_THREAD;
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        // the threads of an abandoned iterator terminate when idle
+        executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            submit();
+            Future<List<E>> task = pending.poll();
+            if (task == null) {
+                close();
+                return false;
+            }
+            try {
+                current = task.get().iterator();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                close();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void submit() {
+        while (!exhausted && pending.size() < maxPending) {
+            Callable<List<E>> task;
+            try {
+                task = source.next();
+            } catch (Exception e) {
+                close();
+                throw new RuntimeException(e);
+            }
+            if (task == null) {
+                exhausted = true;
+            } else {
+                pending.add(executor.submit(task));
+            }
+        }
+    }
+
+    /**
+     * Cancels the pending tasks and closes the source. This is only needed if
+     * the iterator is abandoned before it is exhausted.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        exhausted = true;
+        current = Iterators.emptyIterator();
+        for (Future<List<E>> task : pending) {
+            task.cancel(true);
+        }
+        pending.clear();
+        executor.shutdown();
+        try {
+            source.close();
+        } catch (Exception e) {
+            logger.warn("Could not close task source: {}", e.getMessage());
+        }
+    }
+}
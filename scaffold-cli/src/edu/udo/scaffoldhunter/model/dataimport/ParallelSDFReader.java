@@ -0,0 +1,338 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.dataimport;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.io.iterator.IteratingMDLReader;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.dataimport.OrderedParallelIterator.TaskSource;
+import edu.udo.scaffoldhunter.model.util.MoleculeConfigurator;
+
+/**
+ * Reads the molecules of an SD file with several threads. The file is split
+ * into chunks of about the same size, each chunk is extended to the record
+ * boundaries, i.e. the lines starting with <code>$$$$</code>, and parsed by
+ * its own {@link IteratingMDLReader}. The boundaries are found by the threads
+ * parsing the chunks, so neither splitting nor parsing is sequential.
+ * <p>
+ * Plain files are memory mapped. Files ending with <code>.gz</code> are
+ * decompressed as a stream by the iterating thread and split into chunks of
+ * complete records on the fly.
+ * <p>
+ * The molecules are returned in the order of the file by an
+ * {@link OrderedParallelIterator}, so the memory needed does not depend on the
+ * size of the file.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class ParallelSDFReader implements Iterable<IAtomContainer> {
+
+    private static Logger logger = LoggerFactory.getLogger(ParallelSDFReader.class);
+
+    /**
+     * the default size of a chunk in bytes
+     */
+    private static final int CHUNK_SIZE = 4 << 20;
+    /**
+     * the size of the windows read while searching a record boundary
+     */
+    private static final int WINDOW_SIZE = 8 << 10;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final File file;
+    private final boolean prepare;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = CHUNK_SIZE;
+
+    /**
+     * @param file
+     *            the SD file, which may be gzip compressed if its name ends
+     *            with <code>.gz</code>
+     * @param prepare
+     *            whether each molecule is prepared by
+     *            {@link MoleculeConfigurator#prepare(IAtomContainer, boolean)}
+     *            by the parsing thread
+     */
+    public ParallelSDFReader(File file, boolean prepare) {
+        this.file = Preconditions.checkNotNull(file);
+        this.prepare = prepare;
+    }
+
+    /**
+     * Sets the number of threads parsing the file, which defaults to the
+     * number of processors
+     * 
+     * @param threads
+     *            the number of threads
+     */
+    public void setThreads(int threads) {
+        Preconditions.checkArgument(threads > 0);
+        this.threads = threads;
+    }
+
+    /**
+     * @param chunkSize
+     *            the size of a chunk in bytes
+     */
+    void setChunkSize(int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns a new iterator over the molecules of the file. Each iterator
+     * uses its own threads, which terminate when they are idle. The file is
+     * closed when the iterator is exhausted or fails, an iterator which is
+     * abandoned before must be closed by
+     * {@link OrderedParallelIterator#close()}.
+     * 
+     * @return an iterator over the molecules
+     * @throws RuntimeException
+     *             if the file cannot be opened
+     */
+    @Override
+    public OrderedParallelIterator<IAtomContainer> iterator() {
+        TaskSource<IAtomContainer> source;
+        try {
+            source = file.getName().endsWith(".gz") ? new GzipChunks() : new MappedChunks();
+        } catch (IOException e) {
+            logger.error("Could not open {}: {}", file, e.getMessage());
+            throw new RuntimeException("Could not open " + file, e);
+        }
+        return new OrderedParallelIterator<IAtomContainer>(source, threads, "SDFReader");
+    }
+
+    /**
+     * Finds the first record boundary at or after a position, i.e. the
+     * position following the first line after <code>from</code> which starts
+     * with <code>$$$$</code>. The line break in front of the delimiter must be
+     * at or after <code>from</code>.
+     * 
+     * @param channel
+     *            the channel of the file
+     * @param from
+     *            the position where the search starts
+     * @return the start of the next record or the size of the file if there
+     *         is none
+     * @throws IOException
+     */
+    static long findRecordStart(FileChannel channel, long from) throws IOException {
+        long size = channel.size();
+        // the boundary is usually close, so a small buffer is read instead of
+        // mapping a window, mappings are only released by the garbage
+        // collector
+        ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+        // the number of matched bytes of "\n$$$$", 5 if the rest of the
+        // delimiter line is skipped
+        int matched = 0;
+        long position = from;
+        while (position < size) {
+            window.clear();
+            int length = channel.read(window, position);
+            if (length <= 0) {
+                break;
+            }
+            for (int i = 0; i < length; i++) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    if (matched == 5) {
+                        return position + i + 1;
+                    }
+                    matched = 1;
+                } else if (matched == 5) {
+                    continue;
+                } else if (b == '$' && matched > 0) {
+                    matched++;
+                } else {
+                    matched = 0;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+    private List<IAtomContainer> parse(IteratingMDLReader reader) throws IOException {
+        List<IAtomContainer> molecules = Lists.newArrayList();
+        try {
+            while (reader.hasNext()) {
+                IAtomContainer molecule = reader.next();
+                if (prepare) {
+                    MoleculeConfigurator.prepare(molecule, false);
+                }
+                molecules.add(molecule);
+            }
+        } finally {
+            reader.close();
+        }
+        return molecules;
+    }
+
+    /**
+     * Splits a memory mapped file into chunks of <code>chunkSize</code> bytes.
+     * Each task searches the boundaries of its chunk itself.
+     */
+    private class MappedChunks implements TaskSource<IAtomContainer> {
+        private final RandomAccessFile randomAccessFile;
+        private final FileChannel channel;
+        private final long size;
+        private final long chunkCount;
+        private long next = 0;
+
+        MappedChunks() throws IOException {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            channel = randomAccessFile.getChannel();
+            size = channel.size();
+            chunkCount = Math.max(1, (size + chunkSize - 1) / chunkSize);
+        }
+
+        @Override
+        public Callable<List<IAtomContainer>> next() {
+            if (next == chunkCount) {
+                return null;
+            }
+            final long from = next * chunkSize;
+            final boolean last = ++next == chunkCount;
+            return new Callable<List<IAtomContainer>>() {
+                @Override
+                public List<IAtomContainer> call() throws IOException {
+                    // the neighbouring chunks find the same boundary
+                    long start = from == 0 ? 0 : findRecordStart(channel, from - 1);
+                    long end = last ? size : findRecordStart(channel, from + chunkSize - 1);
+                    if (end <= start) {
+                        // a record larger than a chunk belongs to the chunk
+                        // in which it starts
+                        return Collections.emptyList();
+                    }
+                    MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, start, end - start);
+                    return parse(new IteratingMDLReader(new ByteBufferInputStream(buffer),
+                            SilentChemObjectBuilder.getInstance()));
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Decompresses a gzip compressed file and collects complete records until
+     * a chunk has at least <code>chunkSize</code> characters
+     */
+    private class GzipChunks implements TaskSource<IAtomContainer> {
+        private final BufferedReader reader;
+
+        GzipChunks() throws IOException {
+            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file),
+                    BUFFER_SIZE)), BUFFER_SIZE);
+        }
+
+        @Override
+        public Callable<List<IAtomContainer>> next() throws IOException {
+            StringBuilder chunk = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                chunk.append(line).append('\n');
+                if (line.startsWith("$$$$") && chunk.length() >= chunkSize) {
+                    break;
+                }
+            }
+            if (chunk.length() == 0) {
+                return null;
+            }
+            final String records = chunk.toString();
+            return new Callable<List<IAtomContainer>>() {
+                @Override
+                public List<IAtomContainer> call() throws IOException {
+                    return parse(new IteratingMDLReader(new StringReader(records), SilentChemObjectBuilder
+                            .getInstance()));
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads a mapped part of a file
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
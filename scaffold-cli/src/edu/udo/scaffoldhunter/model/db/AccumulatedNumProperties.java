@@ -0,0 +1,217 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.db;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import edu.udo.scaffoldhunter.model.AccumulationFunction;
+
+/**
+ * The accumulated values of a molecule NumProperty for all scaffolds of a
+ * subtree, as returned by
+ * {@link DbManager#getAccNumPropertyStatistics(PropertyDefinition, Subset, Scaffold, boolean)}
+ * . For each scaffold the count, sum, minimum and maximum of the defined
+ * property values are stored, so every {@link AccumulationFunction} can be
+ * evaluated without querying the database again. Additionally the minimum and
+ * maximum over all single molecule values are stored.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class AccumulatedNumProperties {
+
+    private final Map<Scaffold, Statistics> statistics;
+
+    private final double moleculeMinimum;
+    private final double moleculeMaximum;
+
+    /**
+     * Creates a new result
+     * 
+     * @param statistics
+     *            the statistics for each scaffold. Scaffolds without any defined
+     *            property value are mapped to <code>null</code>
+     * @param moleculeMinimum
+     *            the minimum of all molecule values
+     * @param moleculeMaximum
+     *            the maximum of all molecule values
+     */
+    public AccumulatedNumProperties(Map<Scaffold, Statistics> statistics, double moleculeMinimum,
+            double moleculeMaximum) {
+        this.statistics = statistics;
+        this.moleculeMinimum = moleculeMinimum;
+        this.moleculeMaximum = moleculeMaximum;
+    }
+
+    /**
+     * @param scaffold
+     *            the scaffold
+     * @return the statistics of the given scaffold or <code>null</code> if the
+     *         property is not defined for any of its molecules
+     */
+    public Statistics get(Scaffold scaffold) {
+        return statistics.get(scaffold);
+    }
+
+    /**
+     * Evaluates an accumulation function for every scaffold
+     * 
+     * @param accumulation
+     *            the accumulation function
+     * @return a map containing the accumulated value for each scaffold, or
+     *         <code>null</code> if the property is not defined for any of its
+     *         molecules
+     */
+    public Map<Scaffold, Double> getValues(AccumulationFunction accumulation) {
+        Map<Scaffold, Double> values = Maps.newHashMapWithExpectedSize(statistics.size());
+        for (Map.Entry<Scaffold, Statistics> e : statistics.entrySet()) {
+            values.put(e.getKey(), e.getValue() == null ? null : e.getValue().get(accumulation));
+        }
+        return values;
+    }
+
+    /**
+     * @return the minimum of all molecule values or
+     *         <code>Double.POSITIVE_INFINITY</code> if there are none
+     */
+    public double getMoleculeMinimum() {
+        return moleculeMinimum;
+    }
+
+    /**
+     * @return the maximum of all molecule values or
+     *         <code>Double.NEGATIVE_INFINITY</code> if there are none
+     */
+    public double getMoleculeMaximum() {
+        return moleculeMaximum;
+    }
+
+    /**
+     * The count, sum, minimum and maximum of a non-empty set of values
+     */
+    public static class Statistics {
+        private int count;
+        private double sum;
+        private double minimum;
+        private double maximum;
+
+        /**
+         * Creates new statistics
+         * 
+         * @param count
+         *            the number of values
+         * @param sum
+         *            the sum of all values
+         * @param minimum
+         *            the minimal value
+         * @param maximum
+         *            the maximal value
+         */
+        public Statistics(int count, double sum, double minimum, double maximum) {
+            this.count = count;
+            this.sum = sum;
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        /**
+         * Creates a copy of other statistics
+         * 
+         * @param other
+         *            the statistics to copy
+         */
+        public Statistics(Statistics other) {
+            this(other.count, other.sum, other.minimum, other.maximum);
+        }
+
+        /**
+         * Adds the values of other statistics to these statistics
+         * 
+         * @param other
+         *            the other statistics
+         */
+        public void add(Statistics other) {
+            count += other.count;
+            sum += other.sum;
+            minimum = Math.min(minimum, other.minimum);
+            maximum = Math.max(maximum, other.maximum);
+        }
+
+        /**
+         * @param accumulation
+         *            the accumulation function
+         * @return the accumulated value
+         */
+        public double get(AccumulationFunction accumulation) {
+            switch (accumulation) {
+            case Average:
+                return getAverage();
+            case Maximum:
+                return maximum;
+            case Minimum:
+                return minimum;
+            case Sum:
+                return sum;
+            default:
+                throw new IllegalArgumentException("Unsupported accumulation function");
+            }
+        }
+
+        /**
+         * @return the number of values
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return the sum of all values
+         */
+        public double getSum() {
+            return sum;
+        }
+
+        /**
+         * @return the average of all values
+         */
+        public double getAverage() {
+            return sum / count;
+        }
+
+        /**
+         * @return the minimal value
+         */
+        public double getMinimum() {
+            return minimum;
+        }
+
+        /**
+         * @return the maximal value
+         */
+        public double getMaximum() {
+            return maximum;
+        }
+    }
+}
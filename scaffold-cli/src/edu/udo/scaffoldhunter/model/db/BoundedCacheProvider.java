@@ -0,0 +1,186 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.db;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.CacheProvider;
+import org.hibernate.cache.Timestamper;
+import org.hibernate.cache.UpdateTimestampsCache;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * An in-process second-level cache for hibernate. Each region holds at most
+ * {@value #MAX_ENTRIES} entries, which expire {@value #EXPIRE_MINUTES} minutes
+ * after they were written, so changes made by other clients of a shared
+ * database become visible after some time. The region of the update
+ * timestamps, which is needed to invalidate the query cache, is neither
+ * bounded nor expires.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+@SuppressWarnings("deprecation")
+public class BoundedCacheProvider implements CacheProvider {
+
+    /**
+     * maximal number of entries of each region
+     */
+    public static final int MAX_ENTRIES = 10000;
+    /**
+     * time after which an entry expires
+     */
+    public static final int EXPIRE_MINUTES = 10;
+
+    @Override
+    public Cache buildCache(String regionName, Properties properties) throws CacheException {
+        if (UpdateTimestampsCache.REGION_NAME.equals(regionName)) {
+            return new BoundedCache(regionName, CacheBuilder.newBuilder().<Object, Object> build());
+        }
+        return new BoundedCache(regionName, CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES)
+                .expireAfterWrite(EXPIRE_MINUTES, TimeUnit.MINUTES).<Object, Object> build());
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return Timestamper.next();
+    }
+
+    @Override
+    public void start(Properties properties) throws CacheException {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return false;
+    }
+
+    /**
+     * A single cache region backed by a guava cache
+     */
+    private static class BoundedCache implements Cache {
+        private final String regionName;
+        private final com.google.common.cache.Cache<Object, Object> cache;
+
+        BoundedCache(String regionName, com.google.common.cache.Cache<Object, Object> cache) {
+            this.regionName = regionName;
+            this.cache = cache;
+        }
+
+        @Override
+        public Object read(Object key) {
+            return cache.getIfPresent(key);
+        }
+
+        @Override
+        public Object get(Object key) {
+            return cache.getIfPresent(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            cache.put(key, value);
+        }
+
+        @Override
+        public void update(Object key, Object value) {
+            cache.put(key, value);
+        }
+
+        @Override
+        public void remove(Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void clear() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void destroy() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void lock(Object key) {
+            // the concurrency strategies of hibernate lock themselves
+        }
+
+        @Override
+        public void unlock(Object key) {
+        }
+
+        @Override
+        public long nextTimestamp() {
+            return Timestamper.next();
+        }
+
+        @Override
+        public int getTimeout() {
+            // one minute, same as hibernate's HashtableCache
+            return Timestamper.ONE_MS * 60000;
+        }
+
+        @Override
+        public String getRegionName() {
+            return regionName;
+        }
+
+        @Override
+        public long getSizeInMemory() {
+            return -1;
+        }
+
+        @Override
+        public long getElementCountInMemory() {
+            return cache.size();
+        }
+
+        @Override
+        public long getElementCountOnDisk() {
+            return 0;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Map toMap() {
+            return cache.asMap();
+        }
+
+        @Override
+        public String toString() {
+            return "BoundedCache(" + regionName + ")";
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.db;
+
+/**
+ * A snapshot of the usage of the second-level and query cache of a
+ * {@link DbManager} since its creation
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long queryHits;
+    private final long queryMisses;
+    private final long statements;
+
+    /**
+     * @param hits
+     *            the number of entities found in the second-level cache
+     * @param misses
+     *            the number of entities not found in the second-level cache
+     * @param queryHits
+     *            the number of query results found in the query cache
+     * @param queryMisses
+     *            the number of query results not found in the query cache
+     * @param statements
+     *            the number of prepared JDBC statements, i.e. the number of
+     *            database round trips
+     */
+    public CacheStatistics(long hits, long misses, long queryHits, long queryMisses, long statements) {
+        this.hits = hits;
+        this.misses = misses;
+        this.queryHits = queryHits;
+        this.queryMisses = queryMisses;
+        this.statements = statements;
+    }
+
+    /**
+     * @return the number of entities found in the second-level cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of entities not found in the second-level cache
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of query results found in the query cache
+     */
+    public long getQueryHits() {
+        return queryHits;
+    }
+
+    /**
+     * @return the number of query results not found in the query cache
+     */
+    public long getQueryMisses() {
+        return queryMisses;
+    }
+
+    /**
+     * @return the number of prepared JDBC statements
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entity cache %d hits, %d misses; query cache %d hits, %d misses; %d statements", hits,
+                misses, queryHits, queryMisses, statements);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.db;
+
+/**
+ * A snapshot of the usage of the JDBC connection pool of a {@link DbManager}
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class ConnectionPoolStatistics {
+    private final int poolSize;
+    private final int activeConnections;
+    private final int maxActiveConnections;
+    private final long requests;
+    private final long waits;
+    private final long totalWaitTime;
+    private final long maxWaitTime;
+
+    /**
+     * @param poolSize
+     *            the maximal number of connections
+     * @param activeConnections
+     *            the number of connections currently in use
+     * @param maxActiveConnections
+     *            the maximal number of connections used at the same time
+     * @param requests
+     *            the number of requested connections
+     * @param waits
+     *            the number of requests which had to wait for a free
+     *            connection
+     * @param totalWaitTime
+     *            the total time spent waiting for free connections in
+     *            milliseconds
+     * @param maxWaitTime
+     *            the longest time spent waiting for a free connection in
+     *            milliseconds
+     */
+    public ConnectionPoolStatistics(int poolSize, int activeConnections, int maxActiveConnections, long requests,
+            long waits, long totalWaitTime, long maxWaitTime) {
+        this.poolSize = poolSize;
+        this.activeConnections = activeConnections;
+        this.maxActiveConnections = maxActiveConnections;
+        this.requests = requests;
+        this.waits = waits;
+        this.totalWaitTime = totalWaitTime;
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    /**
+     * @return the maximal number of connections
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return the number of connections currently in use
+     */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    /**
+     * @return the maximal number of connections used at the same time
+     */
+    public int getMaxActiveConnections() {
+        return maxActiveConnections;
+    }
+
+    /**
+     * @return the number of requested connections
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return the number of requests which had to wait for a free connection
+     */
+    public long getWaits() {
+        return waits;
+    }
+
+    /**
+     * @return the total time spent waiting for free connections in
+     *         milliseconds
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return the longest time spent waiting for a free connection in
+     *         milliseconds
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d connections active (max %d), %d requests, %d waits, %d ms waited (max %d ms)",
+                activeConnections, poolSize, maxActiveConnections, requests, waits, totalWaitTime, maxWaitTime);
+    }
+}
@@ -104,6 +104,25 @@ public interface DbManager {
      */
     public boolean isConnected();
 
+    /**
+     * Returns the usage of the JDBC connection pool. All methods of a
+     * {@link DbManager} may be called concurrently from several threads, each
+     * thread uses its own connection while it runs a transaction.
+     * 
+     * @return the current usage of the connection pool or <code>null</code>
+     *         if there is no connection pool
+     */
+    public ConnectionPoolStatistics getConnectionPoolStatistics();
+
+    /**
+     * Returns the hits and misses of the cache for read-mostly entities like
+     * {@link Dataset}s and {@link PropertyDefinition}s and the number of
+     * database round trips.
+     * 
+     * @return the cache statistics or <code>null</code> if there is no cache
+     */
+    public CacheStatistics getCacheStatistics();
+
     /**
      * @return a list of all Profiles
      * @throws DatabaseException
@@ -198,6 +217,22 @@ public interface DbManager {
      */
     public void loadCurrentSession(Profile profile) throws DatabaseException;
 
+    /**
+     * Loads the molecules of a {@link Subset}. {@link #getSession} and
+     * {@link #loadCurrentSession} only load the structure of the subset tree
+     * and the size of each subset. The molecules of such a subset have to be
+     * loaded by this method before they are accessed, the {@link Subset}
+     * itself never accesses the database. The molecules of a subset are taken
+     * from its parent subset, which is loaded first, so each molecule is
+     * represented by the same object in all subsets of a session. Does
+     * nothing if the molecules are already loaded.
+     * 
+     * @param subset
+     *            the {@link Subset}
+     * @throws DatabaseException
+     */
+    public void loadMolecules(Subset subset) throws DatabaseException;
+
     /**
      * Checks if the session can be saved using the current database connection.
      * The session can be to large for some database configurations (e.g. MySQL
@@ -232,6 +267,79 @@ public interface DbManager {
      */
     public List<Molecule> getAllMolecules(Dataset dataset) throws DatabaseException;
 
+    /**
+     * Returns the ids of all molecules in the given dataset
+     * 
+     * @param dataset
+     *            The dataset where the molecules belongs to.
+     * @return the ids in ascending order
+     * @throws DatabaseException
+     */
+    public int[] getMoleculeIds(Dataset dataset) throws DatabaseException;
+
+    /**
+     * Returns the values of a numerical molecule property as a column, without
+     * creating any property objects.
+     * 
+     * @param propDef
+     *            the {@link PropertyDefinition} of the property
+     * @param moleculeIds
+     *            the ids of the molecules in ascending order
+     * @return the value of each molecule in the order of
+     *         <code>moleculeIds</code>, <code>NaN</code> if the property is
+     *         not defined for a molecule
+     * @throws DatabaseException
+     */
+    public double[] getNumPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) throws DatabaseException;
+
+    /**
+     * Returns the values of a string molecule property as a column, without
+     * creating any property objects.
+     * 
+     * @param propDef
+     *            the {@link PropertyDefinition} of the property
+     * @param moleculeIds
+     *            the ids of the molecules in ascending order
+     * @return the value of each molecule in the order of
+     *         <code>moleculeIds</code>, <code>null</code> if the property is
+     *         not defined for a molecule
+     * @throws DatabaseException
+     */
+    public String[] getStringPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) throws DatabaseException;
+
+    /**
+     * Loads the packed bit fingerprints of a molecule property, without
+     * creating any property objects. Molecules whose fingerprint is not
+     * packed or has a different length than the first fingerprint are
+     * skipped.
+     * 
+     * @param propDef
+     *            the {@link PropertyDefinition} of a bit fingerprint property
+     * @return the fingerprints in the order of the molecule ids
+     * @throws DatabaseException
+     */
+    public PackedFingerprints getPackedFingerprints(PropertyDefinition propDef) throws DatabaseException;
+
+    /**
+     * Returns the values of some molecule properties as text rows, e.g. for an
+     * export. The values are read by a scalar projection without creating any
+     * property objects or loading the structures, so the properties do not
+     * need to be locked. Numerical values are formatted by
+     * {@link Double#toString(double)}, packed fingerprints in their textual
+     * representation.
+     * 
+     * @param molecules
+     *            the molecules
+     * @param propDefs
+     *            the {@link PropertyDefinition}s of molecule properties
+     * @return the value of property <code>j</code> of molecule <code>i</code>
+     *         at <code>[i][j]</code>, <code>null</code> if the property is
+     *         not defined for a molecule
+     * @throws DatabaseException
+     */
+    public String[][] getPropertyRows(List<Molecule> molecules, List<PropertyDefinition> propDefs)
+            throws DatabaseException;
+
     /**
      * Getter for a new root {@link Subset} including all {@link Molecule
      * Molecules} of the current {@link Dataset} which is detemined by the given
@@ -365,6 +473,27 @@ public interface DbManager {
      */
     public void saveAllAsNew(Iterable<? extends DbObject> objs) throws DatabaseException;
 
+    /**
+     * Stores new {@link Property Properties} in the Database with JDBC batch
+     * inserts in a single transaction. Unlike
+     * {@link #saveAllAsNew(Iterable)} the properties do not become persistent
+     * objects, i.e. they do not get an id and they are not associated with a
+     * session.
+     * 
+     * The given property definitions are updated in the same transaction,
+     * e.g. to store the progress of a calculation together with its
+     * results.
+     * 
+     * @param properties
+     *            the properties to insert, their structure and property
+     *            definition must already be stored
+     * @param propertyDefinitions
+     *            stored property definitions to update
+     * @throws DatabaseException
+     */
+    public void insertProperties(Collection<? extends Property> properties,
+            Collection<PropertyDefinition> propertyDefinitions) throws DatabaseException;
+
     /**
      * Deletes a {@link Collection} of objects in the Database.
      * 
@@ -466,6 +595,19 @@ public interface DbManager {
      */
     public String getSvgString(Structure structure) throws DatabaseException;
 
+    /**
+     * Fetches the SVG Strings for several {@link Structure}s from Database.
+     * The Strings are fetched in a few large queries instead of one query per
+     * {@link Structure}.
+     * 
+     * @param structures
+     *            the {@link Structure}s
+     * @return a map containing the SVG String for each given {@link Structure}
+     *         which has one
+     * @throws DatabaseException
+     */
+    public Map<Structure, String> getSvgStrings(Collection<? extends Structure> structures) throws DatabaseException;
+
     /**
      * Fetches the Mol String for one {@link Structure} from Database
      * 
@@ -475,6 +617,19 @@ public interface DbManager {
      */
     public String getStrucMol(Structure structure) throws DatabaseException;
 
+    /**
+     * Fetches the Mol Strings for several {@link Structure}s from Database.
+     * The Strings are fetched in a few large queries instead of one query per
+     * {@link Structure}.
+     * 
+     * @param structures
+     *            the {@link Structure}s
+     * @return a map containing the Mol String for each given {@link Structure}
+     *         which has one
+     * @throws DatabaseException
+     */
+    public Map<Structure, String> getStrucMols(Collection<? extends Structure> structures) throws DatabaseException;
+
     /**
      * Calculates accumulations of a property over the whole dataset. This is a
      * flat query over the complete dataset. Subsets are not respected.
@@ -552,6 +707,30 @@ public interface DbManager {
             AccumulationFunction accumulation, Subset subset, Scaffold root, boolean subtreeCumulative)
             throws DatabaseException;
 
+    /**
+     * Calculates count, sum, minimum and maximum of a molecule NumProperty for
+     * all Scaffolds in the Subtree rooted at <code>root</code> with a single
+     * grouped query. The molecule values themselves are not loaded. See
+     * {@link #getAccNumProperties(PropertyDefinition, AccumulationFunction, Subset, Scaffold, boolean)
+     * getAccNumProperties} for a description of the parameters.
+     * 
+     * @param propDef
+     *            The requested {@link PropertyDefinition}, which must describe
+     *            a molecule NumProperty
+     * @param subset
+     *            Only molecules in this subset will be taken into account
+     * @param root
+     *            The root of the subtree for which values will be calculated
+     * @param subtreeCumulative
+     *            whether accumulation is calculated over the whole subtree of
+     *            each scaffold or only over the direct children
+     * @return the accumulated values for each scaffold in the subtree and the
+     *         minimum and maximum over all molecules in the subtree
+     * @throws DatabaseException
+     */
+    public AccumulatedNumProperties getAccNumPropertyStatistics(PropertyDefinition propDef, Subset subset,
+            Scaffold root, boolean subtreeCumulative) throws DatabaseException;
+
     /**
      * Calculates and returns a given accumulated property for a given subset.
      * This method does not consider any tree structure, but just accumulates
@@ -21,16 +21,20 @@
 
 package edu.udo.scaffoldhunter.model.db;
 
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -38,6 +42,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 import javassist.NotFoundException;
 
@@ -48,33 +54,48 @@ import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.classic.Session;
+import org.hibernate.connection.ConnectionProvider;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.dialect.MySQL5InnoDBDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.jdbc.Work;
+import org.hibernate.stat.Statistics;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 import org.hibernate.tool.hbm2ddl.SchemaValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Function;
-import com.google.common.base.Joiner;
+import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Striped;
 
+import edu.udo.scaffoldhunter.data.ConnectionData;
 import edu.udo.scaffoldhunter.model.AccumulationFunction;
+import edu.udo.scaffoldhunter.model.NumComparisonFunction;
 import edu.udo.scaffoldhunter.model.PropertyType;
+import edu.udo.scaffoldhunter.model.StringComparisonFunction;
 import edu.udo.scaffoldhunter.model.dataimport.MergeIterator;
+import edu.udo.scaffoldhunter.model.util.MoleculeBitmap;
 import edu.udo.scaffoldhunter.model.util.SHPredicates;
 import edu.udo.scaffoldhunter.model.util.Scaffolds;
+import edu.udo.scaffoldhunter.model.util.Subsets;
 import edu.udo.scaffoldhunter.util.Orderings;
 
 /**
@@ -92,9 +113,80 @@ public class DbManagerHibernate implements DbManager {
     private String connectionPassword;
     private String hibernateDialect;
     private Configuration hibernateConfiguration;
+    private boolean schemaUpgraded = false;
 
     private static Logger logger = LoggerFactory.getLogger(DbManagerHibernate.class);
 
+    /**
+     * maximal number of parameters in a single IN clause
+     */
+    private static final int IN_CLAUSE_SIZE = 1000;
+
+    /**
+     * number of molecules fetched by a single query when loading the
+     * molecules of a subset
+     */
+    private static final int MOLECULE_PAGE_SIZE = 10000;
+
+    /**
+     * number of structure ids bound to a single statement when loading
+     * properties
+     */
+    private static final int PROPERTY_BATCH_SIZE = 1000;
+
+    /**
+     * indexes which are created in databases created before they were part of
+     * the mapping: index name, table and columns
+     */
+    private static final String[][] INDEXES = {
+            { "molecule_num_properties_value_idx", "molecule_num_properties", "property_id, value" },
+            { "scaffold_num_properties_value_idx", "scaffold_num_properties", "property_id, value" },
+            { "molecule_smiles_hash_index", "molecule_data", "dataset_id, smiles_hash" } };
+
+    /**
+     * the version of the schema created by the current mapping. The version
+     * of a database is stored in the schema_version table, databases with a
+     * lower version are upgraded by {@link #upgradeSchema()}:
+     * <ol>
+     * <li>molecule_data.smiles_hash</li>
+     * <li>packed bit fingerprints in the fingerprint column of the string
+     * property tables</li>
+     * <li>subset_data.membership</li>
+     * <li>property_definition.calculated_up_to</li>
+     * </ol>
+     */
+    private static final int SCHEMA_VERSION = 4;
+
+    /**
+     * number of rows read and updated at once when upgrading the data of an
+     * existing database
+     */
+    private static final int UPGRADE_PAGE_SIZE = 1000;
+
+    /**
+     * tables of string properties whose bit fingerprints are packed into the
+     * fingerprint column
+     */
+    private static final String[] STRING_PROPERTY_TABLES = { "molecule_string_properties",
+            "scaffold_string_properties" };
+
+    /**
+     * number of rows sent by a single batch when inserting properties
+     */
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    /**
+     * cached statistics of molecule properties by property definition id,
+     * used to order filters
+     */
+    private final Cache<Integer, PropertyStatistics> propertyStatistics = CacheBuilder.newBuilder()
+            .expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+    /**
+     * guards the property maps and lock counts of the structures
+     */
+    private final Striped<Lock> structureLocks = Striped.lock(256);
+
     @Override
     public String getConnectionDriverClass() {
         return connectionDriverClass;
@@ -145,6 +237,49 @@ public class DbManagerHibernate implements DbManager {
      */
     public DbManagerHibernate(String driverClass, String hibernateDialect, String url, String schema, String username,
             String password, boolean autoInitialize, boolean recreate) throws DatabaseException {
+        this(driverClass, hibernateDialect, url, schema, username, password, autoInitialize, recreate,
+                ConnectionData.DEFAULT_POOL_SIZE, ConnectionData.DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param driverClass
+     *            the JDBC driver class. e.g. com.mysql.jdbc.Driver
+     * @param hibernateDialect
+     *            The Dialect which should be used by Hibernate. This must be
+     *            compatible with the driverClass.
+     * @param url
+     *            the url for connecting. e.g.
+     *            jdbc:mysql://localhost/hibernate_test
+     * @param schema
+     *            the schema name
+     * @param username
+     *            the username for connecting
+     * @param password
+     *            the password for connecting
+     * @param autoInitialize
+     *            automatically invoke initializeSessionFactory()
+     * @param recreate
+     *            automatically invoke createAndExportScheme()
+     * @param poolSize
+     *            the maximal number of pooled JDBC connections, which is also
+     *            the maximal number of concurrent transactions. Values less
+     *            than 1 are replaced by the default pool size.
+     * @param statementCacheSize
+     *            the number of prepared statements cached for each connection
+     *            by the JDBC driver, 0 disables the cache. Only supported by
+     *            MySQL.
+     * @throws DatabaseException
+     */
+    public DbManagerHibernate(String driverClass, String hibernateDialect, String url, String schema, String username,
+            String password, boolean autoInitialize, boolean recreate, int poolSize, int statementCacheSize)
+            throws DatabaseException {
+        if (poolSize <= 0) {
+            logger.warn("Invalid connection pool size {}, using {} instead", poolSize,
+                    ConnectionData.DEFAULT_POOL_SIZE);
+            poolSize = ConnectionData.DEFAULT_POOL_SIZE;
+        }
         connectionDriverClass = driverClass.trim();
         connectionUrl = url.trim();
         connectionSchema = schema.trim();
@@ -158,15 +293,23 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateConfiguration = new Configuration().configure();
             hibernateConfiguration.setProperty("connection.driver_class", connectionDriverClass);
-            hibernateConfiguration.setProperty("connection.url", connectionUrl);
+            hibernateConfiguration.setProperty("connection.url", getJdbcUrl());
             hibernateConfiguration.setProperty("connection.username", connectionUsername);
-            hibernateConfiguration.setProperty("hibernate.connection.url", connectionUrl);
+            hibernateConfiguration.setProperty("hibernate.connection.url", getJdbcUrl());
             hibernateConfiguration.setProperty("hibernate.connection.username", connectionUsername);
             hibernateConfiguration.setProperty("hibernate.dialect", hibernateDialect);
             hibernateConfiguration.setProperty("hibernate.hbm2ddl.auto", "validate");
             hibernateConfiguration.setProperty("hibernate.default_schema", schema);
             hibernateConfiguration.setProperty("hibernate.connection.provider_class",
                     SetSchemaConnectionProvider.class.getCanonicalName());
+            hibernateConfiguration.setProperty("hibernate.connection.pool_size", Integer.toString(poolSize));
+            if (isMySql() && statementCacheSize > 0) {
+                // properties of the MySQL JDBC driver
+                hibernateConfiguration.setProperty("hibernate.connection.cachePrepStmts", "true");
+                hibernateConfiguration.setProperty("hibernate.connection.prepStmtCacheSize",
+                        Integer.toString(statementCacheSize));
+                hibernateConfiguration.setProperty("hibernate.connection.prepStmtCacheSqlLimit", "4096");
+            }
             if (password != null) {
                 hibernateConfiguration.setProperty("connection.password", connectionPassword);
                 hibernateConfiguration.setProperty("hibernate.connection.password", connectionPassword);
@@ -186,12 +329,405 @@ public class DbManagerHibernate implements DbManager {
 
     @Override
     public void initializeSessionFactory() throws DatabaseException {
+        upgradeSchema();
         try {
             sessionFactory = hibernateConfiguration.buildSessionFactory();
         } catch (HibernateException ex) {
             logger.error("Initialization failed.\n{}\n{}", ex, stacktrace(ex));
             throw new DatabaseException("Initialization failed", ex);
         }
+        createIndexes();
+    }
+
+    private boolean isMySql() {
+        return hibernateDialect.equals(MySQL5InnoDBDialect.class.getCanonicalName());
+    }
+
+    /**
+     * The url passed to the driver. Server side cursors of the MySQL driver
+     * are enabled, otherwise it ignores the fetch size and reads the whole
+     * result at once, e.g. all fingerprints read by
+     * {@link #getPackedFingerprints(PropertyDefinition)}.
+     * 
+     * @return the connection url, for MySQL with
+     *         <code>useCursorFetch=true</code> unless the url sets it already
+     */
+    private String getJdbcUrl() {
+        if (!isMySql() || connectionUrl.contains("useCursorFetch=")) {
+            return connectionUrl;
+        }
+        return connectionUrl.concat(connectionUrl.contains("?") ? "&" : "?").concat("useCursorFetch=true");
+    }
+
+    /**
+     * Upgrades a database created by an older version of the mapping to
+     * {@link #SCHEMA_VERSION}. This has to be done before the schema is
+     * validated. Each step runs once: the reached version is stored after
+     * each step, and the steps are skipped entirely if the database is
+     * already up to date. A failed step is rolled back as far as it is not
+     * committed yet, its version is not stored and it is retried on the next
+     * start.
+     * 
+     * @throws DatabaseException
+     *             if a step fails
+     */
+    private synchronized void upgradeSchema() throws DatabaseException {
+        if (schemaUpgraded) {
+            return;
+        }
+        Connection dbConnection = getNativeDbConnection();
+        try {
+            if (!columnExists(dbConnection, "molecule_data", null)) {
+                // no schema yet, createAndExportSchema stores the version
+                return;
+            }
+            int version = readSchemaVersion(dbConnection);
+            if (version < 1) {
+                addSmilesHashes(dbConnection);
+                writeSchemaVersion(dbConnection, 1);
+            }
+            if (version < 2) {
+                packBitFingerprints(dbConnection);
+                writeSchemaVersion(dbConnection, 2);
+            }
+            if (version < 3) {
+                addSubsetMemberships(dbConnection);
+                writeSchemaVersion(dbConnection, 3);
+            }
+            if (version < 4) {
+                addCalculationProgress(dbConnection);
+                writeSchemaVersion(dbConnection, 4);
+            }
+            schemaUpgraded = true;
+        } catch (SQLException ex) {
+            logger.error("Upgrading the database schema failed.\n{}\n{}", ex, stacktrace(ex));
+            try {
+                if (!dbConnection.getAutoCommit()) {
+                    dbConnection.rollback();
+                }
+            } catch (SQLException e) {
+                logger.warn("Failed to roll back the schema upgrade.");
+            }
+            throw new DatabaseException("Upgrading the database schema failed", ex);
+        } finally {
+            try {
+                dbConnection.close();
+            } catch (SQLException ex) {
+                logger.warn("Failed to close database connection.");
+            }
+        }
+    }
+
+    /**
+     * @param dbConnection
+     *            the connection
+     * @param table
+     *            the table name
+     * @param column
+     *            the column name or <code>null</code> to test whether the
+     *            table exists
+     * @return whether the column exists
+     * @throws SQLException
+     */
+    private boolean columnExists(Connection dbConnection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = dbConnection.getMetaData();
+        // MySQL stores the schemas in the catalogs, HSQLDB uses upper case
+        // names
+        ResultSet columns = isMySql() ? metaData.getColumns(connectionSchema, null, table, null) : metaData
+                .getColumns(null, connectionSchema.toUpperCase(), table.toUpperCase(), null);
+        boolean exists = false;
+        while (columns.next()) {
+            exists |= column == null || column.equalsIgnoreCase(columns.getString("COLUMN_NAME"));
+        }
+        columns.close();
+        return exists;
+    }
+
+    /**
+     * @return the stored schema version, 0 for databases without a
+     *         schema_version table
+     * @throws SQLException
+     */
+    private int readSchemaVersion(Connection dbConnection) throws SQLException {
+        if (!columnExists(dbConnection, "schema_version", "version")) {
+            return 0;
+        }
+        Statement statement = dbConnection.createStatement();
+        ResultSet result = statement.executeQuery("SELECT MAX(version) FROM " + connectionSchema
+                + ".schema_version");
+        int version = result.next() ? result.getInt(1) : 0;
+        result.close();
+        statement.close();
+        return version;
+    }
+
+    private void writeSchemaVersion(Connection dbConnection, int version) throws SQLException {
+        dbConnection.setAutoCommit(true);
+        Statement statement = dbConnection.createStatement();
+        if (!columnExists(dbConnection, "schema_version", "version")) {
+            statement.execute("CREATE TABLE " + connectionSchema + ".schema_version (version INTEGER NOT NULL)");
+        }
+        statement.execute("DELETE FROM " + connectionSchema + ".schema_version");
+        statement.execute("INSERT INTO " + connectionSchema + ".schema_version (version) VALUES (" + version + ")");
+        statement.close();
+        logger.info("Database schema version is now {}", version);
+    }
+
+    /**
+     * Schema version 1: adds the smiles_hash column to the molecule table and
+     * calculates the hashes. The molecules are read in pages ordered by id,
+     * so no large result set is kept open while the hashes are written.
+     * 
+     * @throws SQLException
+     */
+    private void addSmilesHashes(Connection dbConnection) throws SQLException {
+        String table = connectionSchema + ".molecule_data";
+        if (!columnExists(dbConnection, "molecule_data", "smiles_hash")) {
+            logger.info("Adding column smiles_hash to {}", table);
+            dbConnection.setAutoCommit(true);
+            Statement statement = dbConnection.createStatement();
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN smiles_hash BIGINT");
+            statement.close();
+        }
+
+        dbConnection.setAutoCommit(false);
+        PreparedStatement select = dbConnection.prepareStatement("SELECT m.structure_id, s.smiles FROM " + table
+                + " m JOIN " + connectionSchema + ".structure_data s ON m.structure_id = s.structure_id"
+                + " WHERE m.smiles_hash IS NULL AND m.structure_id > ? ORDER BY m.structure_id");
+        select.setMaxRows(UPGRADE_PAGE_SIZE);
+        PreparedStatement update = dbConnection.prepareStatement("UPDATE " + table
+                + " SET smiles_hash = ? WHERE structure_id = ?");
+        int[] ids = new int[UPGRADE_PAGE_SIZE];
+        long[] hashes = new long[UPGRADE_PAGE_SIZE];
+        int lastId = Integer.MIN_VALUE;
+        int count = 0;
+        int size;
+        do {
+            select.setInt(1, lastId);
+            ResultSet rows = select.executeQuery();
+            size = 0;
+            while (size < UPGRADE_PAGE_SIZE && rows.next()) {
+                ids[size] = rows.getInt(1);
+                hashes[size] = Structure.hashSmiles(rows.getString(2));
+                size++;
+            }
+            rows.close();
+            for (int i = 0; i < size; i++) {
+                update.setLong(1, hashes[i]);
+                update.setInt(2, ids[i]);
+                update.addBatch();
+            }
+            if (size > 0) {
+                update.executeBatch();
+                dbConnection.commit();
+                lastId = ids[size - 1];
+                count += size;
+            }
+        } while (size == UPGRADE_PAGE_SIZE);
+        update.close();
+        select.close();
+        dbConnection.setAutoCommit(true);
+        logger.info("Calculated {} smiles hashes", count);
+    }
+
+    /**
+     * Schema version 2: adds the fingerprint column to the string property
+     * tables and packs the bit fingerprints which are still stored as text.
+     * The rows are read in pages ordered by id and each page is updated in
+     * one transaction. The text of a row is only replaced if the packed
+     * fingerprint reproduces it exactly, other values are kept as text.
+     * 
+     * @throws SQLException
+     */
+    private void packBitFingerprints(Connection dbConnection) throws SQLException {
+        for (String tableName : STRING_PROPERTY_TABLES) {
+            String table = connectionSchema + "." + tableName;
+            if (!columnExists(dbConnection, tableName, "fingerprint")) {
+                logger.info("Adding column fingerprint to {}", table);
+                dbConnection.setAutoCommit(true);
+                Statement statement = dbConnection.createStatement();
+                // the column types Hibernate uses for the binary mapping
+                statement.execute("ALTER TABLE " + table + " ADD COLUMN fingerprint "
+                        + (isMySql() ? "BLOB" : "VARBINARY(" + StringProperty.MAX_FINGERPRINT_BYTES + ")"));
+                statement.close();
+            }
+
+            String id = tableName.replace("_properties", "_property_id");
+            dbConnection.setAutoCommit(false);
+            PreparedStatement select = dbConnection.prepareStatement("SELECT p." + id + ", p.value, d.propertyType"
+                    + " FROM " + table + " p JOIN " + connectionSchema + ".property_definition d"
+                    + " ON p.property_id = d.property_id WHERE d.propertyType IN ('"
+                    + PropertyType.BitFingerprint.name() + "', '" + PropertyType.BitStringFingerprint.name()
+                    + "') AND p.fingerprint IS NULL AND p." + id + " > ? ORDER BY p." + id);
+            select.setMaxRows(UPGRADE_PAGE_SIZE);
+            PreparedStatement update = dbConnection.prepareStatement("UPDATE " + table
+                    + " SET fingerprint = ?, value = '' WHERE " + id + " = ?");
+            int[] ids = new int[UPGRADE_PAGE_SIZE];
+            byte[][] fingerprints = new byte[UPGRADE_PAGE_SIZE][];
+            int lastId = Integer.MIN_VALUE;
+            int count = 0;
+            int size;
+            do {
+                select.setInt(1, lastId);
+                ResultSet rows = select.executeQuery();
+                size = 0;
+                while (size < UPGRADE_PAGE_SIZE && rows.next()) {
+                    ids[size] = rows.getInt(1);
+                    fingerprints[size] = StringProperty.packLossless(PropertyType.valueOf(rows.getString(3)),
+                            rows.getString(2));
+                    size++;
+                }
+                rows.close();
+                for (int i = 0; i < size; i++) {
+                    if (fingerprints[i] != null) {
+                        update.setBytes(1, fingerprints[i]);
+                        update.setInt(2, ids[i]);
+                        update.addBatch();
+                        count++;
+                    }
+                }
+                if (size > 0) {
+                    update.executeBatch();
+                    dbConnection.commit();
+                    lastId = ids[size - 1];
+                }
+            } while (size == UPGRADE_PAGE_SIZE);
+            update.close();
+            select.close();
+            dbConnection.setAutoCommit(true);
+            if (count > 0) {
+                logger.info("Packed {} bit fingerprints of {}", count, table);
+            }
+        }
+    }
+
+    /**
+     * Schema version 3: adds the membership column to the subset table and
+     * stores the molecule ids of each subset as {@link MoleculeBitmap}. The
+     * subsets are upgraded one at a time, each with its own commit.
+     * 
+     * @throws SQLException
+     */
+    private void addSubsetMemberships(Connection dbConnection) throws SQLException {
+        String table = connectionSchema + ".subset_data";
+        if (!columnExists(dbConnection, "subset_data", "membership")) {
+            logger.info("Adding column membership to {}", table);
+            dbConnection.setAutoCommit(true);
+            Statement statement = dbConnection.createStatement();
+            // the column types Hibernate uses for the binary mapping
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN membership "
+                    + (isMySql() ? "MEDIUMBLOB" : "VARBINARY(16777215)"));
+            statement.close();
+        }
+
+        dbConnection.setAutoCommit(false);
+        PreparedStatement selectSubset = dbConnection.prepareStatement("SELECT subset_id FROM " + table
+                + " WHERE membership IS NULL AND subset_id > ? ORDER BY subset_id");
+        selectSubset.setMaxRows(1);
+        PreparedStatement selectMolecules = dbConnection.prepareStatement("SELECT molecule_id FROM "
+                + connectionSchema + ".subset_molecule_relationship WHERE subset_id = ?");
+        PreparedStatement update = dbConnection.prepareStatement("UPDATE " + table
+                + " SET membership = ? WHERE subset_id = ?");
+        int lastId = Integer.MIN_VALUE;
+        int count = 0;
+        while (true) {
+            selectSubset.setInt(1, lastId);
+            ResultSet subsets = selectSubset.executeQuery();
+            boolean found = subsets.next();
+            if (found) {
+                lastId = subsets.getInt(1);
+            }
+            subsets.close();
+            if (!found) {
+                break;
+            }
+            selectMolecules.setInt(1, lastId);
+            ResultSet rows = selectMolecules.executeQuery();
+            int[] ids = new int[UPGRADE_PAGE_SIZE];
+            int size = 0;
+            while (rows.next()) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, 2 * size);
+                }
+                ids[size++] = rows.getInt(1);
+            }
+            rows.close();
+            update.setBytes(1, MoleculeBitmap.of(Arrays.copyOf(ids, size)).toBytes());
+            update.setInt(2, lastId);
+            update.executeUpdate();
+            dbConnection.commit();
+            count++;
+        }
+        update.close();
+        selectMolecules.close();
+        selectSubset.close();
+        dbConnection.setAutoCommit(true);
+        logger.info("Stored the membership of {} subsets", count);
+    }
+
+    /**
+     * Schema version 4: adds the calculated_up_to column to the property
+     * definition table. Existing property definitions are complete, so the
+     * column stays <code>null</code>.
+     * 
+     * @throws SQLException
+     */
+    private void addCalculationProgress(Connection dbConnection) throws SQLException {
+        String table = connectionSchema + ".property_definition";
+        if (!columnExists(dbConnection, "property_definition", "calculated_up_to")) {
+            logger.info("Adding column calculated_up_to to {}", table);
+            dbConnection.setAutoCommit(true);
+            Statement statement = dbConnection.createStatement();
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN calculated_up_to INTEGER");
+            statement.close();
+        }
+    }
+
+    /**
+     * Creates the {@link #INDEXES indexes} which are used by filters, property
+     * statistics and smiles lookups in databases created before these indexes
+     * were part of the mapping. Failing to create an index does only affect
+     * the performance, so errors are logged and ignored.
+     */
+    private void createIndexes() {
+        boolean mysql = isMySql();
+        Connection dbConnection = null;
+        try {
+            dbConnection = getNativeDbConnection();
+            DatabaseMetaData metaData = dbConnection.getMetaData();
+            for (String[] index : INDEXES) {
+                String table = index[1];
+                // MySQL stores the schemas in the catalogs, HSQLDB uses upper
+                // case names
+                ResultSet indexes = mysql ? metaData.getIndexInfo(connectionSchema, null, table, false, true)
+                        : metaData.getIndexInfo(null, connectionSchema.toUpperCase(), table.toUpperCase(), false,
+                                true);
+                boolean exists = false;
+                while (indexes.next()) {
+                    exists |= index[0].equalsIgnoreCase(indexes.getString("INDEX_NAME"));
+                }
+                indexes.close();
+                if (!exists) {
+                    logger.info("Creating index {}", index[0]);
+                    Statement statement = dbConnection.createStatement();
+                    statement.execute("CREATE INDEX " + index[0] + " ON " + connectionSchema + "." + table + " ("
+                            + index[2] + ")");
+                    statement.close();
+                }
+            }
+        } catch (SQLException ex) {
+            logger.warn("Creating indexes failed.\n{}\n{}", ex, stacktrace(ex));
+        } catch (DatabaseException ex) {
+            logger.warn("Creating indexes failed.\n{}\n{}", ex, stacktrace(ex));
+        } finally {
+            if (dbConnection != null) {
+                try {
+                    dbConnection.close();
+                } catch (SQLException ex) {
+                    logger.warn("Failed to close database connection.");
+                }
+            }
+        }
     }
 
     @Override
@@ -223,10 +759,26 @@ public class DbManagerHibernate implements DbManager {
         // export hibernate schema
         SchemaExport schemaTool = new SchemaExport(hibernateConfiguration);
         schemaTool.create(false, true);
+
+        // a new schema does not need any upgrades
+        dbConnection = getNativeDbConnection();
+        try {
+            writeSchemaVersion(dbConnection, SCHEMA_VERSION);
+            schemaUpgraded = true;
+        } catch (SQLException e) {
+            throw new DatabaseException("Could not store the schema version", e);
+        } finally {
+            try {
+                dbConnection.close();
+            } catch (SQLException e) {
+                throw new DatabaseException("Failed to close database connection.");
+            }
+        }
     }
 
     @Override
     public boolean validateSchema() throws DatabaseException {
+        upgradeSchema();
         try {
             new SchemaValidator(hibernateConfiguration).validate();
         } catch (HibernateException e) {
@@ -273,6 +825,29 @@ public class DbManagerHibernate implements DbManager {
         return sessionFactory != null;
     }
 
+    @Override
+    public ConnectionPoolStatistics getConnectionPoolStatistics() {
+        if (sessionFactory == null) {
+            return null;
+        }
+        ConnectionProvider provider = ((SessionFactoryImplementor) sessionFactory).getConnectionProvider();
+        if (provider instanceof SetSchemaConnectionProvider) {
+            return ((SetSchemaConnectionProvider) provider).getStatistics();
+        }
+        return null;
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics() {
+        if (sessionFactory == null || !sessionFactory.getStatistics().isStatisticsEnabled()) {
+            return null;
+        }
+        Statistics statistics = sessionFactory.getStatistics();
+        return new CacheStatistics(statistics.getSecondLevelCacheHitCount(),
+                statistics.getSecondLevelCacheMissCount(), statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(), statistics.getPrepareStatementCount());
+    }
+
     /**
      * This tries to roll back the last changes and closes the session. This
      * method should be always used if a HibernateException Occurs to not be in
@@ -312,7 +887,7 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            profiles = hibernateSession.createQuery("select username from Profile").list();
+            profiles = hibernateSession.createQuery("select username from Profile").setCacheable(true).list();
             hibernateSession.getTransaction().commit();
         } catch (HibernateException ex) {
             logger.error("Query from Profile failed.\n{}\n{}", ex, stacktrace(ex));
@@ -332,7 +907,7 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            datasets = hibernateSession.createQuery("select title from Dataset").list();
+            datasets = hibernateSession.createQuery("select title from Dataset").setCacheable(true).list();
             hibernateSession.getTransaction().commit();
         } catch (HibernateException ex) {
             logger.error("Query from Dataset failed.\n{}\n{}", ex, stacktrace(ex));
@@ -353,6 +928,7 @@ public class DbManagerHibernate implements DbManager {
             hibernateSession.beginTransaction();
             Query query = hibernateSession.createQuery("from Profile where username=:user");
             query.setString("user", username);
+            query.setCacheable(true);
             profile = (Profile) query.uniqueResult();
             hibernateSession.getTransaction().commit();
         } catch (HibernateException ex) {
@@ -485,6 +1061,7 @@ public class DbManagerHibernate implements DbManager {
                 throw new DatabaseException("Session not found");
             }
             session.setProfile(profile);
+            initSubsetTree(hibernateSession, session);
             hibernateSession.getTransaction().commit();
         } catch (HibernateException ex) {
             logger.error("Getting Session failed.\n{}\n{}", ex, stacktrace(ex));
@@ -505,6 +1082,7 @@ public class DbManagerHibernate implements DbManager {
             Query query = hibernateSession.createQuery("SELECT p.currentSession from Profile p where p = :profile");
             query.setParameter("profile", profile);
             currentSession = (edu.udo.scaffoldhunter.model.db.Session) query.uniqueResult();
+            initSubsetTree(hibernateSession, currentSession);
             hibernateSession.getTransaction().commit();
         } catch (HibernateException ex) {
             logger.error("Fetching Profile.currentSession failed.\n{}\n{}", ex, stacktrace(ex));
@@ -515,6 +1093,206 @@ public class DbManagerHibernate implements DbManager {
         profile.setCurrentSession(currentSession);
     }
 
+    /**
+     * Sets the size of each subset of a loaded session and marks its
+     * molecules as not loaded. Only the subset tree itself is loaded with the
+     * session, the molecules are loaded on demand by
+     * {@link #loadMolecules(Subset)}. The sizes are taken from the stored
+     * memberships, the molecules are only counted for subsets without one.
+     * 
+     * @param hibernateSession
+     *            the hibernate session with an active transaction
+     * @param session
+     *            the loaded session
+     */
+    private void initSubsetTree(Session hibernateSession, edu.udo.scaffoldhunter.model.db.Session session) {
+        if (session == null || session.getSubset() == null) {
+            return;
+        }
+        Map<Integer, Integer> sizes = null;
+        for (Subset subset : Subsets.getSubsetTreeIterable(session.getSubset())) {
+            MoleculeBitmap membership = subset.getMembership();
+            if (membership != null) {
+                subset.setUnloaded(membership.cardinality());
+                continue;
+            }
+            if (sizes == null) {
+                Query query = hibernateSession.createQuery("SELECT s.id, count(m) FROM Subset s JOIN s.molecules m "
+                        + "WHERE s.session = :session GROUP BY s.id");
+                query.setParameter("session", session);
+                sizes = Maps.newHashMap();
+                for (Object o : query.list()) {
+                    Object[] row = (Object[]) o;
+                    sizes.put((Integer) row[0], ((Number) row[1]).intValue());
+                }
+            }
+            Integer size = sizes.get(subset.getId());
+            subset.setUnloaded(size == null ? 0 : size);
+        }
+    }
+
+    @Override
+    public void loadMolecules(Subset subset) throws DatabaseException {
+        Preconditions.checkNotNull(subset);
+
+        synchronized (subset) {
+            if (subset.isLoaded()) {
+                return;
+            }
+            MoleculeBitmap membership = subset.getMembership();
+            // the parent is loaded first, its molecules are reused
+            Set<Molecule> parent = null;
+            if (subset.getParent() != null) {
+                loadMolecules(subset.getParent());
+                parent = subset.getParent().getMolecules();
+            }
+            Set<Molecule> molecules;
+            Session hibernateSession = null;
+
+            try {
+                hibernateSession = sessionFactory.getCurrentSession();
+                hibernateSession.beginTransaction();
+                if (membership == null) {
+                    molecules = loadJoinedMolecules(hibernateSession, subset, parent);
+                } else if (parent != null) {
+                    List<Molecule> selected = membership.select(parent);
+                    molecules = Sets.newHashSet(selected);
+                    if (selected.size() < membership.cardinality()) {
+                        int[] missing = membership.andNot(MoleculeBitmap.fromStructures(selected)).toArray();
+                        logger.warn("{} molecules of subset {} are not contained in its parent", missing.length,
+                                subset.getTitle());
+                        loadMoleculePage(hibernateSession, missing, 0, missing.length, membership, molecules);
+                    }
+                } else {
+                    int[] ids = membership.toArray();
+                    molecules = Sets.newHashSetWithExpectedSize(ids.length);
+                    for (int start = 0; start < ids.length; start += MOLECULE_PAGE_SIZE) {
+                        loadMoleculePage(hibernateSession, ids, start, Math.min(start + MOLECULE_PAGE_SIZE,
+                                ids.length), membership, molecules);
+                        // the molecules are referenced by the subset, the
+                        // session does not have to track them
+                        hibernateSession.clear();
+                    }
+                }
+                hibernateSession.getTransaction().commit();
+            } catch (HibernateException ex) {
+                logger.error("Loading the molecules of a Subset failed.\n{}\n{}", ex, stacktrace(ex));
+                closeAndRollBackErroneousSession(hibernateSession);
+                throw new DatabaseException("Loading the molecules of a Subset failed", ex);
+            }
+
+            subset.setLoadedMolecules(molecules);
+        }
+    }
+
+    /**
+     * Loads the molecules with the given ids. A dense range of ids is loaded
+     * by a single range query, otherwise the ids are bound in partitions.
+     * 
+     * @param hibernateSession
+     *            the hibernate session with an active transaction
+     * @param ids
+     *            the molecule ids in ascending order
+     * @param start
+     *            the index of the first id to load
+     * @param end
+     *            the index after the last id to load
+     * @param membership
+     *            the set of all ids to load
+     * @param molecules
+     *            the set the loaded molecules are added to
+     */
+    private void loadMoleculePage(Session hibernateSession, int[] ids, int start, int end,
+            MoleculeBitmap membership, Set<Molecule> molecules) {
+        if (start == end) {
+            return;
+        }
+        if ((long) ids[end - 1] - ids[start] < 2L * (end - start)) {
+            Query query = hibernateSession
+                    .createQuery("FROM Molecule m WHERE m.id BETWEEN :first AND :last ORDER BY m.id");
+            query.setInteger("first", ids[start]);
+            query.setInteger("last", ids[end - 1]);
+            for (Object o : query.list()) {
+                Molecule molecule = (Molecule) o;
+                if (membership.contains(molecule.getId())) {
+                    molecules.add(molecule);
+                }
+            }
+        } else {
+            Query query = hibernateSession.createQuery("FROM Molecule m WHERE m.id in (:ids)");
+            for (List<Integer> partition : Iterables.partition(Ints.asList(ids).subList(start, end), IN_CLAUSE_SIZE)) {
+                query.setParameterList("ids", partition);
+                @SuppressWarnings("unchecked")
+                List<Molecule> list = query.list();
+                molecules.addAll(list);
+            }
+        }
+    }
+
+    /**
+     * Loads the molecules of a subset without stored membership by joining
+     * the subset relationship table
+     * 
+     * @param hibernateSession
+     *            the hibernate session with an active transaction
+     * @param subset
+     *            the subset
+     * @param parent
+     *            the loaded molecules of the parent or <code>null</code> for
+     *            the root subset
+     * @return the molecules
+     */
+    private Set<Molecule> loadJoinedMolecules(Session hibernateSession, Subset subset, Set<Molecule> parent) {
+        Map<Integer, Molecule> parentMolecules = null;
+        if (parent != null) {
+            parentMolecules = Maps.newHashMapWithExpectedSize(parent.size());
+            for (Molecule molecule : parent) {
+                parentMolecules.put(molecule.getId(), molecule);
+            }
+        }
+        Set<Molecule> molecules = Sets.newHashSetWithExpectedSize(subset.size());
+        List<Integer> missing = Lists.newArrayList();
+        // pages are selected by the last id of the previous page, so the
+        // database does not have to skip the preceding rows
+        Query query = hibernateSession.createQuery("SELECT " + (parentMolecules == null ? "m" : "m.id")
+                + " FROM Subset s JOIN s.molecules m WHERE s.id = :subset AND m.id > :last ORDER BY m.id");
+        query.setInteger("subset", subset.getId());
+        query.setMaxResults(MOLECULE_PAGE_SIZE);
+        int last = Integer.MIN_VALUE;
+        List<?> page;
+        do {
+            query.setInteger("last", last);
+            page = query.list();
+            for (Object o : page) {
+                if (parentMolecules == null) {
+                    Molecule molecule = (Molecule) o;
+                    molecules.add(molecule);
+                    last = molecule.getId();
+                } else {
+                    last = (Integer) o;
+                    Molecule molecule = parentMolecules.get(last);
+                    if (molecule != null) {
+                        molecules.add(molecule);
+                    } else {
+                        missing.add(last);
+                    }
+                }
+            }
+        } while (page.size() == MOLECULE_PAGE_SIZE);
+        if (!missing.isEmpty()) {
+            logger.warn("{} molecules of subset {} are not contained in its parent", missing.size(),
+                    subset.getTitle());
+            Query missingQuery = hibernateSession.createQuery("FROM Molecule m WHERE m.id in (:ids)");
+            for (List<Integer> ids : Iterables.partition(missing, IN_CLAUSE_SIZE)) {
+                missingQuery.setParameterList("ids", ids);
+                @SuppressWarnings("unchecked")
+                List<Molecule> list = missingQuery.list();
+                molecules.addAll(list);
+            }
+        }
+        return molecules;
+    }
+
     @Override
     public boolean canSaveSession(edu.udo.scaffoldhunter.model.db.Session session) throws DatabaseException {
         Preconditions.checkNotNull(session);
@@ -567,7 +1345,7 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            datasets = hibernateSession.createQuery("from Dataset order by Title").list();
+            datasets = hibernateSession.createQuery("from Dataset order by Title").setCacheable(true).list();
             hibernateSession.getTransaction().commit();
         } catch (HibernateException ex) {
             logger.error("Query from Dataset failed.\n{}\n{}", ex, stacktrace(ex));
@@ -598,6 +1376,307 @@ public class DbManagerHibernate implements DbManager {
         }
     }
 
+    @Override
+    public int[] getMoleculeIds(Dataset dataset) throws DatabaseException {
+        Session hibernateSession = null;
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            Query query = hibernateSession.createQuery("SELECT m.id FROM Molecule m WHERE m.dataset = :dataset "
+                    + "ORDER BY m.id");
+            query.setParameter("dataset", dataset);
+            List<?> ids = query.list();
+            hibernateSession.getTransaction().commit();
+            int[] retVal = new int[ids.size()];
+            int i = 0;
+            for (Object id : ids) {
+                retVal[i++] = (Integer) id;
+            }
+            return retVal;
+        } catch (HibernateException ex) {
+            logger.error("Could not fetch Molecule ids from Database.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Could not fetch Molecule ids from Database", ex);
+        }
+    }
+
+    @Override
+    public double[] getNumPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) throws DatabaseException {
+        Preconditions.checkArgument(!propDef.isStringProperty() && !propDef.isScaffoldProperty());
+
+        double[] retVal = new double[moleculeIds.length];
+        Arrays.fill(retVal, Double.NaN);
+        for (Object o : getPropertyColumnRows("MoleculeNumProperty", propDef)) {
+            Object[] row = (Object[]) o;
+            int i = Arrays.binarySearch(moleculeIds, (Integer) row[0]);
+            if (i >= 0) {
+                retVal[i] = (Double) row[1];
+            }
+        }
+        return retVal;
+    }
+
+    @Override
+    public String[] getStringPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) throws DatabaseException {
+        Preconditions.checkArgument(propDef.isStringProperty() && !propDef.isScaffoldProperty());
+
+        String[] retVal = new String[moleculeIds.length];
+        for (Object o : getPropertyColumnRows("MoleculeStringProperty", propDef)) {
+            Object[] row = (Object[]) o;
+            int i = Arrays.binarySearch(moleculeIds, (Integer) row[0]);
+            if (i >= 0) {
+                retVal[i] = StringProperty.getValue(propDef.getPropertyType(), (String) row[1], (byte[]) row[2]);
+            }
+        }
+        return retVal;
+    }
+
+    @Override
+    public PackedFingerprints getPackedFingerprints(final PropertyDefinition propDef) throws DatabaseException {
+        Preconditions.checkArgument(propDef.isStringProperty() && !propDef.isScaffoldProperty());
+        Session hibernateSession = null;
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            final PackedFingerprints[] retVal = new PackedFingerprints[1];
+            hibernateSession.doWork(new Work() {
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    String from = " FROM " + connectionSchema + ".molecule_string_properties"
+                            + " WHERE property_id = ? AND fingerprint IS NOT NULL";
+                    // count first, so the arrays are allocated only once
+                    PreparedStatement countStatement = connection.prepareStatement("SELECT count(*)" + from);
+                    int size;
+                    try {
+                        countStatement.setInt(1, propDef.id);
+                        ResultSet countResult = countStatement.executeQuery();
+                        countResult.next();
+                        size = countResult.getInt(1);
+                        countResult.close();
+                    } finally {
+                        countStatement.close();
+                    }
+
+                    PreparedStatement statement = connection.prepareStatement("SELECT structure_id, fingerprint"
+                            + from + " ORDER BY structure_id");
+                    try {
+                        statement.setInt(1, propDef.id);
+                        statement.setFetchSize(MOLECULE_PAGE_SIZE);
+                        ResultSet results = statement.executeQuery();
+                        int[] ids = new int[size];
+                        long[] words = null;
+                        int count = 0;
+                        int length = -1;
+                        int wordCount = 0;
+                        int skipped = 0;
+                        while (results.next() && count < size) {
+                            byte[] fingerprint = results.getBytes(2);
+                            if (length < 0) {
+                                length = StringProperty.getFingerprintLength(fingerprint);
+                                wordCount = (length + Long.SIZE - 1) / Long.SIZE;
+                                if ((long) size * wordCount > Integer.MAX_VALUE) {
+                                    throw new SQLException(String.format(
+                                            "%d fingerprints of %d bits do not fit into one array", size, length));
+                                }
+                                words = new long[size * wordCount];
+                            } else if (StringProperty.getFingerprintLength(fingerprint) != length) {
+                                skipped++;
+                                continue;
+                            }
+                            ids[count] = results.getInt(1);
+                            StringProperty.copyWords(fingerprint, words, count * wordCount);
+                            count++;
+                        }
+                        results.close();
+                        if (skipped > 0) {
+                            logger.warn("Skipped {} fingerprints of {} with a length other than {}", new Object[] {
+                                    skipped, propDef.getTitle(), length });
+                        }
+                        if (count < size) {
+                            ids = Arrays.copyOf(ids, count);
+                        }
+                        if (words == null) {
+                            words = new long[0];
+                        }
+                        retVal[0] = new PackedFingerprints(ids, words, Math.max(length, 0));
+                    } finally {
+                        statement.close();
+                    }
+                }
+            });
+            hibernateSession.getTransaction().commit();
+            return retVal[0];
+        } catch (HibernateException ex) {
+            logger.error("Could not fetch fingerprints from Database.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Could not fetch fingerprints from Database", ex);
+        }
+    }
+
+    @Override
+    public String[][] getPropertyRows(final List<Molecule> molecules, final List<PropertyDefinition> propDefs)
+            throws DatabaseException {
+        final String[][] rows = new String[molecules.size()][propDefs.size()];
+        if (molecules.isEmpty() || propDefs.isEmpty()) {
+            return rows;
+        }
+        /*
+         * Molecule.id -> row, PropertyDefinition.id -> column
+         */
+        final Map<Integer, Integer> rowIndices = Maps.newHashMapWithExpectedSize(molecules.size());
+        for (int i = 0; i < molecules.size(); i++) {
+            rowIndices.put(molecules.get(i).id, i);
+        }
+        final Map<Integer, Integer> columnIndices = Maps.newHashMap();
+        final List<PropertyDefinition> numPropDefs = Lists.newArrayList();
+        final List<PropertyDefinition> stringPropDefs = Lists.newArrayList();
+        for (int j = 0; j < propDefs.size(); j++) {
+            PropertyDefinition propDef = propDefs.get(j);
+            Preconditions.checkArgument(!propDef.isScaffoldProperty(), "not a molecule property");
+            columnIndices.put(propDef.id, j);
+            (propDef.isStringProperty() ? stringPropDefs : numPropDefs).add(propDef);
+        }
+        Session hibernateSession = null;
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            hibernateSession.doWork(new Work() {
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    if (!numPropDefs.isEmpty()) {
+                        readPropertyRows(connection, numPropDefs, rowIndices, columnIndices, rows);
+                    }
+                    if (!stringPropDefs.isEmpty()) {
+                        readPropertyRows(connection, stringPropDefs, rowIndices, columnIndices, rows);
+                    }
+                }
+            });
+            hibernateSession.getTransaction().commit();
+            return rows;
+        } catch (HibernateException ex) {
+            logger.error("Could not fetch property values from Database.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Could not fetch property values from Database", ex);
+        }
+    }
+
+    /**
+     * Reads molecule property values as text into their cells. Like
+     * {@link #loadProperties(Connection, List, Map, Multimap)} the molecule
+     * ids are bound in batches to a single prepared statement.
+     * 
+     * @param connection
+     *            the JDBC connection of the current transaction
+     * @param propDefs
+     *            the property definitions, either all string or all numerical
+     *            molecule properties
+     * @param rowIndices
+     *            the row of each molecule id
+     * @param columnIndices
+     *            the column of each property definition id
+     * @param rows
+     *            the cells
+     * @throws SQLException
+     */
+    private void readPropertyRows(Connection connection, List<PropertyDefinition> propDefs,
+            Map<Integer, Integer> rowIndices, Map<Integer, Integer> columnIndices, String[][] rows)
+            throws SQLException {
+        boolean string = propDefs.get(0).isStringProperty();
+        int batchSize = Math.min(PROPERTY_BATCH_SIZE, rowIndices.size());
+        String sql = "SELECT structure_id, property_id, value" + (string ? ", fingerprint" : "") + " FROM "
+                + connectionSchema + ".molecule_" + (string ? "string" : "num")
+                + "_properties WHERE property_id IN (" + placeholders(propDefs.size())
+                + ") AND structure_id IN (" + placeholders(batchSize) + ")";
+
+        Map<Integer, PropertyDefinition> propertyDefinitions = Maps.newHashMap();
+        for (PropertyDefinition p : propDefs) {
+            propertyDefinitions.put(p.id, p);
+        }
+
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            int parameter = 1;
+            for (PropertyDefinition propDef : propDefs) {
+                statement.setInt(parameter++, propDef.id);
+            }
+            for (List<Integer> batch : Iterables.partition(Lists.newArrayList(rowIndices.keySet()), batchSize)) {
+                for (int i = 0; i < batchSize; i++) {
+                    statement.setInt(parameter + i, batch.get(Math.min(i, batch.size() - 1)));
+                }
+                ResultSet results = statement.executeQuery();
+                while (results.next()) {
+                    int propDefId = results.getInt(2);
+                    String value;
+                    if (!string) {
+                        value = Double.toString(results.getDouble(3));
+                    } else {
+                        value = StringProperty.getValue(propertyDefinitions.get(propDefId).getPropertyType(),
+                                results.getString(3), results.getBytes(4));
+                    }
+                    rows[rowIndices.get(results.getInt(1))][columnIndices.get(propDefId)] = value;
+                }
+                results.close();
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return the (molecule id, value) rows of a molecule property, the rows
+     *         of a string property contain the packed fingerprint as third
+     *         column
+     */
+    private List<?> getPropertyColumnRows(String propertyClass, PropertyDefinition propDef)
+            throws DatabaseException {
+        Session hibernateSession = null;
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            Query query = hibernateSession.createQuery("SELECT p.molecule.id, p.value"
+                    + (propDef.isStringProperty() ? ", p.fingerprint" : "") + " FROM " + propertyClass
+                    + " p WHERE p.type = :propDef");
+            query.setParameter("propDef", propDef);
+            List<?> rows = query.list();
+            hibernateSession.getTransaction().commit();
+            return rows;
+        } catch (HibernateException ex) {
+            logger.error("Could not fetch property values from Database.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Could not fetch property values from Database", ex);
+        }
+    }
+
+    /**
+     * @param propDef
+     *            the property definition
+     * @param alias
+     *            the alias of the property in the query
+     * @return the column holding the values of the property in HQL, the
+     *         packed fingerprint for bit fingerprints
+     */
+    private static String getValueColumn(PropertyDefinition propDef, String alias) {
+        return alias + (StringProperty.isPacked(propDef.getPropertyType()) ? ".fingerprint" : ".value");
+    }
+
+    /**
+     * Binds the parameters of a filter query, collections are bound as
+     * parameter lists
+     */
+    private static void setParameters(Query query, Map<String, Object> queryParameters) {
+        for (Map.Entry<String, Object> queryParameter : queryParameters.entrySet()) {
+            if (queryParameter.getValue() instanceof Collection) {
+                query.setParameterList(queryParameter.getKey(), (Collection<?>) queryParameter.getValue());
+            } else {
+                query.setParameter(queryParameter.getKey(), queryParameter.getValue());
+            }
+        }
+    }
+
     @Override
     public Subset getRootSubset(edu.udo.scaffoldhunter.model.db.Session session) throws DatabaseException {
         return getRootSubset(session, null);
@@ -610,7 +1689,7 @@ public class DbManagerHibernate implements DbManager {
         logger.trace("Entering getRootSubset");
 
         Session hibernateSession = null;
-        Map<String, PropertyDefinition> propDefParameterNames = new HashMap<String, PropertyDefinition>();
+        Map<String, Object> queryParameters = new HashMap<String, Object>();
         Subset retVal = new Subset(null, "Root", "The root Subset", session, null, new LinkedList<Subset>());
         Dataset dataset = session.getTree().getDataset();
         StringBuilder queryString = new StringBuilder("FROM Molecule m WHERE m.dataset = :dataset ");
@@ -619,7 +1698,7 @@ public class DbManagerHibernate implements DbManager {
          * Build query string
          */
         if (filterset != null && filterset.getFilters().size() > 0) {
-            getFiltersetQueryPart(dataset, filterset, propDefParameterNames, queryString);
+            getFiltersetQueryPart(dataset, filterset, queryParameters, queryString);
         }
 
         /*
@@ -630,9 +1709,7 @@ public class DbManagerHibernate implements DbManager {
             hibernateSession.beginTransaction();
             Query query = hibernateSession.createQuery(queryString.toString());
             query.setParameter("dataset", dataset);
-            for (Map.Entry<String, PropertyDefinition> propDefParameterEntry : propDefParameterNames.entrySet()) {
-                query.setParameter(propDefParameterEntry.getKey(), propDefParameterEntry.getValue());
-            }
+            setParameters(query, queryParameters);
 
             retVal.setMolecules(new HashSet<Molecule>(query.list()));
         } catch (HibernateException ex) {
@@ -649,7 +1726,7 @@ public class DbManagerHibernate implements DbManager {
         logger.trace("Entering getRootSubsetSize");
 
         Session hibernateSession = null;
-        Map<String, PropertyDefinition> propDefParameterNames = new HashMap<String, PropertyDefinition>();
+        Map<String, Object> queryParameters = new HashMap<String, Object>();
         Integer retVal = 0;
         StringBuilder queryString = new StringBuilder("SELECT count(m) FROM Molecule m WHERE m.dataset = :dataset ");
 
@@ -657,7 +1734,7 @@ public class DbManagerHibernate implements DbManager {
          * Build query string
          */
         if (filterset != null && filterset.getFilters().size() > 0) {
-            getFiltersetQueryPart(dataset, filterset, propDefParameterNames, queryString);
+            getFiltersetQueryPart(dataset, filterset, queryParameters, queryString);
         }
 
         /*
@@ -668,9 +1745,7 @@ public class DbManagerHibernate implements DbManager {
             hibernateSession.beginTransaction();
             Query query = hibernateSession.createQuery(queryString.toString());
             query.setParameter("dataset", dataset);
-            for (Map.Entry<String, PropertyDefinition> propDefParameterEntry : propDefParameterNames.entrySet()) {
-                query.setParameter(propDefParameterEntry.getKey(), propDefParameterEntry.getValue());
-            }
+            setParameters(query, queryParameters);
 
             retVal = ((Long) query.uniqueResult()).intValue();
         } catch (HibernateException ex) {
@@ -688,7 +1763,7 @@ public class DbManagerHibernate implements DbManager {
         logger.trace("Entering getFilteredSubset");
 
         Session hibernateSession = null;
-        Map<String, PropertyDefinition> propDefParameterNames = new HashMap<String, PropertyDefinition>();
+        Map<String, Object> queryParameters = new HashMap<String, Object>();
         Set<Integer> filteredIds = null;
         Subset retVal = new Subset(subset, "filtered(" + subset.getTitle() + ")", "Filtered Subset",
                 subset.getSession(), new LinkedList<Molecule>(), new LinkedList<Subset>());
@@ -699,7 +1774,7 @@ public class DbManagerHibernate implements DbManager {
          * Build query string
          */
         if (filterset != null && filterset.getFilters().size() > 0) {
-            getFiltersetQueryPart(subset.getSession().getDataset(), filterset, propDefParameterNames, queryString);
+            getFiltersetQueryPart(subset.getSession().getDataset(), filterset, queryParameters, queryString);
         }
 
         /*
@@ -710,9 +1785,7 @@ public class DbManagerHibernate implements DbManager {
             hibernateSession.beginTransaction();
             Query query = hibernateSession.createQuery(queryString.toString());
             query.setParameter("subset", subset);
-            for (Map.Entry<String, PropertyDefinition> propDefParameterEntry : propDefParameterNames.entrySet()) {
-                query.setParameter(propDefParameterEntry.getKey(), propDefParameterEntry.getValue());
-            }
+            setParameters(query, queryParameters);
 
             filteredIds = new HashSet<Integer>(query.list());
         } catch (HibernateException ex) {
@@ -737,7 +1810,7 @@ public class DbManagerHibernate implements DbManager {
         logger.trace("Entering getFilteredSubsetSize");
 
         Session hibernateSession = null;
-        Map<String, PropertyDefinition> propDefParameterNames = new HashMap<String, PropertyDefinition>();
+        Map<String, Object> queryParameters = new HashMap<String, Object>();
         int retVal;
         StringBuilder queryString = new StringBuilder("SELECT count(m.id) FROM Molecule m, Subset s JOIN "
                 + "s.molecules submol WHERE s = :subset AND m = submol ");
@@ -746,7 +1819,7 @@ public class DbManagerHibernate implements DbManager {
          * Build query string
          */
         if (filterset != null && filterset.getFilters().size() > 0) {
-            getFiltersetQueryPart(subset.getSession().getDataset(), filterset, propDefParameterNames, queryString);
+            getFiltersetQueryPart(subset.getSession().getDataset(), filterset, queryParameters, queryString);
         }
 
         /*
@@ -757,9 +1830,7 @@ public class DbManagerHibernate implements DbManager {
             hibernateSession.beginTransaction();
             Query query = hibernateSession.createQuery(queryString.toString());
             query.setParameter("subset", subset);
-            for (Map.Entry<String, PropertyDefinition> propDefParameterEntry : propDefParameterNames.entrySet()) {
-                query.setParameter(propDefParameterEntry.getKey(), propDefParameterEntry.getValue());
-            }
+            setParameters(query, queryParameters);
 
             retVal = ((Long) query.uniqueResult()).intValue();
         } catch (HibernateException ex) {
@@ -968,6 +2039,93 @@ public class DbManagerHibernate implements DbManager {
         }
     }
 
+    @Override
+    public void insertProperties(Collection<? extends Property> properties,
+            Collection<PropertyDefinition> propertyDefinitions) throws DatabaseException {
+        Session hibernateSession = null;
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            final ListMultimap<String, Property> byTable = ArrayListMultimap.create();
+            for (Property prop : properties) {
+                PropertyDefinition propDef = prop.getType();
+                byTable.put((propDef.isScaffoldProperty() ? "scaffold" : "molecule")
+                        + (propDef.isStringProperty() ? "_string" : "_num") + "_properties", prop);
+            }
+            hibernateSession.doWork(new Work() {
+                @Override
+                public void execute(Connection connection) throws SQLException {
+                    for (String table : byTable.keySet()) {
+                        insertProperties(connection, table, byTable.get(table));
+                    }
+                }
+            });
+            for (PropertyDefinition propDef : propertyDefinitions) {
+                hibernateSession.update(propDef);
+            }
+            hibernateSession.getTransaction().commit();
+        } catch (HibernateException ex) {
+            logger.error("Storing of Properties failed.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Storing of Properties failed", ex);
+        }
+    }
+
+    /**
+     * Inserts properties of the same kind by JDBC batches
+     * 
+     * @param connection
+     *            the JDBC connection of the current transaction
+     * @param table
+     *            the table of the properties
+     * @param properties
+     *            the properties, all must be stored in <code>table</code>
+     * @throws SQLException
+     */
+    private void insertProperties(Connection connection, String table, List<Property> properties)
+            throws SQLException {
+        boolean string = table.contains("_string");
+        PreparedStatement statement = connection.prepareStatement("INSERT INTO " + connectionSchema + "." + table
+                + (string ? " (structure_id, property_id, value, fingerprint) VALUES (?, ?, ?, ?)"
+                        : " (structure_id, property_id, value) VALUES (?, ?, ?)"));
+        try {
+            int count = 0;
+            for (Property prop : properties) {
+                Structure struc;
+                if (prop instanceof MoleculeNumProperty) {
+                    struc = ((MoleculeNumProperty) prop).getMolecule();
+                } else if (prop instanceof MoleculeStringProperty) {
+                    struc = ((MoleculeStringProperty) prop).getMolecule();
+                } else if (prop instanceof ScaffoldNumProperty) {
+                    struc = ((ScaffoldNumProperty) prop).getScaffold();
+                } else {
+                    struc = ((ScaffoldStringProperty) prop).getScaffold();
+                }
+                statement.setInt(1, struc.id);
+                statement.setInt(2, prop.getType().id);
+                if (prop instanceof NumProperty) {
+                    statement.setDouble(3, ((NumProperty) prop).getValue());
+                } else {
+                    StringProperty stringProp = (StringProperty) prop;
+                    statement.setString(3, stringProp.getStoredValue());
+                    if (stringProp.getStoredFingerprint() == null) {
+                        statement.setNull(4, Types.VARBINARY);
+                    } else {
+                        statement.setBytes(4, stringProp.getStoredFingerprint());
+                    }
+                }
+                statement.addBatch();
+                if (++count % INSERT_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        } finally {
+            statement.close();
+        }
+    }
+
     @Override
     public void deleteAll(Iterable<? extends DbObject> objs) throws DatabaseException {
         Session hibernateSession = null;
@@ -1045,22 +2203,6 @@ public class DbManagerHibernate implements DbManager {
         lockAndLoad(Collections.singleton(propDef), Collections.singleton(structure));
     }
 
-    private Class<? extends Property> getPropertyClass(PropertyDefinition propDef) {
-        if (propDef.isScaffoldProperty()) {
-            if (propDef.isStringProperty()) {
-                return ScaffoldStringProperty.class;
-            } else {
-                return ScaffoldNumProperty.class;
-            }
-        } else {
-            if (propDef.isStringProperty()) {
-                return MoleculeStringProperty.class;
-            } else {
-                return MoleculeNumProperty.class;
-            }
-        }
-    }
-
     /**
      * Increases to lock of a {@link Property} for a given {@link Structure} if
      * they are not already in addedProperties. It adds the {@link Property} to
@@ -1097,7 +2239,7 @@ public class DbManagerHibernate implements DbManager {
          * 
          * Structure -> PropertyDefinitionId
          */
-        Multimap<Structure, Integer> addedProperties = HashMultimap.create();
+        final Multimap<Structure, Integer> addedProperties = HashMultimap.create();
 
         /*
          * All Structures that have currently not loaded Properties
@@ -1107,7 +2249,9 @@ public class DbManagerHibernate implements DbManager {
         Session hibernateSession = null;
 
         for (Structure struc : structures) {
-            synchronized (struc) {
+            Lock lock = structureLocks.get(struc);
+            lock.lock();
+            try {
                 for (PropertyDefinition propDef : propDefs) {
                     Integer lockCount = struc.locks.get(propDef.id);
                     if (lockCount == null || lockCount == 0) {
@@ -1122,6 +2266,8 @@ public class DbManagerHibernate implements DbManager {
                         addedProperties.put(struc, propDef.id);
                     }
                 }
+            } finally {
+                lock.unlock();
             }
         }
 
@@ -1131,184 +2277,62 @@ public class DbManagerHibernate implements DbManager {
             /*
              * Molecule.id -> Molecule
              */
-            Map<Integer, Molecule> mols = Maps.newHashMap();
-            for (Molecule mol : Iterables.filter(toLoad, Molecule.class)) {
-                mols.put(mol.id, mol);
-            }
-            /*
-             * Scaffold.id -> Scaffold
-             */
-            Map<Integer, Scaffold> scaffolds = Maps.newHashMap();
-            for (Scaffold scaf : Iterables.filter(toLoad, Scaffold.class)) {
-                scaffolds.put(scaf.id, scaf);
-            }
-            /*
-             * PropertyDefinition.id -> PropertyDefinition
-             */
-            Map<Integer, PropertyDefinition> propertyDefinitions = Maps.newHashMap();
-            for (PropertyDefinition p : propDefs) {
-                propertyDefinitions.put(p.id, p);
-            }
-
-            List<Predicate<PropertyDefinition>> preds = ImmutableList.of(SHPredicates.IS_NUMMOL_PROPDEF,
-                    SHPredicates.IS_NUMSCAF_PROPDEF, SHPredicates.IS_STRMOL_PROPDEF, SHPredicates.IS_STRSCAF_PROPDEF);
-
-            /*
-             * One round for every combination {Molecule,Scaffold} x
-             * {String,Numeric}
-             */
-            for (Predicate<PropertyDefinition> pred : preds) {
-                Iterable<PropertyDefinition> predPropDefs = Iterables.filter(propDefs, pred);
-                if (Iterables.isEmpty(predPropDefs)) {
-                    continue;
-                }
-                /*
-                 * We only need this to differentiate property types
-                 * (Scaffold/Molecule) and (String/Num)
-                 */
-                PropertyDefinition firstPropDef = predPropDefs.iterator().next();
-                Class<? extends Property> clazz = getPropertyClass(firstPropDef);
-                List<? extends Structure> strucs = Lists.newArrayList(firstPropDef.isScaffoldProperty() ? scaffolds
-                        .values() : mols.values());
-                if (strucs.isEmpty()) {
-                    continue;
-                }
-                String struc = firstPropDef.isScaffoldProperty() ? "scaffold" : "molecule";
-
-                Function<DbObject, Integer> dbObjectToID = new Function<DbObject, Integer>() {
-                    @Override
-                    public Integer apply(DbObject input) {
-                        return input.id;
-                    }
-                };
-
-                String propids = Joiner.on(',').join(Iterables.transform(predPropDefs, dbObjectToID));
-
-                /*
-                 * Split strucs to a partition with at most 10000 Structures to
-                 * avoid too large queries for the database
-                 */
-                while (strucs.size() > 0) {
-                    /*
-                     * get the part of strucs that will be used by the (next)
-                     * query
-                     */
-                    List<? extends Structure> subStrucs = strucs.subList(0, Math.min(10000, strucs.size()));
-
-                    String strucids = Joiner.on(',').join(Iterables.transform(subStrucs, dbObjectToID));
-
-                    /*
-                     * XXX: This would look much better using criteria, but with
-                     * Criteria projecting to an Entity and some values seems
-                     * impossible
-                     * 
-                     * XXX: Performance wise it might be better for large
-                     * queries to retrieve the whole subset and then sort out
-                     * the values we need
-                     */
-                    Query query = hibernateSession.createQuery("SELECT struc.id, t.id, prop " + "FROM "
-                            + clazz.getName() + " prop JOIN prop.type t JOIN prop." + struc + " struc "
-                            + "WHERE struc.id in (" + strucids + ") AND t.id in (" + propids + ")");
-
-                    @SuppressWarnings("unchecked")
-                    List<Object[]> results = query.list();
-
-                    /*
-                     * Load each Property into the related Structure
-                     */
-                    if (clazz.equals(MoleculeNumProperty.class)) {
-                        for (Object[] r : results) {
-                            Molecule mol = mols.get(r[0]);
-                            Integer propDefId = (Integer) r[1];
-                            PropertyDefinition propDef = propertyDefinitions.get(propDefId);
-                            MoleculeNumProperty prop = (MoleculeNumProperty) r[2];
-                            prop.setType(propDef);
-                            prop.setMolecule(mol);
-                            synchronized (mol) {
-                                /*
-                                 * this prevents the replacement of a concurrent
-                                 * loaded property
-                                 */
-                                if (mol.getNumProperties().get(propDefId) == null) {
-                                    mol.getNumProperties().put(propDefId, prop);
-                                }
-                                increaseLock(mol, propDef, addedProperties);
-                            }
-                        }
-                    } else if (clazz.equals(MoleculeStringProperty.class)) {
-                        for (Object[] r : results) {
-                            Molecule mol = mols.get(r[0]);
-                            Integer propDefId = (Integer) r[1];
-                            PropertyDefinition propDef = propertyDefinitions.get(propDefId);
-                            MoleculeStringProperty prop = (MoleculeStringProperty) r[2];
-                            prop.setType(propDef);
-                            prop.setMolecule(mol);
-                            synchronized (mol) {
-                                /*
-                                 * this prevents the replacement of a concurrent
-                                 * loaded property
-                                 */
-                                if (mol.getStringProperties().get(propDefId) == null) {
-                                    mol.getStringProperties().put(propDefId, prop);
-                                }
-                                increaseLock(mol, propDef, addedProperties);
-                            }
-                        }
-                    } else if (clazz.equals(ScaffoldNumProperty.class)) {
-                        for (Object[] r : results) {
-                            Scaffold scaf = scaffolds.get(r[0]);
-                            Integer propDefId = (Integer) r[1];
-                            PropertyDefinition propDef = propertyDefinitions.get(propDefId);
-                            ScaffoldNumProperty prop = (ScaffoldNumProperty) r[2];
-                            prop.setType(propDef);
-                            prop.setScaffold(scaf);
-                            synchronized (scaf) {
-                                /*
-                                 * this prevents the replacement of a concurrent
-                                 * loaded property
-                                 */
-                                if (scaf.getNumProperties().get(propDefId) == null) {
-                                    scaf.getNumProperties().put(propDefId, prop);
-                                }
-                                increaseLock(scaf, propDef, addedProperties);
-                            }
-                        }
-                    } else if (clazz.equals(ScaffoldStringProperty.class)) {
-                        for (Object[] r : results) {
-                            Scaffold scaf = scaffolds.get(r[0]);
-                            Integer propDefId = (Integer) r[1];
-                            PropertyDefinition propDef = propertyDefinitions.get(propDefId);
-                            ScaffoldStringProperty prop = (ScaffoldStringProperty) r[2];
-                            prop.setType(propDef);
-                            prop.setScaffold(scaf);
-                            synchronized (scaf) {
-                                /*
-                                 * this prevents the replacement of a concurrent
-                                 * loaded property
-                                 */
-                                if (scaf.getStringProperties().get(propDefId) == null) {
-                                    scaf.getStringProperties().put(propDefId, prop);
-                                }
-                                increaseLock(scaf, propDef, addedProperties);
-                            }
-                        }
-                    } else {
-                        throw new AssertionError("Unhandled type");
-                    }
+            Map<Integer, Molecule> mols = Maps.newHashMap();
+            for (Molecule mol : Iterables.filter(toLoad, Molecule.class)) {
+                mols.put(mol.id, mol);
+            }
+            /*
+             * Scaffold.id -> Scaffold
+             */
+            Map<Integer, Scaffold> scaffolds = Maps.newHashMap();
+            for (Scaffold scaf : Iterables.filter(toLoad, Scaffold.class)) {
+                scaffolds.put(scaf.id, scaf);
+            }
+
+            List<Predicate<PropertyDefinition>> preds = ImmutableList.of(SHPredicates.IS_NUMMOL_PROPDEF,
+                    SHPredicates.IS_NUMSCAF_PROPDEF, SHPredicates.IS_STRMOL_PROPDEF, SHPredicates.IS_STRSCAF_PROPDEF);
 
-                    // remove subStrucs form strucs
-                    subStrucs.clear();
+            long start = System.nanoTime();
+            final int[] rows = new int[1];
+            /*
+             * One round for every combination {Molecule,Scaffold} x
+             * {String,Numeric}
+             */
+            for (Predicate<PropertyDefinition> pred : preds) {
+                final List<PropertyDefinition> predPropDefs = Lists.newArrayList(Iterables.filter(propDefs, pred));
+                if (predPropDefs.isEmpty()) {
+                    continue;
                 }
+                final Map<Integer, ? extends Structure> strucs = predPropDefs.get(0).isScaffoldProperty() ? scaffolds
+                        : mols;
+                if (strucs.isEmpty()) {
+                    continue;
+                }
+                hibernateSession.doWork(new Work() {
+                    @Override
+                    public void execute(Connection connection) throws SQLException {
+                        rows[0] += loadProperties(connection, predPropDefs, strucs, addedProperties);
+                    }
+                });
+            }
+            if (rows[0] > 0) {
+                long time = System.nanoTime() - start;
+                logger.debug("Loaded {} properties in {} ms ({} rows/s)", new Object[] { rows[0], time / 1000000,
+                        (long) (rows[0] / (time / 1e9)) });
             }
 
             /*
              * increases the lock of all undefined Properties
              */
             for (Structure struc : structures) {
-                synchronized (struc) {
+                Lock lock = structureLocks.get(struc);
+                lock.lock();
+                try {
                     for (PropertyDefinition propDef : propDefs) {
                         increaseLock(struc, propDef, addedProperties);
                     }
+                } finally {
+                    lock.unlock();
                 }
             }
 
@@ -1320,9 +2344,150 @@ public class DbManagerHibernate implements DbManager {
         }
     }
 
+    /**
+     * Loads the properties of some structures by a scalar projection over
+     * plain JDBC, which avoids the hydration of property entities. The
+     * structure ids are bound in batches to a single prepared statement, the
+     * last batch is padded by repeating its last id.
+     * 
+     * @param connection
+     *            the JDBC connection of the current transaction
+     * @param propDefs
+     *            the property definitions of the loaded properties. All must
+     *            be of the same kind, i.e. either molecule or scaffold and
+     *            either string or numerical properties.
+     * @param strucs
+     *            the structures by id
+     * @param addedProperties
+     *            the already added Properties
+     * @return the number of loaded properties
+     * @throws SQLException
+     */
+    private int loadProperties(Connection connection, List<PropertyDefinition> propDefs,
+            Map<Integer, ? extends Structure> strucs, Multimap<Structure, Integer> addedProperties)
+            throws SQLException {
+        PropertyDefinition firstPropDef = propDefs.get(0);
+        boolean string = firstPropDef.isStringProperty();
+        String kind = (firstPropDef.isScaffoldProperty() ? "scaffold" : "molecule") + (string ? "_string" : "_num");
+        int batchSize = Math.min(PROPERTY_BATCH_SIZE, strucs.size());
+        String sql = "SELECT structure_id, property_id, " + kind + "_property_id, value"
+                + (string ? ", fingerprint" : "") + " FROM " + connectionSchema
+                + "." + kind + "_properties WHERE property_id IN (" + placeholders(propDefs.size())
+                + ") AND structure_id IN (" + placeholders(batchSize) + ")";
+
+        Map<Integer, PropertyDefinition> propertyDefinitions = Maps.newHashMap();
+        for (PropertyDefinition p : propDefs) {
+            propertyDefinitions.put(p.id, p);
+        }
+
+        int rows = 0;
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            int parameter = 1;
+            for (PropertyDefinition propDef : propDefs) {
+                statement.setInt(parameter++, propDef.id);
+            }
+            for (List<Integer> batch : Iterables.partition(Lists.newArrayList(strucs.keySet()), batchSize)) {
+                for (int i = 0; i < batchSize; i++) {
+                    statement.setInt(parameter + i, batch.get(Math.min(i, batch.size() - 1)));
+                }
+                ResultSet results = statement.executeQuery();
+                while (results.next()) {
+                    Structure struc = strucs.get(results.getInt(1));
+                    PropertyDefinition propDef = propertyDefinitions.get(results.getInt(2));
+                    Property prop;
+                    if (struc instanceof Molecule) {
+                        prop = string ? new MoleculeStringProperty(propDef, results.getString(4))
+                                : new MoleculeNumProperty(propDef, results.getDouble(4));
+                    } else {
+                        prop = string ? new ScaffoldStringProperty(propDef, results.getString(4))
+                                : new ScaffoldNumProperty(propDef, results.getDouble(4));
+                    }
+                    if (string) {
+                        ((StringProperty) prop).setStored(results.getString(4), results.getBytes(5));
+                    }
+                    prop.id = results.getInt(3);
+                    addProperty(struc, prop, addedProperties);
+                    rows++;
+                }
+                results.close();
+            }
+        } finally {
+            statement.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Adds a loaded {@link Property} to its {@link Structure} unless it has
+     * been loaded concurrently and increases its lock.
+     * 
+     * @param struc
+     *            the {@link Structure}
+     * @param prop
+     *            the {@link Property}
+     * @param addedProperties
+     *            the already added Properties
+     */
+    private void addProperty(Structure struc, Property prop, Multimap<Structure, Integer> addedProperties) {
+        Integer propDefId = prop.getType().id;
+        Lock lock = structureLocks.get(struc);
+        lock.lock();
+        try {
+            /*
+             * this prevents the replacement of a concurrent loaded property
+             */
+            if (prop instanceof MoleculeNumProperty) {
+                Molecule mol = (Molecule) struc;
+                ((MoleculeNumProperty) prop).setMolecule(mol);
+                if (mol.getNumProperties().get(propDefId) == null) {
+                    mol.getNumProperties().put(propDefId, (MoleculeNumProperty) prop);
+                }
+            } else if (prop instanceof MoleculeStringProperty) {
+                Molecule mol = (Molecule) struc;
+                ((MoleculeStringProperty) prop).setMolecule(mol);
+                if (mol.getStringProperties().get(propDefId) == null) {
+                    mol.getStringProperties().put(propDefId, (MoleculeStringProperty) prop);
+                }
+            } else if (prop instanceof ScaffoldNumProperty) {
+                Scaffold scaf = (Scaffold) struc;
+                ((ScaffoldNumProperty) prop).setScaffold(scaf);
+                if (scaf.getNumProperties().get(propDefId) == null) {
+                    scaf.getNumProperties().put(propDefId, (ScaffoldNumProperty) prop);
+                }
+            } else if (prop instanceof ScaffoldStringProperty) {
+                Scaffold scaf = (Scaffold) struc;
+                ((ScaffoldStringProperty) prop).setScaffold(scaf);
+                if (scaf.getStringProperties().get(propDefId) == null) {
+                    scaf.getStringProperties().put(propDefId, (ScaffoldStringProperty) prop);
+                }
+            } else {
+                throw new AssertionError("Unhandled type");
+            }
+            increaseLock(struc, prop.getType(), addedProperties);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param count
+     *            the number of parameters
+     * @return <code>count</code> comma separated JDBC parameters
+     */
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(2 * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.toString();
+    }
+
     @Override
     public void unlockAndUnload(PropertyDefinition propDef, Structure structure) {
-        synchronized (structure) {
+        Lock lock = structureLocks.get(structure);
+        lock.lock();
+        try {
             Map<Integer, Integer> locks = structure.locks;
 
             if (locks.containsKey(propDef.id)) {
@@ -1343,6 +2508,8 @@ public class DbManagerHibernate implements DbManager {
                 logger.warn("Trying to remove lock where no lock is set");
                 throw new UnlockException("Trying to remove lock where no lock is set");
             }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -1376,6 +2543,36 @@ public class DbManagerHibernate implements DbManager {
         return result;
     }
 
+    @Override
+    public Map<Structure, String> getSvgStrings(Collection<? extends Structure> structures) throws DatabaseException {
+        Map<Integer, Structure> structuresById = Maps.newHashMapWithExpectedSize(structures.size());
+        for (Structure structure : structures) {
+            structuresById.put(structure.getId(), structure);
+        }
+        Map<Structure, String> result = Maps.newHashMapWithExpectedSize(structuresById.size());
+        Session hibernateSession = null;
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            Query query = hibernateSession
+                    .createQuery("select struc.id, struc.svg.string from Structure as struc where struc.id in (:ids)");
+            for (List<Integer> ids : Iterables.partition(structuresById.keySet(), IN_CLAUSE_SIZE)) {
+                query.setParameterList("ids", ids);
+                for (Object o : query.list()) {
+                    Object[] row = (Object[]) o;
+                    result.put(structuresById.get(row[0]), (String) row[1]);
+                }
+            }
+            hibernateSession.getTransaction().commit();
+        } catch (HibernateException ex) {
+            logger.error("Could not fetch SVG Strings from Database.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Could not fetch SVG Strings from Database", ex);
+        }
+        return result;
+    }
+
     @Override
     public String getStrucMol(Structure structure) throws DatabaseException {
         String result;
@@ -1397,6 +2594,36 @@ public class DbManagerHibernate implements DbManager {
         return result;
     }
 
+    @Override
+    public Map<Structure, String> getStrucMols(Collection<? extends Structure> structures) throws DatabaseException {
+        Map<Integer, Structure> structuresById = Maps.newHashMapWithExpectedSize(structures.size());
+        for (Structure structure : structures) {
+            structuresById.put(structure.getId(), structure);
+        }
+        Map<Structure, String> result = Maps.newHashMapWithExpectedSize(structuresById.size());
+        Session hibernateSession = null;
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            Query query = hibernateSession
+                    .createQuery("select struc.id, struc.mol.string from Structure as struc where struc.id in (:ids)");
+            for (List<Integer> ids : Iterables.partition(structuresById.keySet(), IN_CLAUSE_SIZE)) {
+                query.setParameterList("ids", ids);
+                for (Object o : query.list()) {
+                    Object[] row = (Object[]) o;
+                    result.put(structuresById.get(row[0]), (String) row[1]);
+                }
+            }
+            hibernateSession.getTransaction().commit();
+        } catch (HibernateException ex) {
+            logger.error("Could not fetch Mol Strings from Database.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Could not fetch Mol Strings from Database", ex);
+        }
+        return result;
+    }
+
     @Override
     public Map<AccumulationFunction, Double> getAccNumPropertyDataset(PropertyDefinition property)
             throws DatabaseException {
@@ -1510,76 +2737,12 @@ public class DbManagerHibernate implements DbManager {
          */
         Map<Scaffold, Integer> counts = Maps.newHashMap();
         Session hibernateSession = null;
-        String acc;
-
-        switch (accumulation) {
-        case Average:
-            acc = "avg";
-            break;
-        case Maximum:
-            acc = "max";
-            break;
-        case Minimum:
-            acc = "min";
-            break;
-        case Sum:
-            acc = "sum";
-            break;
-        default:
-            throw new IllegalArgumentException("Unsupported accumulation function");
-        }
 
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             
-            if(!propDef.isScaffoldProperty()) {
-                /*
-                 * select pairs of scaffold_id and accumulated value for each single
-                 * scaffold (not tree accumulated!)
-                 */
-                hibernateSession.beginTransaction();
-                Query query = hibernateSession.createSQLQuery("SELECT scaf.structure_id, " + acc
-                        + "(props.value), count(scaf.structure_id) " + "FROM scaffold_data scaf "
-                        + "JOIN molecule_scaffold_relationship r ON scaf.structure_id = r.scaffold_id "
-                        + "JOIN molecule_num_properties props ON r.molecule_id = props.structure_id "
-                        + "JOIN subset_molecule_relationship subs ON r.molecule_id = subs.molecule_id "
-                        + "WHERE props.property_id = :propDef " + "AND subs.subset_id = :subset "
-                        + "AND scaf.tree_id = :tree " + "GROUP BY scaf.structure_id");
-                // HQL Query yielding the same result but taking >5 times as long
-                // Query query = session.createQuery("SELECT scaf.id, " + acc +
-                // "(prop.value) FROM" +
-                // " Scaffold scaf join scaf.generationMolecules mols, MoleculeNumProperty prop"
-                // +
-                // " WHERE mols = prop.molecule AND mols IN (SELECT submols from Subset subset join subset.molecules as submols where subset = :subset)"
-                // +
-                // " AND prop.type = :propDef AND scaf.tree = :tree GROUP BY scaf");
-                query.setParameter("propDef", propDef);
-                query.setParameter("subset", subset);
-                query.setParameter("tree", root.getTree());
-    
-                @SuppressWarnings("unchecked")
-                List<Object[]> queryResult = query.list();
-                hibernateSession.getTransaction().commit();
-    
-                Map<Integer, IntegerDoublePair> resultMap = Maps.newHashMapWithExpectedSize(queryResult.size());
-                for (Object[] o : queryResult) {
-                    Integer count;
-                    if(o[2] instanceof BigInteger)
-                        count = ((BigInteger) o[2]).intValue();
-                    else
-                        count = (Integer)(o[2]);
-                    Double value = (Double) o[1];
-                    resultMap.put((Integer) o[0], new IntegerDoublePair(count, value));
-                }
-                for (Scaffold scaffold : Scaffolds.getSubtreePreorderIterable(root)) {
-                    IntegerDoublePair pair = resultMap.get(scaffold.getId());
-                    /*
-                     * pairs are null iff all properties are undefined for all
-                     * molecules associated with the scaffold
-                     */
-                    ret.put(scaffold, pair == null ? null : pair.d);
-                    counts.put(scaffold, pair == null ? 0 : pair.i);
-                }
+            if (!propDef.isScaffoldProperty()) {
+                return getAccNumPropertyStatistics(propDef, subset, root, subtreeCumulative).getValues(accumulation);
             }
             else{
                 // scaffold properties are passed into the map
@@ -1674,6 +2837,91 @@ public class DbManagerHibernate implements DbManager {
         }
     }
 
+    @Override
+    public AccumulatedNumProperties getAccNumPropertyStatistics(PropertyDefinition propDef, Subset subset,
+            Scaffold root, boolean subtreeCumulative) throws DatabaseException {
+        Preconditions.checkArgument(!propDef.isScaffoldProperty(), "Only molecule properties accepted!");
+        Preconditions.checkArgument(!propDef.isStringProperty());
+
+        Session hibernateSession = null;
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            /*
+             * select count, sum, min and max of the values of each single
+             * scaffold (not tree accumulated!) at once
+             */
+            hibernateSession.beginTransaction();
+            Query query = hibernateSession.createSQLQuery("SELECT scaf.structure_id, count(props.value), "
+                    + "sum(props.value), min(props.value), max(props.value) " + "FROM scaffold_data scaf "
+                    + "JOIN molecule_scaffold_relationship r ON scaf.structure_id = r.scaffold_id "
+                    + "JOIN molecule_num_properties props ON r.molecule_id = props.structure_id "
+                    + "JOIN subset_molecule_relationship subs ON r.molecule_id = subs.molecule_id "
+                    + "WHERE props.property_id = :propDef " + "AND subs.subset_id = :subset "
+                    + "AND scaf.tree_id = :tree " + "GROUP BY scaf.structure_id");
+            query.setParameter("propDef", propDef);
+            query.setParameter("subset", subset);
+            query.setParameter("tree", root.getTree());
+
+            @SuppressWarnings("unchecked")
+            List<Object[]> queryResult = query.list();
+            hibernateSession.getTransaction().commit();
+
+            double moleculeMinimum = Double.POSITIVE_INFINITY;
+            double moleculeMaximum = Double.NEGATIVE_INFINITY;
+            Map<Integer, AccumulatedNumProperties.Statistics> resultMap = Maps.newHashMapWithExpectedSize(queryResult
+                    .size());
+            for (Object[] o : queryResult) {
+                AccumulatedNumProperties.Statistics statistics = new AccumulatedNumProperties.Statistics(
+                        ((Number) o[1]).intValue(), ((Number) o[2]).doubleValue(), ((Number) o[3]).doubleValue(),
+                        ((Number) o[4]).doubleValue());
+                resultMap.put((Integer) o[0], statistics);
+            }
+
+            /*
+             * scaffolds are mapped to null iff all properties are undefined
+             * for all molecules associated with the scaffold
+             */
+            Map<Scaffold, AccumulatedNumProperties.Statistics> ret = Maps.newHashMap();
+            List<Scaffold> scaffolds = Lists.newArrayList(Scaffolds.getSubtreePreorderIterable(root));
+            for (Scaffold scaffold : scaffolds) {
+                AccumulatedNumProperties.Statistics statistics = resultMap.get(scaffold.getId());
+                if (statistics != null) {
+                    moleculeMinimum = Math.min(moleculeMinimum, statistics.getMinimum());
+                    moleculeMaximum = Math.max(moleculeMaximum, statistics.getMaximum());
+                    // copy, because the statistics may be accumulated below
+                    statistics = new AccumulatedNumProperties.Statistics(statistics);
+                }
+                ret.put(scaffold, statistics);
+            }
+
+            if (subtreeCumulative) {
+                /*
+                 * in reverse preorder each scaffold is visited after its
+                 * children, so its statistics are complete when they are added
+                 * to the parent
+                 */
+                for (Scaffold scaf : Lists.reverse(scaffolds)) {
+                    AccumulatedNumProperties.Statistics statistics = ret.get(scaf);
+                    if (scaf == root || statistics == null) {
+                        continue;
+                    }
+                    Scaffold parent = scaf.getParent();
+                    AccumulatedNumProperties.Statistics parentStatistics = ret.get(parent);
+                    if (parentStatistics == null) {
+                        ret.put(parent, new AccumulatedNumProperties.Statistics(statistics));
+                    } else {
+                        parentStatistics.add(statistics);
+                    }
+                }
+            }
+            return new AccumulatedNumProperties(ret, moleculeMinimum, moleculeMaximum);
+        } catch (HibernateException ex) {
+            logger.error("Querying of accumulated Property failed.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Querying of accumulated Property failed", ex);
+        }
+    }
+
     @Override
     public Double getAccNumPropertySubset(PropertyDefinition property, AccumulationFunction function, Subset subset)
             throws DatabaseException {
@@ -1881,8 +3129,8 @@ public class DbManagerHibernate implements DbManager {
                 }
             }
 
-            Query query = hibernateSession.createQuery("SELECT count(distinct prop.value) " + "FROM " + propertyType
-                    + " prop " + "WHERE prop.type = :propdef");
+            Query query = hibernateSession.createQuery("SELECT count(distinct " + getValueColumn(propDef, "prop")
+                    + ") FROM " + propertyType + " prop " + "WHERE prop.type = :propdef");
             query.setParameter("propdef", propDef);
 
             long l = (Long) query.uniqueResult();
@@ -1914,15 +3162,19 @@ public class DbManagerHibernate implements DbManager {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
 
-            Query query = hibernateSession.createQuery("SELECT distinct prop.value " + "FROM " + propertyType
-                    + " prop " + "WHERE prop.type = :propdef");
+            Query query = hibernateSession.createQuery("SELECT distinct prop.value, prop.fingerprint " + "FROM "
+                    + propertyType + " prop " + "WHERE prop.type = :propdef");
             query.setParameter("propdef", propDef);
 
             @SuppressWarnings("unchecked")
-            List<String> strings = query.list();
+            List<Object[]> rows = query.list();
 
             hibernateSession.getTransaction().commit();
 
+            List<String> strings = Lists.newArrayListWithCapacity(rows.size());
+            for (Object[] row : rows) {
+                strings.add(StringProperty.getValue(propDef.getPropertyType(), (String) row[0], (byte[]) row[1]));
+            }
             return strings;
 
         } catch (HibernateException ex) {
@@ -1947,7 +3199,7 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            Query query = hibernateSession.createQuery("SELECT scaf.id, prop.value "
+            Query query = hibernateSession.createQuery("SELECT scaf.id, prop.value, prop.fingerprint "
                     + "FROM Scaffold AS scaf JOIN scaf.generationMolecules scafmol, "
                     + " MoleculeStringProperty prop, " + "Subset AS subs JOIN subs.molecules submol "
                     + "WHERE scafmol = prop.molecule " + "AND submol = scafmol " + "AND scaf.tree = :tree "
@@ -1963,9 +3215,9 @@ public class DbManagerHibernate implements DbManager {
 
             for (Object[] o : result) {
                 Scaffold scaf = scaffolds.get(o[0]);
-                String str = (String) o[1];
+                String str = StringProperty.getValue(propDef.getPropertyType(), (String) o[1], (byte[]) o[2]);
                 if (scaf != null) {
-                    Integer i = dist.get(scaf, o[1]);
+                    Integer i = dist.get(scaf, str);
                     if (i == null) {
                         dist.put(scaf, str, 1);
                     } else {
@@ -2006,9 +3258,14 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            Query query = hibernateSession.createQuery("Select mol.id, prop.value from " + propertyType + " prop, "
+            // packed fingerprints are ordered by their bits, malformed ones by
+            // their text
+            boolean packed = StringProperty.isPacked(property.getPropertyType());
+            String orderBy = packed ? "prop.fingerprint " + order + ", prop.value " + order : "prop.value " + order;
+            Query query = hibernateSession.createQuery("Select mol.id, prop.value"
+                    + (packed ? ", prop.fingerprint" : "") + " from " + propertyType + " prop, "
                     + "Subset subset join subset.molecules mol where subset = :subset and "
-                    + "prop.molecule = mol and prop.type = :type order by prop.value " + order);
+                    + "prop.molecule = mol and prop.type = :type order by " + orderBy);
             query.setParameter("subset", subset);
             query.setParameter("type", property);
             @SuppressWarnings("unchecked")
@@ -2021,6 +3278,10 @@ public class DbManagerHibernate implements DbManager {
             Object currentPropValue;
             for (Object[] queryResult : queryResults) {
                 currentPropValue = queryResult[1];
+                if (packed && queryResult[2] != null) {
+                    // compare packed fingerprints by content
+                    currentPropValue = ByteBuffer.wrap((byte[]) queryResult[2]);
+                }
                 if (!currentPropValue.equals(propValue)) {
                     i++;
                     propValue = currentPropValue;
@@ -2261,8 +3522,11 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            Query query = hibernateSession.createQuery("from Molecule where dataset = :dataset and smiles = :smiles");
+            // molecules without a hash are compared by their smiles only
+            Query query = hibernateSession.createQuery("from Molecule where dataset = :dataset "
+                    + "and (smilesHash = :hash or smilesHash is null) and smiles = :smiles");
             query.setParameter("dataset", dataset);
+            query.setLong("hash", Structure.hashSmiles(smiles));
             query.setParameter("smiles", smiles);
             Molecule mol = (Molecule) query.uniqueResult();
             hibernateSession.getTransaction().commit();
@@ -2283,7 +3547,7 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            sets = hibernateSession.createQuery("from Ruleset order by Title").list();
+            sets = hibernateSession.createQuery("from Ruleset order by Title").setCacheable(true).list();
             hibernateSession.getTransaction().commit();
         } catch (HibernateException ex) {
             logger.error("Query from Ruleset failed.\n{}\n{}", ex, stacktrace(ex));
@@ -2378,65 +3642,101 @@ public class DbManagerHibernate implements DbManager {
         try {
             hibernateSession = sessionFactory.getCurrentSession();
             hibernateSession.beginTransaction();
-            Query smilesQuery = hibernateSession
-                    .createQuery("SELECT mol.smiles from Molecule mol WHERE mol.dataset = :dataset");
-            smilesQuery.setParameter("dataset", mergeIterator.getDataset());
-            @SuppressWarnings("unchecked")
-            Set<String> smileStrings = Sets.newHashSet(smilesQuery.list());
-
-            Collection<PropertyDefinition> mergedPropDefs = mergeIterator.getMergedProperties();
-            Query molQuery = hibernateSession
-                    .createQuery("from Molecule where dataset = :dataset and smiles = :smiles");
-            molQuery.setParameter("dataset", mergeIterator.getDataset());
+            List<PropertyDefinition> mergedNumPropDefs = Lists.newArrayList();
+            List<PropertyDefinition> mergedStringPropDefs = Lists.newArrayList();
+            for (PropertyDefinition propDef : mergeIterator.getMergedProperties()) {
+                if (propDef.isStringProperty()) {
+                    mergedStringPropDefs.add(propDef);
+                } else {
+                    mergedNumPropDefs.add(propDef);
+                }
+            }
+            /*
+             * the molecules of a whole chunk are looked up at once, distinct
+             * smiles may share their hash, so the smiles are compared too.
+             * Molecules without a hash are found by their smiles.
+             */
+            Query moleculeQuery = hibernateSession.createQuery("from Molecule mol where mol.dataset = :dataset "
+                    + "and (mol.smilesHash in (:hashes) or (mol.smilesHash is null and mol.smiles in (:smiles)))");
             Query numPropertyQuery = hibernateSession
-                    .createQuery("from MoleculeNumProperty where molecule=:mol and type=:propdef");
+                    .createQuery("select prop.molecule.id, prop from MoleculeNumProperty prop "
+                            + "where prop.molecule.id in (:ids) and prop.type in (:propdefs)");
             Query stringPropertyQuery = hibernateSession
-                    .createQuery("from MoleculeStringProperty where molecule=:mol and type=:propdef");
+                    .createQuery("select prop.molecule.id, prop from MoleculeStringProperty prop "
+                            + "where prop.molecule.id in (:ids) and prop.type in (:propdefs)");
             List<Property> newProps = Lists.newArrayList();
             List<Property> updatedProps = Lists.newArrayList();
+            Map<String, Molecule> existingMolecules = Maps.newHashMap();
+            Map<Integer, Molecule> existingById = Maps.newHashMap();
+            List<Long> hashes = Lists.newArrayListWithCapacity(IN_CLAUSE_SIZE);
             while (mergeIterator.hasNext()) {
-                String currentSmiles = mergeIterator.next();
+                List<String> chunk = mergeIterator.nextChunk(IN_CLAUSE_SIZE);
                 if (Thread.currentThread().isInterrupted()) {
                     // import has been canceled
                     hibernateSession.getTransaction().rollback();
                     return;
                 }
-                if (smileStrings.contains(currentSmiles)) {
-                    // molecule already in DB: merge
-                    molQuery.setParameter("smiles", currentSmiles);
-                    Molecule currentMol = (Molecule) molQuery.uniqueResult();
-                    for (PropertyDefinition propDef : mergedPropDefs) {
-                        Query propertyQuery;
-                        if (propDef.isStringProperty())
-                            propertyQuery = stringPropertyQuery;
-                        else
-                            propertyQuery = numPropertyQuery;
-                        propertyQuery.setParameter("mol", currentMol);
-                        propertyQuery.setParameter("propdef", propDef);
-                        if (propDef.isStringProperty()) {
-                            MoleculeStringProperty stringProp = (MoleculeStringProperty) propertyQuery.uniqueResult();
-                            currentMol.getStringProperties().put(propDef.getId(), stringProp);
-                        } else {
-                            MoleculeNumProperty numProp = (MoleculeNumProperty) propertyQuery.uniqueResult();
-                            currentMol.getNumProperties().put(propDef.getId(), numProp);
+
+                hashes.clear();
+                for (String smiles : chunk) {
+                    hashes.add(Structure.hashSmiles(smiles));
+                }
+                existingMolecules.clear();
+                existingById.clear();
+                moleculeQuery.setParameter("dataset", mergeIterator.getDataset());
+                moleculeQuery.setParameterList("hashes", hashes);
+                moleculeQuery.setParameterList("smiles", chunk);
+                for (Object o : moleculeQuery.list()) {
+                    Molecule mol = (Molecule) o;
+                    existingMolecules.put(mol.getSmiles(), mol);
+                    existingById.put(mol.getId(), mol);
+                }
+
+                // load the merged properties of all existing molecules
+                if (!existingById.isEmpty()) {
+                    if (!mergedNumPropDefs.isEmpty()) {
+                        numPropertyQuery.setParameterList("ids", existingById.keySet());
+                        numPropertyQuery.setParameterList("propdefs", mergedNumPropDefs);
+                        for (Object o : numPropertyQuery.list()) {
+                            Object[] row = (Object[]) o;
+                            MoleculeNumProperty numProp = (MoleculeNumProperty) row[1];
+                            existingById.get(row[0]).getNumProperties().put(numProp.getType().getId(), numProp);
                         }
                     }
-                    newProps.clear();
-                    updatedProps.clear();
-                    mergeIterator.mergeInto(currentMol, newProps, updatedProps);
-                    hibernateSession.update(currentMol);
-                    for (DbObject o : updatedProps)
-                        hibernateSession.update(o);
-                    for (DbObject o : newProps)
-                        hibernateSession.save(o);
-                } else {
-                    // Molecule not in DB create a new one
-                    newProps.clear();
-                    Molecule newMol = mergeIterator.newMolecule(newProps);
-                    if (newMol != null) {
-                        hibernateSession.save(newMol);
-                        for (DbObject o : newProps) {
+                    if (!mergedStringPropDefs.isEmpty()) {
+                        stringPropertyQuery.setParameterList("ids", existingById.keySet());
+                        stringPropertyQuery.setParameterList("propdefs", mergedStringPropDefs);
+                        for (Object o : stringPropertyQuery.list()) {
+                            Object[] row = (Object[]) o;
+                            MoleculeStringProperty stringProp = (MoleculeStringProperty) row[1];
+                            existingById.get(row[0]).getStringProperties().put(stringProp.getType().getId(),
+                                    stringProp);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    mergeIterator.select(i);
+                    Molecule currentMol = existingMolecules.get(chunk.get(i));
+                    if (currentMol != null) {
+                        // molecule already in DB: merge
+                        newProps.clear();
+                        updatedProps.clear();
+                        mergeIterator.mergeInto(currentMol, newProps, updatedProps);
+                        hibernateSession.update(currentMol);
+                        for (DbObject o : updatedProps)
+                            hibernateSession.update(o);
+                        for (DbObject o : newProps)
                             hibernateSession.save(o);
+                    } else {
+                        // Molecule not in DB create a new one
+                        newProps.clear();
+                        Molecule newMol = mergeIterator.newMolecule(newProps);
+                        if (newMol != null) {
+                            hibernateSession.save(newMol);
+                            for (DbObject o : newProps) {
+                                hibernateSession.save(o);
+                            }
                         }
                     }
                 }
@@ -2485,13 +3785,14 @@ public class DbManagerHibernate implements DbManager {
              */
             if (propertyDefinition.isStringProperty()) {
                 Query propQuery = hibernateSession
-                        .createQuery("select prop.value, prop.molecule from MoleculeStringProperty prop where prop.type = :propDef");
+                        .createQuery("select prop.value, prop.fingerprint, prop.molecule from MoleculeStringProperty prop where prop.type = :propDef");
                 propQuery.setParameter("propDef", propertyDefinition);
                 Map<String, Molecule> molMap = Maps.newHashMap();
                 @SuppressWarnings("unchecked")
                 List<Object[]> tuples = propQuery.list();
                 for (Object[] t : tuples) {
-                    molMap.put((String) t[0], (Molecule) t[1]);
+                    molMap.put(StringProperty.getValue(propertyDefinition.getPropertyType(), (String) t[0],
+                            (byte[]) t[1]), (Molecule) t[2]);
                 }
                 molecules = molMap;
             } else { // numProperty
@@ -2601,7 +3902,7 @@ public class DbManagerHibernate implements DbManager {
             throw new DatabaseException("Could not find database driver", e);
         }
         try {
-            retVal = DriverManager.getConnection(connectionUrl, connectionUsername, connectionPassword);
+            retVal = DriverManager.getConnection(getJdbcUrl(), connectionUsername, connectionPassword);
         } catch (SQLException e) {
             throw new DatabaseException("Error connecting to database", e);
         }
@@ -2646,17 +3947,18 @@ public class DbManagerHibernate implements DbManager {
     }
 
     /*
-     * Creates the query Part for a Filterset
+     * Creates the query Part for a Filterset. The filters are ordered by their
+     * estimated selectivity and all values are bound as query parameters.
      * 
      * Precondition: m must be the Molecule
      */
-    private void getFiltersetQueryPart(Dataset dataset, Filterset filterset,
-            Map<String, PropertyDefinition> propDefParameterNames, StringBuilder queryString) {
+    private void getFiltersetQueryPart(Dataset dataset, Filterset filterset, Map<String, Object> queryParameters,
+            StringBuilder queryString) throws DatabaseException {
         queryString.append(" AND (");
         int i = 0;
         boolean first = true;
         // Each filter is encapsulated into a sub query
-        for (Filter filter : filterset.getFilters()) {
+        for (Filter filter : getOrderedFilters(dataset, filterset)) {
             // logic interconnection
             if (!first) {
                 if (filterset.isConjunctive()) {
@@ -2667,25 +3969,112 @@ public class DbManagerHibernate implements DbManager {
             } else {
                 first = false;
             }
-            String parameterName = "propDefParameterName" + i++;
-            propDefParameterNames.put(parameterName, filter.getPropDef(dataset));
+            String parameterName = "propDefParameterName" + i;
+            String valueParameterName = "valueParameterName" + i++;
+            queryParameters.put(parameterName, filter.getPropDef(dataset));
 
-            queryString.append(getFilterQueryPart(dataset, filter, parameterName));
+            queryString.append(getFilterQueryPart(dataset, filter, parameterName, valueParameterName,
+                    queryParameters));
         }
         queryString.append(")");
         logger.debug("Filter Query String: {}", queryString.toString());
     }
 
     /*
-     * Creates a query part for a single Filter
+     * Orders the filters of a filterset by their estimated selectivity. The
+     * most selective filters of a conjunctive filterset come first, the least
+     * selective filters of a disjunctive filterset come first, so the
+     * evaluation of each molecule can stop as early as possible.
+     */
+    private List<Filter> getOrderedFilters(Dataset dataset, Filterset filterset) {
+        List<Filter> filters = Lists.newArrayList(filterset.getFilters());
+        if (filters.size() < 2) {
+            return filters;
+        }
+        loadPropertyStatistics(dataset, filters);
+
+        final Map<Filter, Double> selectivities = Maps.newHashMap();
+        for (Filter filter : filters) {
+            PropertyStatistics statistics = propertyStatistics.getIfPresent(filter.getPropDef(dataset).getId());
+            if (statistics == null) {
+                statistics = PropertyStatistics.UNKNOWN;
+            }
+            selectivities.put(filter, statistics.getSelectivity(filter));
+        }
+        Ordering<Filter> ordering = Ordering.natural().onResultOf(Functions.forMap(selectivities));
+        Collections.sort(filters, filterset.isConjunctive() ? ordering : ordering.reverse());
+        logger.debug("Filter selectivities: {}", selectivities);
+
+        return filters;
+    }
+
+    /*
+     * Loads the statistics of the molecule properties of the given filters
+     * which are not cached yet. Failing to load the statistics only affects
+     * the order of the filters, so errors are logged and ignored.
+     */
+    private void loadPropertyStatistics(Dataset dataset, Iterable<Filter> filters) {
+        List<PropertyDefinition> missing = Lists.newArrayList();
+        for (Filter filter : filters) {
+            PropertyDefinition propDef = filter.getPropDef(dataset);
+            if (!propDef.isScaffoldProperty() && propertyStatistics.getIfPresent(propDef.getId()) == null) {
+                missing.add(propDef);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Session hibernateSession = null;
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            Query moleculesQuery = hibernateSession.createQuery("SELECT count(m) FROM Molecule m "
+                    + "WHERE m.dataset = :dataset");
+            moleculesQuery.setParameter("dataset", dataset);
+            long molecules = ((Number) moleculesQuery.uniqueResult()).longValue();
+            Query numQuery = hibernateSession.createQuery("SELECT count(p), min(p.value), max(p.value) "
+                    + "FROM MoleculeNumProperty p WHERE p.type = :propDef");
+            Query stringQuery = hibernateSession.createQuery("SELECT count(p) "
+                    + "FROM MoleculeStringProperty p WHERE p.type = :propDef");
+            for (PropertyDefinition propDef : missing) {
+                PropertyStatistics statistics;
+                if (propDef.isStringProperty()) {
+                    stringQuery.setParameter("propDef", propDef);
+                    long count = ((Number) stringQuery.uniqueResult()).longValue();
+                    statistics = new PropertyStatistics(molecules, count, Double.NaN, Double.NaN);
+                } else {
+                    numQuery.setParameter("propDef", propDef);
+                    Object[] row = (Object[]) numQuery.uniqueResult();
+                    long count = ((Number) row[0]).longValue();
+                    statistics = new PropertyStatistics(molecules, count, count == 0 ? Double.NaN
+                            : ((Number) row[1]).doubleValue(), count == 0 ? Double.NaN : ((Number) row[2])
+                            .doubleValue());
+                }
+                propertyStatistics.put(propDef.getId(), statistics);
+            }
+            hibernateSession.getTransaction().commit();
+        } catch (HibernateException ex) {
+            logger.warn("Loading property statistics failed, filters are not ordered.\n{}\n{}", ex,
+                    stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+        }
+    }
+
+    /*
+     * Creates a query part for a single Filter. The filter value is bound to
+     * the parameter valueParameterName.
      * 
      * e.g. NumFilter->IsDefined or NumFilter->GreaterOrEqual(3)
      */
-    private String getFilterQueryPart(Dataset dataset, Filter filter, String propDefParameterName) {
-        StringBuilder queryPart = new StringBuilder("");
+    private String getFilterQueryPart(Dataset dataset, Filter filter, String propDefParameterName,
+            String valueParameterName, Map<String, Object> queryParameters) throws DatabaseException {
         final String moleculeIn = " m IN ";
         final String moleculeNotIn = " m NOT IN ";
+        final String value = ":" + valueParameterName;
         String subQueryBody;
+        String condition;
+        boolean negated;
 
         /*
          * NumFilter
@@ -2699,73 +4088,48 @@ public class DbManagerHibernate implements DbManager {
                         + "WHERE p.scaffold = s AND p.type = :" + propDefParameterName;
             } else {
                 /*
-                 * Molecule NumProperty Filter
+                 * Molecule NumProperty Filter, answered by the (property_id,
+                 * value) index without joining the molecules
                  */
-                subQueryBody = "(SELECT mol FROM Molecule mol, MoleculeNumProperty p "
-                        + "WHERE p.molecule = mol AND p.type = :" + propDefParameterName;
+                subQueryBody = "(SELECT p.molecule FROM MoleculeNumProperty p WHERE p.type = :"
+                        + propDefParameterName;
             }
 
-            switch (((NumFilter) filter).getComparisonFunction()) {
+            NumComparisonFunction function = ((NumFilter) filter).getComparisonFunction();
+            switch (function) {
             case IsDefined:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(")");
-                break;
             case IsNotDefined:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(")");
+                condition = "";
                 break;
             case IsEqual:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value = ");
-                queryPart.append(((NumFilter) filter).getValue());
-                queryPart.append(")");
-                break;
             case IsNotEqual:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value = ");
-                queryPart.append(((NumFilter) filter).getValue());
-                queryPart.append(")");
+                condition = " AND p.value = " + value;
                 break;
             case IsGreater:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value > ");
-                queryPart.append(((NumFilter) filter).getValue());
-                queryPart.append(")");
+                condition = " AND p.value > " + value;
                 break;
             case IsGreaterOrEqual:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value >= ");
-                queryPart.append(((NumFilter) filter).getValue());
-                queryPart.append(")");
+                condition = " AND p.value >= " + value;
                 break;
             case IsLess:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value < ");
-                queryPart.append(((NumFilter) filter).getValue());
-                queryPart.append(")");
+                condition = " AND p.value < " + value;
                 break;
             case IsLessOrEqual:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value <= ");
-                queryPart.append(((NumFilter) filter).getValue());
-                queryPart.append(")");
+                condition = " AND p.value <= " + value;
                 break;
             default:
                 throw new IllegalArgumentException("This NumComparisonFunction is currently not supportet");
             }
+            if (!condition.isEmpty()) {
+                queryParameters.put(valueParameterName, ((NumFilter) filter).getValue());
+            }
+            negated = function == NumComparisonFunction.IsNotDefined || function == NumComparisonFunction.IsNotEqual;
             /*
              * StringFilter
              */
         } else {
-            if (filter.getPropDef(dataset).isScaffoldProperty()) {
+            PropertyDefinition propDef = filter.getPropDef(dataset);
+            if (propDef.isScaffoldProperty()) {
                 /*
                  * Scaffold StringProperty Filter
                  */
@@ -2775,134 +4139,146 @@ public class DbManagerHibernate implements DbManager {
                 /*
                  * Molecule StringProperty Filter
                  */
-                subQueryBody = "(SELECT mol FROM Molecule mol, MoleculeStringProperty p "
-                        + "WHERE p.molecule = mol AND p.type = :" + propDefParameterName;
+                subQueryBody = "(SELECT p.molecule FROM MoleculeStringProperty p WHERE p.type = :"
+                        + propDefParameterName;
             }
 
-            switch (((StringFilter) filter).getComparisonFunction()) {
+            StringComparisonFunction function = ((StringFilter) filter).getComparisonFunction();
+            String filterValue = ((StringFilter) filter).getValue();
+            String parameter = filterValue;
+            switch (function) {
             case IsDefined:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(")");
-                break;
             case IsNotDefined:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(")");
+                condition = "";
                 break;
             case IsEqual:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("')");
-                break;
             case IsNotEqual:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("')");
+                condition = " AND p.value like " + value;
                 break;
             case Begins:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("%')");
-                break;
-            case BeginsInverse:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("' like concat(p.value, '%'))");
-                break;
             case BeginsNot:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("%')");
+                condition = " AND p.value like " + value;
+                parameter = filterValue + "%";
                 break;
+            case BeginsInverse:
             case BeginsNotInverse:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("' like concat(p.value, '%'))");
+                condition = " AND " + value + " like concat(p.value, '%')";
                 break;
             case Ends:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '%");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("')");
-                break;
-            case EndsInverse:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("' like concat('%', p.value))");
-                break;
             case EndsNot:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '%");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("')");
+                condition = " AND p.value like " + value;
+                parameter = "%" + filterValue;
                 break;
+            case EndsInverse:
             case EndsNotInverse:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("' like concat('%', p.value))");
+                condition = " AND " + value + " like concat('%', p.value)";
                 break;
             case Contains:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '%");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("%')");
-                break;
-            case ContainsInverse:
-                queryPart.append(moleculeIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("' like concat('%', concat(p.value, '%')))");
-                break;
             case ContainsNot:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND p.value like '%");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("%')");
+                condition = " AND p.value like " + value;
+                parameter = "%" + filterValue + "%";
                 break;
+            case ContainsInverse:
             case ContainsNotInverse:
-                queryPart.append(moleculeNotIn);
-                queryPart.append(subQueryBody);
-                queryPart.append(" AND '");
-                queryPart.append(((StringFilter) filter).getValue());
-                queryPart.append("' like concat('%', concat(p.value, '%')))");
+                condition = " AND " + value + " like concat('%', concat(p.value, '%'))";
                 break;
             default:
                 throw new IllegalArgumentException("This StringComparisonFunction is currently not supportet");
             }
+            if (!condition.isEmpty() && StringProperty.isPacked(propDef.getPropertyType())) {
+                /*
+                 * The textual format of packed bit fingerprints is not stored,
+                 * so equality is tested on the packed bits and all other
+                 * functions are evaluated in memory
+                 */
+                byte[] packed = StringProperty.pack(propDef.getPropertyType(), filterValue);
+                if ((function == StringComparisonFunction.IsEqual || function == StringComparisonFunction.IsNotEqual)
+                        && packed != null) {
+                    condition = " AND p.fingerprint = " + value;
+                    queryParameters.put(valueParameterName, packed);
+                } else {
+                    condition = " AND p.id IN (" + value + ")";
+                    queryParameters.put(valueParameterName,
+                            getMatchingFingerprintIds(propDef, function, filterValue));
+                }
+            } else if (!condition.isEmpty()) {
+                queryParameters.put(valueParameterName, parameter);
+            }
+            negated = EnumSet.of(StringComparisonFunction.IsNotDefined, StringComparisonFunction.IsNotEqual,
+                    StringComparisonFunction.BeginsNot, StringComparisonFunction.BeginsNotInverse,
+                    StringComparisonFunction.EndsNot, StringComparisonFunction.EndsNotInverse,
+                    StringComparisonFunction.ContainsNot, StringComparisonFunction.ContainsNotInverse).contains(
+                    function);
         }
-        return queryPart.toString();
+        return (negated ? moleculeNotIn : moleculeIn) + subQueryBody + condition + ")";
     }
 
-    private class IntegerDoublePair {
-        public Double d;
-        public Integer i;
+    /*
+     * Returns the ids of the properties of a bit fingerprint whose textual
+     * format matches the filter value. Negated functions are matched like
+     * their positive counterparts, the negation is part of the query.
+     */
+    private List<Integer> getMatchingFingerprintIds(PropertyDefinition propDef, StringComparisonFunction function,
+            String filterValue) throws DatabaseException {
+        Session hibernateSession = null;
+        List<Integer> ids = Lists.newArrayList();
+
+        try {
+            hibernateSession = sessionFactory.getCurrentSession();
+            hibernateSession.beginTransaction();
+            Query query = hibernateSession.createQuery("SELECT p.id, p.value, p.fingerprint FROM "
+                    + (propDef.isScaffoldProperty() ? "ScaffoldStringProperty" : "MoleculeStringProperty")
+                    + " p WHERE p.type = :propDef");
+            query.setParameter("propDef", propDef);
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = query.list();
+            hibernateSession.getTransaction().commit();
 
-        public IntegerDoublePair(Integer i, Double d) {
-            this.i = i;
-            this.d = d;
+            for (Object[] row : rows) {
+                String value = StringProperty.getValue(propDef.getPropertyType(), (String) row[1], (byte[]) row[2]);
+                boolean matches;
+                switch (function) {
+                case IsEqual:
+                case IsNotEqual:
+                    matches = value.equals(filterValue);
+                    break;
+                case Begins:
+                case BeginsNot:
+                    matches = value.startsWith(filterValue);
+                    break;
+                case BeginsInverse:
+                case BeginsNotInverse:
+                    matches = filterValue.startsWith(value);
+                    break;
+                case Ends:
+                case EndsNot:
+                    matches = value.endsWith(filterValue);
+                    break;
+                case EndsInverse:
+                case EndsNotInverse:
+                    matches = filterValue.endsWith(value);
+                    break;
+                case Contains:
+                case ContainsNot:
+                    matches = value.contains(filterValue);
+                    break;
+                default:
+                    matches = filterValue.contains(value);
+                }
+                if (matches) {
+                    ids.add((Integer) row[0]);
+                }
+            }
+        } catch (HibernateException ex) {
+            logger.error("Could not fetch fingerprints from Database.\n{}\n{}", ex, stacktrace(ex));
+            closeAndRollBackErroneousSession(hibernateSession);
+            throw new DatabaseException("Could not fetch fingerprints from Database", ex);
+        }
+        if (ids.isEmpty()) {
+            // an empty IN list is not valid SQL
+            ids.add(-1);
         }
+        return ids;
     }
 
 }
\ No newline at end of file
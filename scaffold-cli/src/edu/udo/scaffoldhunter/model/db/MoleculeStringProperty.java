@@ -42,7 +42,7 @@ public class MoleculeStringProperty extends StringProperty {
      */
     public MoleculeStringProperty(PropertyDefinition type, String value) {
         this.type = type;
-        this.value = value;
+        setValue(value);
     }
 
     /**
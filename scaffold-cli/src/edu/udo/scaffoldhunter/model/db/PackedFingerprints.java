@@ -0,0 +1,100 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.db;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The packed bit fingerprints of many molecules in a single array. The
+ * fingerprint of the <code>i</code>-th molecule starts at word
+ * <code>i * getWordCount()</code>. Bit <code>j</code> of a fingerprint is bit
+ * <code>j % 64</code> of its word <code>j / 64</code>.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class PackedFingerprints {
+
+    private final int[] moleculeIds;
+    private final long[] words;
+    private final int wordCount;
+    private final int length;
+
+    /**
+     * Creates new packed fingerprints
+     * 
+     * @param moleculeIds
+     *            the ids of the molecules
+     * @param words
+     *            the words of all fingerprints
+     * @param length
+     *            the length of each fingerprint in bits
+     * @throws IllegalArgumentException
+     *             if <code>words</code> does not hold all fingerprints. Thus
+     *             the first word of each fingerprint is an <code>int</code>
+     *             index into <code>words</code>.
+     */
+    public PackedFingerprints(int[] moleculeIds, long[] words, int length) {
+        Preconditions.checkArgument(length >= 0);
+        this.moleculeIds = moleculeIds;
+        this.words = words;
+        this.length = length;
+        this.wordCount = (length + Long.SIZE - 1) / Long.SIZE;
+        Preconditions.checkArgument(words.length >= (long) moleculeIds.length * wordCount, "too few words");
+    }
+
+    /**
+     * @return the number of fingerprints
+     */
+    public int size() {
+        return moleculeIds.length;
+    }
+
+    /**
+     * @return the ids of the molecules, not copied
+     */
+    public int[] getMoleculeIds() {
+        return moleculeIds;
+    }
+
+    /**
+     * @return the words of all fingerprints, not copied
+     */
+    public long[] getWords() {
+        return words;
+    }
+
+    /**
+     * @return the number of words of each fingerprint
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * @return the length of each fingerprint in bits
+     */
+    public int getLength() {
+        return length;
+    }
+}
@@ -43,6 +43,12 @@ public class PropertyDefinition extends DbObject implements Comparable<PropertyD
      * if this Property is selectable for a mapping to Visualization in GUI
      */
     private boolean mappable;
+    /**
+     * the highest id of the structures whose calculated properties are
+     * stored while a calculation of this property is incomplete,
+     * <code>null</code> if the property is complete
+     */
+    private Integer calculatedUpTo;
 
     /**
      * default constructor
@@ -228,6 +234,25 @@ public class PropertyDefinition extends DbObject implements Comparable<PropertyD
         this.scaffoldProperty = scaffoldProperty;
     }
 
+    /**
+     * @return the highest id of the structures whose properties are stored
+     *         by an incomplete calculation, <code>null</code> if the property
+     *         is complete
+     */
+    public Integer getCalculatedUpTo() {
+        return calculatedUpTo;
+    }
+
+    /**
+     * @param calculatedUpTo
+     *            the highest id of the structures whose properties are stored
+     *            by an incomplete calculation, <code>null</code> if the
+     *            property is complete
+     */
+    public void setCalculatedUpTo(Integer calculatedUpTo) {
+        this.calculatedUpTo = calculatedUpTo;
+    }
+
     @Override
     public int compareTo(PropertyDefinition o) {
         return getKey().compareTo(o.getKey());
@@ -0,0 +1,164 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.db;
+
+import edu.udo.scaffoldhunter.model.NumComparisonFunction;
+import edu.udo.scaffoldhunter.model.StringComparisonFunction;
+
+/**
+ * Statistics of the values of a molecule property, which are used to estimate
+ * the fraction of molecules accepted by a {@link Filter}. Numerical values are
+ * assumed to be uniformly distributed between their minimum and maximum, the
+ * string comparisons use fixed fractions of the defined values.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+class PropertyStatistics {
+
+    /**
+     * statistics for properties without statistics, e.g. scaffold properties
+     */
+    static final PropertyStatistics UNKNOWN = new PropertyStatistics(0, 0, Double.NaN, Double.NaN);
+
+    private static final double UNKNOWN_SELECTIVITY = 0.5;
+    private static final double EQUAL_FRACTION = 0.01;
+    private static final double BEGINS_FRACTION = 0.1;
+    private static final double CONTAINS_FRACTION = 0.25;
+
+    private final long molecules;
+    private final long count;
+    private final double min;
+    private final double max;
+
+    /**
+     * @param molecules
+     *            the number of molecules in the dataset
+     * @param count
+     *            the number of molecules for which the property is defined
+     * @param min
+     *            the minimal value or <code>NaN</code> for string properties
+     * @param max
+     *            the maximal value or <code>NaN</code> for string properties
+     */
+    PropertyStatistics(long molecules, long count, double min, double max) {
+        this.molecules = molecules;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Estimates the fraction of molecules accepted by a filter on the property
+     * 
+     * @param filter
+     *            the filter
+     * @return the estimated fraction between 0 and 1
+     */
+    double getSelectivity(Filter filter) {
+        if (molecules == 0) {
+            return UNKNOWN_SELECTIVITY;
+        }
+        double defined = Math.min(1, (double) count / molecules);
+        if (filter instanceof NumFilter) {
+            NumFilter numFilter = (NumFilter) filter;
+            return getSelectivity(numFilter.getComparisonFunction(), numFilter.getValue(), defined);
+        } else {
+            return getSelectivity(((StringFilter) filter).getComparisonFunction(), defined);
+        }
+    }
+
+    private double getSelectivity(NumComparisonFunction function, double value, double defined) {
+        switch (function) {
+        case IsDefined:
+            return defined;
+        case IsNotDefined:
+            return 1 - defined;
+        case IsEqual:
+            return defined * equalFraction(value);
+        case IsNotEqual:
+            return 1 - defined * equalFraction(value);
+        case IsGreater:
+        case IsGreaterOrEqual:
+            return defined * rangeFraction(max - value);
+        case IsLess:
+        case IsLessOrEqual:
+            return defined * rangeFraction(value - min);
+        default:
+            return UNKNOWN_SELECTIVITY;
+        }
+    }
+
+    private double equalFraction(double value) {
+        if (Double.isNaN(min) || value < min || value > max) {
+            return 0;
+        }
+        return min == max ? 1 : EQUAL_FRACTION;
+    }
+
+    /**
+     * @return the fraction of the value range covered by a range of the given
+     *         length
+     */
+    private double rangeFraction(double length) {
+        if (Double.isNaN(min)) {
+            return UNKNOWN_SELECTIVITY;
+        }
+        if (max == min) {
+            return length >= 0 ? 1 : 0;
+        }
+        return Math.max(0, Math.min(1, length / (max - min)));
+    }
+
+    private static double getSelectivity(StringComparisonFunction function, double defined) {
+        switch (function) {
+        case IsDefined:
+            return defined;
+        case IsNotDefined:
+            return 1 - defined;
+        case IsEqual:
+            return defined * EQUAL_FRACTION;
+        case IsNotEqual:
+            return 1 - defined * EQUAL_FRACTION;
+        case Begins:
+        case BeginsInverse:
+        case EndsInverse:
+        case ContainsInverse:
+            return defined * BEGINS_FRACTION;
+        case BeginsNot:
+        case BeginsNotInverse:
+        case EndsNotInverse:
+        case ContainsNotInverse:
+            return 1 - defined * BEGINS_FRACTION;
+        case Ends:
+        case Contains:
+            return defined * CONTAINS_FRACTION;
+        case EndsNot:
+        case ContainsNot:
+            return 1 - defined * CONTAINS_FRACTION;
+        default:
+            return UNKNOWN_SELECTIVITY;
+        }
+    }
+}
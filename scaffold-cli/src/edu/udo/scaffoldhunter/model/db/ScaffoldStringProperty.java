@@ -42,7 +42,7 @@ public class ScaffoldStringProperty extends StringProperty {
      */
     public ScaffoldStringProperty(PropertyDefinition type, String value) {
         this.type = type;
-        this.value = value;
+        setValue(value);
     }
 
     /**
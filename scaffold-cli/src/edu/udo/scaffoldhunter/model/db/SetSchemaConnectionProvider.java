@@ -24,46 +24,243 @@ package edu.udo.scaffoldhunter.model.db;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hibernate.HibernateException;
 import org.hibernate.cfg.Environment;
 import org.hibernate.connection.DriverManagerConnectionProvider;
 import org.hibernate.dialect.MySQL5InnoDBDialect;
+import org.hibernate.util.PropertiesHelper;
+
+import edu.udo.scaffoldhunter.data.ConnectionData;
 
 /**
  * A connection Provider which sets the hibernate.default_schema for a HSQLDB
  * connection.
+ * <p>
+ * The provider keeps up to <code>hibernate.connection.pool_size</code> idle
+ * connections and hands out at most as many connections at the same time.
+ * Further requests wait for a free connection. Pooled connections are
+ * validated on checkout and replaced if they have been closed, e.g. by the
+ * MySQL server after its <code>wait_timeout</code>. The schema is set once for
+ * each physical connection.
+ * <p>
+ * The idle connections are kept by this provider, the pool of the super class
+ * is disabled. Thus every connection which is not kept idle, including the
+ * invalid ones, is closed through
+ * {@link DriverManagerConnectionProvider#closeConnection(Connection)}.
  * 
  * @author Henning Garus
  * 
  */
 public class SetSchemaConnectionProvider extends DriverManagerConnectionProvider {
 
+    /**
+     * maximal time to wait for a free connection in seconds
+     */
+    private static final long MAX_WAIT = 60;
+    /**
+     * maximal time to wait for the validation of a pooled connection in
+     * seconds
+     */
+    private static final int VALIDATION_TIMEOUT = 5;
+
     private String schema;
     private String dialect;
-    
+    private int poolSize;
+    private boolean autocommit;
+    private Integer isolation;
+    private Semaphore available;
+
+    /**
+     * the idle connections, the most recently used connection first
+     */
+    private final Deque<Connection> idle = new ArrayDeque<Connection>();
+
+    /**
+     * the connections with a set schema
+     */
+    private final Set<Connection> initialized = Collections.synchronizedSet(Collections
+            .newSetFromMap(new WeakHashMap<Connection, Boolean>()));
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong totalWaitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+
     @Override
     public void configure(Properties props) throws HibernateException {
-        super.configure(props);
+        Properties unpooled = new Properties();
+        for (String name : props.stringPropertyNames()) {
+            unpooled.setProperty(name, props.getProperty(name));
+        }
+        unpooled.setProperty(Environment.POOL_SIZE, "0");
+        super.configure(unpooled);
         schema = props.getProperty(Environment.DEFAULT_SCHEMA);
         dialect = props.getProperty(Environment.DIALECT);
+        poolSize = PropertiesHelper.getInt(Environment.POOL_SIZE, props, ConnectionData.DEFAULT_POOL_SIZE);
+        autocommit = PropertiesHelper.getBoolean(Environment.AUTOCOMMIT, props);
+        isolation = PropertiesHelper.getInteger(Environment.ISOLATION, props);
+        available = new Semaphore(poolSize, true);
     }
 
     @Override
     public Connection getConnection() throws SQLException {
-        Connection c = super.getConnection();
-        if (dialect.equals(MySQL5InnoDBDialect.class.getCanonicalName())) {
-            c.setCatalog(schema);
-        } else if (dialect.equals(HSQLDialectValid.class.getCanonicalName())) {
-            Statement s = c.createStatement();
-            s.execute("SET SCHEMA " + schema + ";");
-            s.close();
-        } else {
-            throw new AssertionError("Unknown dialect");
+        requests.incrementAndGet();
+        if (!available.tryAcquire()) {
+            long start = System.nanoTime();
+            try {
+                if (!available.tryAcquire(MAX_WAIT, TimeUnit.SECONDS)) {
+                    throw new SQLException("No free connection within " + MAX_WAIT + " seconds");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a free connection");
+            }
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            waits.incrementAndGet();
+            totalWaitTime.addAndGet(waited);
+            long max = maxWaitTime.get();
+            while (waited > max && !maxWaitTime.compareAndSet(max, waited)) {
+                max = maxWaitTime.get();
+            }
+        }
+
+        Connection c;
+        try {
+            c = pollIdle();
+            while (c != null && !isUsable(c)) {
+                discard(c);
+                c = pollIdle();
+            }
+            if (c == null) {
+                c = super.getConnection();
+            } else {
+                // the same settings the super class applies to new connections
+                if (isolation != null) {
+                    c.setTransactionIsolation(isolation);
+                }
+                if (c.getAutoCommit() != autocommit) {
+                    c.setAutoCommit(autocommit);
+                }
+            }
+            if (!initialized.contains(c)) {
+                if (dialect.equals(MySQL5InnoDBDialect.class.getCanonicalName())) {
+                    c.setCatalog(schema);
+                } else if (dialect.equals(HSQLDialectValid.class.getCanonicalName())) {
+                    Statement s = c.createStatement();
+                    s.execute("SET SCHEMA " + schema + ";");
+                    s.close();
+                } else {
+                    throw new AssertionError("Unknown dialect");
+                }
+                initialized.add(c);
+            }
+        } catch (SQLException e) {
+            available.release();
+            throw e;
+        } catch (RuntimeException e) {
+            available.release();
+            throw e;
+        }
+
+        int current = active.incrementAndGet();
+        int max = maxActive.get();
+        while (current > max && !maxActive.compareAndSet(max, current)) {
+            max = maxActive.get();
         }
         return c;
+    }
+
+    @Override
+    public void closeConnection(Connection conn) throws SQLException {
+        active.decrementAndGet();
+        try {
+            synchronized (idle) {
+                if (idle.size() < poolSize) {
+                    idle.push(conn);
+                    return;
+                }
+            }
+            initialized.remove(conn);
+            super.closeConnection(conn);
+        } finally {
+            available.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (idle) {
+            while (!idle.isEmpty()) {
+                discard(idle.pop());
+            }
+        }
+        super.close();
+    }
+
+    /**
+     * @return the most recently used idle connection or <code>null</code>
+     */
+    private Connection pollIdle() {
+        synchronized (idle) {
+            return idle.poll();
+        }
+    }
+
+    /**
+     * @param c
+     *            a pooled connection
+     * @return true if the connection can still be used
+     */
+    private boolean isUsable(Connection c) {
+        try {
+            if (c.isClosed()) {
+                return false;
+            }
+            // the HSQLDB driver does not implement JDBC 4, but an embedded
+            // database does not close its connections on its own
+            if (dialect.equals(MySQL5InnoDBDialect.class.getCanonicalName())) {
+                return c.isValid(VALIDATION_TIMEOUT);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a connection without returning it to the pool.
+     * 
+     * @param c
+     *            the connection
+     */
+    private void discard(Connection c) {
+        initialized.remove(c);
+        try {
+            super.closeConnection(c);
+        } catch (SQLException e) {
+            // the connection is unusable anyway
+        }
+    }
 
+    /**
+     * @return the current usage of the pool
+     */
+    public ConnectionPoolStatistics getStatistics() {
+        return new ConnectionPoolStatistics(poolSize, active.get(), maxActive.get(), requests.get(), waits.get(),
+                totalWaitTime.get(), maxWaitTime.get());
     }
 
 }
@@ -24,6 +24,7 @@ package edu.udo.scaffoldhunter.model.db;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.LongBuffer;
 import java.util.BitSet;
 
 import org.apache.commons.codec.binary.Base64;
@@ -33,47 +34,114 @@ import com.google.common.base.Preconditions;
 import edu.udo.scaffoldhunter.model.PropertyType;
 
 /**
+ * A string property. Bit fingerprints ({@link PropertyType#BitFingerprint}
+ * and {@link PropertyType#BitStringFingerprint}) are not stored as text but
+ * packed into 64 bit words. The first word holds the length in bits, the
+ * following words hold the bits, bit <code>i</code> is bit
+ * <code>i % 64</code> of word <code>i / 64</code>. All words are stored in
+ * little endian byte order. {@link #getValue()} still returns the textual
+ * format of the property type.
+ * 
  * @author Till Schäfer
  * 
  */
 public abstract class StringProperty extends Property {
     /**
-     * The {@link StringProperty}s actual value
+     * The {@link StringProperty}s actual value, empty for packed fingerprints
      */
     protected String value;
     /**
-     * The number of blocks/bytes used for the length of the BitFingerprint
+     * The packed bits of a fingerprint or <code>null</code>
+     */
+    protected byte[] fingerprint;
+    /**
+     * The number of blocks/bytes used for the length of the Base64 encoded
+     * BitFingerprint
      */
     private static final int lengthbytes = 2;
     /**
      * The size of byte
      */
-    private final short sizeofbyte = 8;
+    private static final short sizeofbyte = 8;
+    /**
+     * The size of a packed word in bytes
+     */
+    private static final int sizeofword = 8;
+    /**
+     * The maximal number of bits of a packed fingerprint
+     */
+    private static final int MAX_FINGERPRINT_LENGTH = Short.MAX_VALUE;
+    /**
+     * The maximal size of a packed fingerprint in bytes, the length of the
+     * fingerprint column in the mappings
+     */
+    public static final int MAX_FINGERPRINT_BYTES = sizeofword * (1 + words(MAX_FINGERPRINT_LENGTH));
     /**
-     * Caching the BitSet reduces the conversion from String to BitSets when
-     * having multiple access
+     * Caching the BitSet reduces the conversion from the packed words to
+     * BitSets when having multiple access
      */
     private BitSet bitsCache = null;
     /**
-     * Caching the length of the fingerprint reduces the base64 decoding
-     * overhead
+     * Caching the textual format of a packed fingerprint, views and exports
+     * read the value repeatedly
      */
-    private short lengthCache = 0;
+    private String valueCache = null;
 
     /**
      * @return the value
      */
     public String getValue() {
-        return value;
+        if (fingerprint == null) {
+            return value;
+        }
+        if (valueCache == null) {
+            valueCache = getValue(type == null ? null : type.getPropertyType(), value, fingerprint);
+        }
+        return valueCache;
+    }
+
+    /**
+     * Returns the value of a property as it is read from the database
+     * 
+     * @param propertyType
+     *            the type of the property
+     * @param value
+     *            the stored text
+     * @param fingerprint
+     *            the packed fingerprint or <code>null</code>
+     * @return the stored text or the textual format of the packed fingerprint
+     */
+    static String getValue(PropertyType propertyType, String value, byte[] fingerprint) {
+        if (fingerprint == null) {
+            return value;
+        }
+        if (propertyType == PropertyType.BitStringFingerprint) {
+            return toBitString(fingerprint);
+        }
+        return toBase64(fingerprint);
     }
 
     /**
+     * @param propertyType
+     *            the type of a string property
+     * @return whether the values of the property type are packed into the
+     *         fingerprint column
+     */
+    static boolean isPacked(PropertyType propertyType) {
+        return propertyType == PropertyType.BitFingerprint || propertyType == PropertyType.BitStringFingerprint;
+    }
+
+    /**
+     * Sets the value. The textual format of a bit fingerprint is packed into
+     * words.
+     * 
      * @param value
      *            the value to set
      */
     public void setValue(String value) {
         invalidateBitCache();
-        this.value = value;
+        fingerprint = type == null ? null : pack(type.getPropertyType(), value);
+        this.value = fingerprint == null ? value : "";
     }
 
     /**
@@ -87,27 +155,18 @@ public abstract class StringProperty extends Property {
      *            the length as a {@link BitSet} does not save the exact length.
      */
     public void setBitFingerprint(BitSet bits, short length) {
-        checkBitFingerprint();
-        Preconditions.checkArgument(length < Math.pow(2, 16), "length exceeds range");
+        checkBitFingerprintType();
         Preconditions.checkArgument(length > 0, "A length of zero is not supported");
 
-        // + 1 not full block + 2 size block
-        byte[] bitFingerprint = new byte[length / sizeofbyte + ((length % sizeofbyte) > 0 ? 1 : 0) + lengthbytes];
-
-        // convert short to two bytes
-        lenghtToBitFingerprint(length, bitFingerprint);
-
-        // bits.lenght is faster because its the position of the highest on bit
-        for (int i = 0; i < bits.length(); i++) {
-            if (bits.get(i)) {
-                // + 1 because the first char contains the size
-                bitFingerprint[i / sizeofbyte + lengthbytes] |= 1 << (i % sizeofbyte);
-            }
+        fingerprint = allocate(length);
+        LongBuffer words = view(fingerprint).slice();
+        for (int i = bits.nextSetBit(0); i >= 0 && i < length; i = bits.nextSetBit(i + 1)) {
+            words.put(i / Long.SIZE, words.get(i / Long.SIZE) | (1L << i));
         }
 
-        value = new String(Base64.encodeBase64String(bitFingerprint));
-        lengthCache = length;
-        bitsCache = (BitSet) bits.clone();
+        value = "";
+        valueCache = null;
+        bitsCache = bits.get(0, length);
     }
 
     /**
@@ -117,15 +176,7 @@ public abstract class StringProperty extends Property {
      */
     public short getBitFingerprintLength() {
         checkBitFingerprint();
-        if (lengthCache == 0) {
-            byte[] bitFingerprint = Base64.decodeBase64(value);
-            short length = bitFingerprintToLength(bitFingerprint);
-            lengthCache = length;
-            return length;
-        } else {
-            return lengthCache;
-        }
-
+        return (short) getFingerprintLength();
     }
 
     /**
@@ -140,31 +191,257 @@ public abstract class StringProperty extends Property {
             return (BitSet) bitsCache.clone();
         }
 
-        BitSet bits = new BitSet();
-        byte[] bitFingerprint;
-        bitFingerprint = Base64.decodeBase64(value);
-
-        short length = bitFingerprintToLength(bitFingerprint);
-
-        for (int i = 0; i < length; i++) {
-            if ((bitFingerprint[i / sizeofbyte + lengthbytes] & (1 << (i % sizeofbyte))) > 0) {
-                bits.set(i);
+        LongBuffer words = getBitFingerprintWords();
+        BitSet bits = new BitSet(words.remaining() * Long.SIZE);
+        for (int w = 0; w < words.remaining(); w++) {
+            long word = words.get(w);
+            while (word != 0) {
+                bits.set(w * Long.SIZE + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
             }
         }
 
         bitsCache = (BitSet) bits.clone();
-        lengthCache = length;
         return bits;
     }
 
+    /**
+     * Returns a read only view of the packed words of a bit fingerprint
+     * without copying them. Bits beyond the length of the fingerprint are
+     * zero.
+     * 
+     * @return the words, bit <code>i</code> is bit <code>i % 64</code> of
+     *         word <code>i / 64</code>
+     */
+    public LongBuffer getBitFingerprintWords() {
+        checkPacked();
+        return view(fingerprint).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the length in bits of a packed bit fingerprint of any type
+     * 
+     * @return the length
+     */
+    public int getFingerprintLength() {
+        checkPacked();
+        return (int) view(fingerprint).get(0);
+    }
+
+    /**
+     * @return the stored text, empty for packed fingerprints
+     */
+    String getStoredValue() {
+        return value;
+    }
+
+    /**
+     * @return the packed fingerprint as it is stored or <code>null</code>
+     */
+    byte[] getStoredFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Sets the value as it is stored in the database
+     * 
+     * @param value
+     *            the stored text
+     * @param fingerprint
+     *            the packed fingerprint or <code>null</code>
+     */
+    void setStored(String value, byte[] fingerprint) {
+        invalidateBitCache();
+        this.value = value;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @param fingerprint
+     *            a packed fingerprint
+     * @return the length in bits of the packed fingerprint
+     */
+    static int getFingerprintLength(byte[] fingerprint) {
+        return (int) view(fingerprint).get(0);
+    }
+
+    /**
+     * Copies the words of a packed fingerprint into an array
+     * 
+     * @param fingerprint
+     *            a packed fingerprint
+     * @param words
+     *            the destination array
+     * @param offset
+     *            the first word in the destination array
+     * @return the number of copied words
+     */
+    static int copyWords(byte[] fingerprint, long[] words, int offset) {
+        LongBuffer source = view(fingerprint);
+        int count = source.remaining();
+        source.get(words, offset, count);
+        return count;
+    }
+
     /**
      * checks the consistency of the BitFingerprint
      */
     private void checkBitFingerprint() {
+        checkBitFingerprintType();
+        checkPacked();
+    }
+
+    private void checkBitFingerprintType() {
         Preconditions.checkArgument(type == null || type.getPropertyType() == PropertyType.BitFingerprint,
                 "Invalid call for non BitFingerprint PropertyType");
     }
 
+    /**
+     * Makes sure a fingerprint loaded in the textual format is packed
+     */
+    private void checkPacked() {
+        if (fingerprint == null && type != null) {
+            fingerprint = pack(type.getPropertyType(), value);
+        }
+        Preconditions.checkState(fingerprint != null, "no bit fingerprint");
+    }
+
+    /**
+     * Allocates a packed fingerprint
+     * 
+     * @param length
+     *            the length in bits
+     * @return the packed fingerprint with all bits cleared
+     */
+    private static byte[] allocate(int length) {
+        byte[] fingerprint = new byte[sizeofword * (1 + words(length))];
+        view(fingerprint).put(0, length);
+        return fingerprint;
+    }
+
+    /**
+     * @return a view of all words of a packed fingerprint, positioned after
+     *         the length
+     */
+    private static LongBuffer view(byte[] fingerprint) {
+        LongBuffer buffer = ByteBuffer.wrap(fingerprint).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        buffer.position(1);
+        return buffer;
+    }
+
+    private static int words(int length) {
+        return (length + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    private static boolean get(LongBuffer words, int i) {
+        return (words.get(i / Long.SIZE) & (1L << i)) != 0;
+    }
+
+    /**
+     * Packs the textual format of a bit fingerprint
+     * 
+     * @param propertyType
+     *            the type of the property
+     * @param value
+     *            a Base64 encoded BitFingerprint or a string of 0 and 1 for
+     *            a BitStringFingerprint
+     * @return the packed fingerprint or <code>null</code> if the property is
+     *         no bit fingerprint or the value cannot be packed
+     */
+    static byte[] pack(PropertyType propertyType, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        byte[] fingerprint;
+        if (propertyType == PropertyType.BitFingerprint) {
+            byte[] bitFingerprint = Base64.decodeBase64(value);
+            if (bitFingerprint.length <= lengthbytes) {
+                return null;
+            }
+            int length = bitFingerprintToLength(bitFingerprint);
+            if (length <= 0 || bitFingerprint.length < lengthbytes + (length + sizeofbyte - 1) / sizeofbyte) {
+                return null;
+            }
+            fingerprint = allocate(length);
+            LongBuffer words = view(fingerprint).slice();
+            for (int i = 0; i < length; i += sizeofbyte) {
+                long b = bitFingerprint[i / sizeofbyte + lengthbytes] & 0xff;
+                words.put(i / Long.SIZE, words.get(i / Long.SIZE) | (b << (i % Long.SIZE)));
+            }
+            // clear the padding bits of the last byte
+            if (length % Long.SIZE != 0) {
+                int last = words(length) - 1;
+                words.put(last, words.get(last) & (-1L >>> (Long.SIZE - length % Long.SIZE)));
+            }
+        } else if (propertyType == PropertyType.BitStringFingerprint) {
+            int length = value.length();
+            if (length > MAX_FINGERPRINT_LENGTH) {
+                return null;
+            }
+            fingerprint = allocate(length);
+            LongBuffer words = view(fingerprint).slice();
+            // the last char is the lowest bit
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(length - i - 1);
+                if (c == '1') {
+                    words.put(i / Long.SIZE, words.get(i / Long.SIZE) | (1L << i));
+                } else if (c != '0') {
+                    return null;
+                }
+            }
+        } else {
+            return null;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Packs the textual format of a bit fingerprint if no information is lost,
+     * i.e. the textual format of the packed fingerprint is the given value
+     * 
+     * @param propertyType
+     *            the type of the property
+     * @param value
+     *            the textual format of a bit fingerprint
+     * @return the packed fingerprint or <code>null</code> if the value cannot
+     *         be packed without changing it
+     */
+    static byte[] packLossless(PropertyType propertyType, String value) {
+        byte[] fingerprint = pack(propertyType, value);
+        if (fingerprint == null || !value.equals(getValue(propertyType, null, fingerprint))) {
+            return null;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return the Base64 encoded BitFingerprint of the packed fingerprint
+     */
+    private static String toBase64(byte[] fingerprint) {
+        LongBuffer words = view(fingerprint).slice();
+        int length = (int) view(fingerprint).get(0);
+        // + 1 not full block + 2 size block
+        byte[] bitFingerprint = new byte[length / sizeofbyte + ((length % sizeofbyte) > 0 ? 1 : 0) + lengthbytes];
+        lenghtToBitFingerprint((short) length, bitFingerprint);
+        for (int i = 0; i < length; i += sizeofbyte) {
+            bitFingerprint[i / sizeofbyte + lengthbytes] = (byte) (words.get(i / Long.SIZE) >>> (i % Long.SIZE));
+        }
+        return Base64.encodeBase64String(bitFingerprint);
+    }
+
+    /**
+     * @return the string of 0 and 1 of the packed fingerprint
+     */
+    private static String toBitString(byte[] fingerprint) {
+        LongBuffer words = view(fingerprint).slice();
+        int length = (int) view(fingerprint).get(0);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[length - i - 1] = get(words, i) ? '1' : '0';
+        }
+        return new String(chars);
+    }
+
     /**
      * Extracts the BitFingerprint length from the first two bytes
      * 
@@ -172,9 +449,7 @@ public abstract class StringProperty extends Property {
      *            the bytes
      * @return the length
      */
-    private short bitFingerprintToLength(byte[] bitFingerprint) {
-        Preconditions.checkArgument(bitFingerprint.length >= 3);
-
+    private static short bitFingerprintToLength(byte[] bitFingerprint) {
         ByteBuffer bb = ByteBuffer.allocate(2);
         bb.order(ByteOrder.LITTLE_ENDIAN);
         bb.put(bitFingerprint[0]);
@@ -192,7 +467,7 @@ public abstract class StringProperty extends Property {
      * @param bitFingerprint
      *            the fingerprint
      */
-    private void lenghtToBitFingerprint(short length, byte[] bitFingerprint) {
+    private static void lenghtToBitFingerprint(short length, byte[] bitFingerprint) {
         ByteBuffer bb = ByteBuffer.allocate(2);
         bb.order(ByteOrder.LITTLE_ENDIAN);
         bb.putShort(length);
@@ -202,10 +477,10 @@ public abstract class StringProperty extends Property {
     }
 
     /**
-     * Invalidates the cache for BitFingerprint
+     * Invalidates the caches for BitFingerprint
      */
     private void invalidateBitCache() {
         bitsCache = null;
-        lengthCache = 0;
+        valueCache = null;
     }
 }
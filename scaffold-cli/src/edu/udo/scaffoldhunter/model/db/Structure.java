@@ -22,6 +22,7 @@
 
 package edu.udo.scaffoldhunter.model.db;
 
+import java.nio.LongBuffer;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,6 +38,13 @@ import com.google.common.collect.Maps;
 public abstract class Structure extends DbObject {
     private String title;
     private String smiles;
+    /**
+     * hash of the smiles string, indexed in the database together with the
+     * dataset of a molecule to find molecules by their smiles without
+     * comparing text columns. The column is nullable, rows written by older
+     * versions have no hash until the schema upgrade has calculated it.
+     */
+    private Long smilesHash;
     private int svgHeight;
     private int svgWidth;
     private Mol mol = new Mol();
@@ -75,6 +83,7 @@ public abstract class Structure extends DbObject {
     public Structure(String title, String smiles, String svgString, int svgHeight, int svgWidth, String strucMol) {
         this.title = title;
         this.smiles = smiles;
+        this.smilesHash = hashSmiles(smiles);
         this.svg.setString(svgString);
         this.svgHeight = svgHeight;
         this.svgWidth = svgWidth;
@@ -146,6 +155,46 @@ public abstract class Structure extends DbObject {
      */
     public void setSmiles(String smiles) {
         this.smiles = smiles;
+        this.smilesHash = hashSmiles(smiles);
+    }
+
+    /**
+     * @return the hash of the smiles string or <code>null</code> if it is not
+     *         calculated yet
+     * 
+     * @see #hashSmiles(String)
+     */
+    public Long getSmilesHash() {
+        return smilesHash;
+    }
+
+    /**
+     * Calculates the 64 bit hash which is stored along with a smiles string.
+     * This is the FNV-1a hash of the characters followed by the finalization
+     * step of MurmurHash3 to spread similar strings over the whole range.
+     * Distinct smiles strings may have the same hash, thus matches have to be
+     * verified by comparing the smiles strings.
+     * 
+     * @param smiles
+     *            the smiles string
+     * @return the hash of <code>smiles</code>, <code>0</code> for
+     *         <code>null</code>
+     */
+    public static long hashSmiles(String smiles) {
+        if (smiles == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < smiles.length(); i++) {
+            hash ^= smiles.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
     }
 
     /**
@@ -271,6 +320,24 @@ public abstract class Structure extends DbObject {
         return prop == null ? null : prop.getBitFingerprintBitSet();
     }
 
+    /**
+     * Convenience method to get the packed words of a bit fingerprint by the
+     * PropertyDefinition without copying them. If the property defined by
+     * <code>propDef</code> is unknown to this structure <code>null</code> will
+     * be returned. Result is equivalent to:
+     * <p>
+     * <code>getStringProperties().get(propDef.getID()).getBitFingerprintWords()</code>
+     * 
+     * @param propDef
+     *            the {@link PropertyDefinition} which defines the property
+     *            whose value is returned
+     * @return the words
+     */
+    public LongBuffer getBitFingerprintWords(PropertyDefinition propDef) {
+        StringProperty prop = getStringProperties().get(propDef.getId());
+        return prop == null ? null : prop.getBitFingerprintWords();
+    }
+
     /**
      * @return a combined Map of all {@link NumProperty}s and all
      *         {@link StringProperty}s
@@ -29,6 +29,8 @@ import java.util.Set;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 
+import edu.udo.scaffoldhunter.model.util.MoleculeBitmap;
+
 /**
  * @author Till Schäfer
  * @author Thomas Schmitz
@@ -44,6 +46,29 @@ public class Subset extends DbObjectWithProperties implements Set<Molecule> {
     private Set<Subset> children;
     private Date creationDate;
 
+    /**
+     * the molecules loaded by {@link DbManager#loadMolecules(Subset)}, the
+     * mapped molecule set is not initialized in this case
+     */
+    private Set<Molecule> loadedMolecules;
+    /**
+     * the number of molecules as long as they are not loaded, -1 otherwise
+     */
+    private int unloadedSize = -1;
+
+    /**
+     * the serialized {@link MoleculeBitmap} of the molecule ids, stored with
+     * the subset so that the membership is known without loading the
+     * molecules
+     */
+    private byte[] membershipData;
+    private MoleculeBitmap membership;
+    /**
+     * <code>true</code> as long as {@link #molecules} is the set mapped by
+     * hibernate, which must not be initialized to compute the membership
+     */
+    private boolean mappedMolecules;
+
     /**
      * The title property name
      */
@@ -57,6 +82,7 @@ public class Subset extends DbObjectWithProperties implements Set<Molecule> {
      * default constructor
      */
     /* package */Subset() {
+        mappedMolecules = true;
     }
 
     /**
@@ -166,19 +192,111 @@ public class Subset extends DbObjectWithProperties implements Set<Molecule> {
     }
 
     /**
+     * Attention: Lazy Property. The molecules of the subsets of a loaded
+     * session have to be loaded by {@link DbManager#loadMolecules(Subset)}
+     * before they are accessed by this method or the methods of {@link Set}
+     * other than {@link #size()} and {@link #isEmpty()}.
+     * 
      * @return the molecules
+     * @throws IllegalStateException
+     *             if the molecules are not loaded
      */
     public Set<Molecule> getMolecules() {
         // return Collections.unmodifiableSet(molecules);
-        return molecules;
+        return molecules();
     }
 
     /**
      * @param molecules
      *            the molecules to set
      */
-    public void setMolecules(Set<Molecule> molecules) {
+    public synchronized void setMolecules(Set<Molecule> molecules) {
         this.molecules = Preconditions.checkNotNull(molecules);
+        loadedMolecules = null;
+        unloadedSize = -1;
+        mappedMolecules = false;
+        membershipData = null;
+        membership = null;
+    }
+
+    /**
+     * Returns the ids of the molecules of this subset. The molecules are not
+     * loaded if they are not loaded yet. The molecules must not be changed
+     * after the membership has been requested.
+     * 
+     * @return the molecule ids or <code>null</code> if they are unknown,
+     *         e.g. because a molecule is not stored in the database
+     */
+    public synchronized MoleculeBitmap getMembership() {
+        if (membership == null) {
+            byte[] data = getMembershipData();
+            if (data != null) {
+                membership = MoleculeBitmap.fromBytes(data);
+            }
+        }
+        return membership;
+    }
+
+    /**
+     * Used by hibernate. Computes the membership of new subsets from their
+     * molecules.
+     * 
+     * @return the serialized membership
+     */
+    @SuppressWarnings("unused")
+    private synchronized byte[] getMembershipData() {
+        if (membershipData == null && (loadedMolecules != null || !mappedMolecules)) {
+            MoleculeBitmap bitmap = MoleculeBitmap.fromStructures(molecules());
+            if (bitmap != null) {
+                membershipData = bitmap.toBytes();
+                membership = bitmap;
+            }
+        }
+        return membershipData;
+    }
+
+    /**
+     * Used by hibernate
+     * 
+     * @param membershipData
+     *            the serialized membership
+     */
+    @SuppressWarnings("unused")
+    private synchronized void setMembershipData(byte[] membershipData) {
+        this.membershipData = membershipData;
+        membership = null;
+    }
+
+    /**
+     * @return <code>true</code> iff the molecules of this subset are loaded
+     */
+    public synchronized boolean isLoaded() {
+        return unloadedSize < 0;
+    }
+
+    /**
+     * Marks the molecules of this subset as not loaded
+     * 
+     * @param size
+     *            the number of molecules
+     */
+    /* package */synchronized void setUnloaded(int size) {
+        Preconditions.checkArgument(size >= 0);
+        unloadedSize = size;
+    }
+
+    /**
+     * @param molecules
+     *            the loaded molecules
+     */
+    /* package */synchronized void setLoadedMolecules(Set<Molecule> molecules) {
+        loadedMolecules = Preconditions.checkNotNull(molecules);
+        unloadedSize = -1;
+    }
+
+    private synchronized Set<Molecule> molecules() {
+        Preconditions.checkState(unloadedSize < 0, "The molecules of subset %s are not loaded", title);
+        return loadedMolecules != null ? loadedMolecules : molecules;
     }
 
     /**
@@ -235,22 +353,22 @@ public class Subset extends DbObjectWithProperties implements Set<Molecule> {
 
     @Override
     public Iterator<Molecule> iterator() {
-        return molecules.iterator();
+        return molecules().iterator();
     }
 
     @Override
-    public int size() {
-        return molecules.size();
+    public synchronized int size() {
+        return unloadedSize >= 0 ? unloadedSize : molecules().size();
     }
 
     @Override
-    public boolean isEmpty() {
-        return molecules.isEmpty();
+    public synchronized boolean isEmpty() {
+        return unloadedSize >= 0 ? unloadedSize == 0 : molecules().isEmpty();
     }
 
     @Override
     public boolean contains(Object o) {
-        return molecules.contains(o);
+        return molecules().contains(o);
     }
 
     @Override
@@ -265,7 +383,7 @@ public class Subset extends DbObjectWithProperties implements Set<Molecule> {
 
     @Override
     public boolean containsAll(Collection<?> c) {
-        return molecules.containsAll(c);
+        return molecules().containsAll(c);
     }
 
     @Override
@@ -290,12 +408,12 @@ public class Subset extends DbObjectWithProperties implements Set<Molecule> {
 
     @Override
     public Object[] toArray() {
-        return molecules.toArray();
+        return molecules().toArray();
     }
 
     @Override
     public <T> T[] toArray(T[] a) {
-        return molecules.toArray(a);
+        return molecules().toArray(a);
     }
 
 }
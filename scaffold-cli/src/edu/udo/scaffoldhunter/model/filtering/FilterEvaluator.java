@@ -0,0 +1,439 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.filtering;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import edu.udo.scaffoldhunter.data.ConnectionType;
+import edu.udo.scaffoldhunter.model.NumComparisonFunction;
+import edu.udo.scaffoldhunter.model.StringComparisonFunction;
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
+import edu.udo.scaffoldhunter.model.db.Dataset;
+import edu.udo.scaffoldhunter.model.db.DbManager;
+import edu.udo.scaffoldhunter.model.db.Filter;
+import edu.udo.scaffoldhunter.model.db.Filterset;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.model.db.NumFilter;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.StringFilter;
+import edu.udo.scaffoldhunter.model.db.Subset;
+
+/**
+ * Evaluates {@link Filterset}s in memory, e.g. to preview the number of
+ * molecules accepted by a filterset while it is edited. The values of each
+ * filtered property are loaded once as a column over a fixed set of
+ * molecules. Each filter is evaluated by a loop over such a column, which
+ * yields a bitmap of the accepted molecules, and the bitmaps of a filterset
+ * are combined word by word.
+ * <p>
+ * The evaluation has the same semantics as
+ * {@link DbManager#getFilteredSubset(Subset, Filterset)}, string comparisons
+ * follow the SQL <code>LIKE</code> operator of the database. Filters on
+ * scaffold properties are not supported, see
+ * {@link #canEvaluate(Filterset)}.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class FilterEvaluator {
+
+    private static final Set<StringComparisonFunction> NEGATED_STRING_FUNCTIONS = EnumSet.of(
+            StringComparisonFunction.IsNotDefined, StringComparisonFunction.IsNotEqual,
+            StringComparisonFunction.BeginsNot, StringComparisonFunction.BeginsNotInverse,
+            StringComparisonFunction.EndsNot, StringComparisonFunction.EndsNotInverse,
+            StringComparisonFunction.ContainsNot, StringComparisonFunction.ContainsNotInverse);
+
+    private final DbManager db;
+    private final Dataset dataset;
+    private final int[] moleculeIds;
+    private final boolean caseSensitive;
+
+    private final Map<Integer, double[]> numColumns = Maps.newHashMap();
+    private final Map<Integer, String[]> stringColumns = Maps.newHashMap();
+
+    /**
+     * Creates an evaluator for the molecules of a subset
+     * 
+     * @param db
+     *            the db manager used to load the property columns
+     * @param subset
+     *            the subset
+     * @return the evaluator
+     */
+    public static FilterEvaluator forSubset(DbManager db, Subset subset) {
+        int[] ids = new int[subset.size()];
+        int i = 0;
+        for (Molecule molecule : subset) {
+            ids[i++] = molecule.getId();
+        }
+        Arrays.sort(ids);
+        return new FilterEvaluator(db, subset.getSession().getDataset(), ids, isCaseSensitive(db));
+    }
+
+    /**
+     * Creates an evaluator for all molecules of a dataset
+     * 
+     * @param db
+     *            the db manager used to load the molecule ids and the property
+     *            columns
+     * @param dataset
+     *            the dataset
+     * @return the evaluator
+     * @throws DatabaseException
+     */
+    public static FilterEvaluator forDataset(DbManager db, Dataset dataset) throws DatabaseException {
+        return new FilterEvaluator(db, dataset, db.getMoleculeIds(dataset), isCaseSensitive(db));
+    }
+
+    /**
+     * @return <code>false</code> if the database compares strings case
+     *         insensitively, which is the default collation of MySQL
+     */
+    private static boolean isCaseSensitive(DbManager db) {
+        return !ConnectionType.MYSQL.getHibernateDialect().equals(db.getHibernateDialect());
+    }
+
+    /**
+     * @param db
+     *            the db manager used to load the property columns
+     * @param dataset
+     *            the dataset of the molecules
+     * @param moleculeIds
+     *            the ids of the evaluated molecules in ascending order
+     * @param caseSensitive
+     *            whether string comparisons are case sensitive
+     */
+    public FilterEvaluator(DbManager db, Dataset dataset, int[] moleculeIds, boolean caseSensitive) {
+        this.db = Preconditions.checkNotNull(db);
+        this.dataset = Preconditions.checkNotNull(dataset);
+        this.moleculeIds = moleculeIds;
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * @return the number of evaluated molecules
+     */
+    public int size() {
+        return moleculeIds.length;
+    }
+
+    /**
+     * @param filterset
+     *            the filterset
+     * @return <code>true</code> iff the filterset can be evaluated in memory,
+     *         i.e. all filters refer to molecule properties of the dataset
+     */
+    public boolean canEvaluate(Filterset filterset) {
+        for (Filter filter : filterset.getFilters()) {
+            PropertyDefinition propDef = filter.getPropDef(dataset);
+            if (propDef == null || propDef.isScaffoldProperty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counts the molecules accepted by a filterset
+     * 
+     * @param filterset
+     *            the filterset
+     * @return the number of accepted molecules
+     * @throws DatabaseException
+     *             if loading a property column fails
+     */
+    public int count(Filterset filterset) throws DatabaseException {
+        int count = 0;
+        for (long word : evaluate(filterset)) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Evaluates a filterset. Bit <code>i</code> of the result is set iff the
+     * filterset accepts the molecule with the <code>i</code>-th smallest id.
+     * A filterset without filters accepts all molecules.
+     * 
+     * @param filterset
+     *            the filterset
+     * @return the bitmap of accepted molecules
+     * @throws DatabaseException
+     *             if loading a property column fails
+     */
+    public synchronized long[] evaluate(Filterset filterset) throws DatabaseException {
+        Preconditions.checkArgument(canEvaluate(filterset), "filterset contains scaffold property filters");
+
+        long[] result = null;
+        for (Filter filter : filterset.getFilters()) {
+            long[] bits = evaluate(filter);
+            if (result == null) {
+                result = bits;
+            } else if (filterset.isConjunctive()) {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] &= bits[i];
+                }
+            } else {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] |= bits[i];
+                }
+            }
+        }
+        if (result == null) {
+            result = new long[words()];
+            complement(result);
+        }
+        return result;
+    }
+
+    private int words() {
+        return (moleculeIds.length + 63) >>> 6;
+    }
+
+    /**
+     * Complements a bitmap, the unused bits of the last word stay unset
+     */
+    private void complement(long[] bits) {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = ~bits[i];
+        }
+        int used = moleculeIds.length & 63;
+        if (used != 0) {
+            bits[bits.length - 1] &= (1L << used) - 1;
+        }
+    }
+
+    private long[] evaluate(Filter filter) throws DatabaseException {
+        long[] bits = new long[words()];
+        boolean negated;
+        if (filter instanceof NumFilter) {
+            NumComparisonFunction function = ((NumFilter) filter).getComparisonFunction();
+            evaluate(getNumColumn(filter.getPropDef(dataset)), function, ((NumFilter) filter).getValue(), bits);
+            negated = function == NumComparisonFunction.IsNotDefined || function == NumComparisonFunction.IsNotEqual;
+        } else {
+            StringComparisonFunction function = ((StringFilter) filter).getComparisonFunction();
+            negated = evaluate(getStringColumn(filter.getPropDef(dataset)), function,
+                    ((StringFilter) filter).getValue(), bits);
+        }
+        if (negated) {
+            complement(bits);
+        }
+        return bits;
+    }
+
+    /**
+     * Sets the bits of the molecules accepted by the positive form of a
+     * numerical comparison. Undefined values are <code>NaN</code>, which is
+     * neither equal to, less nor greater than any value.
+     */
+    private static void evaluate(double[] column, NumComparisonFunction function, double value, long[] bits) {
+        switch (function) {
+        case IsDefined:
+        case IsNotDefined:
+            for (int i = 0; i < column.length; i++) {
+                if (!Double.isNaN(column[i])) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            break;
+        case IsEqual:
+        case IsNotEqual:
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] == value) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            break;
+        case IsGreater:
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] > value) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            break;
+        case IsGreaterOrEqual:
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] >= value) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            break;
+        case IsLess:
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] < value) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            break;
+        case IsLessOrEqual:
+            for (int i = 0; i < column.length; i++) {
+                if (column[i] <= value) {
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("This NumComparisonFunction is currently not supportet");
+        }
+    }
+
+    /**
+     * Sets the bits of the molecules accepted by the positive form of a string
+     * comparison
+     * 
+     * @return <code>true</code> iff the comparison is negated
+     */
+    private boolean evaluate(String[] column, StringComparisonFunction function, String value, long[] bits) {
+        String pattern = null;
+        String inversePrefix = null;
+        String inverseSuffix = null;
+        switch (function) {
+        case IsDefined:
+        case IsNotDefined:
+            break;
+        case IsEqual:
+        case IsNotEqual:
+            pattern = value;
+            break;
+        case Begins:
+        case BeginsNot:
+            pattern = value + "%";
+            break;
+        case Ends:
+        case EndsNot:
+            pattern = "%" + value;
+            break;
+        case Contains:
+        case ContainsNot:
+            pattern = "%" + value + "%";
+            break;
+        case BeginsInverse:
+        case BeginsNotInverse:
+            inversePrefix = "";
+            inverseSuffix = "%";
+            break;
+        case EndsInverse:
+        case EndsNotInverse:
+            inversePrefix = "%";
+            inverseSuffix = "";
+            break;
+        case ContainsInverse:
+        case ContainsNotInverse:
+            inversePrefix = "%";
+            inverseSuffix = "%";
+            break;
+        default:
+            throw new IllegalArgumentException("This StringComparisonFunction is currently not supportet");
+        }
+
+        for (int i = 0; i < column.length; i++) {
+            String s = column[i];
+            if (s == null) {
+                continue;
+            }
+            boolean accepted;
+            if (pattern != null) {
+                accepted = like(s, pattern, caseSensitive);
+            } else if (inversePrefix != null) {
+                // the filter value is matched against the property value
+                accepted = like(value, inversePrefix + s + inverseSuffix, caseSensitive);
+            } else {
+                accepted = true;
+            }
+            if (accepted) {
+                bits[i >>> 6] |= 1L << i;
+            }
+        }
+        return NEGATED_STRING_FUNCTIONS.contains(function);
+    }
+
+    /**
+     * Matches a string against an SQL <code>LIKE</code> pattern, where
+     * <code>%</code> matches any sequence of characters and <code>_</code>
+     * matches a single character.
+     * 
+     * @param s
+     *            the string
+     * @param pattern
+     *            the pattern
+     * @param caseSensitive
+     *            whether characters are compared case sensitively
+     * @return <code>true</code> iff the string matches the pattern
+     */
+    static boolean like(String s, String pattern, boolean caseSensitive) {
+        int si = 0;
+        int pi = 0;
+        // position of the last % in the pattern and the string position it
+        // currently covers up to
+        int starPattern = -1;
+        int starString = 0;
+        while (si < s.length()) {
+            char p = pi < pattern.length() ? pattern.charAt(pi) : 0;
+            if (pi < pattern.length() && p == '%') {
+                starPattern = pi++;
+                starString = si;
+            } else if (pi < pattern.length() && (p == '_' || equal(p, s.charAt(si), caseSensitive))) {
+                pi++;
+                si++;
+            } else if (starPattern >= 0) {
+                pi = starPattern + 1;
+                si = ++starString;
+            } else {
+                return false;
+            }
+        }
+        while (pi < pattern.length() && pattern.charAt(pi) == '%') {
+            pi++;
+        }
+        return pi == pattern.length();
+    }
+
+    private static boolean equal(char a, char b, boolean caseSensitive) {
+        return a == b || (!caseSensitive && Character.toLowerCase(a) == Character.toLowerCase(b));
+    }
+
+    private double[] getNumColumn(PropertyDefinition propDef) throws DatabaseException {
+        double[] column = numColumns.get(propDef.getId());
+        if (column == null) {
+            column = db.getNumPropertyColumn(propDef, moleculeIds);
+            numColumns.put(propDef.getId(), column);
+        }
+        return column;
+    }
+
+    private String[] getStringColumn(PropertyDefinition propDef) throws DatabaseException {
+        String[] column = stringColumns.get(propDef.getId());
+        if (column == null) {
+            column = db.getStringPropertyColumn(propDef, moleculeIds);
+            stringColumns.put(propDef.getId(), column);
+        }
+        return column;
+    }
+}
@@ -0,0 +1,423 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.similarity;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.db.PackedFingerprints;
+
+/**
+ * Finds the fingerprints which are most similar to a query fingerprint with
+ * respect to the Tanimoto coefficient.
+ * <p>
+ * The fingerprints are sorted by their number of set bits. The similarity of
+ * fingerprints with <code>a</code> and <code>b</code> set bits is at most
+ * <code>min(a, b) / max(a, b)</code>, so the fingerprints are scanned in the
+ * order of this bound and the scan stops as soon as the bound is lower than
+ * the similarity of the k-th best hit found so far. The scan is split into
+ * chunks which are processed by several threads, the threads share the
+ * similarity of their k-th best hits.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class TanimotoSearch {
+
+    /**
+     * number of fingerprints scanned by a thread at once
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    private final int wordCount;
+    private final int length;
+    /**
+     * the words of all fingerprints ordered by the number of set bits
+     */
+    private final long[] words;
+    /**
+     * the molecule ids in the order of {@link #words}
+     */
+    private final int[] moleculeIds;
+    /**
+     * the fingerprints with <code>b</code> set bits are at the positions
+     * <code>offsets[b]</code> to <code>offsets[b + 1] - 1</code>
+     */
+    private final int[] offsets;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Creates a new search over the given fingerprints. The arrays of
+     * <code>fingerprints</code> are reordered in place to avoid a second copy
+     * of the words, so <code>fingerprints</code> must not be used afterwards.
+     * {@link PackedFingerprints} holds all words in one array, so the offset
+     * <code>i * wordCount</code> of each fingerprint fits into an
+     * <code>int</code>.
+     * 
+     * @param fingerprints
+     *            the fingerprints
+     */
+    public TanimotoSearch(PackedFingerprints fingerprints) {
+        wordCount = fingerprints.getWordCount();
+        length = fingerprints.getLength();
+        words = fingerprints.getWords();
+        moleculeIds = fingerprints.getMoleculeIds();
+
+        int size = moleculeIds.length;
+        int[] bitCounts = new int[size];
+        offsets = new int[length + 2];
+        for (int i = 0; i < size; i++) {
+            clearPadding(words, i * wordCount);
+            bitCounts[i] = bitCount(words, i * wordCount, wordCount);
+            offsets[bitCounts[i] + 1]++;
+        }
+        for (int b = 1; b < offsets.length; b++) {
+            offsets[b] += offsets[b - 1];
+        }
+
+        // target position of each fingerprint, counting sort by bit count
+        int[] next = offsets.clone();
+        int[] target = new int[size];
+        for (int i = 0; i < size; i++) {
+            target[i] = next[bitCounts[i]]++;
+        }
+        permute(target);
+    }
+
+    /**
+     * Clears the bits beyond the length of a fingerprint, so the number of
+     * set bits does not exceed the length
+     * 
+     * @param words
+     *            the words of the fingerprints
+     * @param offset
+     *            the first word of the fingerprint
+     */
+    private void clearPadding(long[] words, int offset) {
+        if (length % Long.SIZE != 0) {
+            words[offset + wordCount - 1] &= -1L >>> (Long.SIZE - length % Long.SIZE);
+        }
+    }
+
+    /**
+     * Moves each fingerprint to its target position by following the cycles
+     * of the permutation
+     */
+    private void permute(int[] target) {
+        long[] carry = new long[wordCount];
+        long[] swap = new long[wordCount];
+        for (int start = 0; start < target.length; start++) {
+            if (target[start] < 0) {
+                // already moved
+                continue;
+            }
+            System.arraycopy(words, start * wordCount, carry, 0, wordCount);
+            int carryId = moleculeIds[start];
+            int position = target[start];
+            target[start] = -1;
+            while (position != start) {
+                System.arraycopy(words, position * wordCount, swap, 0, wordCount);
+                System.arraycopy(carry, 0, words, position * wordCount, wordCount);
+                long[] tmp = carry;
+                carry = swap;
+                swap = tmp;
+                int id = moleculeIds[position];
+                moleculeIds[position] = carryId;
+                carryId = id;
+
+                int nextPosition = target[position];
+                target[position] = -1;
+                position = nextPosition;
+            }
+            System.arraycopy(carry, 0, words, start * wordCount, wordCount);
+            moleculeIds[start] = carryId;
+        }
+    }
+
+    /**
+     * Sets the number of threads which scan the fingerprints
+     * 
+     * @param threads
+     *            the number of threads
+     */
+    public void setThreads(int threads) {
+        Preconditions.checkArgument(threads > 0, "at least one thread is needed");
+        this.threads = threads;
+    }
+
+    /**
+     * @return the number of fingerprints
+     */
+    public int size() {
+        return moleculeIds.length;
+    }
+
+    /**
+     * @return the length of the fingerprints in bits
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the Tanimoto coefficient of two fingerprints. Two fingerprints
+     * without any set bit have a similarity of 0, like in
+     * {@link edu.udo.scaffoldhunter.model.clustering.TanimotoBit}.
+     * 
+     * @param intersection
+     *            the number of bits set in both fingerprints
+     * @param a
+     *            the number of bits set in the first fingerprint
+     * @param b
+     *            the number of bits set in the second fingerprint
+     * @return the similarity
+     */
+    static double similarity(int intersection, int a, int b) {
+        int union = a + b - intersection;
+        return union == 0 ? 0 : (double) intersection / union;
+    }
+
+    /**
+     * @return the upper bound of the similarity of fingerprints with
+     *         <code>a</code> and <code>b</code> set bits
+     */
+    static double bound(int a, int b) {
+        return a == 0 || b == 0 ? 0 : (double) Math.min(a, b) / Math.max(a, b);
+    }
+
+    /**
+     * Finds the most similar fingerprints
+     * 
+     * @param queryWords
+     *            the packed query fingerprint, it must have the same length as
+     *            the searched fingerprints
+     * @param k
+     *            the maximal number of hits
+     * @param minSimilarity
+     *            the minimal similarity of a hit
+     * @return the hits ordered by descending similarity, hits with the same
+     *         similarity are ordered by molecule id
+     * @throws InterruptedException
+     *             if the search was interrupted
+     */
+    public List<Hit> search(long[] queryWords, final int k, final double minSimilarity)
+            throws InterruptedException {
+        Preconditions.checkArgument(queryWords.length == wordCount, "the query has %s words instead of %s",
+                queryWords.length, wordCount);
+        Preconditions.checkArgument(k > 0, "k must be positive");
+
+        final long[] query = queryWords.clone();
+        clearPadding(query, 0);
+        final int queryBits = bitCount(query, 0, wordCount);
+        final List<int[]> chunks = chunks(queryBits);
+        final AtomicInteger nextChunk = new AtomicInteger();
+        // the k-th best similarity found by any thread
+        final AtomicLong threshold = new AtomicLong(Double.doubleToLongBits(minSimilarity));
+
+        int threadCount = Math.min(threads, chunks.size());
+        List<PriorityQueue<Hit>> results = Lists.newArrayList();
+        if (threadCount <= 1) {
+            results.add(scan(query, queryBits, k, chunks, nextChunk, threshold));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        } else {
+            List<Callable<PriorityQueue<Hit>>> scans = Lists.newArrayListWithCapacity(threadCount);
+            for (int t = 0; t < threadCount; t++) {
+                scans.add(new Callable<PriorityQueue<Hit>>() {
+                    @Override
+                    public PriorityQueue<Hit> call() {
+                        return scan(query, queryBits, k, chunks, nextChunk, threshold);
+                    }
+                });
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            try {
+                for (Future<PriorityQueue<Hit>> future : executor.invokeAll(scans)) {
+                    results.add(future.get());
+                }
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        List<Hit> hits = Lists.newArrayList();
+        for (PriorityQueue<Hit> result : results) {
+            hits.addAll(result);
+        }
+        Collections.sort(hits, Collections.reverseOrder(WORST_FIRST));
+        return hits.size() > k ? Lists.newArrayList(hits.subList(0, k)) : hits;
+    }
+
+    /**
+     * Splits the fingerprints into chunks ordered by descending similarity
+     * bound
+     * 
+     * @return the chunks as (start, end, bits) triples
+     */
+    private List<int[]> chunks(final int queryBits) {
+        List<Integer> bitCounts = Lists.newArrayList();
+        for (int b = 0; b <= length; b++) {
+            if (offsets[b + 1] > offsets[b]) {
+                bitCounts.add(b);
+            }
+        }
+        Collections.sort(bitCounts, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer b1, Integer b2) {
+                int c = Double.compare(bound(queryBits, b2), bound(queryBits, b1));
+                return c != 0 ? c : Math.abs(b1 - queryBits) - Math.abs(b2 - queryBits);
+            }
+        });
+
+        List<int[]> chunks = Lists.newArrayList();
+        for (int b : bitCounts) {
+            for (int start = offsets[b]; start < offsets[b + 1]; start += CHUNK_SIZE) {
+                chunks.add(new int[] { start, Math.min(start + CHUNK_SIZE, offsets[b + 1]), b });
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Scans chunks until all chunks are taken or the bound of the next chunk
+     * is below the threshold
+     * 
+     * @param threshold
+     *            the minimal similarity or the similarity of the k-th best hit
+     *            of any thread if this is higher
+     * @return the best hits of the scanned chunks
+     */
+    private PriorityQueue<Hit> scan(long[] query, int queryBits, int k, List<int[]> chunks,
+            AtomicInteger nextChunk, AtomicLong threshold) {
+        PriorityQueue<Hit> best = new PriorityQueue<Hit>(Math.min(k, 1024) + 1, WORST_FIRST);
+        int c;
+        while ((c = nextChunk.getAndIncrement()) < chunks.size()) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            int[] chunk = chunks.get(c);
+            // all following chunks have a lower or equal bound
+            if (bound(queryBits, chunk[2]) < Double.longBitsToDouble(threshold.get())) {
+                break;
+            }
+            double minSimilarity = Double.longBitsToDouble(threshold.get());
+            for (int i = chunk[0]; i < chunk[1]; i++) {
+                int offset = i * wordCount;
+                int intersection = 0;
+                for (int w = 0; w < wordCount; w++) {
+                    intersection += Long.bitCount(query[w] & words[offset + w]);
+                }
+                double similarity = similarity(intersection, queryBits, chunk[2]);
+                if (similarity < minSimilarity) {
+                    continue;
+                }
+                Hit hit = new Hit(moleculeIds[i], similarity);
+                if (best.size() < k) {
+                    best.add(hit);
+                } else if (WORST_FIRST.compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                } else {
+                    continue;
+                }
+                if (best.size() == k) {
+                    raise(threshold, best.peek().similarity);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static void raise(AtomicLong threshold, double similarity) {
+        long current;
+        do {
+            current = threshold.get();
+            if (Double.longBitsToDouble(current) >= similarity) {
+                return;
+            }
+        } while (!threshold.compareAndSet(current, Double.doubleToLongBits(similarity)));
+    }
+
+    private static int bitCount(long[] words, int offset, int count) {
+        int bits = 0;
+        for (int w = offset; w < offset + count; w++) {
+            bits += Long.bitCount(words[w]);
+        }
+        return bits;
+    }
+
+    /**
+     * orders the worst hit first: lower similarity, then higher molecule id
+     */
+    private static final Comparator<Hit> WORST_FIRST = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit h1, Hit h2) {
+            int c = Double.compare(h1.similarity, h2.similarity);
+            return c != 0 ? c : h2.moleculeId < h1.moleculeId ? -1 : h2.moleculeId == h1.moleculeId ? 0 : 1;
+        }
+    };
+
+    /**
+     * A molecule found by a search
+     */
+    public static class Hit {
+        private final int moleculeId;
+        private final double similarity;
+
+        Hit(int moleculeId, double similarity) {
+            this.moleculeId = moleculeId;
+            this.similarity = similarity;
+        }
+
+        /**
+         * @return the id of the molecule
+         */
+        public int getMoleculeId() {
+            return moleculeId;
+        }
+
+        /**
+         * @return the Tanimoto coefficient of the molecule and the query
+         */
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Scaffold;
+import edu.udo.scaffoldhunter.model.db.Structure;
+import edu.udo.scaffoldhunter.view.scaffoldtree.config.ConfigMapping;
+import edu.udo.scaffoldhunter.view.scaffoldtree.config.ConfigMapping.Interval;
+
+/**
+ * Counts numerical values in intervals. Each interval is defined by its lower
+ * bound, its upper bound is the lower bound of the next interval. The lower
+ * bound is not included except for the lowest interval, which also contains
+ * all values below its lower bound. This is consistent with
+ * {@link ConfigMapping#getColor(double)}.
+ * <p>
+ * The interval of a value is found by a binary search over the lower bounds,
+ * so counting n values in k intervals needs O(n log k) steps.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class IntervalHistogram {
+
+    /**
+     * the lower bounds of all intervals but the lowest one in ascending order
+     */
+    private final double[] bounds;
+    private final int binCount;
+
+    /**
+     * Creates a new histogram
+     * 
+     * @param lowerBounds
+     *            the lower bounds of the intervals in ascending order
+     */
+    public IntervalHistogram(double[] lowerBounds) {
+        for (int i = 1; i < lowerBounds.length; i++) {
+            Preconditions.checkArgument(lowerBounds[i - 1] <= lowerBounds[i], "lower bounds must be ascending");
+        }
+        binCount = lowerBounds.length;
+        bounds = binCount == 0 ? lowerBounds : Arrays.copyOfRange(lowerBounds, 1, binCount);
+    }
+
+    /**
+     * Creates a histogram for the intervals of an interval mapping
+     * 
+     * @param mapping
+     *            the mapping
+     * @return the histogram
+     */
+    public static IntervalHistogram fromMapping(ConfigMapping mapping) {
+        List<Interval> intervals = mapping.getIntervals();
+        double[] lowerBounds = new double[intervals.size()];
+        int i = 0;
+        for (Interval interval : intervals) {
+            lowerBounds[i++] = interval.getLowerBound();
+        }
+        return new IntervalHistogram(lowerBounds);
+    }
+
+    /**
+     * Returns the interval of a value. <code>NaN</code> is counted in the
+     * highest interval.
+     * 
+     * @param value
+     *            the value
+     * @return the index of the interval containing <code>value</code>
+     */
+    public int bin(double value) {
+        Preconditions.checkState(binCount > 0, "no intervals");
+        if (Double.isNaN(value)) {
+            return binCount - 1;
+        }
+        // number of bounds which are lower than value
+        int low = 0;
+        int high = bounds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Adds the values of a numerical property to the counts starting at
+     * <code>offset</code>. Structures for which the property is not defined
+     * are not counted.
+     */
+    private void add(Iterable<? extends Structure> structures, PropertyDefinition propDef, int[] counts,
+            int offset) {
+        if (binCount == 0) {
+            return;
+        }
+        for (Structure structure : structures) {
+            Double value = structure.getNumPropertyValue(propDef);
+            if (value != null) {
+                counts[offset + bin(value)]++;
+            }
+        }
+    }
+
+    /**
+     * Counts the values of some molecule property for each scaffold in the
+     * subtree rooted at <code>root</code>. The molecules of each scaffold are
+     * counted once, the cumulative counts are summed up bottom-up afterwards.
+     * 
+     * @param root
+     *            the root of the subtree
+     * @param propDef
+     *            the property definition of the counted molecule property
+     * @param cumulative
+     *            <code>true</code> iff the counts of a scaffold should include
+     *            the counts of its children
+     * @return a map containing the number of values in each interval for each
+     *         scaffold in the subtree
+     */
+    public Map<Scaffold, List<Integer>> countSubtree(Scaffold root, PropertyDefinition propDef, boolean cumulative) {
+        // the scaffolds in preorder, thus the parent always precedes its
+        // children
+        ArrayList<Scaffold> scaffolds = Lists.newArrayList();
+        int[] parents = new int[16];
+        Deque<Scaffold> scaffoldStack = Lists.newLinkedList();
+        Deque<Integer> parentStack = Lists.newLinkedList();
+        scaffoldStack.push(root);
+        parentStack.push(-1);
+        while (!scaffoldStack.isEmpty()) {
+            Scaffold scaffold = scaffoldStack.pop();
+            int index = scaffolds.size();
+            scaffolds.add(scaffold);
+            if (index == parents.length) {
+                parents = Arrays.copyOf(parents, 2 * parents.length);
+            }
+            parents[index] = parentStack.pop();
+            for (Scaffold child : Lists.reverse(scaffold.getChildren())) {
+                scaffoldStack.push(child);
+                parentStack.push(index);
+            }
+        }
+
+        int[] counts = new int[scaffolds.size() * binCount];
+        for (int i = 0; i < scaffolds.size(); i++) {
+            add(scaffolds.get(i).getMolecules(), propDef, counts, i * binCount);
+        }
+
+        if (cumulative) {
+            for (int i = scaffolds.size() - 1; i > 0; i--) {
+                int child = i * binCount;
+                int parent = parents[i] * binCount;
+                for (int j = 0; j < binCount; j++) {
+                    counts[parent + j] += counts[child + j];
+                }
+            }
+        }
+
+        Map<Scaffold, List<Integer>> map = Maps.newHashMapWithExpectedSize(scaffolds.size());
+        for (int i = 0; i < scaffolds.size(); i++) {
+            map.put(scaffolds.get(i), Ints.asList(Arrays.copyOfRange(counts, i * binCount, (i + 1) * binCount)));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+import edu.udo.scaffoldhunter.model.db.Structure;
+
+/**
+ * An immutable compressed set of database ids, e.g. the molecules of a
+ * {@link edu.udo.scaffoldhunter.model.db.Subset}. Only the non-empty 64 bit
+ * words of the bitmap are stored together with their word indices, so the
+ * memory consumption is bounded by the number of elements and does not depend
+ * on the largest id. Set operations merge the sorted word indices and work on
+ * whole words, so they need no hashing and no per-element objects.
+ * <p>
+ * {@link #toBytes()} compresses a bitmap further for storage: runs of full
+ * words, e.g. a contiguous range of molecules imported together, are stored
+ * by their length only.
+ * 
+ * @author Shamshad Alam
+ * 
+ */
+public class MoleculeBitmap {
+
+    private static final MoleculeBitmap EMPTY = new MoleculeBitmap(new int[0], new long[0], 0);
+
+    /**
+     * the version of the format written by {@link #toBytes()}
+     */
+    private static final byte FORMAT = 1;
+
+    /**
+     * the indices of the non-empty words in ascending order
+     */
+    private final int[] keys;
+    /**
+     * the non-empty words, <code>words[i]</code> belongs to <code>keys[i]</code>
+     */
+    private final long[] words;
+    private final int length;
+
+    private MoleculeBitmap(int[] keys, long[] words, int length) {
+        this.keys = keys;
+        this.words = words;
+        this.length = length;
+    }
+
+    /**
+     * Creates a bitmap of the given ids
+     * 
+     * @param ids
+     *            the ids, must not be negative
+     * @return the bitmap
+     */
+    public static MoleculeBitmap of(int... ids) {
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        return fromSorted(sorted, sorted.length);
+    }
+
+    /**
+     * Creates a bitmap of the database ids of the given structures. This is
+     * only possible if every structure is stored in the database and no two
+     * structures share the same id, otherwise the bitmap would not represent
+     * the same set as the structures.
+     * 
+     * @param structures
+     *            the structures
+     * @return the bitmap or <code>null</code> if the structures do not have
+     *         distinct database ids
+     */
+    public static MoleculeBitmap fromStructures(Iterable<? extends Structure> structures) {
+        int[] ids = new int[16];
+        int n = 0;
+        for (Structure structure : structures) {
+            if (structure.getId() <= 0) {
+                return null;
+            }
+            if (n == ids.length) {
+                ids = Arrays.copyOf(ids, 2 * n);
+            }
+            ids[n++] = structure.getId();
+        }
+        Arrays.sort(ids, 0, n);
+        for (int i = 1; i < n; i++) {
+            if (ids[i - 1] == ids[i]) {
+                return null;
+            }
+        }
+        return fromSorted(ids, n);
+    }
+
+    private static MoleculeBitmap fromSorted(int[] ids, int n) {
+        if (n == 0) {
+            return EMPTY;
+        }
+        Preconditions.checkArgument(ids[0] >= 0, "ids must not be negative");
+        int[] keys = new int[Math.min(n, (ids[n - 1] >>> 6) + 1)];
+        long[] words = new long[keys.length];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int key = ids[i] >>> 6;
+            if (length == 0 || keys[length - 1] != key) {
+                keys[length++] = key;
+            }
+            words[length - 1] |= 1L << ids[i];
+        }
+        return new MoleculeBitmap(keys, words, length);
+    }
+
+    /**
+     * @param id
+     *            the id
+     * @return <code>true</code> iff the bitmap contains <code>id</code>
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        int i = Arrays.binarySearch(keys, 0, length, id >>> 6);
+        return i >= 0 && (words[i] & (1L << id)) != 0;
+    }
+
+    /**
+     * @return the number of ids in this bitmap
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < length; i++) {
+            cardinality += Long.bitCount(words[i]);
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return <code>true</code> iff the bitmap contains no id
+     */
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    /**
+     * @param other
+     *            the other bitmap
+     * @return the union of this and the other bitmap
+     */
+    public MoleculeBitmap or(MoleculeBitmap other) {
+        int[] resultKeys = new int[length + other.length];
+        long[] resultWords = new long[resultKeys.length];
+        int i = 0, j = 0, n = 0;
+        while (i < length || j < other.length) {
+            if (j == other.length || (i < length && keys[i] < other.keys[j])) {
+                resultKeys[n] = keys[i];
+                resultWords[n++] = words[i++];
+            } else if (i == length || other.keys[j] < keys[i]) {
+                resultKeys[n] = other.keys[j];
+                resultWords[n++] = other.words[j++];
+            } else {
+                resultKeys[n] = keys[i];
+                resultWords[n++] = words[i++] | other.words[j++];
+            }
+        }
+        return new MoleculeBitmap(resultKeys, resultWords, n);
+    }
+
+    /**
+     * @param other
+     *            the other bitmap
+     * @return the intersection of this and the other bitmap
+     */
+    public MoleculeBitmap and(MoleculeBitmap other) {
+        int[] resultKeys = new int[Math.min(length, other.length)];
+        long[] resultWords = new long[resultKeys.length];
+        int i = 0, j = 0, n = 0;
+        while (i < length && j < other.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (other.keys[j] < keys[i]) {
+                j++;
+            } else {
+                long word = words[i++] & other.words[j++];
+                if (word != 0) {
+                    resultKeys[n] = keys[i - 1];
+                    resultWords[n++] = word;
+                }
+            }
+        }
+        return new MoleculeBitmap(resultKeys, resultWords, n);
+    }
+
+    /**
+     * @param other
+     *            the other bitmap
+     * @return the ids of this bitmap which are not contained in the other
+     *         bitmap
+     */
+    public MoleculeBitmap andNot(MoleculeBitmap other) {
+        int[] resultKeys = new int[length];
+        long[] resultWords = new long[length];
+        int j = 0, n = 0;
+        for (int i = 0; i < length; i++) {
+            while (j < other.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            long word = words[i];
+            if (j < other.length && other.keys[j] == keys[i]) {
+                word &= ~other.words[j];
+            }
+            if (word != 0) {
+                resultKeys[n] = keys[i];
+                resultWords[n++] = word;
+            }
+        }
+        return new MoleculeBitmap(resultKeys, resultWords, n);
+    }
+
+    /**
+     * @return the ids of this bitmap in ascending order
+     */
+    public int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                ids[n++] = (keys[i] << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Selects the structures whose ids are contained in this bitmap. Each id
+     * is selected at most once, so the candidates may contain the same
+     * structure several times.
+     * 
+     * @param candidates
+     *            the candidates, which must contain a structure for each id of
+     *            this bitmap
+     * @return the selected structures in the order of the candidates
+     */
+    public <T extends Structure> List<T> select(Iterable<? extends T> candidates) {
+        long[] remaining = Arrays.copyOf(words, length);
+        List<T> selected = Lists.newArrayListWithCapacity(cardinality());
+        for (T candidate : candidates) {
+            int id = candidate.getId();
+            if (id < 0) {
+                continue;
+            }
+            int i = Arrays.binarySearch(keys, 0, length, id >>> 6);
+            if (i >= 0 && (remaining[i] & (1L << id)) != 0) {
+                remaining[i] &= ~(1L << id);
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Serializes this bitmap. The format starts with a version byte followed
+     * by a sequence of tokens. Each token starts with a variable length
+     * header <code>gap &lt;&lt; 1 | run</code>, where <code>gap</code> is the
+     * number of empty words since the previous token. A run token continues
+     * with the number of consecutive full words, any other token with a
+     * single word of 8 bytes.
+     * 
+     * @return the serialized bitmap
+     * @see #fromBytes(byte[])
+     */
+    public byte[] toBytes() {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput(1 + 9 * length);
+        out.writeByte(FORMAT);
+        int next = 0;
+        int i = 0;
+        while (i < length) {
+            int gap = keys[i] - next;
+            int run = 0;
+            while (i + run < length && words[i + run] == -1L && keys[i + run] == keys[i] + run) {
+                run++;
+            }
+            if (run > 0) {
+                writeVarInt(out, gap << 1 | 1);
+                writeVarInt(out, run);
+                i += run;
+            } else {
+                writeVarInt(out, gap << 1);
+                out.writeLong(words[i]);
+                i++;
+            }
+            next = keys[i - 1] + 1;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Deserializes a bitmap written by {@link #toBytes()}
+     * 
+     * @param data
+     *            the serialized bitmap
+     * @return the bitmap
+     * @throws IllegalArgumentException
+     *             if the data is no serialized bitmap
+     */
+    public static MoleculeBitmap fromBytes(byte[] data) {
+        Preconditions.checkArgument(data.length > 0 && data[0] == FORMAT, "unknown bitmap format");
+        ByteArrayDataInput in = ByteStreams.newDataInput(data, 1);
+        int[] keys = new int[16];
+        long[] words = new long[16];
+        int n = 0;
+        int next = 0;
+        int position = 1;
+        try {
+            while (position < data.length) {
+                int header = readVarInt(in);
+                position += varIntSize(header);
+                int key = next + (header >>> 1);
+                int count = 1;
+                if ((header & 1) != 0) {
+                    count = readVarInt(in);
+                    position += varIntSize(count);
+                }
+                if (n + count > keys.length) {
+                    int capacity = Math.max(n + count, 2 * keys.length);
+                    keys = Arrays.copyOf(keys, capacity);
+                    words = Arrays.copyOf(words, capacity);
+                }
+                if ((header & 1) != 0) {
+                    for (int j = 0; j < count; j++) {
+                        keys[n] = key + j;
+                        words[n++] = -1L;
+                    }
+                } else {
+                    keys[n] = key;
+                    words[n++] = in.readLong();
+                    position += 8;
+                }
+                next = key + count;
+            }
+        } catch (IllegalStateException e) {
+            // thrown by the input at the end of the data
+            throw new IllegalArgumentException("truncated bitmap", e);
+        }
+        return n == 0 ? EMPTY : new MoleculeBitmap(keys, words, n);
+    }
+
+    private static void writeVarInt(ByteArrayDataOutput out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteArrayDataInput in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed bitmap");
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MoleculeBitmap)) {
+            return false;
+        }
+        MoleculeBitmap other = (MoleculeBitmap) obj;
+        return length == other.length && Arrays.equals(Arrays.copyOf(keys, length), Arrays.copyOf(other.keys, length))
+                && Arrays.equals(Arrays.copyOf(words, length), Arrays.copyOf(other.words, length));
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + keys[i];
+            hash = 31 * hash + (int) (words[i] ^ (words[i] >>> 32));
+        }
+        return hash;
+    }
+}
@@ -29,17 +29,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Set;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
-import com.google.common.collect.Sets;
-import com.google.common.primitives.Ints;
 
 import edu.udo.scaffoldhunter.model.AccumulationFunction;
 import edu.udo.scaffoldhunter.model.MappingType;
@@ -48,7 +44,6 @@ import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
 import edu.udo.scaffoldhunter.model.db.Scaffold;
 import edu.udo.scaffoldhunter.util.Orderings;
 import edu.udo.scaffoldhunter.view.scaffoldtree.config.ConfigMapping;
-import edu.udo.scaffoldhunter.view.scaffoldtree.config.ConfigMapping.Interval;
 
 /**
  * @author Henning Garus
@@ -153,71 +148,7 @@ public class Scaffolds {
             return null;
         if (propertyDefinition.isScaffoldProperty())
             return null;
-        Map<Scaffold, List<Integer>> map = Maps.newHashMap();
-        fillMap(map, scaffold, mapping, propertyDefinition, cumulative);
-        return map;
-    }
-
-    private static int[] fillMap(Map<Scaffold, List<Integer>> map, Scaffold scaffold, ConfigMapping mapping,
-            final PropertyDefinition propertyDefinition, boolean cumulative) {
-        int[] dist = new int[mapping.getIntervals().size()];
-        { // determine Distribution for current Scaffold
-            Predicate<Molecule> propertyNotNull = new Predicate<Molecule>() {
-                @Override
-                public boolean apply(Molecule input) {
-                    return input.getNumPropertyValue(propertyDefinition) != null;
-                }
-            };
-            Set<Molecule> current = Sets.filter(scaffold.getMolecules(), propertyNotNull);
-            int i = mapping.getIntervals().size() - 1;
-            for (Interval interval : Iterables.limit(Lists.reverse(mapping.getIntervals()), mapping.getIntervals()
-                    .size() - 1)) {
-                Set<Molecule> filtered = Sets.filter(current,
-                        new LesserOrEqual(propertyDefinition, interval.getLowerBound()));
-                dist[i--] = current.size() - filtered.size();
-                current = filtered;
-            }
-            dist[0] = current.size();
-        }
-        /*
-         * determine distributions for children recursively and add them in the
-         * cumulative case
-         */
-        for (Scaffold child : scaffold.getChildren()) {
-            int[] childDistribution = fillMap(map, child, mapping, propertyDefinition, cumulative);
-            if (cumulative) {
-                for (int i = 0; i < dist.length; ++i)
-                    dist[i] += childDistribution[i];
-            }
-        }
-        map.put(scaffold, Ints.asList(dist));
-        return dist;
-    }
-
-    /**
-     * tests x >= y where x is the value of some NumProperty
-     */
-    private static class LesserOrEqual implements Predicate<Molecule> {
-
-        private final PropertyDefinition propDef;
-        private final double y;
-
-        LesserOrEqual(PropertyDefinition propDef, double y) {
-            this.propDef = propDef;
-            this.y = y;
-        }
-
-        /*
-         * (non-Javadoc)
-         * 
-         * @see com.google.common.base.Predicate#apply(java.lang.Object)
-         */
-        @Override
-        public boolean apply(Molecule input) {
-            Double i = input.getNumPropertyValue(propDef);
-            return i <= y;
-        }
-
+        return IntervalHistogram.fromMapping(mapping).countSubtree(scaffold, propertyDefinition, cumulative);
     }
 
     /**
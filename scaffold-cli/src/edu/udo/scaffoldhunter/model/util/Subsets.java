@@ -21,6 +21,9 @@
 
 package edu.udo.scaffoldhunter.model.util;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -162,7 +165,16 @@ public class Subsets {
     public static Subset union(Subset parent, Iterable<Subset> subsets) {
         Preconditions.checkNotNull(subsets);
 
-        Set<Molecule> molecules = Sets.newHashSet(Iterables.concat(subsets));
+        Collection<Molecule> molecules;
+        MoleculeBitmap union = memberships(subsets);
+        if (union != null) {
+            for (Subset s : Iterables.skip(subsets, 1)) {
+                union = union.or(s.getMembership());
+            }
+            molecules = union.select(Iterables.concat(subsets));
+        } else {
+            molecules = Sets.newHashSet(Iterables.concat(subsets));
+        }
 
         if (parent == null) {
             parent = getLowestCommonAncestor(subsets);
@@ -186,10 +198,19 @@ public class Subsets {
     public static Subset intersection(Subset parent, Iterable<Subset> subsets) {
         Preconditions.checkNotNull(subsets);
 
-        Set<Molecule> molecules = Sets.newHashSet(Iterables.get(subsets, 0));
-        for (Subset s : Iterables.skip(subsets, 1)) {
-            Set<Molecule> set = Sets.newHashSet(s);
-            molecules.retainAll(set);
+        Collection<Molecule> molecules;
+        MoleculeBitmap intersection = memberships(subsets);
+        if (intersection != null) {
+            for (Subset s : Iterables.skip(subsets, 1)) {
+                intersection = intersection.and(s.getMembership());
+            }
+            molecules = intersection.select(Iterables.get(subsets, 0));
+        } else {
+            Set<Molecule> set = Sets.newHashSet(Iterables.get(subsets, 0));
+            for (Subset s : Iterables.skip(subsets, 1)) {
+                set.retainAll(Sets.newHashSet(s));
+            }
+            molecules = set;
         }
 
         if (parent == null) {
@@ -216,10 +237,19 @@ public class Subsets {
         Preconditions.checkNotNull(source);
         Preconditions.checkNotNull(subtract);
 
-        Set<Molecule> molecules = Sets.newHashSet(source);
-        for (Subset s : subtract) {
-            Set<Molecule> set = Sets.newHashSet(s);
-            molecules.removeAll(set);
+        Collection<Molecule> molecules;
+        MoleculeBitmap difference = memberships(Iterables.concat(Collections.singleton(source), subtract));
+        if (difference != null) {
+            for (Subset s : subtract) {
+                difference = difference.andNot(s.getMembership());
+            }
+            molecules = difference.select(source);
+        } else {
+            Set<Molecule> set = Sets.newHashSet(source);
+            for (Subset s : subtract) {
+                set.removeAll(Sets.newHashSet(s));
+            }
+            molecules = set;
         }
 
         if (parent == null) {
@@ -229,6 +259,24 @@ public class Subsets {
         return new Subset(parent, "difference subset", null, parent.getSession(), molecules, null);
     }
 
+    /**
+     * The set operations work on the memberships of the subsets if all of
+     * them are known, so no hash set has to be built for each input subset.
+     * 
+     * @param subsets
+     *            the input subsets
+     * @return the membership of the first subset or <code>null</code> if
+     *         the membership of any subset is unknown
+     */
+    private static MoleculeBitmap memberships(Iterable<Subset> subsets) {
+        for (Subset s : subsets) {
+            if (s.getMembership() == null) {
+                return null;
+            }
+        }
+        return Iterables.isEmpty(subsets) ? null : Iterables.get(subsets, 0).getMembership();
+    }
+
     /**
      * Creates a subset for each of the given scaffolds. The subset for a
      * scaffold contains the molecules associated with the scaffold and any of
@@ -296,5 +344,22 @@ public class Subsets {
 
         return ancestors;
     }
-    
+
+    /**
+     * @param subset
+     * 
+     * @return the molecules of the given subset ordered by their ids, e.g. to
+     *         read their data from the database in index order
+     */
+    public static List<Molecule> getMoleculesById(Subset subset) {
+        List<Molecule> molecules = Lists.newArrayList(subset.getMolecules());
+        Collections.sort(molecules, new Comparator<Molecule>() {
+            @Override
+            public int compare(Molecule m1, Molecule m2) {
+                return m1.getId() < m2.getId() ? -1 : (m1.getId() == m2.getId() ? 0 : 1);
+            }
+        });
+        return molecules;
+    }
+
 }
@@ -47,6 +47,8 @@ import edu.udo.scaffoldhunter.util.Resources;
  * 
  */
 public class SHPluginManager {
+    private static SHPluginManager instance;
+
     PluginManager pm;
     PluginManagerUtil pmu;
 
@@ -77,6 +79,19 @@ public class SHPluginManager {
         pmu = new PluginManagerUtil(pm);
     }
 
+    /**
+     * Returns a plugin manager which is shared by all callers, so the
+     * classpath is searched for plugins only once per process.
+     * 
+     * @return the shared plugin manager
+     */
+    public static synchronized SHPluginManager getInstance() {
+        if (instance == null) {
+            instance = new SHPluginManager();
+        }
+        return instance;
+    }
+
     /**
      * @return a Collection of all available ImportPlugins
      */
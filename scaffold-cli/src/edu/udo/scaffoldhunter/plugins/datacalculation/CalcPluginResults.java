@@ -39,6 +39,10 @@ public interface CalcPluginResults {
     public Set<PropertyDefinition> getCalculatedProperties();
 
     /**
+     * Each call must return a new {@link Iterable} with its own transform
+     * function instances. The calculation calls this method once per thread,
+     * so the transform functions need not be thread-safe.
+     * 
      * @return the molecules from a plugin run
      */
     public Iterable<IAtomContainer> getMolecules();
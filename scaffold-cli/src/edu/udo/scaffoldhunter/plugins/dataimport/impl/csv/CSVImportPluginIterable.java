@@ -21,11 +21,13 @@
 
 package edu.udo.scaffoldhunter.plugins.dataimport.impl.csv;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.exception.InvalidSmilesException;
@@ -34,15 +36,37 @@ import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesParser;
 
 import au.com.bytecode.opencsv.CSVReader;
+
+import com.google.common.collect.Lists;
+
 import edu.udo.scaffoldhunter.model.data.Message;
 import edu.udo.scaffoldhunter.model.data.MessageListener;
 import edu.udo.scaffoldhunter.model.dataimport.MergeMessageTypes;
+import edu.udo.scaffoldhunter.model.dataimport.OrderedParallelIterator;
+import edu.udo.scaffoldhunter.model.dataimport.OrderedParallelIterator.TaskSource;
 
 /**
  * @author Bernhard Dick
  * 
  */
 public class CSVImportPluginIterable implements Iterable<IAtomContainer> {
+    /**
+     * the number of lines parsed by one task
+     */
+    private static final int BATCH_SIZE = 1000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * {@link SmilesParser}s are not thread safe, each parsing thread reuses
+     * its own parser
+     */
+    private static final ThreadLocal<SmilesParser> SMILES_PARSER = new ThreadLocal<SmilesParser>() {
+        @Override
+        protected SmilesParser initialValue() {
+            return new SmilesParser(SilentChemObjectBuilder.getInstance());
+        }
+    };
+
     String[] propertyNames;
     CSVImportPluginArguments arguments;
     MessageListener messageListener;
@@ -60,18 +84,17 @@ public class CSVImportPluginIterable implements Iterable<IAtomContainer> {
         this.messageListener = messageListener;
     }
 
-    private class CSVIterator implements Iterator<IAtomContainer> {
-        private String[] lastLine, propertyNames;
+    /**
+     * Reads batches of lines on the iterating thread, the molecules of each
+     * batch are parsed by a worker thread
+     */
+    private class CSVTaskSource implements TaskSource<IAtomContainer> {
         private CSVReader csvReader;
-        private MessageListener messageListener;
 
-        public CSVIterator(CSVImportPluginArguments arguments, String[] propertyNames, MessageListener messageListener)
-                throws IOException {
-            this.propertyNames = propertyNames;
-            this.messageListener = messageListener;
+        public CSVTaskSource() throws IOException {
             File csvFile = new File(arguments.getFilename());
-            csvReader = new CSVReader(new FileReader(csvFile), arguments.getSeparator(), arguments.getQuotechar(),
-                    arguments.isStrictQuotes());
+            csvReader = new CSVReader(new BufferedReader(new FileReader(csvFile), BUFFER_SIZE),
+                    arguments.getSeparator(), arguments.getQuotechar(), arguments.isStrictQuotes());
             // TODO also escape character?
             if (arguments.isFirstRowHeader()) {
                 csvReader.readNext();
@@ -79,58 +102,53 @@ public class CSVImportPluginIterable implements Iterable<IAtomContainer> {
         }
 
         @Override
-        public boolean hasNext() {
-            if (lastLine == null) {
-                try {
-                    lastLine = csvReader.readNext();
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
+        public Callable<List<IAtomContainer>> next() throws IOException {
+            final List<String[]> lines = Lists.newArrayListWithCapacity(BATCH_SIZE);
+            String[] line;
+            while (lines.size() < BATCH_SIZE && (line = csvReader.readNext()) != null) {
+                lines.add(line);
             }
-            return lastLine != null;
-        }
-
-        @Override
-        public IAtomContainer next() {
-            if (lastLine == null) {
-                try {
-                    lastLine = csvReader.readNext();
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                }
+            if (lines.isEmpty()) {
+                return null;
             }
-            if (lastLine != null) { // Check if we read a new line
-                IAtomContainer res;
-                try {
-                    SmilesParser sp = new SmilesParser(SilentChemObjectBuilder.getInstance());
-                    String smiles = arguments.getSmilesColumnId() < lastLine.length ? 
-                            lastLine[arguments.getSmilesColumnId()] : "";
-                    res = sp.parseSmiles(smiles);
-                    if (res.getAtomCount() == 0) {
-                        throw new InvalidSmilesException("Empty molecule read from SMILES");
+            return new Callable<List<IAtomContainer>>() {
+                @Override
+                public List<IAtomContainer> call() {
+                    List<IAtomContainer> molecules = Lists.newArrayListWithCapacity(lines.size());
+                    for (String[] line : lines) {
+                        molecules.add(parse(line));
                     }
-                } catch (InvalidSmilesException ise) {
-                    messageListener.receiveMessage(new Message(MergeMessageTypes.MOLECULE_BY_SMILES_FAILED, "", null,
-                            null));
-                    res = new AtomContainer();
-                }
-                for (int i = 0; i < propertyNames.length; i++) {
-                    res.setProperty(propertyNames[i], lastLine[i]);
+                    return molecules;
                 }
-
-                lastLine = null;
-                return res;
-            } else {
-                throw new NoSuchElementException();
-            }
+            };
         }
 
         @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
+        public void close() throws IOException {
+            csvReader.close();
+        }
+    }
+
+    private IAtomContainer parse(String[] line) {
+        IAtomContainer res;
+        try {
+            String smiles = arguments.getSmilesColumnId() < line.length ? line[arguments.getSmilesColumnId()] : "";
+            res = SMILES_PARSER.get().parseSmiles(smiles);
+            if (res.getAtomCount() == 0) {
+                throw new InvalidSmilesException("Empty molecule read from SMILES");
+            }
+        } catch (InvalidSmilesException ise) {
+            // the listener is called from several parsing threads
+            synchronized (messageListener) {
+                messageListener.receiveMessage(new Message(MergeMessageTypes.MOLECULE_BY_SMILES_FAILED, "", null,
+                        null));
+            }
+            res = new AtomContainer();
+        }
+        for (int i = 0; i < propertyNames.length; i++) {
+            res.setProperty(propertyNames[i], line[i]);
         }
+        return res;
     }
 
     /*
@@ -141,7 +159,8 @@ public class CSVImportPluginIterable implements Iterable<IAtomContainer> {
     @Override
     public Iterator<IAtomContainer> iterator() {
         try {
-            return new CSVIterator(arguments, propertyNames, messageListener);
+            return new OrderedParallelIterator<IAtomContainer>(new CSVTaskSource(), Runtime.getRuntime()
+                    .availableProcessors(), "CSVImport");
         } catch (IOException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
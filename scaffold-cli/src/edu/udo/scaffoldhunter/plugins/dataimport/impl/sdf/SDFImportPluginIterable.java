@@ -22,24 +22,23 @@
 package edu.udo.scaffoldhunter.plugins.dataimport.impl.sdf;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.io.iterator.IteratingMDLReader;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Iterators;
 
-import edu.udo.scaffoldhunter.model.util.MoleculeConfigurator;
+import edu.udo.scaffoldhunter.model.dataimport.ParallelSDFReader;
 
 /**
  * @author Bernhard Dick
  * 
  */
 public class SDFImportPluginIterable implements Iterable<IAtomContainer> {
+    private static Logger logger = LoggerFactory.getLogger(SDFImportPluginIterable.class);
+
     private final File file;
 
     /**
@@ -57,57 +56,12 @@ public class SDFImportPluginIterable implements Iterable<IAtomContainer> {
      */
     @Override
     public Iterator<IAtomContainer> iterator() {
-        FileInputStream is;
+        // parses and prepares the molecules on all processors
         try {
-            is = new FileInputStream(file);
-        } catch (FileNotFoundException e) {
+            return new ParallelSDFReader(file, true).iterator();
+        } catch (RuntimeException e) {
+            logger.warn("No molecules imported from {}: {}", file, e.getMessage());
             return Iterators.emptyIterator();
         }
-        return new SDIterator(is);
-    }
-
-    static class SDIterator implements Iterator<IAtomContainer> {
-
-        private final IteratingMDLReader reader;
-
-        public SDIterator(FileInputStream is) {
-            reader = new IteratingMDLReader(is, SilentChemObjectBuilder.getInstance());
-        }
-
-        /*
-         * (non-Javadoc)
-         * 
-         * @see java.util.Iterator#hasNext()
-         */
-        @Override
-        public boolean hasNext() {
-            return reader.hasNext();
-        }
-
-        /*
-         * (non-Javadoc)
-         * 
-         * @see java.util.Iterator#next()
-         */
-        @Override
-        public IAtomContainer next() {
-            if (reader.hasNext()) {
-                IAtomContainer mol = reader.next();
-                MoleculeConfigurator.prepare(mol, false);
-                return mol;
-            } else {
-                throw new NoSuchElementException();
-            }
-        }
-
-        /*
-         * (non-Javadoc)
-         * 
-         * @see java.util.Iterator#remove()
-         */
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
-        }
     }
 }
@@ -22,22 +22,22 @@
 package edu.udo.scaffoldhunter.plugins.dataimport.impl.sdf;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.io.iterator.IteratingMDLReader;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
 
 import edu.udo.scaffoldhunter.model.data.MessageListener;
+import edu.udo.scaffoldhunter.model.dataimport.ParallelSDFReader;
 import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
 import edu.udo.scaffoldhunter.plugins.dataimport.PluginResults;
 
@@ -46,6 +46,7 @@ import edu.udo.scaffoldhunter.plugins.dataimport.PluginResults;
  * 
  */
 public class SDFImportPluginResults implements PluginResults {
+    private static Logger logger = LoggerFactory.getLogger(SDFImportPluginResults.class);
 
     private SDFImportPluginArguments arguments;
     private Map<String, PropertyDefinition> sourceProperties;
@@ -61,47 +62,41 @@ public class SDFImportPluginResults implements PluginResults {
         this.numMolecules = 0;
 
         File sdfFile = new File(arguments.getFilename());
-        IAtomContainer cur;
         Set<String> notNumeric = Sets.newHashSet();
-        IteratingMDLReader reader = null;
+        // only properties required here, no need to configure molecule
+        Iterator<IAtomContainer> molecules;
         try {
-            reader = new IteratingMDLReader(new FileInputStream(sdfFile), SilentChemObjectBuilder.getInstance());
-            while (reader.hasNext()) {
-                // only properties required here, no need to configure molecule
-                cur = reader.next();
-                for (Entry<Object, Object> e : cur.getProperties().entrySet()) {
-                    if (e.getValue() == null) {
-                        continue;
-                    }
-                    if (!sourceProperties.containsKey(e.getKey())) {
-                        sourceProperties.put((String) e.getKey(), null);
-                    }
-                    if (e.getValue().toString().isEmpty()) {
-                        continue;
-                    }
-                    if (!notNumeric.contains(e.getKey())) {
-                        boolean numeric = true;
-                        try {
-                            double d = Double.parseDouble((String) e.getValue());
-                            if (Double.isNaN(d) || Double.isInfinite(d)) {
-                                numeric = false;
-                            }   
-                        } catch (NumberFormatException ex) {
+            molecules = new ParallelSDFReader(sdfFile, false).iterator();
+        } catch (RuntimeException e) {
+            logger.warn("No properties read from {}: {}", sdfFile, e.getMessage());
+            molecules = Iterators.emptyIterator();
+        }
+        while (molecules.hasNext()) {
+            IAtomContainer cur = molecules.next();
+            for (Entry<Object, Object> e : cur.getProperties().entrySet()) {
+                if (e.getValue() == null) {
+                    continue;
+                }
+                if (!sourceProperties.containsKey(e.getKey())) {
+                    sourceProperties.put((String) e.getKey(), null);
+                }
+                if (e.getValue().toString().isEmpty()) {
+                    continue;
+                }
+                if (!notNumeric.contains(e.getKey())) {
+                    boolean numeric = true;
+                    try {
+                        double d = Double.parseDouble((String) e.getValue());
+                        if (Double.isNaN(d) || Double.isInfinite(d)) {
                             numeric = false;
-                        }
-                        if (!numeric) notNumeric.add((String) e.getKey());                        
+                        }   
+                    } catch (NumberFormatException ex) {
+                        numeric = false;
                     }
+                    if (!numeric) notNumeric.add((String) e.getKey());                        
                 }
-                numMolecules++;
             }
-        } catch (FileNotFoundException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        } finally {
-            try {
-                if (reader != null)
-                    reader.close();
-            } catch(IOException ex){}
+            numMolecules++;
         }
         probablyNumeric = Sets.difference(sourceProperties.keySet(), notNumeric);
     }
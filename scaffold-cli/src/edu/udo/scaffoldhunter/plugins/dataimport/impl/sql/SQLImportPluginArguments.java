@@ -26,6 +26,11 @@ package edu.udo.scaffoldhunter.plugins.dataimport.impl.sql;
  * 
  */
 public class SQLImportPluginArguments {
+    /**
+     * the default number of rows fetched from the database at once
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
     private String db;
     private String hostname;
     private String schema;
@@ -35,6 +40,7 @@ public class SQLImportPluginArguments {
     private String selectClause;
     private String smilesColumn;
     private String molColumn;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
     /**
      * @param db 
@@ -200,9 +206,28 @@ public class SQLImportPluginArguments {
     }
 
     /**
-     * @return a generated JDBC Connection URL
+     * @param fetchSize
+     *            the number of rows fetched from the database at once
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @return the number of rows fetched from the database at once
+     */
+    public int getFetchSize() {
+        // arguments stored by older versions have no fetch size
+        return fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
+    }
+
+    /**
+     * @return a generated JDBC Connection URL. MySQL connections use server
+     *         side cursors, otherwise the driver ignores the fetch size and
+     *         reads the whole result at once.
      */
     public String getUrl() {
-        return "jdbc:".concat(db).concat("://").concat(hostname).concat("/").concat(schema);
+        String url = "jdbc:".concat(db).concat("://").concat(hostname).concat("/").concat(schema);
+        return db.equals("mysql") ? url.concat("?useCursorFetch=true") : url;
     }
 }
@@ -24,10 +24,12 @@ package edu.udo.scaffoldhunter.plugins.dataimport.impl.sql;
 import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Iterator;
-import java.util.NoSuchElementException;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.exception.CDKException;
@@ -36,10 +38,16 @@ import org.openscience.cdk.io.MDLReader;
 import org.openscience.cdk.silent.AtomContainer;
 import org.openscience.cdk.silent.SilentChemObjectBuilder;
 import org.openscience.cdk.smiles.SmilesParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
 
 import edu.udo.scaffoldhunter.model.data.Message;
 import edu.udo.scaffoldhunter.model.data.MessageListener;
 import edu.udo.scaffoldhunter.model.dataimport.MergeMessageTypes;
+import edu.udo.scaffoldhunter.model.dataimport.OrderedParallelIterator;
+import edu.udo.scaffoldhunter.model.dataimport.OrderedParallelIterator.TaskSource;
 import edu.udo.scaffoldhunter.model.util.MoleculeConfigurator;
 
 /**
@@ -47,6 +55,24 @@ import edu.udo.scaffoldhunter.model.util.MoleculeConfigurator;
  * 
  */
 public class SQLImportPluginIterable implements Iterable<IAtomContainer> {
+    private static Logger logger = LoggerFactory.getLogger(SQLImportPluginIterable.class);
+
+    /**
+     * the number of rows parsed by one task
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * {@link SmilesParser}s are not thread safe, each parsing thread reuses
+     * its own parser
+     */
+    private static final ThreadLocal<SmilesParser> SMILES_PARSER = new ThreadLocal<SmilesParser>() {
+        @Override
+        protected SmilesParser initialValue() {
+            return new SmilesParser(SilentChemObjectBuilder.getInstance());
+        }
+    };
+
 
     SQLImportPluginArguments arguments;
     Connection connection;
@@ -64,79 +90,118 @@ public class SQLImportPluginIterable implements Iterable<IAtomContainer> {
         this.messageListener = messageListener;
     }
 
-    private static class SQLImportPluginIterator implements Iterator<IAtomContainer> {
-        private SQLImportPluginArguments arguments;
-        private ResultSet resultSet;
-        private boolean nextSelected;
-        MessageListener messageListener;
-
-        public SQLImportPluginIterator(SQLImportPluginArguments arguments, Connection connection,
-                MessageListener messageListener) throws SQLException {
-            this.arguments = arguments;
-            this.messageListener = messageListener;
-            Statement statement = connection.createStatement();
-            resultSet = statement.executeQuery(arguments.getSelectClause());
-        }
+    /**
+     * Creates a statement which streams its results with the fetch size of
+     * the arguments instead of reading the whole result at once
+     * 
+     * @param connection
+     *            the connection
+     * @param arguments
+     *            the arguments
+     * @return the statement
+     * @throws SQLException
+     */
+    static Statement createStreamingStatement(Connection connection, SQLImportPluginArguments arguments)
+            throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(arguments.getFetchSize());
+        return statement;
+    }
 
-        @Override
-        public boolean hasNext() {
-            if (!nextSelected) {
-                try {
-                    nextSelected = resultSet.next();
-                } catch (SQLException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
-                    return false;
-                }
+    /**
+     * Reads batches of rows on the iterating thread, the molecules of each
+     * batch are parsed by a worker thread
+     */
+    private class SQLTaskSource implements TaskSource<IAtomContainer> {
+        private final Statement statement;
+        private final ResultSet resultSet;
+        private final String[] columnNames;
+        private final int molColumn;
+        private final int smilesColumn;
+
+        public SQLTaskSource() throws SQLException {
+            statement = createStreamingStatement(connection, arguments);
+            resultSet = statement.executeQuery(arguments.getSelectClause());
+            ResultSetMetaData meta = resultSet.getMetaData();
+            columnNames = new String[meta.getColumnCount()];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = meta.getColumnName(i + 1);
             }
-            return nextSelected;
+            molColumn = arguments.getMolColumn().equals(" - none - ") ? -1 : resultSet.findColumn(arguments
+                    .getMolColumn()) - 1;
+            smilesColumn = arguments.getSmilesColumn().equals(" - none - ") ? -1 : resultSet.findColumn(arguments
+                    .getSmilesColumn()) - 1;
         }
 
         @Override
-        public IAtomContainer next() {
+        public Callable<List<IAtomContainer>> next() throws SQLException {
+            final List<String[]> rows = Lists.newArrayListWithCapacity(BATCH_SIZE);
             try {
-                if (nextSelected || resultSet.next()) {
-                    nextSelected = false;
-                    IAtomContainer res = null;
-                    SmilesParser sp = new SmilesParser(SilentChemObjectBuilder.getInstance());
-                    if (!arguments.getMolColumn().equals(" - none - ")) {
-                        MDLReader reader = new MDLReader(
-                                new StringReader(resultSet.getString(arguments.getMolColumn())));
-                        try {
-                            res = reader.read(new AtomContainer());
-                            MoleculeConfigurator.prepare(res, false);
-                        } catch (CDKException e) {
-                            messageListener.receiveMessage(new Message(MergeMessageTypes.MOLECULE_BY_MOL_FAILED, "",
-                                    null, null));
-                        }
-                    }
-                    if (res == null && !arguments.getSmilesColumn().equals(" - none - ")) {
-                        try {
-                            res = sp.parseSmiles(resultSet.getString(arguments.getSmilesColumn()));
-                        } catch (InvalidSmilesException ise) {
-                            messageListener.receiveMessage(new Message(MergeMessageTypes.MOLECULE_BY_SMILES_FAILED, "",
-                                    null, null));
-                        }
-                    }
-                    if (res == null) {
-                        res = new AtomContainer();
-                    }
-                    for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
-                        res.setProperty(resultSet.getMetaData().getColumnName(i), resultSet.getString(i));
+                while (rows.size() < BATCH_SIZE && resultSet.next()) {
+                    String[] row = new String[columnNames.length];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = resultSet.getString(i + 1);
                     }
-                    return res;
-                } else {
-                    throw new NoSuchElementException();
+                    rows.add(row);
                 }
             } catch (SQLException e) {
-                e.printStackTrace();
-                throw new NoSuchElementException();
+                // a truncated result must not be imported as if it was
+                // complete, the iterator closes the statement and fails
+                logger.error("Reading the query result failed: {}", e.getMessage());
+                throw e;
+            }
+            if (rows.isEmpty()) {
+                return null;
+            }
+            return new Callable<List<IAtomContainer>>() {
+                @Override
+                public List<IAtomContainer> call() {
+                    List<IAtomContainer> molecules = Lists.newArrayListWithCapacity(rows.size());
+                    for (String[] row : rows) {
+                        molecules.add(parse(row));
+                    }
+                    return molecules;
+                }
+            };
+        }
+
+        private IAtomContainer parse(String[] row) {
+            IAtomContainer res = null;
+            if (molColumn >= 0) {
+                MDLReader reader = new MDLReader(new StringReader(row[molColumn]));
+                try {
+                    res = reader.read(new AtomContainer());
+                    MoleculeConfigurator.prepare(res, false);
+                } catch (CDKException e) {
+                    receiveMessage(new Message(MergeMessageTypes.MOLECULE_BY_MOL_FAILED, "", null, null));
+                }
+            }
+            if (res == null && smilesColumn >= 0) {
+                try {
+                    res = SMILES_PARSER.get().parseSmiles(row[smilesColumn]);
+                } catch (InvalidSmilesException ise) {
+                    receiveMessage(new Message(MergeMessageTypes.MOLECULE_BY_SMILES_FAILED, "", null, null));
+                }
+            }
+            if (res == null) {
+                res = new AtomContainer();
+            }
+            for (int i = 0; i < row.length; i++) {
+                res.setProperty(columnNames[i], row[i]);
+            }
+            return res;
+        }
+
+        private void receiveMessage(Message message) {
+            // the listener is called from several parsing threads
+            synchronized (messageListener) {
+                messageListener.receiveMessage(message);
             }
         }
 
         @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
+        public void close() throws SQLException {
+            statement.close();
         }
     }
 
@@ -148,7 +213,8 @@ public class SQLImportPluginIterable implements Iterable<IAtomContainer> {
     @Override
     public Iterator<IAtomContainer> iterator() {
         try {
-            return new SQLImportPluginIterator(this.arguments, this.connection, messageListener);
+            return new OrderedParallelIterator<IAtomContainer>(new SQLTaskSource(), Runtime.getRuntime()
+                    .availableProcessors(), "SQLImport");
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
@@ -69,8 +69,12 @@ public class SQLImportPluginResults implements PluginResults, MessageListener {
         try {
             this.connection = DriverManager.getConnection(arguments.getUrl(), connProps);
 
+            // the connection is only read, some drivers stream results only
+            // within a transaction
+            connection.setAutoCommit(false);
+
             numMolecules = 0;
-            Statement statement = connection.createStatement();
+            Statement statement = SQLImportPluginIterable.createStreamingStatement(connection, arguments);
             ResultSet result = statement.executeQuery(arguments.getSelectClause());
             ResultSetMetaData meta = result.getMetaData();
             for (int i = 1; i <= meta.getColumnCount(); i++) {
@@ -82,6 +86,7 @@ public class SQLImportPluginResults implements PluginResults, MessageListener {
             while (result.next()) {
                 numMolecules++;
             }
+            statement.close();
         } catch (SQLException e) {
             // TODO Auto-generated catch block
             e.printStackTrace();
@@ -41,8 +41,10 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPasswordField;
 import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
 
 import edu.udo.scaffoldhunter.plugins.PluginSettingsPanel;
 
@@ -61,6 +63,7 @@ public class SQLImportPluginSettingsPanel extends PluginSettingsPanel {
     private JLabel selectClauseLabel;
     private JLabel smilesLabel;
     private JLabel molLabel;
+    private JLabel fetchSizeLabel;
 
     private JComboBox dbComboBox;
     private JTextField hostnameTextField;
@@ -74,6 +77,7 @@ public class SQLImportPluginSettingsPanel extends PluginSettingsPanel {
     private JButton executeQueryButton;
     private JComboBox smilesComboBox;
     private JComboBox molComboBox;
+    private JSpinner fetchSizeSpinner;
 
     private SQLImportPluginArguments arguments;
 
@@ -129,6 +133,13 @@ public class SQLImportPluginSettingsPanel extends PluginSettingsPanel {
         molComboBox = new JComboBox();
         molComboBox.addItem(arguments.getMolColumn());
 
+        fetchSizeLabel = new JLabel("Fetch size: ");
+        SpinnerNumberModel fetchSizeModel = new SpinnerNumberModel();
+        fetchSizeModel.setMinimum(1);
+        fetchSizeModel.setValue(arguments.getFetchSize());
+        fetchSizeSpinner = new JSpinner(fetchSizeModel);
+        fetchSizeSpinner.setToolTipText("The number of rows fetched from the database at once");
+
         this.setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.fill = GridBagConstraints.HORIZONTAL;
@@ -172,6 +183,9 @@ public class SQLImportPluginSettingsPanel extends PluginSettingsPanel {
         gbc.gridy += 1;
         this.add(molLabel, gbc);
 
+        gbc.gridy += 1;
+        this.add(fetchSizeLabel, gbc);
+
         gbc.weightx = 1;
         gbc.gridx = 1;
         gbc.gridy = 0;
@@ -208,6 +222,9 @@ public class SQLImportPluginSettingsPanel extends PluginSettingsPanel {
         gbc.gridy += 1;
         this.add(molComboBox, gbc);
 
+        gbc.gridy += 1;
+        this.add(fetchSizeSpinner, gbc);
+
         getTablesButton.addActionListener(new ActionListener() {
 
             @Override
@@ -307,6 +324,9 @@ public class SQLImportPluginSettingsPanel extends PluginSettingsPanel {
         arguments.setSelectClause(selectClauseTextArea.getText());
         arguments.setSmilesColumn((String) smilesComboBox.getSelectedItem());
         arguments.setMolColumn((String) molComboBox.getSelectedItem());
+        if (fetchSizeSpinner.getValue() instanceof Integer) {
+            arguments.setFetchSize((Integer) fetchSizeSpinner.getValue());
+        }
         return arguments;
     }
 
@@ -735,8 +735,8 @@ public class StartClusteringPanel extends JPanel {
 
                 final NNSearchs nnSearch = ClusteringController.defaultNNSearchs(selectedExact);
                 final NNSearchParameters parameters;
-                final HierarchicalClusterings clustering = ClusteringController
-                        .defaultClusteringAlgorithm(selectedExact);
+                final HierarchicalClusterings clustering = ClusteringController.defaultClusteringAlgorithm(
+                        selectedExact, result.getValue().size());
 
                 if (selectedExact) {
                     // exact
@@ -44,6 +44,7 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import edu.udo.scaffoldhunter.gui.util.DBExceptionHandler;
+import edu.udo.scaffoldhunter.gui.util.LoadingExecutor;
 import edu.udo.scaffoldhunter.gui.util.VoidNullaryDBFunction;
 import edu.udo.scaffoldhunter.model.BannerPool;
 import edu.udo.scaffoldhunter.model.BannerPool.BannerChangeListener;
@@ -549,24 +550,22 @@ public class DbModel extends JPanel implements Model, ActionListener, ChangeList
     
     /**
      * loads the values of the specified property definition
-     * @param prop
+     * @param pd
+     * @param channel
      */
-    void loadData(PropertyDefinition prop, int channel) {
+    void loadData(final PropertyDefinition pd, final int channel) {
 
-        new Thread () {
-            
-            PropertyDefinition pd;
-            int channel;
-            
-            public void kickstart(PropertyDefinition pd, int channel) {
-                this.pd = pd;
-                this.channel = channel;
-                start();
-            }
+        // only the last request of a channel is of interest, older ones are
+        // cancelled by the loading executor
+        LoadingExecutor.getDefault().submit(this, channel, new LoadingExecutor.Task() {
 
-            
             @Override
-            public void run() {
+            public void run(LoadingExecutor.Request request) {
+                // superseded before it was started, nothing is locked yet
+                if( request.isCancelled() ) {
+                    return;
+                }
+
                 List <Double> values = new ArrayList <Double> ();
                 List <Molecule> m = new ArrayList <Molecule> ();
                 List <Molecule> oldMoleculeList = molecules;
@@ -598,7 +597,9 @@ public class DbModel extends JPanel implements Model, ActionListener, ChangeList
                 }.init(propDefs, m));
 
                 // has something changed in the meantime?
-                if( oldMoleculeList == molecules ) {
+                if( request.isCancelled() || oldMoleculeList != molecules ) {
+                    db.unlockAndUnload(propDefs, m);
+                } else {
                     // no, so copy values into our local list
                     double min = Double.NaN;
                     double max = Double.NaN;
@@ -639,7 +640,7 @@ public class DbModel extends JPanel implements Model, ActionListener, ChangeList
 
                 }
             }
-        }.kickstart(prop, channel);
+        }, LoadingExecutor.Priority.VISIBLE);
     }
 
 
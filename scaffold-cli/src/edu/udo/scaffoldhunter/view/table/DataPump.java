@@ -21,7 +21,8 @@
 
 package edu.udo.scaffoldhunter.view.table;
 
-import edu.udo.scaffoldhunter.gui.util.ProgressWorker;
+import edu.udo.scaffoldhunter.gui.util.LoadingExecutor;
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
 import edu.udo.scaffoldhunter.model.db.Molecule;
 import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
 
@@ -57,8 +58,9 @@ public class DataPump {
      * @param block
      */
     public void load(DataPumpBlock block) {
-            Loader loader = new Loader(block);
-            loader.execute();
+        // only the last requested block is of interest, older requests are
+        // cancelled by the loading executor
+        LoadingExecutor.getDefault().submit(this, null, new Loader(block), LoadingExecutor.Priority.VISIBLE);
     }
 
     /**
@@ -75,23 +77,21 @@ public class DataPump {
      * @author Till Schäfer
      * 
      */
-    class Loader extends ProgressWorker<Integer, Void> {
+    class Loader implements LoadingExecutor.Task {
         DataPumpBlock block;
         
         public Loader(DataPumpBlock block) {
-            super();
             this.block = block;
         }
 
-        /*
-         * (non-Javadoc)
-         * 
-         * @see edu.udo.scaffoldhunter.gui.util.SwingWorker#doInBackground()
-         */
         @Override
-        protected Integer doInBackground() throws Exception {
+        public void run(LoadingExecutor.Request request) throws DatabaseException {
 
             synchronized (DataPump.this) {
+                // a newer block has been requested while waiting for the lock
+                if (request.isCancelled()) {
+                    return;
+                }
                 model.getDbManager().lockAndLoad(block.getPropertyDefinitions(), block.getMolecules());
                 model.getDbManager().unlockAndUnload(currentLockedBlock.getPropertyDefinitions(),
                         currentLockedBlock.getMolecules());
@@ -99,7 +99,6 @@ public class DataPump {
             }
 
             model.repaintTable();
-            return 0;
         }
 
     }
@@ -24,7 +24,9 @@ package edu.udo.scaffoldhunter.view.table;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.swing.event.TableModelListener;
 import javax.swing.table.AbstractTableModel;
@@ -501,9 +503,12 @@ public class Model extends AbstractTableModel implements BannerManagerListener {
     
     /**
      * @param rows
+     *  the rows to load, including the preloaded rows around the viewport
+     * @param visibleRows
+     *  the currently visible rows, a subset of rows
      * @param columns
      */
-    public void loadPropertyValues( List <Integer> rows, List <Integer> columns) {
+    public void loadPropertyValues( List <Integer> rows, List <Integer> visibleRows, List <Integer> columns) {
         List <PropertyDefinition> propertyDefinitions = new ArrayList <PropertyDefinition> ();
         List <Molecule> molecules = new ArrayList <Molecule> ();
         
@@ -519,6 +524,21 @@ public class Model extends AbstractTableModel implements BannerManagerListener {
             DataPumpBlock block = new DataPumpBlock( propertyDefinitions, molecules );
             dataPump.load(block);
         }
+        
+        // fetch the svgs of the visible rows and of the preloaded rows
+        // around them in one batch before they are painted
+        if( (svgColumnNumber != -1) & columns.contains(svgColumnNumber) & (! molecules.isEmpty()) ) {
+            Set <Integer> visible = new HashSet <Integer> (visibleRows);
+            List <Molecule> visibleMolecules = new ArrayList <Molecule> ();
+            List <Molecule> preloadMolecules = new ArrayList <Molecule> ();
+            for(int i=0; i<rows.size(); i++) {
+                if( visible.contains(rows.get(i)) )
+                    visibleMolecules.add( molecules.get(i) );
+                else
+                    preloadMolecules.add( molecules.get(i) );
+            }
+            svgCache.prefetch(visibleMolecules, preloadMolecules, null, null);
+        }
     }
     
     
@@ -921,6 +921,7 @@ implements ListSelectionListener, ChangeListener, MouseListener, MouseMotionList
         
         // get start row
         startRow = floatingTable.rowAtPoint( point );
+        int firstVisibleRow = (startRow < 0 ? 0 : startRow );
         startRow -= Model.ROW_PRELOAD;
         startRow = (startRow < 0 ? 0 : startRow );
         startRow &= 0xffffffc0;
@@ -930,6 +931,7 @@ implements ListSelectionListener, ChangeListener, MouseListener, MouseMotionList
         endRow = floatingTable.rowAtPoint( point ) +1;
         if( endRow == 0)
             endRow = tableModel.getRowCount();
+        int endVisibleRow = (endRow > tableModel.getRowCount() ? tableModel.getRowCount() : endRow);
         endRow += Model.ROW_PRELOAD;
         endRow |= 0x003f;
         endRow = (endRow > tableModel.getRowCount() ? tableModel.getRowCount() : endRow);
@@ -937,6 +939,9 @@ implements ListSelectionListener, ChangeListener, MouseListener, MouseMotionList
         // fill row list
         for(int i = startRow; i<endRow; i++)
             rows.add( floatingTable.convertRowIndexToModel(i));
+        List <Integer> visibleRows = new ArrayList <Integer> ();
+        for(int i = firstVisibleRow; i<endVisibleRow; i++)
+            visibleRows.add( floatingTable.convertRowIndexToModel(i));
 
         
         // get start column
@@ -963,7 +968,7 @@ implements ListSelectionListener, ChangeListener, MouseListener, MouseMotionList
         
         
         // now start the loading of the molecule values
-        tableModel.loadPropertyValues(rows, columns);
+        tableModel.loadPropertyValues(rows, visibleRows, columns);
     }
     
     
@@ -24,7 +24,6 @@ package edu.udo.scaffoldhunter.view.treemap.loading;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +37,7 @@ import edu.udo.scaffoldhunter.gui.util.DBExceptionHandler;
 import edu.udo.scaffoldhunter.gui.util.DBFunction;
 import edu.udo.scaffoldhunter.gui.util.VoidNullaryDBFunction;
 import edu.udo.scaffoldhunter.model.AccumulationFunction;
+import edu.udo.scaffoldhunter.model.db.AccumulatedNumProperties;
 import edu.udo.scaffoldhunter.model.db.DatabaseException;
 import edu.udo.scaffoldhunter.model.db.DbManager;
 import edu.udo.scaffoldhunter.model.db.Molecule;
@@ -140,7 +140,7 @@ public class TreeMapDbsLoader {
         // initialization
         
         final List<PropertyDefinition> properties = Arrays.asList(pd);
-        final List<Molecule> molecules = canvas.getRootNode().getAllMolecules();
+        final List<Molecule> molecules = getPlottedMolecules(pd);
         final List<Scaffold> scaffolds = new ArrayList<Scaffold>();
         for(TreeMapNode node : canvas.getRootNode().getAllTreeMapChildrenNodes()) {
             if(node.getStructure() instanceof Scaffold) {
@@ -148,18 +148,21 @@ public class TreeMapDbsLoader {
             }
         }
         
-        // acquire property data        
+        // acquire property data, molecule values are only needed for plotted molecule leafs
         DBExceptionHandler.callDBManager(db, new VoidNullaryDBFunction() {
             @Override
             public void voidCall() throws DatabaseException {
                 if(pd.isScaffoldProperty())
                     db.lockAndLoad(properties, scaffolds);
-                else
+                else if(!molecules.isEmpty())
                     db.lockAndLoad(properties, molecules);
             }
         });
         
-        // load property data  
+        // load property data and calculate minimum and maximum
+        
+        sizeMinimumValue = Double.POSITIVE_INFINITY;
+        sizeMaximumValue = Double.NEGATIVE_INFINITY;
         
         if(pd.isScaffoldProperty()) {
             // calculation for scaffold properties
@@ -169,47 +172,39 @@ public class TreeMapDbsLoader {
             }
         }
         else {
-            // calculation for molecule properties
-            sizeResults = DBExceptionHandler.callDBManager(db, new DBFunction<Map<Scaffold, Double>>() {
+            // calculation for molecule properties, aggregated by the database
+            AccumulatedNumProperties statistics = DBExceptionHandler.callDBManager(db, new DBFunction<AccumulatedNumProperties>() {
                 @Override
-                public Map<Scaffold, Double> call() throws DatabaseException {
-                    return db.getAccNumProperties(pd, AccumulationFunction.Sum, subset, canvas.getRootNode() 
-                            .getScaffold(), false);
+                public AccumulatedNumProperties call() throws DatabaseException {
+                    return db.getAccNumPropertyStatistics(pd, subset, canvas.getRootNode().getScaffold(), false);
                 }
             });
+            sizeResults = statistics.getValues(AccumulationFunction.Sum);
+            sizeMinimumValue = statistics.getMoleculeMinimum();
+            sizeMaximumValue = statistics.getMoleculeMaximum();
         }
         
-        // calculate minimum and maximum  
-        
-        List<Double> individualResults = new ArrayList<Double>();
-        for(Scaffold s : sizeResults.keySet()) { //Add values for scaffold
-            if(sizeResults.get(s) != null)
-                individualResults.add(sizeResults.get(s));
+        for(Double size : sizeResults.values()) {
+            if(size != null) {
+                sizeMinimumValue = Math.min(sizeMinimumValue, size);
+                sizeMaximumValue = Math.max(sizeMaximumValue, size);
+            }
         }
         
-        if(!pd.isScaffoldProperty()) {
-            for(Molecule molecule : molecules) {//Add values for molecules
-                Double sizeValue = molecule.getNumPropertyValue(pd);
-                if(sizeValue != null)
-                    individualResults.add(sizeValue);
-            }
+        // check non-emptiness
+        
+        if(sizeMinimumValue > sizeMaximumValue) {
+            logger.warn("Sizes could not be loaded");
+            unlockAndUnload(pd, scaffolds, molecules);
+            return false;
         }
-                
-        sizeMinimumValue = Collections.min(individualResults);
-        sizeMaximumValue = Collections.max(individualResults);
         
         // calculate offset
         
         sizeOffset = Math.abs(sizeMaximumValue - sizeMinimumValue) * 0.01;
         if(sizeOffset == 0.0) {
             logger.warn("Data does not contain any variation. Could not be drawn.");
-            return false;
-        }
-        
-        // check non-emptiness
-        
-        if(individualResults.isEmpty()) {
-            logger.warn("Sizes could not be loaded");
+            unlockAndUnload(pd, scaffolds, molecules);
             return false;
         }
         
@@ -219,16 +214,7 @@ public class TreeMapDbsLoader {
         
         // unlock and unload
         
-        if(molecules.size() > 0) {
-            try {
-                if(pd.isScaffoldProperty())
-                    db.unlockAndUnload(properties, scaffolds);
-                else
-                    db.unlockAndUnload(properties, molecules);
-            } catch (Exception e) {
-                logger.warn("Trying to unlock data, where no data has been locked before");
-            }
-        }
+        unlockAndUnload(pd, scaffolds, molecules);
         return true;
     }
 
@@ -261,7 +247,7 @@ public class TreeMapDbsLoader {
         // load and calculate properties from database
         
         final List<PropertyDefinition> properties = Arrays.asList(pd);
-        final List<Molecule> molecules = canvas.getRootNode().getAllMolecules();
+        final List<Molecule> molecules = loadMoleculeData ? getPlottedMolecules(pd) : new ArrayList<Molecule>();
         final List<Scaffold> scaffolds = new ArrayList<Scaffold>();
         for(TreeMapNode node : canvas.getRootNode().getAllTreeMapChildrenNodes()) {
             if(node.getStructure() instanceof Scaffold) {
@@ -269,12 +255,13 @@ public class TreeMapDbsLoader {
             }
         }       
         
+        // scaffold colors are accumulated by the database, molecule values are only needed for plotted molecule leafs
         DBExceptionHandler.callDBManager(db, new VoidNullaryDBFunction() {
             @Override
             public void voidCall() throws DatabaseException {
                 if(pd.isScaffoldProperty())
                     db.lockAndLoad(properties, scaffolds);
-                else
+                else if(!molecules.isEmpty())
                     db.lockAndLoad(properties, molecules);
             }
         });
@@ -310,14 +297,7 @@ public class TreeMapDbsLoader {
                 
         // unload data
         
-        try {
-            if(pd.isScaffoldProperty())
-                db.unlockAndUnload(properties, scaffolds);
-            else
-                db.unlockAndUnload(properties, molecules);
-        } catch (Exception e) {
-            logger.warn("Trying to unlock data, where no data has been locked before");
-        }
+        unlockAndUnload(pd, scaffolds, molecules);
         
         // paint
         
@@ -330,6 +310,29 @@ public class TreeMapDbsLoader {
         return true;
     }
 
+    /**
+     * Returns the molecules of all plotted molecule leafs. These are the only
+     * molecules whose values are needed, all scaffold values are accumulated
+     * by the database.
+     */
+    private List<Molecule> getPlottedMolecules(PropertyDefinition pd) {
+        if(pd.isScaffoldProperty() || !canvas.getDisplayMolecules())
+            return new ArrayList<Molecule>();
+        return canvas.getRootNode().getAllMolecules();
+    }
+    
+    private void unlockAndUnload(PropertyDefinition pd, List<Scaffold> scaffolds, List<Molecule> molecules) {
+        List<PropertyDefinition> properties = Arrays.asList(pd);
+        try {
+            if(pd.isScaffoldProperty())
+                db.unlockAndUnload(properties, scaffolds);
+            else if(!molecules.isEmpty())
+                db.unlockAndUnload(properties, molecules);
+        } catch (Exception e) {
+            logger.warn("Trying to unlock data, where no data has been locked before");
+        }
+    }
+
     /**
      * Return the relative size. Which makes sure it is not negative and not zero. 
      * 
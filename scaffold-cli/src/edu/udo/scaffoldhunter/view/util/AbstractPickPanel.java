@@ -25,12 +25,16 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
+import edu.udo.scaffoldhunter.gui.util.LoadingExecutor;
 import edu.udo.scaffoldhunter.model.db.DbManager;
 import edu.udo.scaffoldhunter.model.db.Structure;
 
@@ -52,6 +56,8 @@ public abstract class AbstractPickPanel extends JPanel {
 
     protected SVGCache svgCache;
 
+    private static final String SVG_CHANNEL = "svg";
+
     static class SvgObserver implements SVGLoadObserver {
 
         SvgPanel panel;
@@ -82,11 +88,24 @@ public abstract class AbstractPickPanel extends JPanel {
         Structure structureToLoad;
         SVG svg;
 
+        /**
+         * delays loading until there was no further request for another
+         * structure for a little time
+         */
+        Timer loadTimer;
+
         public SvgPanel() {
             super();
             setBackground(Color.WHITE);
             currentStructure = null;
             structureToLoad = null;
+            loadTimer = new Timer(200, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    load();
+                }
+            });
+            loadTimer.setRepeats(false);
         }
 
         @Override
@@ -101,46 +120,37 @@ public abstract class AbstractPickPanel extends JPanel {
                 currentStructure = null;
                 structureToLoad = null;
                 svg = null;
+                loadTimer.stop();
+                LoadingExecutor.getDefault().cancel(this, SVG_CHANNEL);
             } else if (structure == structureToLoad) {
                 // no action required
             } else {
-                // start a new thread that waits a little time and checks
-                // if there was no further request for another structure,
-                // before it tries to load the SVG
-
+                // wait a little time and check if there was no further
+                // request for another structure, before the SVG is loaded
                 structureToLoad = structure;
-
-                new Thread() {
-                    Structure stl;
-                    SvgPanel panel;
-
-                    public void kickstart(Structure s, SvgPanel p) {
-                        stl = s;
-                        panel = p;
-                        start();
-                    }
-
-                    @Override
-                    public void run() {
-                        // wait a bit
-                        try {
-                            sleep(200);
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                        // do the loading, if still neccessary
-                        if (stl == structureToLoad) {
-                            SvgObserver observer = new SvgObserver(panel, stl);
-                            svg = svgCache.getSVG(stl, null, null, observer);
-                            if (svg != null)
-                                observer.svgLoaded(svg);
-                        }
-                    }
-
-                }.kickstart(structure, this);
+                loadTimer.restart();
             }
             repaint();
         }
+
+        private void load() {
+            final Structure stl = structureToLoad;
+            if (stl == null) {
+                return;
+            }
+            LoadingExecutor.getDefault().submit(this, SVG_CHANNEL, new LoadingExecutor.Task() {
+                @Override
+                public void run(LoadingExecutor.Request request) {
+                    // do the loading, if still neccessary
+                    if (stl == structureToLoad) {
+                        SvgObserver observer = new SvgObserver(SvgPanel.this, stl);
+                        svg = svgCache.getSVG(stl, null, null, observer);
+                        if (svg != null)
+                            observer.svgLoaded(svg);
+                    }
+                }
+            }, LoadingExecutor.Priority.VISIBLE);
+        }
     }
 
     /**
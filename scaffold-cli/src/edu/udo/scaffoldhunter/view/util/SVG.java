@@ -31,8 +31,6 @@ import java.io.StringWriter;
 import java.lang.ref.WeakReference;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 import javax.swing.SwingUtilities;
 import javax.xml.transform.OutputKeys;
@@ -60,6 +58,7 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
+import edu.udo.scaffoldhunter.gui.util.LoadingExecutor;
 import edu.udo.scaffoldhunter.model.db.DatabaseException;
 import edu.udo.scaffoldhunter.model.db.DbManager;
 import edu.udo.scaffoldhunter.model.db.Structure;
@@ -79,18 +78,30 @@ public class SVG {
 
     /* Objects used for creating a new SVG from a String representation */
     private static final String parser = XMLResourceDescriptor.getXMLParserClassName();
-    private static final SAXSVGDocumentFactory docFactory = new SAXSVGDocumentFactory(parser);
+    /* document factories are not thread safe, each background thread uses its own */
+    private static final ThreadLocal<SAXSVGDocumentFactory> docFactory = new ThreadLocal<SAXSVGDocumentFactory>() {
+        @Override
+        protected SAXSVGDocumentFactory initialValue() {
+            return new SAXSVGDocumentFactory(parser);
+        }
+    };
     /* this instance is used for synchronous loading only */
     private static final SAXSVGDocumentFactory docFactorySync = new SAXSVGDocumentFactory(parser);
-    private static GVTBuilder gvtBuilder = new GVTBuilder();
+    /* neither are GVT builders, the bridge context is created per document */
+    private static final ThreadLocal<GVTBuilder> gvtBuilder = new ThreadLocal<GVTBuilder>() {
+        @Override
+        protected GVTBuilder initialValue() {
+            return new GVTBuilder();
+        }
+    };
 
-    /** {@link Executor} used for SVG loading */
-    private static Executor svgExecutor = Executors.newSingleThreadExecutor();
+    /** {@link LoadingExecutor} used for SVG loading */
+    private static final LoadingExecutor svgExecutor = new LoadingExecutor("SVG loader", Math.max(2,
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
 
     /** SVG to display when a requested svg cannot be loaded from the database */
     private static final String errorSVGStr = "<svg xmlns='http://www.w3.org/2000/svg' width='200' height='200' > "
             + "<rect fill='orangered' x='0' y='0' width='200' height='200'>  " + "</rect> </svg>";
-    private static SVGDocument errorDocument = null;
 
     private final Structure structure;
     private final Color color;
@@ -99,6 +110,10 @@ public class SVG {
     private List<WeakReference<SVGLoadObserver>> observers = new CopyOnWriteArrayList<WeakReference<SVGLoadObserver>>();
     private JGVTComponent component = null;
     private volatile GraphicsNode graphicsnode = null;
+    /** the length of the SVG string, -1 until it is loaded */
+    private volatile int length = -1;
+    /** notified on the loading thread, held strongly */
+    private final SVGLoadObserver loadListener;
 
     // from VISControl
     // TODO constant or not constant and configureable?
@@ -138,15 +153,37 @@ public class SVG {
      *            load the svg asynchronously
      */
     public SVG(DbManager db, Structure structure, Color color, Color background, boolean coloredChars, SVGLoadObserver observer, boolean inBackGround) {
+        this(db, structure, color, background, coloredChars, observer, inBackGround, LoadingExecutor.Priority.VISIBLE,
+                null);
+    }
+
+    /**
+     * Create a new <code>SVG</code> which is loaded with the given priority
+     * if it is loaded in background. The load listener is notified directly
+     * on the loading thread once loading is finished and, unlike the
+     * observers, it is strongly referenced.
+     * 
+     * @see #SVG(DbManager, Structure, Color, Color, boolean, SVGLoadObserver,
+     *      boolean)
+     */
+    SVG(final DbManager db, Structure structure, Color color, Color background, boolean coloredChars,
+            SVGLoadObserver observer, boolean inBackGround, LoadingExecutor.Priority priority,
+            SVGLoadObserver loadListener) {
         Preconditions.checkNotNull(structure);
         this.structure = structure;
         this.color = color;
         this.background = background;
         this.coloredChars = coloredChars;
+        this.loadListener = loadListener;
         if (observer != null)
             observers.add(new WeakReference<SVGLoadObserver>(observer));
         if (inBackGround) {
-            svgExecutor.execute(new SVGLoader(db, docFactory));
+            svgExecutor.submit(new LoadingExecutor.Task() {
+                @Override
+                public void run(LoadingExecutor.Request request) {
+                    new SVGLoader(db, docFactory.get()).run();
+                }
+            }, priority);
         } else {
             new SVGLoader(db, docFactorySync).run();
         }
@@ -167,6 +204,7 @@ public class SVG {
         color = null;
         background = null;
         coloredChars = false;
+        loadListener = null;
         new SVGLoader(reader, docFactorySync).run();
     }
 
@@ -313,6 +351,14 @@ public class SVG {
         return paint(g, 0, 0, width, height, true);
     }
 
+    /**
+     * @return the length of the SVG string of this <code>SVG</code> or -1 if
+     *         it is not loaded from the database yet
+     */
+    int getLength() {
+        return length;
+    }
+
     /**
      * Adds an Observer to this <code>SVG</code>. The observer will be notified
      * on the AWT Event Dispatch thread, when operation which change how this
@@ -406,7 +452,16 @@ public class SVG {
             SVGDocument doc;
             if (reader == null) {
                 try {
-                    reader = new StringReader(db.getSvgString(structure));
+                    String svgString = SVGStrings.get(db, structure);
+                    if (svgString == null) {
+                        // structures without a depiction weigh nothing in
+                        // the cache
+                        length = 0;
+                        reader = new StringReader(errorSVGStr);
+                    } else {
+                        length = svgString.length();
+                        reader = new StringReader(svgString);
+                    }
                 } catch (DatabaseException e) {
                     reader = new StringReader(errorSVGStr);
                 }
@@ -445,7 +500,10 @@ public class SVG {
                 }
             }
 
-            graphicsnode = gvtBuilder.build(bridge, doc);
+            graphicsnode = gvtBuilder.get().build(bridge, doc);
+            if (loadListener != null) {
+                loadListener.svgLoaded(SVG.this);
+            }
             SwingUtilities.invokeLater(new Runnable() {
 
                 @Override
@@ -479,9 +537,8 @@ public class SVG {
         }
 
         private SVGDocument getErrorSVGDoc() {
-            if (errorDocument == null)
-                errorDocument = loadDocument(new StringReader(errorSVGStr));
-            return errorDocument;
+            // the document is modified afterwards, so it cannot be shared
+            return loadDocument(new StringReader(errorSVGStr));
         }
     }
 }
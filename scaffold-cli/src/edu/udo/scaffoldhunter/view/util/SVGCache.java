@@ -22,6 +22,9 @@
 package edu.udo.scaffoldhunter.view.util;
 
 import java.awt.Color;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
@@ -30,7 +33,10 @@ import org.slf4j.LoggerFactory;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
 
+import edu.udo.scaffoldhunter.gui.util.LoadingExecutor;
 import edu.udo.scaffoldhunter.model.db.DbManager;
 import edu.udo.scaffoldhunter.model.db.Structure;
 
@@ -38,6 +44,10 @@ import edu.udo.scaffoldhunter.model.db.Structure;
  * A cache which provides <code>SVG</code>s given a <code>Structure</code> and
  * an optional <code>Color</code>. Entries will be automatically discarded if
  * they have not been accessed for some time.
+ * <p>
+ * The size of an entry is estimated by the length of its SVG string, so the
+ * cache holds fewer large structures than small ones. The SVG strings
+ * themselves are kept in a second, larger cache shared by all instances.
  * 
  * @author Henning Garus
  * @author Till Schäfer
@@ -45,6 +55,13 @@ import edu.udo.scaffoldhunter.model.db.Structure;
 public class SVGCache {
     private static Logger logger = LoggerFactory.getLogger(SVGCache.class);
 
+    /**
+     * the assumed length of an SVG string whose length is not known yet
+     */
+    private static final int AVERAGE_SVG_LENGTH = 4096;
+
+    private static final String PREFETCH_CHANNEL = "prefetch";
+
     private final DbManager db;
     private final LoadingCache<Key, SVG> entries;
 
@@ -65,7 +82,8 @@ public class SVGCache {
      * @param db
      *            the DB manager
      * @param maxSize
-     *            the maximum size of the svg cache
+     *            the maximum size of the svg cache, in number of SVGs of
+     *            average size
      */
     public SVGCache(final DbManager db, int maxSize) {
         this.db = db;
@@ -82,17 +100,45 @@ public class SVGCache {
      * @return a new instance
      */
     private LoadingCache<Key, SVG> getNewLoadingCache(final DbManager db, int maxSize) {
-        return CacheBuilder.newBuilder().concurrencyLevel(1).softValues().maximumSize(maxSize)
-                .build(new CacheLoader<Key, SVG>() {
+        return CacheBuilder.newBuilder().concurrencyLevel(1).softValues()
+                .maximumWeight((long) maxSize * AVERAGE_SVG_LENGTH).weigher(new Weigher<Key, SVG>() {
+                    @Override
+                    public int weigh(Key key, SVG value) {
+                        int length = value.getLength();
+                        return length < 0 ? AVERAGE_SVG_LENGTH : length;
+                    }
+                }).build(new CacheLoader<Key, SVG>() {
 
                     @Override
                     public SVG load(Key key) throws Exception {
-                        return new SVG(db, key.structure, key.color, key.background, key.coloredChars, null, true);
+                        return newSVG(key, LoadingExecutor.Priority.VISIBLE);
                     }
 
                 });
     }
 
+    /**
+     * Creates the <code>SVG</code> of a cache entry. Once the SVG string is
+     * loaded, the entry is put again to weigh it by the actual length.
+     * 
+     * @param key
+     *            the key of the entry
+     * @param priority
+     *            the loading priority
+     * @return the new <code>SVG</code>
+     */
+    private SVG newSVG(final Key key, LoadingExecutor.Priority priority) {
+        return new SVG(db, key.structure, key.color, key.background, key.coloredChars, null, true, priority,
+                new SVGLoadObserver() {
+                    @Override
+                    public void svgLoaded(SVG svg) {
+                        // only succeeds if the entry has already been
+                        // inserted, otherwise it is weighed on insertion
+                        entries.asMap().replace(key, svg, svg);
+                    }
+                });
+    }
+
     /**
      * Tries to retrieve a <code>SVG</code> for the given <code>Structure</code>
      * and <code>Color</code> from the cache. If none is found a new one will be
@@ -157,6 +203,69 @@ public class SVGCache {
         return svg;
     }
 
+    /**
+     * Loads the <code>SVG</code>s of structures which are shown or likely to
+     * be shown soon, e.g. the visible rows of a table and the rows next to
+     * them. The SVG strings of all structures are fetched from the database in
+     * one batch, afterwards the <code>SVG</code>s of the visible structures
+     * are created with visible priority and the others with low priority.
+     * 
+     * @param visible
+     *            the currently visible structures
+     * @param neighbours
+     *            the structures which are likely to be shown soon
+     * @param color
+     *            the color which will be applied to the <code>SVG</code>s. If
+     *            <code>color == null</code> no color will be applied.
+     * @param background
+     *            the color of the background, if it is null the background will
+     *            be transparent
+     */
+    public void prefetch(Collection<? extends Structure> visible, Collection<? extends Structure> neighbours,
+            final Color color, final Color background) {
+        final List<Structure> missingVisible = getMissing(visible, color, background);
+        final List<Structure> missingNeighbours = getMissing(neighbours, color, background);
+        if (missingVisible.isEmpty() && missingNeighbours.isEmpty()) {
+            return;
+        }
+        LoadingExecutor.getDefault().submit(this, PREFETCH_CHANNEL, new LoadingExecutor.Task() {
+            @Override
+            public void run(LoadingExecutor.Request request) throws Exception {
+                List<Structure> missing = Lists.newArrayList(missingVisible);
+                missing.addAll(missingNeighbours);
+                SVGStrings.prefetch(db, missing);
+                load(request, missingVisible, color, background, LoadingExecutor.Priority.VISIBLE);
+                load(request, missingNeighbours, color, background, LoadingExecutor.Priority.BACKGROUND);
+            }
+        }, missingVisible.isEmpty() ? LoadingExecutor.Priority.BACKGROUND : LoadingExecutor.Priority.VISIBLE);
+    }
+
+    private List<Structure> getMissing(Collection<? extends Structure> structures, Color color, Color background) {
+        List<Structure> missing = Lists.newArrayList();
+        for (Structure structure : structures) {
+            if (entries.getIfPresent(new Key(structure, color, background, true)) == null) {
+                missing.add(structure);
+            }
+        }
+        return missing;
+    }
+
+    private void load(LoadingExecutor.Request request, List<Structure> structures, Color color, Color background,
+            final LoadingExecutor.Priority priority) throws ExecutionException {
+        for (Structure structure : structures) {
+            if (request.isCancelled()) {
+                return;
+            }
+            final Key key = new Key(structure, color, background, true);
+            entries.get(key, new Callable<SVG>() {
+                @Override
+                public SVG call() {
+                    return newSVG(key, priority);
+                }
+            });
+        }
+    }
+
     /**
      * Load the SVG synchronously instead of in a seperate thread.
      * 
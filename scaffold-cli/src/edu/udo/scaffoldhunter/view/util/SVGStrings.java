@@ -0,0 +1,124 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.view.util;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.db.DatabaseException;
+import edu.udo.scaffoldhunter.model.db.DbManager;
+import edu.udo.scaffoldhunter.model.db.Structure;
+
+/**
+ * A cache for the SVG strings of structures, which is shared by all
+ * {@link SVGCache}s. SVG strings are much smaller than parsed {@link SVG}s and
+ * do not depend on colors, so they are kept longer. Entries are evicted when
+ * the total length of all cached strings exceeds a limit.
+ * 
+ * @author Shamshad Alam
+ */
+class SVGStrings {
+
+    /** the maximal number of characters of all cached strings of one DB */
+    private static final long MAX_CHARS = 16 * 1024 * 1024;
+
+    /**
+     * the strings by structure id for each DB manager. The DB managers are
+     * weakly referenced, so closed connections do not keep their strings.
+     */
+    private static final LoadingCache<DbManager, Cache<Integer, String>> strings = CacheBuilder.newBuilder()
+            .weakKeys().build(new CacheLoader<DbManager, Cache<Integer, String>>() {
+                @Override
+                public Cache<Integer, String> load(DbManager db) {
+                    return CacheBuilder.newBuilder().maximumWeight(MAX_CHARS)
+                            .weigher(new Weigher<Integer, String>() {
+                                @Override
+                                public int weigh(Integer key, String value) {
+                                    return value.length();
+                                }
+                            }).build();
+                }
+            });
+
+    private SVGStrings() {
+    }
+
+    /**
+     * Returns the SVG string of a structure, either from the cache or from the
+     * database.
+     * 
+     * @param db
+     *            the DB manager
+     * @param structure
+     *            the structure
+     * @return the SVG string
+     * @throws DatabaseException
+     */
+    static String get(DbManager db, Structure structure) throws DatabaseException {
+        Cache<Integer, String> cache = strings.getUnchecked(db);
+        String svgString = cache.getIfPresent(structure.getId());
+        if (svgString == null) {
+            svgString = db.getSvgString(structure);
+            if (svgString != null) {
+                cache.put(structure.getId(), svgString);
+            }
+        }
+        return svgString;
+    }
+
+    /**
+     * Fetches the SVG strings of all given structures, which are not cached
+     * yet, with a batched query.
+     * 
+     * @param db
+     *            the DB manager
+     * @param structures
+     *            the structures
+     * @throws DatabaseException
+     */
+    static void prefetch(DbManager db, Collection<? extends Structure> structures) throws DatabaseException {
+        Cache<Integer, String> cache = strings.getUnchecked(db);
+        List<Structure> missing = Lists.newArrayList();
+        for (Structure structure : structures) {
+            if (cache.getIfPresent(structure.getId()) == null) {
+                missing.add(structure);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Structure, String> e : db.getSvgStrings(missing).entrySet()) {
+            if (e.getValue() != null) {
+                cache.put(e.getKey().getId(), e.getValue());
+            }
+        }
+    }
+}
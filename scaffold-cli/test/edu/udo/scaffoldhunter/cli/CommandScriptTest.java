@@ -0,0 +1,74 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.cli;
+
+import java.util.Collections;
+
+import junit.framework.Assert;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit test class for {@link CommandScript}
+ * 
+ * @author Shamshad Alam
+ */
+public class CommandScriptTest {
+
+    /**
+     * Whitespace separates arguments unless it is quoted or escaped
+     */
+    @org.junit.Test
+    public void quoting() {
+        Assert.assertEquals(Lists.newArrayList("dataset", "-n", "my data"),
+                CommandScript.split("  dataset\t-n \"my data\"  "));
+        Assert.assertEquals(Lists.newArrayList("-n", "a \"b\" c"), CommandScript.split("-n 'a \"b\" c'"));
+        Assert.assertEquals(Lists.newArrayList("--title=my data", ""),
+                CommandScript.split("--title=\"my data\" ''"));
+        Assert.assertEquals(Lists.newArrayList("open end"), CommandScript.split("'open end"));
+    }
+
+    /**
+     * A backslash escapes special characters only, within single quotes it is
+     * literal
+     */
+    @org.junit.Test
+    public void escaping() {
+        Assert.assertEquals(Lists.newArrayList("my data", "\"", "#1"), CommandScript.split("my\\ data \\\" \\#1"));
+        Assert.assertEquals(Lists.newArrayList("say \"hi\" \\"), CommandScript.split("\"say \\\"hi\\\" \\\\\""));
+        Assert.assertEquals(Lists.newArrayList("a\\b"), CommandScript.split("'a\\b'"));
+        Assert.assertEquals(Lists.newArrayList("C:\\data\\file.sdf"), CommandScript.split("C:\\data\\file.sdf"));
+        Assert.assertEquals(Lists.newArrayList("end\\"), CommandScript.split("end\\"));
+    }
+
+    /**
+     * An unquoted <code>#</code> at the start of an argument starts a comment
+     */
+    @org.junit.Test
+    public void comments() {
+        Assert.assertEquals(Collections.emptyList(), CommandScript.split("# dataset -n x"));
+        Assert.assertEquals(Collections.emptyList(), CommandScript.split("   "));
+        Assert.assertEquals(Lists.newArrayList("help"), CommandScript.split("help # show the commands"));
+        Assert.assertEquals(Lists.newArrayList("-n", "a#b", "#c", "#d"), CommandScript.split("-n a#b '#c' \"#d\""));
+    }
+}
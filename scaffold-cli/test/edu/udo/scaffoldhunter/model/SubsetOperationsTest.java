@@ -63,14 +63,14 @@ public class SubsetOperationsTest {
         session = new Session();
 
         molecules = Maps.newHashMap();
-        molecules.put("A", new MockMolecule("A"));
-        molecules.put("B", new MockMolecule("B"));
-        molecules.put("C", new MockMolecule("C"));
-        molecules.put("D", new MockMolecule("D"));
-        molecules.put("E", new MockMolecule("E"));
-        molecules.put("F", new MockMolecule("F"));
-        molecules.put("G", new MockMolecule("G"));
-        molecules.put("H", new MockMolecule("H"));
+        molecules.put("A", new MockMolecule("A", 1));
+        molecules.put("B", new MockMolecule("B", 2));
+        molecules.put("C", new MockMolecule("C", 3));
+        molecules.put("D", new MockMolecule("D", 4));
+        molecules.put("E", new MockMolecule("E", 5));
+        molecules.put("F", new MockMolecule("F", 6));
+        molecules.put("G", new MockMolecule("G", 7));
+        molecules.put("H", new MockMolecule("H", 8));
 
         subsets = Lists.newLinkedList();
 
@@ -0,0 +1,210 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.clustering;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.PropertyType;
+import edu.udo.scaffoldhunter.model.clustering.MatrixNNSearch.MatrixParameters;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.model.db.MoleculeNumProperty;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+
+/**
+ * JUnit test class for {@link SamplingClustering}
+ * 
+ * @author Shamshad Alam
+ */
+public class SamplingClusteringTest {
+    private Random rand;
+    private MockPropertyDefinition propDef1, propDef2;
+    private Collection<PropertyDefinition> propDefs;
+
+    /**
+     * Prepare context
+     */
+    @org.junit.Before
+    public void initSamplingClusteringTest() {
+        rand = new Random(0);
+        propDef1 = new MockPropertyDefinition("Test Property 1", "", PropertyType.NumProperty, "test_1", false,
+                false);
+        propDef2 = new MockPropertyDefinition("Test Property 2", "", PropertyType.NumProperty, "test_2", false,
+                false);
+        propDef1.setId(1);
+        propDef2.setId(2);
+
+        propDefs = Lists.newLinkedList();
+        propDefs.add(propDef1);
+        propDefs.add(propDef2);
+    }
+
+    /**
+     * @return a molecule with the given values of both test properties
+     */
+    private Molecule molecule(double value1, double value2) {
+        Molecule mol = new Molecule();
+        mol.getNumProperties().put(1, new MoleculeNumProperty(propDef1, value1));
+        mol.getNumProperties().put(2, new MoleculeNumProperty(propDef2, value2));
+        return mol;
+    }
+
+    /**
+     * The resulting dendrogram must contain each molecule exactly once and the
+     * dissimilarities must not decrease from the leafs to the root.
+     * 
+     * @throws ClusteringException
+     */
+    @org.junit.Test
+    public void completeAndMonotone() throws ClusteringException {
+        List<Molecule> molecules = Lists.newArrayList();
+        for (int i = 0; i < 500; i++) {
+            molecules.add(molecule(rand.nextDouble(), rand.nextDouble()));
+        }
+
+        SamplingClustering<Molecule> clustering = new SamplingClustering<Molecule>(molecules, propDefs,
+                HierarchicalClusterings.GENERIC_CLUSTERING, NNSearchs.MATRIX, new MatrixParameters(),
+                Linkages.GROUP_AVERAGE_LINKAGE, Distances.EUCLIDE, 50, 4, (long) 0);
+        HierarchicalClusterNode<Molecule> root = clustering.calc();
+
+        Assert.assertEquals(molecules.size(), root.getClusterSize());
+
+        IdentityHashMap<Molecule, Boolean> found = new IdentityHashMap<Molecule, Boolean>();
+        LinkedList<HierarchicalClusterNode<Molecule>> stack = Lists.newLinkedList();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            HierarchicalClusterNode<Molecule> node = stack.pop();
+            if (node.isLeaf()) {
+                Assert.assertNull("molecule occurs twice", found.put(node.getContent(), true));
+            } else {
+                Assert.assertEquals(node.getClusterSize(), node.getLeftChild().getClusterSize()
+                        + node.getRightChild().getClusterSize());
+                Assert.assertTrue(node.getLeftChild().getDissimilarity() <= node.getDissimilarity());
+                Assert.assertTrue(node.getRightChild().getDissimilarity() <= node.getDissimilarity());
+                stack.push(node.getLeftChild());
+                stack.push(node.getRightChild());
+            }
+        }
+        Assert.assertEquals(molecules.size(), found.size());
+    }
+
+    /**
+     * On well separated groups the flat clustering of the sampling clustering
+     * must agree with the flat clustering of the exact clustering (measured by
+     * the Fowlkes-Mallows index on the level with one cluster per group).
+     * 
+     * @throws ClusteringException
+     */
+    @org.junit.Test
+    public void sampledMatchesExact() throws ClusteringException {
+        int groups = 4;
+        List<Molecule> molecules = Lists.newArrayList();
+        for (int i = 0; i < 400; i++) {
+            // group centers on a grid with distance 10, spread 1
+            int group = i % groups;
+            molecules.add(molecule(10 * (group % 2) + rand.nextGaussian(), 10 * (group / 2) + rand.nextGaussian()));
+        }
+
+        HierarchicalClusterNode<Molecule> exactRoot = HierarchicalClusterings.NNCHAIN.generateClustering(
+                molecules, propDefs, NNSearchs.MATRIX, new MatrixParameters(), Linkages.GROUP_AVERAGE_LINKAGE,
+                Distances.EUCLIDE).calc();
+        HierarchicalClusterNode<Molecule> sampledRoot = new SamplingClustering<Molecule>(molecules, propDefs,
+                HierarchicalClusterings.NNCHAIN, NNSearchs.MATRIX, new MatrixParameters(),
+                Linkages.GROUP_AVERAGE_LINKAGE, Distances.EUCLIDE, 40, 4, (long) 0).calc();
+
+        int[] exact = flatClustering(exactRoot, molecules, groups);
+        int[] sampled = flatClustering(sampledRoot, molecules, groups);
+
+        // Fowlkes-Mallows index
+        long both = 0;
+        long onlyExact = 0;
+        long onlySampled = 0;
+        for (int i = 0; i < molecules.size(); i++) {
+            for (int j = i + 1; j < molecules.size(); j++) {
+                boolean sameExact = exact[i] == exact[j];
+                boolean sameSampled = sampled[i] == sampled[j];
+                if (sameExact && sameSampled) {
+                    both++;
+                } else if (sameExact) {
+                    onlyExact++;
+                } else if (sameSampled) {
+                    onlySampled++;
+                }
+            }
+        }
+        double fm = Math.sqrt((double) both / (both + onlyExact) * both / (both + onlySampled));
+        Assert.assertTrue("Fowlkes-Mallows index " + fm + " too low", fm > 0.95);
+    }
+
+    /**
+     * Cuts the dendrogram into k clusters by splitting the nodes with the
+     * highest dissimilarity.
+     * 
+     * @return the cluster index of each molecule
+     */
+    private static int[] flatClustering(HierarchicalClusterNode<Molecule> root, List<Molecule> molecules, int k) {
+        LinkedList<HierarchicalClusterNode<Molecule>> clusters = Lists.newLinkedList();
+        clusters.add(root);
+        while (clusters.size() < k) {
+            HierarchicalClusterNode<Molecule> max = null;
+            for (HierarchicalClusterNode<Molecule> node : clusters) {
+                if (!node.isLeaf() && (max == null || node.getDissimilarity() > max.getDissimilarity())) {
+                    max = node;
+                }
+            }
+            clusters.remove(max);
+            clusters.add(max.getLeftChild());
+            clusters.add(max.getRightChild());
+        }
+
+        IdentityHashMap<Molecule, Integer> clusterIndex = new IdentityHashMap<Molecule, Integer>();
+        Iterator<HierarchicalClusterNode<Molecule>> it = clusters.iterator();
+        for (int i = 0; it.hasNext(); i++) {
+            LinkedList<HierarchicalClusterNode<Molecule>> stack = Lists.newLinkedList();
+            stack.push(it.next());
+            while (!stack.isEmpty()) {
+                HierarchicalClusterNode<Molecule> node = stack.pop();
+                if (node.isLeaf()) {
+                    clusterIndex.put(node.getContent(), i);
+                } else {
+                    stack.push(node.getLeftChild());
+                    stack.push(node.getRightChild());
+                }
+            }
+        }
+
+        int[] result = new int[molecules.size()];
+        for (int i = 0; i < molecules.size(); i++) {
+            result[i] = clusterIndex.get(molecules.get(i));
+        }
+        return result;
+    }
+}
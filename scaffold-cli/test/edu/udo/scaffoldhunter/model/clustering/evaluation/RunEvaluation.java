@@ -59,6 +59,10 @@ import edu.udo.scaffoldhunter.model.db.Session;
  * 
  * - SH profile: evaluation
  * 
+ * Passing <code>sampling</code> as argument runs the quality report of the
+ * sampling clustering against the exact clustering instead of the default
+ * modules.
+ * 
  * @author Till Schäfer
  * 
  */
@@ -68,6 +72,7 @@ public class RunEvaluation {
 
     private DbManager db;
     private Profile profile;
+    private boolean sampling;
 
     /**
      * @param args
@@ -89,6 +94,7 @@ public class RunEvaluation {
         logger.info("Logger Info output enabled");
 
         RunEvaluation evaluation = new RunEvaluation();
+        evaluation.sampling = args.length > 0 && args[0].equals("sampling");
         evaluation.loadDatabase();
     }
 
@@ -123,6 +129,11 @@ public class RunEvaluation {
     private void runModules(DbManager db, Session session) throws DatabaseException, ClusteringException, IOException {
         logger.info("Running Modules for Session {}", session.getTitle());
 
+        if (sampling) {
+            testSamplingClustering(db, session);
+            return;
+        }
+
         // testBestFrontierSearch(db, session);
 //        testHSAHN(db, session);
         // testNNSearchEvalModule(db, session);
@@ -131,6 +142,38 @@ public class RunEvaluation {
 //        testTanimotoDistribution();
     }
 
+    /**
+     * Compares the sampling clustering with the exact clustering
+     * 
+     * @param db
+     * @param session
+     */
+    private void testSamplingClustering(DbManager db, Session session) {
+        logger.info(System.getProperty("line.separator").toString() 
+                + "##########################################" + System.getProperty("line.separator").toString()
+                + "##  Starting test: SamplingClustering   ##" + System.getProperty("line.separator").toString()
+                + "##########################################");
+
+        Distances distance = Distances.TANIMOTOBIT;
+        String homePath = System.getProperty("user.home");
+        String resultsFolderPath = homePath + "/data/temp/eval_sampling/" + session.getTitle() + "/";
+
+        FileSaverMetaModule saverCompFM = new FileSaverMetaModule(resultsFolderPath + "sampling_quality-fm.txt",
+                false, true, false);
+        FileSaverMetaModule saverCompNVI = new FileSaverMetaModule(resultsFolderPath + "sampling_quality-nvi.txt",
+                false, true, false);
+
+        ComparisonModule compFM = new ComparisonModule(db, session, HierarchicalClusterings.SAMPLING,
+                HierarchicalClusterings.GENERIC_CLUSTERING, NNSearchs.FORWARD, NNSearchs.FORWARD,
+                Linkages.GROUP_AVERAGE_LINKAGE, distance, HierarchicalComparisons.FOWLKES_MALLOWS, 50, false);
+        ComparisonModule compNVI = new ComparisonModule(db, session, HierarchicalClusterings.SAMPLING,
+                HierarchicalClusterings.GENERIC_CLUSTERING, NNSearchs.FORWARD, NNSearchs.FORWARD,
+                Linkages.GROUP_AVERAGE_LINKAGE, distance, HierarchicalComparisons.NVI, 50, false);
+
+        saverCompFM.run(compFM);
+        saverCompNVI.run(compNVI);
+    }
+
     
     
     private void testTanimotoDistribution() {
@@ -0,0 +1,153 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.datacalculation;
+
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.AtomContainer;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.db.Molecule;
+
+/**
+ * JUnit test class for {@link FusedMoleculeSource}
+ * 
+ * @author Shamshad Alam
+ */
+public class FusedMoleculeSourceTest {
+
+    private static class CountingTransform implements Function<Molecule, IAtomContainer> {
+        int calls = 0;
+
+        @Override
+        public IAtomContainer apply(Molecule input) {
+            calls++;
+            IAtomContainer molecule = new AtomContainer();
+            molecule.setProperty(CDKConstants.TITLE, input.getTitle());
+            return molecule;
+        }
+    }
+
+    private static List<Molecule> molecules(int count) {
+        List<Molecule> molecules = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            Molecule molecule = new Molecule();
+            molecule.setTitle("molecule " + i);
+            molecules.add(molecule);
+        }
+        return molecules;
+    }
+
+    /**
+     * Each molecule must be transformed once and every view must get its own
+     * copy of it.
+     */
+    @org.junit.Test
+    public void transformOncePerMolecule() {
+        List<Molecule> molecules = molecules(5);
+        CountingTransform transform = new CountingTransform();
+        FusedMoleculeSource source = new FusedMoleculeSource(molecules, transform);
+        List<Iterator<IAtomContainer>> views = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            views.add(source.newView().iterator());
+        }
+
+        for (Molecule molecule : molecules) {
+            Assert.assertTrue(source.hasNext());
+            Assert.assertSame(molecule, source.advance());
+            List<IAtomContainer> read = Lists.newArrayList();
+            for (Iterator<IAtomContainer> view : views) {
+                Assert.assertTrue(view.hasNext());
+                IAtomContainer cdkMolecule = view.next();
+                Assert.assertEquals(molecule.getTitle(), cdkMolecule.getProperty(CDKConstants.TITLE));
+                for (IAtomContainer other : read) {
+                    Assert.assertNotSame(other, cdkMolecule);
+                }
+                // changes of one plugin must not be visible to the others
+                Assert.assertNull(cdkMolecule.getProperty("result"));
+                read.add(cdkMolecule);
+                cdkMolecule.setProperty("result", read.size());
+            }
+            for (int i = 0; i < read.size(); i++) {
+                Assert.assertEquals(i + 1, read.get(i).getProperty("result"));
+            }
+        }
+        Assert.assertFalse(source.hasNext());
+        for (Iterator<IAtomContainer> view : views) {
+            Assert.assertFalse(view.hasNext());
+        }
+        Assert.assertEquals(molecules.size(), transform.calls);
+    }
+
+    /**
+     * An iterator over a view must return the molecules fed by the thread
+     * which created it.
+     * 
+     * @throws InterruptedException
+     */
+    @org.junit.Test
+    public void threadsReadOwnMolecules() throws InterruptedException {
+        final List<Molecule> molecules = molecules(2);
+        final FusedMoleculeSource source = new FusedMoleculeSource(molecules, new CountingTransform());
+        final Iterable<IAtomContainer> view = source.newView();
+        Iterator<IAtomContainer> mainIter = view.iterator();
+        source.feed(source.prepare(molecules.get(0)));
+
+        final List<Object> otherTitles = Lists.newArrayList();
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                Iterator<IAtomContainer> otherIter = view.iterator();
+                Assert.assertFalse(otherIter.hasNext());
+                source.feed(source.prepare(molecules.get(1)));
+                otherTitles.add(otherIter.next().getProperty(CDKConstants.TITLE));
+            }
+        };
+        other.start();
+        other.join();
+
+        Assert.assertEquals(Lists.newArrayList(molecules.get(1).getTitle()), otherTitles);
+        Assert.assertEquals(molecules.get(0).getTitle(), mainIter.next().getProperty(CDKConstants.TITLE));
+        Assert.assertFalse(mainIter.hasNext());
+    }
+
+    /**
+     * A view must not read a molecule which has not been prepared yet
+     */
+    @org.junit.Test(expected = IllegalStateException.class)
+    public void readAhead() {
+        FusedMoleculeSource source = new FusedMoleculeSource(molecules(2), new CountingTransform());
+        Iterator<IAtomContainer> view = source.newView().iterator();
+        source.advance();
+        view.next();
+        view.next();
+    }
+}
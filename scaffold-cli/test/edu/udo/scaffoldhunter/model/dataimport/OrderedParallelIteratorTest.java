@@ -0,0 +1,179 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.udo.scaffoldhunter.model.dataimport;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import junit.framework.Assert;
+
+import com.google.common.collect.Lists;
+
+import edu.udo.scaffoldhunter.model.dataimport.OrderedParallelIterator.TaskSource;
+
+/**
+ * JUnit test class for {@link OrderedParallelIterator}
+ * 
+ * @author Shamshad Alam
+ */
+public class OrderedParallelIteratorTest {
+
+    private static final int TASKS = 50;
+    private static final int BATCH_SIZE = 10;
+
+    /**
+     * Creates <code>TASKS</code> tasks returning consecutive numbers, the
+     * later tasks finish first. The source fails when the task with the given
+     * index is created.
+     */
+    private static class NumberSource implements TaskSource<Integer> {
+        private final int failAt;
+        private int next = 0;
+        private int closed = 0;
+
+        NumberSource(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public Callable<List<Integer>> next() throws SQLException {
+            if (next == failAt) {
+                throw new SQLException("connection lost");
+            }
+            if (next == TASKS) {
+                return null;
+            }
+            final int task = next++;
+            return new Callable<List<Integer>>() {
+                @Override
+                public List<Integer> call() throws InterruptedException {
+                    Thread.sleep((TASKS - task) % 5);
+                    List<Integer> numbers = Lists.newArrayList();
+                    for (int i = 0; i < BATCH_SIZE; i++) {
+                        numbers.add(task * BATCH_SIZE + i);
+                    }
+                    return numbers;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed++;
+        }
+    }
+
+    /**
+     * The elements must be returned in the order of the tasks, however the
+     * tasks are scheduled
+     */
+    @org.junit.Test
+    public void sameOrderAsTasks() {
+        NumberSource source = new NumberSource(-1);
+        OrderedParallelIterator<Integer> iterator = new OrderedParallelIterator<Integer>(source, 4, "test");
+        int expected = 0;
+        while (iterator.hasNext()) {
+            Assert.assertEquals(expected++, iterator.next().intValue());
+        }
+        Assert.assertEquals(TASKS * BATCH_SIZE, expected);
+        Assert.assertEquals(1, source.closed);
+    }
+
+    /**
+     * A failure of the source must reach the iterating thread after the
+     * elements of the tasks created before, and close the source
+     */
+    @org.junit.Test
+    public void sourceFailurePropagated() {
+        NumberSource source = new NumberSource(TASKS / 2);
+        OrderedParallelIterator<Integer> iterator = new OrderedParallelIterator<Integer>(source, 4, "test");
+        int read = 0;
+        try {
+            while (iterator.hasNext()) {
+                Assert.assertEquals(read++, iterator.next().intValue());
+            }
+            Assert.fail("the failure of the source was not propagated");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+        Assert.assertTrue(read < TASKS / 2 * BATCH_SIZE);
+        Assert.assertEquals(1, source.closed);
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    /**
+     * A failing task must fail the iterator
+     */
+    @org.junit.Test
+    public void taskFailurePropagated() {
+        TaskSource<Integer> source = new TaskSource<Integer>() {
+            private boolean created = false;
+
+            @Override
+            public Callable<List<Integer>> next() {
+                if (created) {
+                    return null;
+                }
+                created = true;
+                return new Callable<List<Integer>>() {
+                    @Override
+                    public List<Integer> call() {
+                        throw new IllegalStateException("unparsable batch");
+                    }
+                };
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        OrderedParallelIterator<Integer> iterator = new OrderedParallelIterator<Integer>(source, 2, "test");
+        try {
+            iterator.hasNext();
+            Assert.fail("the failure of the task was not propagated");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    /**
+     * An iterator over no tasks must be empty
+     */
+    @org.junit.Test
+    public void noTasks() {
+        TaskSource<Integer> source = new TaskSource<Integer>() {
+            @Override
+            public Callable<List<Integer>> next() {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Assert.assertFalse(new OrderedParallelIterator<Integer>(source, 2, "test").hasNext());
+        Assert.assertEquals(Collections.emptyList(), Lists.newArrayList(new OrderedParallelIterator<Integer>(
+                source, 2, "test")));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.dataimport;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.Assert;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit test class for {@link ParallelSDFReader}
+ * 
+ * @author Shamshad Alam
+ */
+public class ParallelSDFReaderTest {
+
+    private static final int RECORDS = 200;
+
+    private static File writeRecords(boolean gzip) throws IOException {
+        File file = File.createTempFile("parallel", gzip ? ".sdf.gz" : ".sdf");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        if (gzip) {
+            out = new GZIPOutputStream(out);
+        }
+        Writer writer = new OutputStreamWriter(out, Charsets.US_ASCII);
+        try {
+            for (int i = 0; i < RECORDS; i++) {
+                writer.write("mol" + i + "\n  test\n\n");
+                writer.write("  1  0  0  0  0  0  0  0  0  0999 V2000\n");
+                writer.write("    0.0000    0.0000    0.0000 C   0  0  0  0  0  0  0  0  0  0  0  0\n");
+                writer.write("M  END\n> <id>\n" + i + "\n\n");
+                // records of different length
+                for (int j = 0; j < i % 7; j++) {
+                    writer.write("> <padding" + j + ">\n$$$ not a delimiter\n\n");
+                }
+                writer.write("$$$$\n");
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static void assertOrdered(ParallelSDFReader reader) {
+        List<String> titles = Lists.newArrayList();
+        for (IAtomContainer molecule : reader) {
+            titles.add((String) molecule.getProperty(CDKConstants.TITLE));
+        }
+        Assert.assertEquals(RECORDS, titles.size());
+        for (int i = 0; i < RECORDS; i++) {
+            Assert.assertEquals("mol" + i, titles.get(i));
+        }
+    }
+
+    /**
+     * Each record boundary must follow a delimiter line
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void recordBoundaries() throws IOException {
+        File file = writeRecords(false);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            byte[] content = new byte[(int) file.length()];
+            randomAccessFile.readFully(content);
+            String text = new String(content, Charsets.US_ASCII);
+            for (int from = 0; from < content.length; from += 97) {
+                long start = ParallelSDFReader.findRecordStart(randomAccessFile.getChannel(), from);
+                int expected = text.indexOf("\n$$$$\n", from);
+                Assert.assertEquals(expected < 0 ? content.length : expected + 6, start);
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * The molecules must be returned in the order of the file, regardless of
+     * how the chunks split the records
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void sameOrderAsFile() throws IOException {
+        File file = writeRecords(false);
+        for (int chunkSize : new int[] { 10, 100, 1000, 1 << 20 }) {
+            ParallelSDFReader reader = new ParallelSDFReader(file, false);
+            reader.setThreads(4);
+            reader.setChunkSize(chunkSize);
+            assertOrdered(reader);
+        }
+    }
+
+    /**
+     * Compressed files must be read like plain files
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void gzipInput() throws IOException {
+        File file = writeRecords(true);
+        for (int chunkSize : new int[] { 10, 1000, 1 << 20 }) {
+            ParallelSDFReader reader = new ParallelSDFReader(file, false);
+            reader.setThreads(4);
+            reader.setChunkSize(chunkSize);
+            assertOrdered(reader);
+        }
+    }
+
+    /**
+     * A file which cannot be opened must fail instead of being read as empty
+     */
+    @org.junit.Test(expected = RuntimeException.class)
+    public void missingFile() {
+        new ParallelSDFReader(new File("does-not-exist.sdf"), false).iterator();
+    }
+
+    /**
+     * An abandoned iterator must be closable and must not return further
+     * molecules afterwards
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void closeAbandoned() throws IOException {
+        File file = writeRecords(false);
+        ParallelSDFReader reader = new ParallelSDFReader(file, false);
+        reader.setChunkSize(100);
+        OrderedParallelIterator<IAtomContainer> molecules = reader.iterator();
+        Assert.assertEquals("mol0", molecules.next().getProperty(CDKConstants.TITLE));
+        molecules.close();
+        molecules.close();
+        Assert.assertFalse(molecules.hasNext());
+    }
+}
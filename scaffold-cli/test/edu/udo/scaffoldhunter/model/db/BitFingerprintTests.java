@@ -20,9 +20,21 @@
 
 package edu.udo.scaffoldhunter.model.db;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import junit.framework.Assert;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+
 import edu.udo.scaffoldhunter.model.PropertyType;
 
 /**
@@ -109,6 +121,114 @@ public class BitFingerprintTests {
         Assert.assertEquals(bits, prop.getBitFingerprintBitSet());
     }
 
+    /**
+     * Tests the packed words and the migration of the textual formats
+     */
+    @org.junit.Test
+    public void packedWordsTest() {
+        PropertyDefinition propDef = new PropertyDefinition("Title", "desc", PropertyType.BitFingerprint, "TEST", true,
+                false);
+        MoleculeStringProperty prop = new MoleculeStringProperty(propDef, "");
+
+        BitSet bits = new BitSet();
+        bits.set(0);
+        bits.set(63);
+        bits.set(64);
+        bits.set(129);
+        prop.setBitFingerprint(bits, (short) 130);
+
+        LongBuffer words = prop.getBitFingerprintWords();
+        Assert.assertEquals(3, words.remaining());
+        Assert.assertEquals(1L | (1L << 63), words.get(0));
+        Assert.assertEquals(1L, words.get(1));
+        Assert.assertEquals(2L, words.get(2));
+        Assert.assertEquals(130, prop.getFingerprintLength());
+        Assert.assertEquals("", prop.getStoredValue());
+
+        // the Base64 format is still readable and packed again
+        MoleculeStringProperty copy = new MoleculeStringProperty(propDef, prop.getValue());
+        Assert.assertNotNull(copy.getStoredFingerprint());
+        Assert.assertEquals(words, copy.getBitFingerprintWords());
+        Assert.assertEquals(bits, copy.getBitFingerprintBitSet());
+
+        // the cached textual format follows changes of the bits
+        String value = prop.getValue();
+        Assert.assertSame(value, prop.getValue());
+        bits.clear(129);
+        prop.setBitFingerprint(bits, (short) 130);
+        Assert.assertFalse(value.equals(prop.getValue()));
+        Assert.assertEquals(bits, new MoleculeStringProperty(propDef, prop.getValue()).getBitFingerprintBitSet());
+
+        PropertyDefinition stringPropDef = new PropertyDefinition("Title", "desc", PropertyType.BitStringFingerprint,
+                "TEST2", true, false);
+        MoleculeStringProperty stringProp = new MoleculeStringProperty(stringPropDef, "1000101");
+        Assert.assertEquals(7, stringProp.getFingerprintLength());
+        Assert.assertEquals(0x45L, stringProp.getBitFingerprintWords().get(0));
+        Assert.assertEquals("1000101", stringProp.getValue());
+
+        MoleculeStringProperty malformed = new MoleculeStringProperty(stringPropDef, "10x");
+        Assert.assertNull(malformed.getStoredFingerprint());
+        Assert.assertEquals("10x", malformed.getValue());
+    }
+
+    /**
+     * Tests that the schema upgrade only replaces textual fingerprints which
+     * are reproduced by the packed fingerprint
+     */
+    @org.junit.Test
+    public void packLosslessTest() {
+        PropertyDefinition propDef = new PropertyDefinition("Title", "desc", PropertyType.BitFingerprint, "TEST", true,
+                false);
+        MoleculeStringProperty prop = new MoleculeStringProperty(propDef, "");
+        BitSet bits = new BitSet();
+        bits.set(0);
+        bits.set(64);
+        bits.set(129);
+        prop.setBitFingerprint(bits, (short) 130);
+
+        String value = prop.getValue();
+        byte[] packed = StringProperty.packLossless(PropertyType.BitFingerprint, value);
+        Assert.assertTrue(Arrays.equals(prop.getStoredFingerprint(), packed));
+        Assert.assertEquals(value, StringProperty.getValue(PropertyType.BitFingerprint, null, packed));
+
+        // set padding bits are lost when packing
+        byte[] bytes = Base64.decodeBase64(value);
+        bytes[bytes.length - 1] |= 0x80;
+        String padded = Base64.encodeBase64String(bytes);
+        Assert.assertNotNull(StringProperty.pack(PropertyType.BitFingerprint, padded));
+        Assert.assertNull(StringProperty.packLossless(PropertyType.BitFingerprint, padded));
+
+        Assert.assertEquals("1000101", StringProperty.getValue(PropertyType.BitStringFingerprint, null,
+                StringProperty.packLossless(PropertyType.BitStringFingerprint, "1000101")));
+        Assert.assertNull(StringProperty.packLossless(PropertyType.BitStringFingerprint, "10x"));
+        Assert.assertNull(StringProperty.packLossless(PropertyType.BitStringFingerprint, ""));
+    }
+
+    /**
+     * The length of the fingerprint columns in the mappings must fit the
+     * largest packed fingerprint
+     * 
+     * @throws IOException
+     */
+    @org.junit.Test
+    public void fingerprintColumnLengthTest() throws IOException {
+        Pattern column = Pattern.compile("name=\"fingerprint\"[^>]*length=\"(\\d+)\"");
+        for (String mapping : new String[] { "molecule_string_properties.hbm.xml",
+                "scaffold_string_properties.hbm.xml" }) {
+            InputStreamReader reader = new InputStreamReader(getClass().getResourceAsStream(mapping),
+                    Charsets.UTF_8);
+            String xml;
+            try {
+                xml = CharStreams.toString(reader);
+            } finally {
+                reader.close();
+            }
+            Matcher matcher = column.matcher(xml);
+            Assert.assertTrue(mapping, matcher.find());
+            Assert.assertEquals(mapping, StringProperty.MAX_FINGERPRINT_BYTES, Integer.parseInt(matcher.group(1)));
+        }
+    }
+
     /**
      * Invalidates the internal caches
      * 
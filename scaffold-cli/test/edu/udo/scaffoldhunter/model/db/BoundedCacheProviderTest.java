@@ -0,0 +1,74 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.db;
+
+import java.util.Properties;
+
+import junit.framework.Assert;
+
+import org.hibernate.cache.Cache;
+import org.hibernate.cache.UpdateTimestampsCache;
+
+/**
+ * JUnit test class for {@link BoundedCacheProvider}
+ * 
+ * @author Shamshad Alam
+ */
+@SuppressWarnings("deprecation")
+public class BoundedCacheProviderTest {
+    /**
+     * Entity regions are bounded, the update timestamps are not
+     */
+    @org.junit.Test
+    public void bounded() {
+        BoundedCacheProvider provider = new BoundedCacheProvider();
+        Cache entities = provider.buildCache(Dataset.class.getName(), new Properties());
+        Cache timestamps = provider.buildCache(UpdateTimestampsCache.REGION_NAME, new Properties());
+        int count = 2 * BoundedCacheProvider.MAX_ENTRIES;
+        for (int i = 0; i < count; i++) {
+            entities.put(i, "value " + i);
+            timestamps.put(i, (long) i);
+        }
+        Assert.assertTrue(entities.getElementCountInMemory() <= BoundedCacheProvider.MAX_ENTRIES);
+        Assert.assertEquals(count, timestamps.getElementCountInMemory());
+        Assert.assertEquals("value " + (count - 1), entities.get(count - 1));
+    }
+
+    /**
+     * Removed and cleared entries must not be returned
+     */
+    @org.junit.Test
+    public void invalidation() {
+        Cache cache = new BoundedCacheProvider().buildCache(Profile.class.getName(), new Properties());
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.update(2, "c");
+        Assert.assertEquals("c", cache.read(2));
+        cache.remove(1);
+        Assert.assertNull(cache.get(1));
+        cache.clear();
+        Assert.assertNull(cache.get(2));
+        Assert.assertEquals(0, cache.getElementCountInMemory());
+    }
+}
@@ -21,6 +21,7 @@
 
 package edu.udo.scaffoldhunter.model.db;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -55,6 +56,18 @@ public class MockDbManager implements DbManager {
         return false;
     }
 
+    @Override
+    public ConnectionPoolStatistics getConnectionPoolStatistics() {
+
+        return null;
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics() {
+
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -223,6 +236,12 @@ public class MockDbManager implements DbManager {
 
     }
 
+    @Override
+    public void insertProperties(Collection<? extends Property> properties,
+            Collection<PropertyDefinition> propertyDefinitions) throws DatabaseException {
+
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -308,6 +327,12 @@ public class MockDbManager implements DbManager {
         return null;
     }
 
+    @Override
+    public Map<Structure, String> getSvgStrings(Collection<? extends Structure> structures) throws DatabaseException {
+
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -321,6 +346,12 @@ public class MockDbManager implements DbManager {
         return null;
     }
 
+    @Override
+    public Map<Structure, String> getStrucMols(Collection<? extends Structure> structures) throws DatabaseException {
+
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -562,6 +593,13 @@ public class MockDbManager implements DbManager {
         return null;
     }
 
+    @Override
+    public AccumulatedNumProperties getAccNumPropertyStatistics(PropertyDefinition propDef, Subset subset,
+            Scaffold root, boolean subtreeCumulative) throws DatabaseException {
+
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -784,6 +822,37 @@ public class MockDbManager implements DbManager {
         return null;
     }
 
+    @Override
+    public int[] getMoleculeIds(Dataset dataset) throws DatabaseException {
+
+        return null;
+    }
+
+    @Override
+    public double[] getNumPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) throws DatabaseException {
+
+        return null;
+    }
+
+    @Override
+    public String[] getStringPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) throws DatabaseException {
+
+        return null;
+    }
+
+    @Override
+    public PackedFingerprints getPackedFingerprints(PropertyDefinition propDef) throws DatabaseException {
+
+        return null;
+    }
+
+    @Override
+    public String[][] getPropertyRows(List<Molecule> molecules, List<PropertyDefinition> propDefs)
+            throws DatabaseException {
+
+        return null;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -807,6 +876,11 @@ public class MockDbManager implements DbManager {
 
     }
 
+    @Override
+    public void loadMolecules(Subset subset) throws DatabaseException {
+
+    }
+
     /* (non-Javadoc)
      * @see edu.udo.scaffoldhunter.model.db.DbManager#getAllSessionInformations(edu.udo.scaffoldhunter.model.db.Profile)
      */
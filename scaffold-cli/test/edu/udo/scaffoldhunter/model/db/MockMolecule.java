@@ -34,4 +34,14 @@ public class MockMolecule extends Molecule {
         super();
         setTitle(title);
     }
+
+    /**
+     * @param title
+     * @param id
+     *            the database id
+     */
+    public MockMolecule(String title, int id) {
+        this(title);
+        this.id = id;
+    }
 }
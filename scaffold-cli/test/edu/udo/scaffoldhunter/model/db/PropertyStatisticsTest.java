@@ -0,0 +1,93 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.db;
+
+import junit.framework.Assert;
+
+import edu.udo.scaffoldhunter.model.NumComparisonFunction;
+import edu.udo.scaffoldhunter.model.StringComparisonFunction;
+
+/**
+ * JUnit test class for {@link PropertyStatistics}
+ * 
+ * @author Shamshad Alam
+ */
+public class PropertyStatisticsTest {
+    private static final double EPSILON = 1e-9;
+
+    private static NumFilter numFilter(NumComparisonFunction function, double value) {
+        return new NumFilter(null, null, null, value, function);
+    }
+
+    /**
+     * Range filters are estimated by the covered part of the value range of
+     * the defined values
+     */
+    @org.junit.Test
+    public void numFilters() {
+        // 500 of 1000 molecules have values between 0 and 10
+        PropertyStatistics statistics = new PropertyStatistics(1000, 500, 0, 10);
+
+        Assert.assertEquals(0.5, statistics.getSelectivity(numFilter(NumComparisonFunction.IsDefined, 0)), EPSILON);
+        Assert.assertEquals(0.5, statistics.getSelectivity(numFilter(NumComparisonFunction.IsNotDefined, 0)),
+                EPSILON);
+        Assert.assertEquals(0.1, statistics.getSelectivity(numFilter(NumComparisonFunction.IsGreater, 8)), EPSILON);
+        Assert.assertEquals(0.4, statistics.getSelectivity(numFilter(NumComparisonFunction.IsLess, 8)), EPSILON);
+        Assert.assertEquals(0.0, statistics.getSelectivity(numFilter(NumComparisonFunction.IsGreater, 20)), EPSILON);
+        Assert.assertEquals(0.5, statistics.getSelectivity(numFilter(NumComparisonFunction.IsLess, 20)), EPSILON);
+        Assert.assertEquals(0.0, statistics.getSelectivity(numFilter(NumComparisonFunction.IsEqual, -1)), EPSILON);
+        Assert.assertEquals(1.0, statistics.getSelectivity(numFilter(NumComparisonFunction.IsNotEqual, -1)),
+                EPSILON);
+    }
+
+    /**
+     * Negated string filters accept the molecules not accepted by the positive
+     * filter
+     */
+    @org.junit.Test
+    public void stringFilters() {
+        PropertyStatistics statistics = new PropertyStatistics(1000, 800, Double.NaN, Double.NaN);
+        StringComparisonFunction[][] pairs = {
+                { StringComparisonFunction.IsEqual, StringComparisonFunction.IsNotEqual },
+                { StringComparisonFunction.Begins, StringComparisonFunction.BeginsNot },
+                { StringComparisonFunction.Contains, StringComparisonFunction.ContainsNot },
+                { StringComparisonFunction.EndsInverse, StringComparisonFunction.EndsNotInverse } };
+        for (StringComparisonFunction[] pair : pairs) {
+            double positive = statistics.getSelectivity(new StringFilter(null, null, null, "C", pair[0]));
+            double negative = statistics.getSelectivity(new StringFilter(null, null, null, "C", pair[1]));
+            Assert.assertTrue(positive < 0.8);
+            Assert.assertEquals(1.0, positive + negative, EPSILON);
+        }
+    }
+
+    /**
+     * Without statistics all filters get the same selectivity
+     */
+    @org.junit.Test
+    public void unknown() {
+        Assert.assertEquals(
+                PropertyStatistics.UNKNOWN.getSelectivity(numFilter(NumComparisonFunction.IsGreater, 1)),
+                PropertyStatistics.UNKNOWN.getSelectivity(numFilter(NumComparisonFunction.IsDefined, 1)), EPSILON);
+    }
+}
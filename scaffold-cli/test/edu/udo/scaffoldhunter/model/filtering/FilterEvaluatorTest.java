@@ -0,0 +1,168 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.filtering;
+
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import com.google.common.collect.Sets;
+
+import edu.udo.scaffoldhunter.model.NumComparisonFunction;
+import edu.udo.scaffoldhunter.model.PropertyType;
+import edu.udo.scaffoldhunter.model.StringComparisonFunction;
+import edu.udo.scaffoldhunter.model.clustering.MockPropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Dataset;
+import edu.udo.scaffoldhunter.model.db.Filter;
+import edu.udo.scaffoldhunter.model.db.Filterset;
+import edu.udo.scaffoldhunter.model.db.MockDbManager;
+import edu.udo.scaffoldhunter.model.db.NumFilter;
+import edu.udo.scaffoldhunter.model.db.PropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.StringFilter;
+
+/**
+ * JUnit test class for {@link FilterEvaluator}
+ * 
+ * @author Shamshad Alam
+ */
+public class FilterEvaluatorTest {
+    private static final int SIZE = 1000;
+
+    private final double[] numValues = new double[SIZE];
+    private final String[] stringValues = new String[SIZE];
+    private final Dataset dataset = new Dataset();
+    private final MockPropertyDefinition numPropDef = new MockPropertyDefinition("num", "", PropertyType.NumProperty,
+            "num", false, false);
+    private final MockPropertyDefinition stringPropDef = new MockPropertyDefinition("string", "",
+            PropertyType.StringProperty, "string", false, false);
+    private FilterEvaluator evaluator;
+
+    /**
+     * Creates random columns, every tenth value is undefined
+     */
+    @org.junit.Before
+    public void setup() {
+        Random rand = new Random(0);
+        String[] words = { "CCO", "cco", "C1CC1", "NCO", "O" };
+        for (int i = 0; i < SIZE; i++) {
+            numValues[i] = i % 10 == 0 ? Double.NaN : rand.nextInt(100);
+            stringValues[i] = i % 10 == 1 ? null : words[rand.nextInt(words.length)];
+        }
+        numPropDef.setId(1);
+        stringPropDef.setId(2);
+        dataset.getPropertyDefinitions().put("num", numPropDef);
+        dataset.getPropertyDefinitions().put("string", stringPropDef);
+
+        int[] ids = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            ids[i] = 2 * i + 1;
+        }
+        evaluator = new FilterEvaluator(new MockDbManager() {
+            @Override
+            public double[] getNumPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) {
+                return numValues;
+            }
+
+            @Override
+            public String[] getStringPropertyColumn(PropertyDefinition propDef, int[] moleculeIds) {
+                return stringValues;
+            }
+        }, dataset, ids, true);
+    }
+
+    private static boolean isSet(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Conjunctive and disjunctive filtersets must match a molecule wise
+     * evaluation
+     * 
+     * @throws Exception
+     */
+    @org.junit.Test
+    public void combinedFilters() throws Exception {
+        Filter greater = new NumFilter(null, numPropDef, null, 50, NumComparisonFunction.IsGreater);
+        Filter notEqual = new NumFilter(null, numPropDef, null, 70, NumComparisonFunction.IsNotEqual);
+        Filter begins = new StringFilter(null, stringPropDef, null, "C", StringComparisonFunction.Begins);
+        Set<Filter> filters = Sets.newHashSet(greater, notEqual, begins);
+
+        for (boolean conjunctive : new boolean[] { true, false }) {
+            Filterset filterset = new Filterset(null, "test", filters, conjunctive);
+            long[] bits = evaluator.evaluate(filterset);
+            int count = 0;
+            for (int i = 0; i < SIZE; i++) {
+                boolean a = numValues[i] > 50;
+                boolean b = numValues[i] != 70;
+                boolean c = stringValues[i] != null && stringValues[i].startsWith("C");
+                boolean expected = conjunctive ? a && b && c : a || b || c;
+                Assert.assertEquals(expected, isSet(bits, i));
+                count += expected ? 1 : 0;
+            }
+            Assert.assertEquals(count, evaluator.count(filterset));
+        }
+    }
+
+    /**
+     * Negated filters accept undefined values, bits beyond the molecules are
+     * never set
+     * 
+     * @throws Exception
+     */
+    @org.junit.Test
+    public void negatedFilters() throws Exception {
+        Filterset notDefined = new Filterset(null, "test", Sets.<Filter> newHashSet(new NumFilter(null, numPropDef,
+                null, 0, NumComparisonFunction.IsNotDefined)), true);
+        Assert.assertEquals(SIZE / 10, evaluator.count(notDefined));
+
+        Filterset containsNot = new Filterset(null, "test", Sets.<Filter> newHashSet(new StringFilter(null,
+                stringPropDef, null, "CO", StringComparisonFunction.ContainsNot)), true);
+        int expected = 0;
+        for (String s : stringValues) {
+            if (s == null || !s.contains("CO")) {
+                expected++;
+            }
+        }
+        Assert.assertEquals(expected, evaluator.count(containsNot));
+
+        Filterset empty = new Filterset(null, "test", Sets.<Filter> newHashSet(), true);
+        Assert.assertEquals(SIZE, evaluator.count(empty));
+    }
+
+    /**
+     * Tests the SQL LIKE semantics
+     */
+    @org.junit.Test
+    public void like() {
+        Assert.assertTrue(FilterEvaluator.like("C1CC1", "C%", true));
+        Assert.assertTrue(FilterEvaluator.like("C1CC1", "%CC%", true));
+        Assert.assertTrue(FilterEvaluator.like("C1CC1", "C_CC_", true));
+        Assert.assertFalse(FilterEvaluator.like("C1CC1", "C_C", true));
+        Assert.assertFalse(FilterEvaluator.like("cco", "CCO", true));
+        Assert.assertTrue(FilterEvaluator.like("cco", "CCO", false));
+        Assert.assertTrue(FilterEvaluator.like("", "%", true));
+        Assert.assertFalse(FilterEvaluator.like("", "_", true));
+    }
+}
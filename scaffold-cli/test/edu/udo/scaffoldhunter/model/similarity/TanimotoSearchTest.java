@@ -0,0 +1,148 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.similarity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import edu.udo.scaffoldhunter.model.db.PackedFingerprints;
+import edu.udo.scaffoldhunter.model.similarity.TanimotoSearch.Hit;
+
+/**
+ * JUnit test class for {@link TanimotoSearch}
+ * 
+ * @author Shamshad Alam
+ */
+public class TanimotoSearchTest {
+
+    private static final int LENGTH = 150;
+    private static final int WORDS = 3;
+
+    /**
+     * The search must find the same hits as a scan over all fingerprints,
+     * with one and with several threads.
+     * 
+     * @throws InterruptedException
+     */
+    @org.junit.Test
+    public void sameAsFullScan() throws InterruptedException {
+        Random rand = new Random(0);
+        int size = 20000;
+        int[] ids = new int[size];
+        long[] words = new long[size * WORDS];
+        for (int i = 0; i < size; i++) {
+            ids[i] = i;
+            // vary the density, so there are many different bit counts
+            double density = rand.nextDouble() * 0.5;
+            for (int bit = 0; bit < LENGTH; bit++) {
+                if (rand.nextDouble() < density) {
+                    words[i * WORDS + bit / 64] |= 1L << bit;
+                }
+            }
+        }
+        long[] copy = words.clone();
+
+        for (int threads = 1; threads <= 4; threads += 3) {
+            TanimotoSearch search = new TanimotoSearch(new PackedFingerprints(ids.clone(), words.clone(), LENGTH));
+            search.setThreads(threads);
+            for (int q = 0; q < 20; q++) {
+                long[] query = new long[WORDS];
+                System.arraycopy(copy, rand.nextInt(size) * WORDS, query, 0, WORDS);
+                query[0] ^= rand.nextLong() & 0xff;
+
+                assertHits(fullScan(copy, size, query, 50, 0), search.search(query, 50, 0));
+                assertHits(fullScan(copy, size, query, 1000, 0.4), search.search(query, 1000, 0.4));
+            }
+        }
+    }
+
+    /**
+     * Bits beyond the length of the fingerprints must be ignored
+     * 
+     * @throws InterruptedException
+     */
+    @org.junit.Test
+    public void paddingIgnored() throws InterruptedException {
+        long[] words = new long[2 * WORDS];
+        // all bits of the first fingerprint set, including the padding
+        words[0] = words[1] = words[2] = -1L;
+        words[WORDS] = 1L;
+        TanimotoSearch search = new TanimotoSearch(new PackedFingerprints(new int[] { 0, 1 }, words, LENGTH));
+
+        long[] query = new long[] { -1L, -1L, -1L };
+        List<Hit> hits = search.search(query, 2, 0);
+        Assert.assertEquals(2, hits.size());
+        Assert.assertEquals(0, hits.get(0).getMoleculeId());
+        Assert.assertEquals(1.0, hits.get(0).getSimilarity(), 1e-12);
+        Assert.assertEquals(1.0 / LENGTH, hits.get(1).getSimilarity(), 1e-12);
+    }
+
+    /**
+     * Fingerprints whose words do not fit into one array are rejected before
+     * their offsets overflow
+     */
+    @org.junit.Test(expected = IllegalArgumentException.class)
+    public void tooManyWords() {
+        // 2^8 fingerprints of 2^24 words each, the product overflows to 0
+        new PackedFingerprints(new int[1 << 8], new long[0], Long.SIZE << 24);
+    }
+
+    private static void assertHits(List<double[]> expected, List<Hit> hits) {
+        Assert.assertEquals(expected.size(), hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            Assert.assertEquals((int) expected.get(i)[0], hits.get(i).getMoleculeId());
+            Assert.assertEquals(expected.get(i)[1], hits.get(i).getSimilarity(), 1e-12);
+        }
+    }
+
+    private static List<double[]> fullScan(long[] words, int size, long[] query, int k, double minSimilarity) {
+        List<double[]> hits = new ArrayList<double[]>();
+        for (int i = 0; i < size; i++) {
+            int a = 0;
+            int b = 0;
+            int c = 0;
+            for (int w = 0; w < WORDS; w++) {
+                a += Long.bitCount(query[w]);
+                b += Long.bitCount(words[i * WORDS + w]);
+                c += Long.bitCount(query[w] & words[i * WORDS + w]);
+            }
+            double similarity = a + b - c == 0 ? 0 : (double) c / (a + b - c);
+            if (similarity >= minSimilarity) {
+                hits.add(new double[] { i, similarity });
+            }
+        }
+        Collections.sort(hits, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] h1, double[] h2) {
+                int c = Double.compare(h2[1], h1[1]);
+                return c != 0 ? c : Double.compare(h1[0], h2[0]);
+            }
+        });
+        return hits.size() > k ? hits.subList(0, k) : hits;
+    }
+}
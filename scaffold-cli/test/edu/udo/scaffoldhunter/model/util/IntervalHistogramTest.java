@@ -0,0 +1,116 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package edu.udo.scaffoldhunter.model.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import com.google.common.collect.Lists;
+import com.google.common.primitives.Ints;
+
+import edu.udo.scaffoldhunter.model.PropertyType;
+import edu.udo.scaffoldhunter.model.clustering.MockPropertyDefinition;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+import edu.udo.scaffoldhunter.model.db.MoleculeNumProperty;
+import edu.udo.scaffoldhunter.model.db.Scaffold;
+
+/**
+ * JUnit test class for {@link IntervalHistogram}
+ * 
+ * @author Shamshad Alam
+ */
+public class IntervalHistogramTest {
+
+    private static final double[] LOWER_BOUNDS = { 0, 0.25, 0.5, 0.5, 0.75 };
+
+    /**
+     * The binary search must yield the same interval as a linear scan over
+     * the lower bounds, a value equal to a lower bound belongs to the interval
+     * below.
+     */
+    @org.junit.Test
+    public void binMatchesLinearScan() {
+        IntervalHistogram histogram = new IntervalHistogram(LOWER_BOUNDS);
+        Random rand = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            double value = i % 10 == 0 ? LOWER_BOUNDS[i % LOWER_BOUNDS.length] : rand.nextDouble() * 1.2 - 0.1;
+            int expected = 0;
+            for (int j = LOWER_BOUNDS.length - 1; j > 0; j--) {
+                if (value > LOWER_BOUNDS[j]) {
+                    expected = j;
+                    break;
+                }
+            }
+            Assert.assertEquals(expected, histogram.bin(value));
+        }
+        Assert.assertEquals(LOWER_BOUNDS.length - 1, histogram.bin(Double.NaN));
+    }
+
+    /**
+     * Tests the per scaffold and the cumulative counts of a small tree
+     */
+    @org.junit.Test
+    public void countSubtree() {
+        MockPropertyDefinition propDef = new MockPropertyDefinition("Test Property", "", PropertyType.NumProperty,
+                "test", false, false);
+        propDef.setId(1);
+
+        Scaffold root = scaffold("root", propDef, 0.1, 0.9);
+        Scaffold left = scaffold("left", propDef, 0.3, 0.3, 0.6);
+        Scaffold right = scaffold("right", propDef, 0.8);
+        Scaffold leaf = scaffold("leaf", propDef, 0.0, 1.0);
+        // molecule without a value for the property
+        leaf.getMolecules().add(new Molecule());
+        root.setChildren(Lists.newArrayList(left, right));
+        left.setChildren(Lists.newArrayList(leaf));
+
+        IntervalHistogram histogram = new IntervalHistogram(LOWER_BOUNDS);
+
+        Map<Scaffold, List<Integer>> direct = histogram.countSubtree(root, propDef, false);
+        Assert.assertEquals(4, direct.size());
+        Assert.assertEquals(Ints.asList(1, 0, 0, 0, 1), direct.get(root));
+        Assert.assertEquals(Ints.asList(0, 2, 0, 1, 0), direct.get(left));
+        Assert.assertEquals(Ints.asList(0, 0, 0, 0, 1), direct.get(right));
+        Assert.assertEquals(Ints.asList(1, 0, 0, 0, 1), direct.get(leaf));
+
+        Map<Scaffold, List<Integer>> cumulative = histogram.countSubtree(root, propDef, true);
+        Assert.assertEquals(Ints.asList(2, 2, 0, 1, 3), cumulative.get(root));
+        Assert.assertEquals(Ints.asList(1, 2, 0, 1, 1), cumulative.get(left));
+        Assert.assertEquals(Ints.asList(0, 0, 0, 0, 1), cumulative.get(right));
+        Assert.assertEquals(Ints.asList(1, 0, 0, 0, 1), cumulative.get(leaf));
+    }
+
+    private static Scaffold scaffold(String smiles, MockPropertyDefinition propDef, double... values) {
+        Scaffold scaffold = new Scaffold();
+        scaffold.setSmiles(smiles);
+        for (double value : values) {
+            Molecule mol = new Molecule();
+            mol.getNumProperties().put(1, new MoleculeNumProperty(propDef, value));
+            scaffold.getMolecules().add(mol);
+        }
+        return scaffold;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Scaffold Hunter
+ * Copyright (C) 2006-2008 PG504
+ * Copyright (C) 2010-2011 PG552
+ * Copyright (C) 2012-2014 LS11
+ * See the file README.txt in the root directory of the Scaffold Hunter
+ * source tree for details.
+ *
+ * Scaffold Hunter is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Scaffold Hunter is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package edu.udo.scaffoldhunter.model.util;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+
+import junit.framework.Assert;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+import edu.udo.scaffoldhunter.model.db.MockMolecule;
+import edu.udo.scaffoldhunter.model.db.Molecule;
+
+/**
+ * JUnit test class for {@link MoleculeBitmap}
+ * 
+ * @author Shamshad Alam
+ */
+public class MoleculeBitmapTest {
+
+    private static int[] randomIds(Random rand, int n, int max) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = rand.nextInt(max);
+        }
+        return ids;
+    }
+
+    /**
+     * The set operations must yield the same result as the corresponding
+     * operations on sorted sets
+     */
+    @org.junit.Test
+    public void matchesSortedSets() {
+        Random rand = new Random(0);
+        for (int round = 0; round < 50; round++) {
+            // mix sparse and dense bitmaps
+            int max = round % 2 == 0 ? 1000 : 1000000;
+            int[] a = randomIds(rand, rand.nextInt(500), max);
+            int[] b = randomIds(rand, rand.nextInt(500), max);
+            SortedSet<Integer> setA = Sets.newTreeSet(Ints.asList(a));
+            SortedSet<Integer> setB = Sets.newTreeSet(Ints.asList(b));
+            MoleculeBitmap bitmapA = MoleculeBitmap.of(a);
+            MoleculeBitmap bitmapB = MoleculeBitmap.of(b);
+
+            Assert.assertEquals(setA.size(), bitmapA.cardinality());
+            Assert.assertEquals(Lists.newArrayList(setA), Ints.asList(bitmapA.toArray()));
+            Assert.assertEquals(Lists.newArrayList(Sets.newTreeSet(Sets.union(setA, setB))), Ints.asList(bitmapA.or(bitmapB).toArray()));
+            Assert.assertEquals(Lists.newArrayList(Sets.intersection(setA, setB)),
+                    Ints.asList(bitmapA.and(bitmapB).toArray()));
+            Assert.assertEquals(Lists.newArrayList(Sets.difference(setA, setB)),
+                    Ints.asList(bitmapA.andNot(bitmapB).toArray()));
+            for (int id : b) {
+                Assert.assertEquals(setA.contains(id), bitmapA.contains(id));
+            }
+            Assert.assertEquals(MoleculeBitmap.of(Ints.toArray(setA)), bitmapA);
+        }
+    }
+
+    /**
+     * Structures without distinct database ids have no bitmap, selecting
+     * structures returns each contained structure once
+     */
+    @org.junit.Test
+    public void structures() {
+        Molecule a = new MockMolecule("A", 1);
+        Molecule b = new MockMolecule("B", 64);
+        Molecule c = new MockMolecule("C", 65);
+
+        Assert.assertNull(MoleculeBitmap.fromStructures(Lists.newArrayList(a, new MockMolecule("D"))));
+        Assert.assertNull(MoleculeBitmap.fromStructures(Lists.newArrayList(a, new MockMolecule("E", 1))));
+
+        MoleculeBitmap bitmap = MoleculeBitmap.fromStructures(Lists.newArrayList(a, c));
+        Assert.assertEquals(2, bitmap.cardinality());
+        List<Molecule> selected = bitmap.select(Lists.newArrayList(c, b, a, c, a));
+        Assert.assertEquals(Lists.newArrayList(c, a), selected);
+    }
+
+    /**
+     * Serialized bitmaps must be restored unchanged, contiguous ranges must be
+     * stored as runs
+     */
+    @org.junit.Test
+    public void serialization() {
+        Random rand = new Random(0);
+        int[] range = new int[100000];
+        for (int i = 0; i < range.length; i++) {
+            range[i] = 5000 + i;
+        }
+        int[] mixed = Ints.concat(range, randomIds(rand, 1000, 10000000));
+        for (int[] ids : new int[][] { {}, { 0 }, { 63, 64 }, range, mixed, randomIds(rand, 1000, 1000000) }) {
+            MoleculeBitmap bitmap = MoleculeBitmap.of(ids);
+            byte[] data = bitmap.toBytes();
+            Assert.assertEquals(bitmap, MoleculeBitmap.fromBytes(data));
+            Assert.assertEquals(Lists.newArrayList(Sets.newTreeSet(Ints.asList(ids))),
+                    Ints.asList(MoleculeBitmap.fromBytes(data).toArray()));
+        }
+        Assert.assertTrue(MoleculeBitmap.of(range).toBytes().length < 64);
+        try {
+            MoleculeBitmap.fromBytes(new byte[] { 1, 0 });
+            Assert.fail("truncated bitmap accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}